@@ -0,0 +1,90 @@
+package org.dawnsci.isosurface.test.marchingCubes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.dawnsci.isosurface.alg.MarchingCubes;
+import org.dawnsci.isosurface.alg.MarchingCubesModel;
+import org.dawnsci.isosurface.alg.Surface;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Random;
+import org.junit.Test;
+
+/**
+ * Checks that the kernel makes the same triangles as the legacy algorithm, in one
+ * block or stitched from many, whatever the order of the vertices.
+ */
+public class KernelTest {
+
+	private static final String PLANE_SIZE = "org.dawnsci.isosurface.block.plane.size";
+	private static final String MIN_CELLS  = "org.dawnsci.isosurface.block.min.cells";
+
+	private static Surface getSurface(ILazyDataset data, int[] boxSize, boolean legacy) {
+		final MarchingCubesModel model = new MarchingCubesModel();
+		model.setLazyData(data);
+		model.setBoxSize(boxSize);
+		model.setIsovalue(0.5);
+		model.setVertexLimit(Integer.MAX_VALUE);
+		model.setLegacy(legacy);
+
+		final MarchingCubes algorithm = new MarchingCubes();
+		algorithm.setModel(model);
+		return algorithm.execute(null, null);
+	}
+
+	/**
+	 * @return each triangle as the coordinates of its corners, in order.
+	 */
+	private static Set<List<Float>> getTriangles(Surface surface) {
+		final float[] points = surface.getPoints();
+		final int[]   faces  = surface.getFaces();
+		final Set<List<Float>> triangles = new HashSet<List<Float>>(faces.length/6);
+		for (int i = 0; i < faces.length; i+=6) {
+			final List<Float> triangle = new ArrayList<Float>(9);
+			for (int corner = 0; corner < 6; corner+=2) {
+				for (int d = 0; d < 3; d++) triangle.add(points[faces[i+corner]*3+d]);
+			}
+			triangles.add(triangle);
+		}
+		assertEquals("Repeated triangles", faces.length/6, triangles.size());
+		return triangles;
+	}
+
+	private static Surface getBlockedSurface(ILazyDataset data, int[] boxSize) {
+		System.setProperty(PLANE_SIZE, "64");
+		System.setProperty(MIN_CELLS,  "64");
+		try {
+			return getSurface(data, boxSize, false);
+		} finally {
+			System.clearProperty(PLANE_SIZE);
+			System.clearProperty(MIN_CELLS);
+		}
+	}
+
+	private static void assertSameTriangles(int[] shape, int[] boxSize) {
+		Random.seed(Regression.SEED);
+		final ILazyDataset data = Random.rand(shape);
+
+		final Set<List<Float>> legacy = getTriangles(getSurface(data, boxSize, true));
+		final Surface          kernel = getSurface(data, boxSize, false);
+		assertEquals("Kernel and legacy triangles differ", legacy, getTriangles(kernel));
+
+		final Surface blocked = getBlockedSurface(data, boxSize);
+		assertEquals("Stitched and single kernel triangles differ", getTriangles(kernel), getTriangles(blocked));
+		assertEquals("Vertices on the sides of blocks are not shared", kernel.getPoints().length, blocked.getPoints().length);
+	}
+
+	@Test
+	public void testUnitBox() {
+		assertSameTriangles(new int[]{24, 24, 24}, new int[]{1, 1, 1});
+	}
+
+	@Test
+	public void testLargerBox() {
+		assertSameTriangles(new int[]{40, 30, 30}, new int[]{3, 2, 2});
+	}
+}
@@ -0,0 +1,139 @@
+package org.dawnsci.isosurface.test.marchingCubes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.dawnsci.isosurface.alg.MinMaxTree;
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+import org.junit.Test;
+
+/**
+ * Compares whether the tree says a part of a volume straddles an isovalue with
+ * the values of the part, and of the blocks the part is in, found by looking at
+ * every voxel.
+ */
+public class MinMaxTreeTest {
+
+	private static final int BLOCK = Integer.getInteger("org.dawnsci.isosurface.minmax.block", 16);
+
+	/**
+	 * @param nans the fraction of voxels which are NaN
+	 * @return a smooth volume with some noise, so that parts of it do not straddle
+	 */
+	private static DoubleDataset createVolume(int[] shape, double nans, long seed) {
+		final java.util.Random random = new java.util.Random(seed);
+		final DoubleDataset    data   = new DoubleDataset(shape);
+		for (int x = 0; x < shape[0]; x++) {
+			for (int y = 0; y < shape[1]; y++) {
+				for (int z = 0; z < shape[2]; z++) {
+					final double value = random.nextDouble() < nans ? Double.NaN
+							           : Math.sin(x/7.)+Math.cos(y/5.)+z/20.+0.1*random.nextDouble();
+					data.set(value, x, y, z);
+				}
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * @return true if a voxel from from to to (inclusive) is below the isovalue
+	 *         and one is not, counting NaN as not below.
+	 */
+	private static boolean straddles(DoubleDataset data, int[] from, int[] to, double isovalue) {
+		boolean below = false, notBelow = false;
+		for (int x = from[0]; x <= to[0]; x++) {
+			for (int y = from[1]; y <= to[1]; y++) {
+				for (int z = from[2]; z <= to[2]; z++) {
+					if (data.get(x, y, z) < isovalue) {
+						below = true;
+					} else {
+						notBelow = true;
+					}
+				}
+			}
+		}
+		return below && notBelow;
+	}
+
+	/**
+	 * @return the voxels of the blocks of the tree which the part from to to is in
+	 */
+	private static int[][] getBlocks(int[] shape, int[] from, int[] to) {
+		final int[] blockFrom = new int[3];
+		final int[] blockTo   = new int[3];
+		for (int d = 0; d < 3; d++) {
+			// Block i holds the voxels from i*BLOCK to (i+1)*BLOCK inclusive, the last to the end
+			final int last = Math.max(0, (shape[d]-2)/BLOCK);
+			final int lo   = Math.min(last, from[d]/BLOCK);
+			final int hi   = Math.min(last, Math.max(from[d], to[d]-1)/BLOCK);
+			blockFrom[d] = lo*BLOCK;
+			blockTo[d]   = hi == last ? shape[d]-1 : (hi+1)*BLOCK;
+		}
+		return new int[][]{blockFrom, blockTo};
+	}
+
+	private static void assertStraddles(DoubleDataset data, MinMaxTree tree, int[] from, int[] to, double isovalue) {
+		final String  message = Arrays.toString(from)+" to "+Arrays.toString(to)+" at "+isovalue;
+		final boolean actual  = tree.straddles(from, to, isovalue);
+		if (straddles(data, from, to, isovalue)) assertTrue(message, actual);
+
+		final int[][] blocks = getBlocks(data.getShape(), from, to);
+		assertEquals(message, straddles(data, blocks[0], blocks[1], isovalue), actual);
+	}
+
+	private static void assertRandomParts(int[] shape, double nans, long seed) {
+		final DoubleDataset data = createVolume(shape, nans, seed);
+		final MinMaxTree    tree = MinMaxTree.create(data, null);
+		final java.util.Random random = new java.util.Random(seed);
+		for (int i = 0; i < 2000; i++) {
+			final int[] from = new int[3];
+			final int[] to   = new int[3];
+			for (int d = 0; d < 3; d++) {
+				// Mostly small parts, as the boxes of the blocks of marching cubes are
+				final int length = random.nextInt(4) == 0 ? random.nextInt(shape[d]) : random.nextInt(Math.min(shape[d], 2*BLOCK));
+				from[d] = random.nextInt(shape[d]-length);
+				to[d]   = from[d]+length;
+			}
+			// Isovalues of voxels, so that values equal to them are tested too
+			double isovalue = data.get(random.nextInt(shape[0]), random.nextInt(shape[1]), random.nextInt(shape[2]));
+			if (Double.isNaN(isovalue) || random.nextBoolean()) isovalue = -2+5*random.nextDouble();
+			assertStraddles(data, tree, from, to, isovalue);
+		}
+	}
+
+	@Test
+	public void testRandomParts() {
+		assertRandomParts(new int[]{40, 37, 50}, 0, 1);
+		assertRandomParts(new int[]{BLOCK+1, 2*BLOCK+1, 3*BLOCK}, 0, 2);
+	}
+
+	@Test
+	public void testNaNs() {
+		assertRandomParts(new int[]{40, 37, 50}, 0.01, 3);
+		assertRandomParts(new int[]{33, 20, 45}, 0.3, 4);
+	}
+
+	@Test
+	public void testSmallVolumes() {
+		for (int size = 2; size < 6; size++) assertRandomParts(new int[]{size, size+1, size+2}, 0.1, size);
+	}
+
+	@Test
+	public void testAllNaN() {
+		final int[]         shape = {40, 37, 50};
+		final DoubleDataset data  = createVolume(shape, 0, 5);
+		for (int x = 0; x <= 2*BLOCK+1; x++) { // The first two blocks along x
+			for (int y = 0; y < shape[1]; y++) {
+				for (int z = 0; z < shape[2]; z++) data.set(Double.NaN, x, y, z);
+			}
+		}
+		final MinMaxTree tree = MinMaxTree.create(data, null);
+		// NaN is not below any isovalue
+		assertFalse(tree.straddles(new int[]{0, 0, 0}, new int[]{2*BLOCK-5, 36, 49}, 100));
+		assertTrue(tree.straddles(new int[]{0, 0, 0}, new int[]{2*BLOCK+2, 36, 49}, 100));
+		assertFalse(tree.straddles(new int[]{0, 0, 0}, new int[]{39, 36, 49}, -100));
+	}
+}
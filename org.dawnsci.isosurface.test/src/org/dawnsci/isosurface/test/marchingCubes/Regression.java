@@ -52,6 +52,7 @@ public class Regression {
 		model.setBoxSize(boxSizeXYZ);
 		model.setIsovalue(0.5);
 		model.setVertexLimit(Integer.MAX_VALUE);
+		model.setLegacy(true); // The saved results are in the order of the legacy algorithm
 		
 		algorithm.setModel(model);
 		
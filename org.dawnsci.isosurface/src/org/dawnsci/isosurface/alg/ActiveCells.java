@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.isosurface.alg;
+
+import java.util.BitSet;
+
+/**
+ * The cells of a grid of every boxSize'th point which the surface passes through.
+ *
+ * A finer grid of the same data need only visit the cells which are in, or next to, the
+ * active cells of a coarser one. Features smaller than a coarse cell may be missed, so
+ * this is only for previews.
+ */
+class ActiveCells {
+
+	private final int[]  boxSize;
+	private final int    cx, cy, cz; // The number of cells in each dimension
+	private final BitSet cells;
+
+	/**
+	 *
+	 * @param shape of the data
+	 * @param boxSize of the grid
+	 */
+	ActiveCells(int[] shape, int[] boxSize) {
+		final int[] last = MarchingCubesKernel.getLastPoint(shape, boxSize);
+		this.boxSize = boxSize;
+		this.cx      = last[0];
+		this.cy      = last[1];
+		this.cz      = last[2];
+		this.cells   = new BitSet((int)getCellCount(shape, boxSize));
+	}
+
+	private ActiveCells(ActiveCells other, BitSet cells) {
+		this.boxSize = other.boxSize;
+		this.cx      = other.cx;
+		this.cy      = other.cy;
+		this.cz      = other.cz;
+		this.cells   = cells;
+	}
+
+	/**
+	 * @param shape
+	 * @param boxSize
+	 * @return the number of cells in the grid, the active cells of which can only be kept if it fits an int.
+	 */
+	static long getCellCount(int[] shape, int[] boxSize) {
+		final int[] last = MarchingCubesKernel.getLastPoint(shape, boxSize);
+		return (long)last[0]*last[1]*last[2];
+	}
+
+	long getIndex(int ix, int iy, int iz) {
+		return ((long)ix*cy + iy)*cz + iz;
+	}
+
+	/**
+	 * Adds cells from a kernel.
+	 *
+	 * @param indices from getIndex(...)
+	 * @param count
+	 */
+	synchronized void add(long[] indices, int count) {
+		for (int i = 0; i < count; i++) cells.set((int)indices[i]);
+	}
+
+	/**
+	 * @return the active cells and all the cells next to them.
+	 */
+	ActiveCells dilate() {
+		final BitSet dilated = new BitSet(cells.size());
+		for (int i = cells.nextSetBit(0); i >= 0; i = cells.nextSetBit(i+1)) {
+			final int ix = i/(cy*cz);
+			final int iy = (i/cz)%cy;
+			final int iz = i%cz;
+			for (int x = Math.max(0, ix-1); x <= Math.min(cx-1, ix+1); x++) {
+				for (int y = Math.max(0, iy-1); y <= Math.min(cy-1, iy+1); y++) {
+					final int start = (int)getIndex(x, y, Math.max(0, iz-1));
+					dilated.set(start, (int)getIndex(x, y, Math.min(cz-1, iz+1))+1);
+				}
+			}
+		}
+		return new ActiveCells(this, dilated);
+	}
+
+	/**
+	 * @param x data index of the lower corner of a cell of a finer grid
+	 * @param y
+	 * @param z
+	 * @return true if the cell of this grid at the point is active, or if the point is beyond this grid.
+	 */
+	boolean contains(int x, int y, int z) {
+		final int ix = x/boxSize[0];
+		final int iy = y/boxSize[1];
+		final int iz = z/boxSize[2];
+		if (ix>=cx || iy>=cy || iz>=cz) return true;
+		return cells.get((int)getIndex(ix, iy, iz));
+	}
+
+	/**
+	 * @param from first data index of a block of a finer grid
+	 * @param to last data index of the block, inclusive
+	 * @return true if any cell of this grid in the block is active, or if the block goes beyond this grid.
+	 */
+	boolean intersects(int[] from, int[] to) {
+		final int[] start = new int[3];
+		final int[] end   = new int[3];
+		final int[] size  = {cx, cy, cz};
+		for (int d = 0; d < 3; d++) {
+			start[d] = from[d]/boxSize[d];
+			end[d]   = (to[d]-1)/boxSize[d]; // The cell of the last cell of the block
+			if (end[d] >= size[d]) return true;
+		}
+		for (int x = start[0]; x <= end[0]; x++) {
+			for (int y = start[1]; y <= end[1]; y++) {
+				final int i = cells.nextSetBit((int)getIndex(x, y, start[2]));
+				if (i >= 0 && i <= getIndex(x, y, end[2])) return true;
+			}
+		}
+		return false;
+	}
+}
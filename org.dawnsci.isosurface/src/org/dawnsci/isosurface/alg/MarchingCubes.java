@@ -19,9 +19,11 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.dawnsci.plotting.util.PoolUtils;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
 import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
@@ -48,7 +50,18 @@ public class MarchingCubes extends AbstractOperationBase<MarchingCubesModel, Sur
 	}
 	
 	@Override
-	public Surface execute(IDataset slice, IMonitor moni1tor) throws OperationException {
+	public Surface execute(IDataset slice, IMonitor monitor) throws OperationException {
+		
+		if (!model.isLegacy()) {
+			final ForkJoinPool pool = PoolUtils.getPool();
+			final MarchingCubesBlocks task = new MarchingCubesBlocks(model.getLazyData(), model.getBoxSize(), model.getIsovalue(), pool.getParallelism(), monitor);
+			task.setMinMaxTree(model.getMinMaxTree());
+			final List<MarchingCubesKernel> blocks = pool.invoke(task);
+			if (blocks==null) throw new OperationException(this, "The isosurface was cancelled!");
+			final Surface surface = MarchingCubesBlocks.stitch(blocks, model.getBoxSize());
+			if (surface.getPoints().length<1) throw new OperationException(this, "No isosurface found!");
+			return surface;
+		}
 				
 		final Object[]           data      = parseVertices();
 		final Set<Triangle>      triangles = (HashSet<Triangle>) data[0];
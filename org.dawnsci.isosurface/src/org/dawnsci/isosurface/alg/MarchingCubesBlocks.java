@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.isosurface.alg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+
+/**
+ * Makes the surface of a volume in blocks, in parallel.
+ *
+ * The grid of every boxSize'th point is split in two along its longest side, and
+ * the halves split again, until the planes of a block fit in cache and there are
+ * enough blocks for each thread of the pool to steal work from the others when
+ * one block holds more of the surface. Each block has its own kernel and mesh.
+ * The meshes are then stitched together in the order of the blocks, the vertices
+ * on the sides of blocks being shared using their keys, so the surface does not
+ * depend on which threads made which blocks. Its triangles are those of one kernel
+ * over the whole volume, only the order of the vertices depends on the blocks.
+ */
+class MarchingCubesBlocks extends RecursiveTask<List<MarchingCubesKernel>> {
+
+	private static final long serialVersionUID = -3617329846180233519L;
+
+	/**
+	 * The properties of the most points in a plane of a block, each needs about
+	 * 44 bytes while marching, and of the fewest cells worth a block of their own.
+	 * They are read for each surface.
+	 */
+	static final String PLANE_SIZE = "org.dawnsci.isosurface.block.plane.size";
+	static final String MIN_CELLS  = "org.dawnsci.isosurface.block.min.cells";
+
+	private final ILazyDataset lazyData;
+	private final int[]        boxSize;
+	private final double       isovalue;
+	private final int[]        from, to;
+	private final long         maxCells;
+	private final long         planeSize;
+	private final IMonitor     monitor;
+	private final ActiveCells  visit, record;
+	private MinMaxTree         tree;
+
+	/**
+	 *
+	 * @param lazyData 3D
+	 * @param boxSize the step in each dimension
+	 * @param isovalue
+	 * @param parallelism of the pool
+	 * @param monitor may be null
+	 */
+	MarchingCubesBlocks(ILazyDataset lazyData, int[] boxSize, double isovalue, int parallelism, IMonitor monitor) {
+		this(lazyData, boxSize, isovalue, parallelism, monitor, null, null);
+	}
+
+	/**
+	 *
+	 * @param lazyData 3D
+	 * @param boxSize the step in each dimension
+	 * @param isovalue
+	 * @param parallelism of the pool
+	 * @param monitor may be null
+	 * @param visit if not null only the blocks and cells in or next to its active cells are visited
+	 * @param record if not null the cells which the surface passes through are added to it
+	 */
+	MarchingCubesBlocks(ILazyDataset lazyData, int[] boxSize, double isovalue, int parallelism, IMonitor monitor,
+			            ActiveCells visit, ActiveCells record) {
+		this.lazyData = lazyData;
+		this.boxSize  = boxSize;
+		this.isovalue = isovalue;
+		this.from     = new int[]{0, 0, 0};
+		this.to       = MarchingCubesKernel.getLastPoint(lazyData.getShape(), boxSize);
+		this.maxCells = Math.max(Integer.getInteger(MIN_CELLS, 32*32*32), getCells(from, to)/(parallelism*8L));
+		this.planeSize = Integer.getInteger(PLANE_SIZE, 128*128);
+		this.monitor  = monitor;
+		this.visit    = visit;
+		this.record   = record;
+	}
+
+	private MarchingCubesBlocks(MarchingCubesBlocks parent, int[] from, int[] to) {
+		this.lazyData = parent.lazyData;
+		this.boxSize  = parent.boxSize;
+		this.isovalue = parent.isovalue;
+		this.from     = from;
+		this.to       = to;
+		this.maxCells = parent.maxCells;
+		this.planeSize = parent.planeSize;
+		this.monitor  = parent.monitor;
+		this.visit    = parent.visit;
+		this.record   = parent.record;
+		this.tree     = parent.tree;
+	}
+
+	/**
+	 * 
+	 * @param tree if not null the blocks in which the values are all below the isovalue, or all not, are skipped
+	 */
+	void setMinMaxTree(MinMaxTree tree) {
+		this.tree = tree;
+	}
+
+	/**
+	 * @return the kernels of the blocks, in order, or null if the monitor was cancelled.
+	 */
+	@Override
+	protected List<MarchingCubesKernel> compute() {
+
+		final long cells = getCells(from, to);
+		final int[] dataFrom = {from[0]*boxSize[0], from[1]*boxSize[1], from[2]*boxSize[2]};
+		final int[] dataTo   = {to[0]*boxSize[0],   to[1]*boxSize[1],   to[2]*boxSize[2]};
+		if (tree!=null && !tree.straddles(dataFrom, dataTo, isovalue)) {
+			return new ArrayList<MarchingCubesKernel>(0); // The surface cannot be in the block
+		}
+		if (visit!=null && !visit.intersects(dataFrom, dataTo)) {
+			return new ArrayList<MarchingCubesKernel>(0); // Nothing near the surface of the coarser grid
+		}
+
+		int longest = 0;
+		for (int d = 1; d < 3; d++) {
+			if (to[d]-from[d] > to[longest]-from[longest]) longest = d;
+		}
+		final long plane = (to[0]-from[0]+1L)*(to[1]-from[1]+1L);
+
+		if (to[longest]-from[longest] >= 2 && (cells > maxCells || plane > planeSize)) {
+			final int middle = (from[longest]+to[longest])/2;
+			final int[] leftTo    = to.clone();
+			final int[] rightFrom = from.clone();
+			leftTo[longest]    = middle;
+			rightFrom[longest] = middle;
+
+			final MarchingCubesBlocks left  = new MarchingCubesBlocks(this, from, leftTo);
+			final MarchingCubesBlocks right = new MarchingCubesBlocks(this, rightFrom, to);
+			invokeAll(left, right);
+
+			final List<MarchingCubesKernel> lk = left.join();
+			final List<MarchingCubesKernel> rk = right.join();
+			if (lk == null || rk == null) return null;
+			final List<MarchingCubesKernel> ret = new ArrayList<MarchingCubesKernel>(lk.size()+rk.size());
+			ret.addAll(lk);
+			ret.addAll(rk);
+			return ret;
+		}
+
+		if (monitor!=null && monitor.isCancelled()) return null;
+		final MarchingCubesKernel kernel = new MarchingCubesKernel(lazyData, boxSize, isovalue, from, to);
+		kernel.setActiveCells(visit, record);
+		if (!kernel.run(monitor)) return null;
+		if (monitor!=null) monitor.worked(1);
+
+		final List<MarchingCubesKernel> ret = new ArrayList<MarchingCubesKernel>(1);
+		ret.add(kernel);
+		return ret;
+	}
+
+	private static long getCells(int[] from, int[] to) {
+		return (long)(to[0]-from[0])*(to[1]-from[1])*(to[2]-from[2]);
+	}
+
+	/**
+	 * Joins the meshes of blocks into one surface.
+	 *
+	 * @param blocks in the order of compute()
+	 * @param boxSize
+	 * @return
+	 */
+	static Surface stitch(List<MarchingCubesKernel> blocks, int[] boxSize) {
+
+		if (blocks.isEmpty())   return new Surface(new float[0], new float[]{0,0,0,1,1,1}, new int[0]);
+		if (blocks.size()==1) return blocks.get(0).createSurface();
+
+		int pointsLength = 0, facesLength = 0;
+		for (MarchingCubesKernel block : blocks) {
+			pointsLength += block.getPointCount()*3;
+			facesLength  += block.getFacesLength();
+		}
+		final float[] points = new float[pointsLength];
+		final int[]   faces  = new int[facesLength];
+		int pointCount = 0, faceIndex = 0;
+
+		final Map<Long, Integer>  shared = new HashMap<Long, Integer>();
+		final Set<List<Integer>>  planar = new HashSet<List<Integer>>();
+
+		for (MarchingCubesKernel block : blocks) {
+
+			final int[]   localMap  = new int[block.getPointCount()];
+			final boolean[] onSide  = new boolean[block.getPointCount()];
+			Arrays.fill(localMap, -1);
+
+			final int[]  boundary = block.getBoundaryVertices();
+			final long[] keys     = block.getBoundaryKeys();
+			for (int i = 0; i < block.getBoundaryCount(); i++) {
+				final Integer vertex = shared.get(keys[i]);
+				if (vertex!=null) localMap[boundary[i]] = vertex;
+				onSide[boundary[i]] = true;
+			}
+
+			final float[] local = block.getPoints();
+			for (int i = 0; i < localMap.length; i++) {
+				if (localMap[i] >= 0) continue;
+				System.arraycopy(local, i*3, points, pointCount*3, 3);
+				localMap[i] = pointCount++;
+			}
+			for (int i = 0; i < block.getBoundaryCount(); i++) {
+				if (!shared.containsKey(keys[i])) shared.put(keys[i], localMap[boundary[i]]);
+			}
+
+			final int[] localFaces = block.getFaces();
+			for (int i = 0; i < block.getFacesLength(); i+=6) {
+				final int a = localMap[localFaces[i]];
+				final int b = localMap[localFaces[i+2]];
+				final int c = localMap[localFaces[i+4]];
+				// Triangles on the side between two blocks are made by both
+				if (onSide[localFaces[i]] && onSide[localFaces[i+2]] && onSide[localFaces[i+4]]
+					&& MarchingCubesKernel.isOnFace(points, boxSize, a, b, c)
+					&& !planar.add(Arrays.asList(a, b, c))) continue;
+
+				faces[faceIndex++] = a;
+				faces[faceIndex++] = 0;
+				faces[faceIndex++] = b;
+				faces[faceIndex++] = 1;
+				faces[faceIndex++] = c;
+				faces[faceIndex++] = 2;
+			}
+		}
+
+		return new Surface(Arrays.copyOf(points, pointCount*3),
+				           new float[]{0,0,0,1,1,1},
+				           Arrays.copyOf(faces, faceIndex));
+	}
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.isosurface.alg;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+
+/**
+ * Marching cubes over primitive arrays.
+ *
+ * The volume is read a plane at a time, every boxSize'th point in each dimension,
+ * and the cells are made from two planes of doubles at once. The vertex where the
+ * surface cuts an edge is made once and its index kept in an int array for that kind
+ * of edge, so cells sharing the edge share the vertex without hashing points. The
+ * vertices and faces are written straight into the arrays of the Surface.
+ *
+ * The surface is that of MarchingCubesSliceProcessor: the same corners, edges,
+ * tables, snapping of vertices to corners and rounding of coordinates.
+ *
+ * A kernel may make the surface in a block of the volume only. The vertices on the
+ * sides of the block are then given keys from the corner or edge of the whole grid
+ * which they are on, so that blocks can be stitched together afterwards.
+ */
+class MarchingCubesKernel {
+
+	private static final double EPSILON = 0.00001;
+
+	private static final int BOTTOM = 0;
+	private static final int TOP    = 1;
+
+	private final ILazyDataset lazyData;
+	private final int[]        boxSize;
+	private final double       isovalue;
+	private final int[]        shape;
+	private final int[]        from;       // The first point of the block
+	private final int          nx, ny, nz; // The number of points in each dimension of the block
+	private final int          gridY, gridZ;
+	private final boolean      stitched;
+
+	/**
+	 * The values, vertices at corners and vertices on the x and y edges of the
+	 * bottom and top planes, and the vertices on the z edges between them. Indices
+	 * are ix*ny+iy as in the plane read, -1 where there is no vertex yet.
+	 */
+	private final double[][] values  = new double[2][];
+	private final int[][]    corners = new int[2][];
+	private final int[][]    xEdges  = new int[2][];
+	private final int[][]    yEdges  = new int[2][];
+	private int[]            zEdges;
+	private int              z; // The bottom plane
+
+	private final int[] cellVertices = new int[12];
+
+	/**
+	 * Triangles lying on the faces of cells, which must not be added twice
+	 * as each is made by both cells sharing the face.
+	 */
+	private final Set<List<Integer>> planarFaces = new HashSet<List<Integer>>();
+
+	private float[] points = new float[3*1024];
+	private int     pointCount;
+	private int[]   faces  = new int[6*1024];
+	private int     faceCount;
+
+	/**
+	 * The vertices on the sides of the block and their keys.
+	 */
+	private int[]   boundaryVertices = new int[256];
+	private long[]  boundaryKeys     = new long[256];
+	private int     boundaryCount;
+
+	/**
+	 * The active cells of a coarser grid, if only the cells near them are visited,
+	 * and the active cells of this grid if they are kept.
+	 */
+	private ActiveCells visit, record;
+	private long[]      activeCells;
+	private int         activeCount;
+
+	/**
+	 *
+	 * @param lazyData 3D
+	 * @param boxSize the step in each dimension
+	 * @param isovalue
+	 */
+	MarchingCubesKernel(ILazyDataset lazyData, int[] boxSize, double isovalue) {
+		this(lazyData, boxSize, isovalue, new int[]{0, 0, 0}, getLastPoint(lazyData.getShape(), boxSize));
+	}
+
+	/**
+	 *
+	 * @param lazyData 3D
+	 * @param boxSize the step in each dimension
+	 * @param isovalue
+	 * @param from the first point of the block in the grid of every boxSize'th point
+	 * @param to the last point of the block, inclusive
+	 */
+	MarchingCubesKernel(ILazyDataset lazyData, int[] boxSize, double isovalue, int[] from, int[] to) {
+		this.lazyData = lazyData;
+		this.boxSize  = boxSize;
+		this.isovalue = isovalue;
+		this.shape    = lazyData.getShape();
+		this.from     = from;
+		this.nx       = to[0]-from[0]+1;
+		this.ny       = to[1]-from[1]+1;
+		this.nz       = to[2]-from[2]+1;
+
+		final int[] last = getLastPoint(shape, boxSize);
+		this.gridY    = last[1]+1;
+		this.gridZ    = last[2]+1;
+		this.stitched = !Arrays.equals(from, new int[]{0, 0, 0}) || !Arrays.equals(to, last);
+	}
+
+	/**
+	 * 
+	 * @param visit if not null only the cells in or next to its active cells are visited
+	 * @param record if not null the cells which the surface passes through are added to it
+	 */
+	void setActiveCells(ActiveCells visit, ActiveCells record) {
+		this.visit  = visit;
+		this.record = record;
+		if (record!=null) activeCells = new long[256];
+	}
+
+	/**
+	 * @param shape of the data
+	 * @param boxSize
+	 * @return the last point in each dimension of the grid of every boxSize'th point.
+	 */
+	static int[] getLastPoint(int[] shape, int[] boxSize) {
+		return new int[]{(shape[0]-1)/boxSize[0], (shape[1]-1)/boxSize[1], (shape[2]-1)/boxSize[2]};
+	}
+
+	/**
+	 *
+	 * @param monitor may be null
+	 * @return false if the monitor was cancelled.
+	 */
+	boolean run(IMonitor monitor) {
+
+		if (nx<2 || ny<2 || nz<2) return true;
+
+		final int size = nx*ny;
+		for (int p = BOTTOM; p <= TOP; p++) {
+			corners[p] = new int[size];
+			xEdges[p]  = new int[size];
+			yEdges[p]  = new int[size];
+		}
+		zEdges = new int[size];
+
+		values[TOP] = readPlane(from[2]);
+		Arrays.fill(corners[TOP], -1);
+		Arrays.fill(xEdges[TOP],  -1);
+		Arrays.fill(yEdges[TOP],  -1);
+
+		for (z = from[2]; z < from[2]+nz-1; z++) {
+			if (monitor!=null && monitor.isCancelled()) return false;
+
+			swap(values);
+			swap(corners);
+			swap(xEdges);
+			swap(yEdges);
+			values[TOP] = readPlane(z+1);
+			Arrays.fill(corners[TOP], -1);
+			Arrays.fill(xEdges[TOP],  -1);
+			Arrays.fill(yEdges[TOP],  -1);
+			Arrays.fill(zEdges,       -1);
+
+			march();
+		}
+		if (record!=null) record.add(activeCells, activeCount);
+		return true;
+	}
+
+	private static <T> void swap(T[] planes) {
+		final T tmp = planes[BOTTOM];
+		planes[BOTTOM] = planes[TOP];
+		planes[TOP]    = tmp;
+	}
+
+	private double[] readPlane(int iz) {
+		final int zIndex = iz*boxSize[2];
+		final IDataset plane = lazyData.getSlice(new int[]{from[0]*boxSize[0], from[1]*boxSize[1], zIndex},
+				                                 new int[]{(from[0]+nx-1)*boxSize[0]+1, (from[1]+ny-1)*boxSize[1]+1, zIndex+1},
+				                                 new int[]{boxSize[0], boxSize[1], 1});
+		final DoubleDataset data = (DoubleDataset)DatasetUtils.cast(DatasetUtils.convertToDataset(plane), Dataset.FLOAT64);
+		return data.getData();
+	}
+
+	/**
+	 * The cells between the bottom and top planes.
+	 */
+	private void march() {
+
+		final double[] bottom = values[BOTTOM];
+		final double[] top    = values[TOP];
+		final int[]    edgeTable = MarchingCubesSliceProcessor.edgeTable;
+		final int[][]  triTable  = MarchingCubesSliceProcessor.triTable;
+
+		for (int ix = 0; ix < nx-1; ix++) {
+			for (int iy = 0; iy < ny-1; iy++) {
+
+				final int i    = ix*ny+iy;
+				final int ipx  = i+ny;
+				final int ipy  = i+1;
+				final int ipxy = i+ny+1;
+
+				if (visit!=null && !visit.contains((from[0]+ix)*boxSize[0], (from[1]+iy)*boxSize[1], z*boxSize[2])) continue;
+
+				// The corners are numbered as in MarchingCubesSliceProcessor
+				int cubeIndex = 0;
+				if (top[ipx]     < isovalue) cubeIndex |= 1;
+				if (top[ipxy]    < isovalue) cubeIndex |= 2;
+				if (bottom[ipxy] < isovalue) cubeIndex |= 4;
+				if (bottom[ipx]  < isovalue) cubeIndex |= 8;
+				if (top[i]       < isovalue) cubeIndex |= 16;
+				if (top[ipy]     < isovalue) cubeIndex |= 32;
+				if (bottom[ipy]  < isovalue) cubeIndex |= 64;
+				if (bottom[i]    < isovalue) cubeIndex |= 128;
+
+				final int edges = edgeTable[cubeIndex];
+				if (edges == 0) continue;
+				if (record!=null) addActive(record.getIndex(from[0]+ix, from[1]+iy, z));
+
+				if ((edges & 1)    != 0) cellVertices[0]  = vertex(yEdges[TOP],    ipx,  TOP,    ipx,  TOP,    ipxy);
+				if ((edges & 2)    != 0) cellVertices[1]  = vertex(zEdges,         ipxy, BOTTOM, ipxy, TOP,    ipxy);
+				if ((edges & 4)    != 0) cellVertices[2]  = vertex(yEdges[BOTTOM], ipx,  BOTTOM, ipx,  BOTTOM, ipxy);
+				if ((edges & 8)    != 0) cellVertices[3]  = vertex(zEdges,         ipx,  BOTTOM, ipx,  TOP,    ipx);
+				if ((edges & 16)   != 0) cellVertices[4]  = vertex(yEdges[TOP],    i,    TOP,    i,    TOP,    ipy);
+				if ((edges & 32)   != 0) cellVertices[5]  = vertex(zEdges,         ipy,  BOTTOM, ipy,  TOP,    ipy);
+				if ((edges & 64)   != 0) cellVertices[6]  = vertex(yEdges[BOTTOM], i,    BOTTOM, i,    BOTTOM, ipy);
+				if ((edges & 128)  != 0) cellVertices[7]  = vertex(zEdges,         i,    BOTTOM, i,    TOP,    i);
+				if ((edges & 256)  != 0) cellVertices[8]  = vertex(xEdges[TOP],    i,    TOP,    i,    TOP,    ipx);
+				if ((edges & 512)  != 0) cellVertices[9]  = vertex(xEdges[TOP],    ipy,  TOP,    ipy,  TOP,    ipxy);
+				if ((edges & 1024) != 0) cellVertices[10] = vertex(xEdges[BOTTOM], ipy,  BOTTOM, ipy,  BOTTOM, ipxy);
+				if ((edges & 2048) != 0) cellVertices[11] = vertex(xEdges[BOTTOM], i,    BOTTOM, i,    BOTTOM, ipx);
+
+				final int[] triangles = triTable[cubeIndex];
+				for (int t = 0; triangles[t] != -1; t += 3) {
+					final int a = cellVertices[triangles[t]];
+					final int b = cellVertices[triangles[t+1]];
+					final int c = cellVertices[triangles[t+2]];
+					if (isOnFace(points, boxSize, a, b, c) && !planarFaces.add(Arrays.asList(a, b, c))) continue;
+					addFace(a, b, c);
+				}
+			}
+		}
+	}
+
+	private void addActive(long index) {
+		if (activeCount == activeCells.length) activeCells = Arrays.copyOf(activeCells, activeCount*2);
+		activeCells[activeCount++] = index;
+	}
+
+	/**
+	 * A triangle can only be made by two cells if it lies on the face between
+	 * them, which happens when the isovalue is at corners.
+	 *
+	 * @return true if the vertices lie in one of the planes between cells.
+	 */
+	static boolean isOnFace(float[] points, int[] boxSize, int a, int b, int c) {
+		for (int d = 0; d < 3; d++) {
+			final float coord = points[a*3+d];
+			if (coord%boxSize[d]==0 && points[b*3+d]==coord && points[c*3+d]==coord) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * The vertex where the surface cuts the edge from corner a to corner b, where
+	 * a is the corner with the lower coordinates.
+	 *
+	 * @param cache of the vertices on edges of this kind
+	 * @param edge index of the edge in the cache
+	 * @param pa plane of a
+	 * @param a
+	 * @param pb plane of b
+	 * @param b
+	 * @return the index of the vertex
+	 */
+	private int vertex(int[] cache, int edge, int pa, int a, int pb, int b) {
+
+		if (cache[edge] >= 0) return cache[edge];
+
+		final double va = values[pa][a];
+		final double vb = values[pb][b];
+		final int vertex;
+		if (Math.abs(isovalue - va) < EPSILON) {
+			vertex = corner(pa, a);
+		} else if (Math.abs(isovalue - vb) < EPSILON) {
+			vertex = corner(pb, b);
+		} else if (Math.abs(vb - va) < EPSILON) {
+			vertex = corner(pa, a);
+		} else {
+			final double mu = (isovalue - va) / (vb - va);
+			final double ax = getX(a), ay = getY(a), az = getZ(pa);
+			final double bx = getX(b), by = getY(b), bz = getZ(pb);
+			final double x  = round(ax + mu * (bx - ax));
+			final double y  = round(ay + mu * (by - ay));
+			final double z  = round(az + mu * (bz - az));
+			// Rounding may put the vertex on a corner, which it must then share
+			if (x==ax && y==ay && z==az) {
+				vertex = corner(pa, a);
+			} else if (x==bx && y==by && z==bz) {
+				vertex = corner(pb, b);
+			} else {
+				vertex = addPoint(x, y, z);
+				if (stitched) addBoundary(vertex, pa, a, pa!=pb ? 3 : b==a+ny ? 1 : 2);
+			}
+		}
+		cache[edge] = vertex;
+		return vertex;
+	}
+
+	private int corner(int p, int i) {
+		if (corners[p][i] < 0) {
+			corners[p][i] = addPoint(getX(i), getY(i), getZ(p));
+			if (stitched) addBoundary(corners[p][i], p, i, 0);
+		}
+		return corners[p][i];
+	}
+
+	/**
+	 * Keeps the key of a vertex if it is on a side of the block.
+	 *
+	 * @param vertex
+	 * @param p plane of the corner or of the lower end of the edge
+	 * @param i index of the corner or of the lower end of the edge
+	 * @param kind 0 for a corner, 1, 2 and 3 for edges along x, y and z
+	 */
+	private void addBoundary(int vertex, int p, int i, int kind) {
+		final int ix = i/ny;
+		final int iy = i%ny;
+		final int iz = z+p-from[2];
+		if (ix>0 && ix<nx-1 && iy>0 && iy<ny-1 && iz>0 && iz<nz-1) return;
+
+		if (boundaryCount == boundaryKeys.length) {
+			boundaryVertices = Arrays.copyOf(boundaryVertices, boundaryCount*2);
+			boundaryKeys     = Arrays.copyOf(boundaryKeys,     boundaryCount*2);
+		}
+		boundaryVertices[boundaryCount] = vertex;
+		boundaryKeys[boundaryCount]     = (((from[0]+ix)*(long)gridY + from[1]+iy)*gridZ + z+p)*4 + kind;
+		boundaryCount++;
+	}
+
+	private double getX(int i) {
+		return (from[0]+i/ny)*boxSize[0];
+	}
+
+	private double getY(int i) {
+		return (from[1]+i%ny)*boxSize[1];
+	}
+
+	private double getZ(int p) {
+		return (z+p)*boxSize[2];
+	}
+
+	private static double round(double coord) {
+		return (long) (coord * 1000 + 0.5) / 1000.0;
+	}
+
+	private int addPoint(double x, double y, double z) {
+		if (pointCount*3+3 > points.length) points = Arrays.copyOf(points, points.length*2);
+		final int index = pointCount*3;
+		points[index]   = (float)x;
+		points[index+1] = (float)y;
+		points[index+2] = (float)z;
+		return pointCount++;
+	}
+
+	private void addFace(int a, int b, int c) {
+		if (faceCount+6 > faces.length) faces = Arrays.copyOf(faces, faces.length*2);
+		faces[faceCount++] = a;
+		faces[faceCount++] = 0;
+		faces[faceCount++] = b;
+		faces[faceCount++] = 1;
+		faces[faceCount++] = c;
+		faces[faceCount++] = 2;
+	}
+
+	float[] getPoints() {
+		return points;
+	}
+
+	int getPointCount() {
+		return pointCount;
+	}
+
+	/**
+	 * @return the faces as for Surface, six ints for each.
+	 */
+	int[] getFaces() {
+		return faces;
+	}
+
+	/**
+	 * @return the number of ints used in the faces array.
+	 */
+	int getFacesLength() {
+		return faceCount;
+	}
+
+	int[] getBoundaryVertices() {
+		return boundaryVertices;
+	}
+
+	long[] getBoundaryKeys() {
+		return boundaryKeys;
+	}
+
+	int getBoundaryCount() {
+		return boundaryCount;
+	}
+
+	Surface createSurface() {
+		return new Surface(Arrays.copyOf(points, pointCount*3),
+				           new float[]{0,0,0,1,1,1},
+				           Arrays.copyOf(faces, faceCount));
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.isosurface.alg;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.dawnsci.plotting.util.PoolUtils;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+
+/**
+ * Makes an isosurface progressively, coarsest first.
+ *
+ * The first level uses a box size, a power of two times the one asked for, which
+ * gives a grid of no more than about 64^3 points, so it can be shown at once. Each
+ * level after halves the box size until it is the one asked for. A level between
+ * the first and the last only reads the blocks, and visits the cells, next to those
+ * the surface passed through in the level before. The last level visits every cell,
+ * so the final surface is the same as from MarchingCubes.
+ *
+ * <pre>
+ * MarchingCubesLevels levels = new MarchingCubesLevels(data, boxSize, isovalue);
+ * while (levels.hasNext()) {
+ *     Surface surface = levels.next(monitor);
+ *     ...
+ * }
+ * </pre>
+ */
+public class MarchingCubesLevels {
+
+	private static final int PREVIEW_SIZE = Integer.getInteger("org.dawnsci.isosurface.preview.size", 64*64*64);
+
+	private final ILazyDataset lazyData;
+	private final int[]        boxSize;
+	private final double       isovalue;
+	private final int[]        shape;
+
+	private int         level;    // The box size is boxSize*2^level
+	private ActiveCells previous; // The active cells of the last level made
+	private MinMaxTree  tree;
+
+	/**
+	 *
+	 * @param lazyData 3D
+	 * @param boxSize the step in each dimension of the final surface
+	 * @param isovalue
+	 */
+	public MarchingCubesLevels(ILazyDataset lazyData, int[] boxSize, double isovalue) {
+		this.lazyData = lazyData;
+		this.boxSize  = boxSize;
+		this.isovalue = isovalue;
+		this.shape    = lazyData.getShape();
+
+		int level = 0;
+		while (getPointCount(getBoxSize(level)) > PREVIEW_SIZE && !isCoarsest(level)) level++;
+		this.level = level;
+	}
+
+	private int[] getBoxSize(int level) {
+		final int[] box = new int[3];
+		for (int d = 0; d < 3; d++) {
+			// Keep two points in each dimension
+			box[d] = (int)Math.min((long)boxSize[d]<<level, Math.max(boxSize[d], shape[d]-1));
+		}
+		return box;
+	}
+
+	private boolean isCoarsest(int level) {
+		return level > 30 || Arrays.equals(getBoxSize(level), getBoxSize(level+1));
+	}
+
+	private long getPointCount(int[] box) {
+		final int[] last = MarchingCubesKernel.getLastPoint(shape, box);
+		return (last[0]+1L)*(last[1]+1L)*(last[2]+1L);
+	}
+
+	/**
+	 * 
+	 * @param tree if not null the parts of the volume which the surface cannot pass through are skipped
+	 */
+	public void setMinMaxTree(MinMaxTree tree) {
+		this.tree = tree;
+	}
+
+	/**
+	 * @return true if there is a finer level to make.
+	 */
+	public boolean hasNext() {
+		return level >= 0;
+	}
+
+	/**
+	 * @return true if the next level is the final surface.
+	 */
+	public boolean isNextLast() {
+		return level == 0;
+	}
+
+	/**
+	 * Makes the next level.
+	 *
+	 * @param monitor may be null
+	 * @return the surface, which may have no points, or null if the monitor was cancelled.
+	 */
+	public Surface next(IMonitor monitor) {
+
+		final int[] box = getBoxSize(level);
+
+		final ActiveCells visit  = level > 0 && previous != null ? previous.dilate() : null;
+		final ActiveCells record = level > 0 && ActiveCells.getCellCount(shape, box) <= Integer.MAX_VALUE
+				                 ? new ActiveCells(shape, box)
+				                 : null;
+
+		final ForkJoinPool pool = PoolUtils.getPool();
+		final MarchingCubesBlocks task = new MarchingCubesBlocks(lazyData, box, isovalue, pool.getParallelism(), monitor, visit, record);
+		task.setMinMaxTree(tree);
+		final List<MarchingCubesKernel> blocks = pool.invoke(task);
+		if (blocks == null) return null;
+
+		previous = record;
+		level--;
+		return MarchingCubesBlocks.stitch(blocks, box);
+	}
+}
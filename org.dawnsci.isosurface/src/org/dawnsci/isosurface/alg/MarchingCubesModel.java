@@ -24,11 +24,14 @@ public class MarchingCubesModel extends AbstractOperationModel {
 	private double isovalueMin = Integer.MAX_VALUE;
 	private double isovalueMax = Integer.MIN_VALUE;
 	private int    vertexLimit = 1000000;
+	private boolean legacy     = Boolean.getBoolean("org.dawnsci.isosurface.legacy.marching.cubes");
+	private MinMaxTree minMaxTree;
 	
 	public ILazyDataset getLazyData() {
 		return lazyData;
 	}
 	public void setLazyData(ILazyDataset lz) {
+		if (lz != lazyData) minMaxTree = null;
 		this.lazyData = lz;
 	}
 	public double getIsovalue() {
@@ -122,6 +125,30 @@ public class MarchingCubesModel extends AbstractOperationModel {
 	public void setVertexLimit(int vertexLimit) {
 		this.vertexLimit = vertexLimit;
 	}
+	/**
+	 * 
+	 * @return true if the surface is made by MarchingCubesSliceProcessor rather than MarchingCubesKernel.
+	 */
+	public boolean isLegacy() {
+		return legacy;
+	}
+	public void setLegacy(boolean legacy) {
+		this.legacy = legacy;
+	}
+	/**
+	 * 
+	 * @return the value ranges of the lazy data, if they have been made, else null.
+	 */
+	public MinMaxTree getMinMaxTree() {
+		return minMaxTree;
+	}
+	/**
+	 * Set after setLazyData(...), which clears it when the data changes.
+	 * @param minMaxTree of the lazy data
+	 */
+	public void setMinMaxTree(MinMaxTree minMaxTree) {
+		this.minMaxTree = minMaxTree;
+	}
 	
 
 
@@ -401,7 +401,7 @@ public class MarchingCubesSliceProcessor implements Callable<Set<Triangle>>
 	 * 
 	 * The size of the edge table is 256.
 	 */
-	private final int[] edgeTable = { 0x0, 0x109, 0x203, 0x30a, 0x406, 0x50f,
+	static final int[] edgeTable = { 0x0, 0x109, 0x203, 0x30a, 0x406, 0x50f,
 			0x605, 0x70c, 0x80c, 0x905, 0xa0f, 0xb06, 0xc0a, 0xd03, 0xe09,
 			0xf00, 0x190, 0x99, 0x393, 0x29a, 0x596, 0x49f, 0x795, 0x69c,
 			0x99c, 0x895, 0xb9f, 0xa96, 0xd9a, 0xc93, 0xf99, 0xe90, 0x230,
@@ -442,7 +442,7 @@ public class MarchingCubesSliceProcessor implements Callable<Set<Triangle>>
 	 * 
 	 * The size of the triangle table is 256 x 16
 	 */
-	private final int[][] triTable = {
+	static final int[][] triTable = {
 			{ -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1 },
 			{ 0, 8, 3, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1 },
 			{ 0, 1, 9, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1 },
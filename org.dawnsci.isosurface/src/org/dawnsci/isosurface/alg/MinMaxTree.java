@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.isosurface.alg;
+
+import java.util.Arrays;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+
+/**
+ * The minimum and maximum values of blocks of a volume, and of blocks of
+ * eight of those and so on, an octree of value ranges.
+ *
+ * The surface at an isovalue can only pass through a part of the volume with values
+ * below the isovalue and values not below it, so marching cubes need not read or
+ * visit the parts where this tree says there are not both. This holds for any box
+ * size, as the tree is of every point of the data. NaN is counted as not below any
+ * isovalue, as it is when making the cube index.
+ *
+ * The tree is made with one pass over the data, for all isovalues.
+ */
+public class MinMaxTree {
+
+	private static final int BLOCK = Integer.getInteger("org.dawnsci.isosurface.minmax.block", 16);
+
+	private final int        block;
+	private final int[][]    sizes; // The number of nodes in each dimension, for each level
+	private final double[][] mins, maxs;
+
+	private MinMaxTree(int[] shape, int block) {
+		this.block = block;
+
+		// Leaf i holds the points from i*block to (i+1)*block inclusive, so
+		// each cell is in one leaf along a dimension unless it crosses a side.
+		int[] size = new int[3];
+		for (int d = 0; d < 3; d++) size[d] = Math.max(1, (shape[d]-2)/block+1);
+
+		int levels = 1;
+		for (int[] s = size; s[0]>1 || s[1]>1 || s[2]>1; s = getParentSize(s)) levels++;
+
+		this.sizes = new int[levels][];
+		this.mins  = new double[levels][];
+		this.maxs  = new double[levels][];
+		for (int level = 0; level < levels; level++) {
+			sizes[level] = size;
+			final int count = size[0]*size[1]*size[2];
+			mins[level] = new double[count];
+			maxs[level] = new double[count];
+			Arrays.fill(mins[level], Double.POSITIVE_INFINITY);
+			Arrays.fill(maxs[level], Double.NEGATIVE_INFINITY);
+			size = getParentSize(size);
+		}
+	}
+
+	private static int[] getParentSize(int[] size) {
+		return new int[]{(size[0]+1)/2, (size[1]+1)/2, (size[2]+1)/2};
+	}
+
+	/**
+	 * Reads the volume a plane at a time to make the tree.
+	 *
+	 * @param lazyData 3D
+	 * @param monitor may be null
+	 * @return the tree or null if the monitor was cancelled.
+	 */
+	public static MinMaxTree create(ILazyDataset lazyData, IMonitor monitor) {
+
+		final int[] shape = lazyData.getShape();
+		final MinMaxTree tree = new MinMaxTree(shape, BLOCK);
+
+		final int[]    size      = tree.sizes[0];
+		final double[] planeMins = new double[size[0]*size[1]];
+		final double[] planeMaxs = new double[size[0]*size[1]];
+
+		for (int z = 0; z < shape[2]; z++) {
+			if (monitor!=null && monitor.isCancelled()) return null;
+
+			final IDataset plane = lazyData.getSlice(new int[]{0, 0, z}, new int[]{shape[0], shape[1], z+1}, null);
+			final double[] data  = ((DoubleDataset)DatasetUtils.cast(DatasetUtils.convertToDataset(plane), Dataset.FLOAT64)).getData();
+
+			Arrays.fill(planeMins, Double.POSITIVE_INFINITY);
+			Arrays.fill(planeMaxs, Double.NEGATIVE_INFINITY);
+			for (int x = 0; x < shape[0]; x++) {
+				final int lx = Math.min(size[0]-1, x/tree.block);
+				final int px = x%tree.block==0 && x>0 && lx==x/tree.block ? lx-1 : -1;
+				for (int y = 0; y < shape[1]; y++) {
+					double value = data[x*shape[1]+y];
+					if (Double.isNaN(value)) value = Double.POSITIVE_INFINITY;
+
+					final int ly = Math.min(size[1]-1, y/tree.block);
+					final int py = y%tree.block==0 && y>0 && ly==y/tree.block ? ly-1 : -1;
+					add(planeMins, planeMaxs, lx*size[1]+ly, value);
+					if (py>=0)           add(planeMins, planeMaxs, lx*size[1]+py, value);
+					if (px>=0)           add(planeMins, planeMaxs, px*size[1]+ly, value);
+					if (px>=0 && py>=0)  add(planeMins, planeMaxs, px*size[1]+py, value);
+				}
+			}
+
+			final int lz = Math.min(size[2]-1, z/tree.block);
+			tree.addPlane(planeMins, planeMaxs, lz);
+			if (z%tree.block==0 && z>0 && lz==z/tree.block) tree.addPlane(planeMins, planeMaxs, lz-1);
+		}
+
+		tree.createLevels();
+		return tree;
+	}
+
+	private static void add(double[] mins, double[] maxs, int index, double value) {
+		if (value < mins[index]) mins[index] = value;
+		if (value > maxs[index]) maxs[index] = value;
+	}
+
+	private void addPlane(double[] planeMins, double[] planeMaxs, int lz) {
+		final int[] size = sizes[0];
+		for (int i = 0; i < planeMins.length; i++) {
+			final int index = i*size[2]+lz;
+			if (planeMins[i] < mins[0][index]) mins[0][index] = planeMins[i];
+			if (planeMaxs[i] > maxs[0][index]) maxs[0][index] = planeMaxs[i];
+		}
+	}
+
+	private void createLevels() {
+		for (int level = 1; level < sizes.length; level++) {
+			final int[] child = sizes[level-1];
+			final int[] size  = sizes[level];
+			for (int x = 0; x < child[0]; x++) {
+				for (int y = 0; y < child[1]; y++) {
+					for (int z = 0; z < child[2]; z++) {
+						final int from = (x*child[1]+y)*child[2]+z;
+						final int to   = ((x/2)*size[1]+y/2)*size[2]+z/2;
+						if (mins[level-1][from] < mins[level][to]) mins[level][to] = mins[level-1][from];
+						if (maxs[level-1][from] > maxs[level][to]) maxs[level][to] = maxs[level-1][from];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param from the first data index of a part of the volume
+	 * @param to the last data index, inclusive
+	 * @param isovalue
+	 * @return false if all the values in the part are below the isovalue or none are.
+	 *         May be true when they are, as the values of the whole blocks the part is in are looked at.
+	 */
+	public boolean straddles(int[] from, int[] to, double isovalue) {
+		final int[] lo = new int[3];
+		final int[] hi = new int[3];
+		for (int d = 0; d < 3; d++) {
+			lo[d] = Math.min(sizes[0][d]-1, from[d]/block);
+			hi[d] = Math.min(sizes[0][d]-1, Math.max(from[d], to[d]-1)/block);
+		}
+		final double[] range = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		return straddles(sizes.length-1, 0, 0, 0, lo, hi, isovalue, range);
+	}
+
+	/**
+	 * Adds the range of the leaves from lo to hi under a node to the range, until the range straddles the isovalue.
+	 */
+	private boolean straddles(int level, int x, int y, int z, int[] lo, int[] hi, double isovalue, double[] range) {
+
+		final int index = (x*sizes[level][1]+y)*sizes[level][2]+z;
+		final double min = mins[level][index];
+		final double max = maxs[level][index];
+		if (min >= range[0] && max <= range[1]) return false; // Nothing new under this node
+
+		boolean inside = true;
+		final int[] pos = {x, y, z};
+		for (int d = 0; d < 3; d++) {
+			final int first = pos[d]<<level;
+			final int last  = ((pos[d]+1)<<level)-1;
+			if (last < lo[d] || first > hi[d]) return false;
+			if (first < lo[d] || last > hi[d]) inside = false;
+		}
+
+		if (inside || level == 0) {
+			range[0] = Math.min(range[0], min);
+			range[1] = Math.max(range[1], max);
+			return range[0] < isovalue && range[1] >= isovalue;
+		}
+
+		final int[] child = sizes[level-1];
+		for (int cx = x*2; cx <= Math.min(child[0]-1, x*2+1); cx++) {
+			for (int cy = y*2; cy <= Math.min(child[1]-1, y*2+1); cy++) {
+				for (int cz = z*2; cz <= Math.min(child[2]-1, z*2+1); cz++) {
+					if (straddles(level-1, cx, cy, cz, lo, hi, isovalue, range)) return true;
+				}
+			}
+		}
+		return false;
+	}
+}
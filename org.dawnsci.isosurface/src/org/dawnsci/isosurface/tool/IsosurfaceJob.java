@@ -12,7 +12,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.dawb.common.ui.monitor.ProgressMonitorWrapper;
+import org.dawnsci.isosurface.alg.MarchingCubesLevels;
 import org.dawnsci.isosurface.alg.MarchingCubesModel;
+import org.dawnsci.isosurface.alg.MinMaxTree;
 import org.dawnsci.isosurface.alg.Surface;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -20,7 +22,9 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
 import org.eclipse.dawnsci.analysis.api.processing.IOperation;
+import org.eclipse.dawnsci.analysis.api.processing.OperationException;
 import org.eclipse.dawnsci.analysis.dataset.impl.FloatDataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.IntegerDataset;
 import org.eclipse.dawnsci.plotting.api.IPlottingSystem;
@@ -42,6 +46,16 @@ public class IsosurfaceJob extends Job {
 
 	private static final Logger logger = LoggerFactory.getLogger(IsosurfaceJob.class);
 	
+	/**
+	 * Show a coarse surface first and refine it, unless this is set.
+	 */
+	private static final boolean PROGRESSIVE = !Boolean.getBoolean("org.dawnsci.isosurface.no.progressive");
+	
+	/**
+	 * Skip the parts of the data which cannot contain the surface, unless this is set.
+	 */
+	private static final boolean MIN_MAX_TREE = !Boolean.getBoolean("org.dawnsci.isosurface.no.minmax.tree");
+	
  	private IOperation<MarchingCubesModel, Surface> generator;
  	final private IPlottingSystem system;
  	private String name;
@@ -53,6 +67,7 @@ public class IsosurfaceJob extends Job {
  	private String traceName;
  	
  	private ILazyDataset slice;
+ 	private volatile MinMaxTree minMaxTree;
  	
 	public IsosurfaceJob(String name, IPlottingSystem system,  ILazyDataset slice, IOperation<MarchingCubesModel, Surface> generator)
 	{
@@ -66,6 +81,36 @@ public class IsosurfaceJob extends Job {
 		this.slice = slice;
 		this.generator = generator;
 		
+		if (MIN_MAX_TREE) createMinMaxTree();
+	}
+	
+	/**
+	 * Reads the data once in the background for the value ranges used by all isovalues.
+	 * Surfaces made before it is ready visit every part of the data.
+	 */
+	private void createMinMaxTree()
+	{
+		final Job job = new Job("Isosurface value ranges")
+		{
+			@Override
+			protected IStatus run(IProgressMonitor monitor)
+			{
+				try
+				{
+					minMaxTree = MinMaxTree.create(slice, new ProgressMonitorWrapper(monitor));
+					return minMaxTree != null ? Status.OK_STATUS : Status.CANCEL_STATUS;
+				}
+				catch (Exception e)
+				{
+					logger.error("Cannot read value ranges of "+slice.getName(), e);
+					return Status.CANCEL_STATUS;
+				}
+			}
+		};
+		job.setSystem(true);
+		job.setUser(false);
+		job.setPriority(Job.LONG);
+		job.schedule();
 	}
 	
 	/**
@@ -156,6 +201,10 @@ public class IsosurfaceJob extends Job {
 				{
 					generator.getModel().setLazyData(slice);
 				}
+				if (model.getMinMaxTree() == null)
+				{
+					model.setMinMaxTree(minMaxTree);
+				}
 				
 				IDataset points     = null;
 				IDataset textCoords = null;
@@ -163,41 +212,28 @@ public class IsosurfaceJob extends Job {
 				
 				if (value != null || trace.getData() == null)
 				{
-					Surface surface = generator.execute(null, new ProgressMonitorWrapper(monitor));
-					
+					final Surface surface;
+					if (PROGRESSIVE && !model.isLegacy())
+					{
+						// show coarse surfaces while the final one is made
+						surface = computeProgressively(model, trace, createTrace, monitor);
+						if (surface == null)
+							return Status.CANCEL_STATUS;
+						createTrace = system.getTrace(traceName) == null;
+					}
+					else
+					{
+						surface = generator.execute(null, new ProgressMonitorWrapper(monitor));
+					}
+
 					points     = new FloatDataset(surface.getPoints(), surface.getPoints().length);
 					textCoords = new FloatDataset(surface.getTexCoords(), surface.getTexCoords().length);
 					faces      = new IntegerDataset(surface.getFaces(), surface.getFaces().length);
 				}
-												
-				final ArrayList<IDataset> axis = new ArrayList<IDataset>();
-				
-				TickFactory tickGenerator = new TickFactory(TickFormatting.autoMode, null);
-				
-				
-				// set the data set size
-				axis.add(new IntegerDataset(this.slice.getShape(), null));
-				
-				axis.add(convertTodatasetAxis(tickGenerator.generateTicks(0, slice.getShape()[0], 15, false, false)));
-				axis.add(convertTodatasetAxis(tickGenerator.generateTicks(0, slice.getShape()[1], 15, false, false)));
-				axis.add(convertTodatasetAxis(tickGenerator.generateTicks(0, slice.getShape()[2], 15, false, false)));
-								
-				final int[] traceColour = new int[]{colour.red, colour.green, colour.blue};
-				final double traceOpacity = opacity;
-				
-				trace.setMaterial(traceColour[0], traceColour[1] , traceColour[2], traceOpacity);
-				trace.setData(points, textCoords, faces, axis );
-			
-				if (createTrace)
-				{
-					Display.getDefault().syncExec(new Runnable() {
-						public void run() {
-							system.addTrace(trace);
-				    	}
-				    });
-				}
-				
-			} 
+
+				setData(trace, points, textCoords, faces, createTrace);
+
+			}
 			catch (UnsupportedOperationException e)
 			{
 				e.printStackTrace();
@@ -228,6 +264,71 @@ public class IsosurfaceJob extends Job {
 	}
 	
 	
+	/**
+	 * Makes the surface coarsest first, showing each level but the last as it is made.
+	 *
+	 * @return the final surface or null if cancelled
+	 */
+	private Surface computeProgressively(MarchingCubesModel model, IIsosurfaceTrace trace, boolean createTrace, IProgressMonitor monitor) throws OperationException
+	{
+		final MarchingCubesLevels levels = new MarchingCubesLevels(slice, model.getBoxSize(), model.getIsovalue());
+		levels.setMinMaxTree(model.getMinMaxTree());
+		final IMonitor            mon    = new ProgressMonitorWrapper(monitor);
+
+		Surface surface = null;
+		while (levels.hasNext())
+		{
+			final boolean last = levels.isNextLast();
+			surface = levels.next(mon);
+			if (surface == null || monitor.isCanceled())
+				return null;
+
+			if (!last && surface.getPoints().length > 0)
+			{
+				setData(trace,
+						new FloatDataset(surface.getPoints(), surface.getPoints().length),
+						new FloatDataset(surface.getTexCoords(), surface.getTexCoords().length),
+						new IntegerDataset(surface.getFaces(), surface.getFaces().length),
+						createTrace);
+				createTrace = false;
+			}
+		}
+		if (surface.getPoints().length < 1)
+			throw new OperationException(generator, "No isosurface found!");
+
+		return surface;
+	}
+
+	private void setData(final IIsosurfaceTrace trace, IDataset points, IDataset textCoords, IDataset faces, boolean createTrace)
+	{
+		final ArrayList<IDataset> axis = new ArrayList<IDataset>();
+
+		TickFactory tickGenerator = new TickFactory(TickFormatting.autoMode, null);
+
+
+		// set the data set size
+		axis.add(new IntegerDataset(this.slice.getShape(), null));
+
+		axis.add(convertTodatasetAxis(tickGenerator.generateTicks(0, slice.getShape()[0], 15, false, false)));
+		axis.add(convertTodatasetAxis(tickGenerator.generateTicks(0, slice.getShape()[1], 15, false, false)));
+		axis.add(convertTodatasetAxis(tickGenerator.generateTicks(0, slice.getShape()[2], 15, false, false)));
+
+		final int[] traceColour = new int[]{colour.red, colour.green, colour.blue};
+		final double traceOpacity = opacity;
+
+		trace.setMaterial(traceColour[0], traceColour[1] , traceColour[2], traceOpacity);
+		trace.setData(points, textCoords, faces, axis );
+
+		if (createTrace)
+		{
+			Display.getDefault().syncExec(new Runnable() {
+				public void run() {
+					system.addTrace(trace);
+		    	}
+		    });
+		}
+	}
+
 	private FloatDataset convertTodatasetAxis(List<Tick> tickList) {
 		
 				
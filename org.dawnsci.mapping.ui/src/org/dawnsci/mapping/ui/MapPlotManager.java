@@ -1,9 +1,13 @@
 package org.dawnsci.mapping.ui;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -39,7 +43,6 @@ import org.eclipse.dawnsci.plotting.api.trace.ITrace;
 import org.eclipse.dawnsci.plotting.api.trace.MetadataPlotUtils;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
-import org.eclipse.ui.progress.UIJob;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,12 +71,35 @@ public class MapPlotManager {
 			
 			@Override
 			public void run() {
-				for (MapTrace t : layers) {
-					if (t.getMap() instanceof ILiveData) {
-						t.switchMap(t.getMap());
+				final List<MapTrace> live = new ArrayList<MapTrace>();
+				Display.getDefault().syncExec(new Runnable() {
+					
+					@Override
+					public void run() {
+						for (MapTrace t : layers) {
+							if (t.getMap() instanceof ILiveData) live.add(t);
+						}
 					}
+				});
+				
+				// Read the new points here, away from the UI thread, and only redraw the maps which changed
+				final Map<MapTrace, IDataset> changed = new LinkedHashMap<MapTrace, IDataset>();
+				for (MapTrace t : live) {
+					IDataset d = t.getMap().getData();
+					if (d != null && d != t.getPlotted()) changed.put(t, d);
 				}
-				plotLayers();
+				if (changed.isEmpty()) return;
+				
+				Display.getDefault().asyncExec(new Runnable() {
+					
+					@Override
+					public void run() {
+						for (Map.Entry<MapTrace, IDataset> e : changed.entrySet()) {
+							if (layers.contains(e.getKey())) e.getKey().switchData(e.getValue());
+						}
+						plotLayers();
+					}
+				});
 			}
 		});
 		
@@ -573,16 +599,17 @@ public class MapPlotManager {
 		
 	}
 	
-	private class RepeatingJob extends UIJob{
-		private boolean running = true;
+	private class RepeatingJob extends Job {
+		private volatile boolean running = true;
 		private long repeatDelay = 0;
 		private Runnable runnable;
 		public RepeatingJob(long repeatPeriod, Runnable runnable){ 
 			super("Repeat plot update");
+			setSystem(true);
 			repeatDelay = repeatPeriod;
 			this.runnable = runnable;
 		}
-		public IStatus runInUIThread(IProgressMonitor monitor) {
+		public IStatus run(IProgressMonitor monitor) {
 			runnable.run();
 			schedule(repeatDelay);
 			return Status.OK_STATUS;
@@ -604,6 +631,7 @@ public class MapPlotManager {
 		
 		private PlottableMapObject map;
 		private IImageTrace trace;
+		private volatile IDataset plotted;
 
 		public MapTrace(PlottableMapObject map, IImageTrace trace) {
 			this.map = map;
@@ -618,10 +646,26 @@ public class MapPlotManager {
 			return trace;
 		}
 		
+		/**
+		 * @return the data last switched to, null if the trace still has the data it was made with
+		 */
+		public IDataset getPlotted() {
+			return plotted;
+		}
+		
 		public void switchMap(PlottableMapObject ob) {
+			switchData(ob.getLongName(), ob.getData());
+		}
+		
+		public void switchData(IDataset d) {
+			switchData(map.getLongName(), d);
+		}
+		
+		private void switchData(String name, IDataset d) {
 			try {
-				MetadataPlotUtils.switchData(ob.getLongName(), ob.getData(), trace);
+				MetadataPlotUtils.switchData(name, d, trace);
 				trace.setGlobalRange(area.getRange());
+				plotted = d;
 			} catch (Exception e) {
 				logger.error("Error updating live!",e);
 			}
@@ -1,10 +1,15 @@
 package org.dawnsci.mapping.ui.datamodel;
 
+import java.util.Arrays;
+
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.IRemoteDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.Slice;
 import org.eclipse.dawnsci.analysis.api.dataset.SliceND;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
 import org.eclipse.dawnsci.analysis.dataset.metadata.AxesMetadataImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +17,8 @@ import org.slf4j.LoggerFactory;
 public class LiveMappedData extends MappedData implements ILiveData {
 
 	private boolean connected = false;
+	private Dataset buffer; // The rows of the map read so far, with room for more
+	private int rows;       // The number of rows of buffer which have been read
 	private static final Logger logger = LoggerFactory.getLogger(LiveMappedData.class);
 	
 	public LiveMappedData(String name, IRemoteDataset map, LiveMappedDataBlock parent, String path) {
@@ -53,8 +60,17 @@ public class LiveMappedData extends MappedData implements ILiveData {
 		return false;
 	}
 	
+	/**
+	 * Reads the rows of the map written since the last call, the last row
+	 * read before being read again as it may only have been partly written.
+	 * The rows are kept in a buffer with room for more, so each update reads
+	 * the new points rather than the whole map. The map is a copy of the rows
+	 * read, as the buffer is written to by later calls while the map is shown.
+	 * 
+	 * @return the map, the same as the last call returned if nothing has been written since.
+	 */
 	@Override
-	public IDataset getData(){
+	public synchronized IDataset getData(){
 		
 		if (!connected) {			
 			try {
@@ -64,49 +80,111 @@ public class LiveMappedData extends MappedData implements ILiveData {
 			}
 		}
 
-		final IDataset ma = baseMap.getSlice();
+		int[] mapShape = baseMap.getShape();
 		
 		// TODO This check is probably not required
 		if (baseMap.getSize() == 1) return null;
 		
-		ILazyDataset ly = parent.getYAxis()[0];
-		ILazyDataset lx = parent.getXAxis()[0];
+		IDataset y = getAxis(parent.getYAxis()[0], 1);
+		IDataset x = getAxis(parent.getXAxis()[0], 0);
 		
-		IDataset y = ly.getSlice();
-		IDataset x = lx.getSlice();
+		AxesMetadataImpl axm = new AxesMetadataImpl(2);
+		axm.addAxis(0, y);
+		axm.addAxis(1, x);
 		
-		if (y.getRank() == 2) {
-			SliceND s = new SliceND(y.getShape());
-			s.setSlice(1, 0, 1, 1);
-			y = y.getSlice(s);
-			y.squeeze();
+		if (mapShape.length != 2) {
+			buffer = null;
+			rows = 0;
+			IDataset ma = baseMap.getSlice();
+			SliceND s = new SliceND(mapShape);
+			if (mapShape[0] > y.getShape()[0]) s.setSlice(0, 0, y.getShape()[0], 1);
+			if (mapShape[1] > x.getShape()[0]) s.setSlice(1, 0, x.getShape()[0], 1);
+			return setMap(ma.getSlice(s), axm);
 		}
 		
-		if (x.getRank() == 2) {
-			SliceND s = new SliceND(x.getShape());
-			s.setSlice(0, 0, 1, 1);
-			x = x.getSlice(s);
-			x.squeeze();
+		int ny = Math.min(mapShape[0], y.getShape()[0]);
+		int nx = Math.min(mapShape[1], x.getShape()[0]);
+		
+		// A new scan or a different row length, start again
+		if (buffer != null && (buffer.getShape()[1] != nx || ny < rows)) {
+			buffer = null;
+			rows = 0;
 		}
 		
-		AxesMetadataImpl axm = new AxesMetadataImpl(2);
-		axm.addAxis(0, y);
-		axm.addAxis(1, x);
-		int[] mapShape = ma.getShape();
+		int first = Math.max(0, rows-1);
 		SliceND s = new SliceND(mapShape);
-		if (mapShape[0] > y.getShape()[0]) s.setSlice(0, 0, y.getShape()[0], 1);
-		if (mapShape[1] > x.getShape()[0]) s.setSlice(1, 0, x.getShape()[0], 1);
+		s.setSlice(0, first, ny, 1);
+		s.setSlice(1, 0, nx, 1);
+		Dataset fresh = DatasetUtils.convertToDataset(baseMap.getSlice(s));
 		
+		if (buffer != null && ny == rows && map != null
+			&& isSame(fresh, buffer.getSliceView(new Slice(first, ny), null))) {
+			return map;
+		}
 		
+		if (buffer == null || buffer.getShape()[0] < ny) {
+			int capacity = Math.max(ny, buffer == null ? 0 : buffer.getShape()[0]*2);
+			Dataset grown = DatasetFactory.zeros(new int[]{capacity, nx}, fresh.getDtype());
+			if (buffer != null) {
+				SliceND old = new SliceND(grown.getShape(), new int[]{0, 0}, new int[]{rows, nx}, null);
+				grown.setSlice(buffer.getSliceView(new Slice(0, rows), null), old);
+			}
+			buffer = grown;
+		}
+		buffer.setSlice(fresh, new SliceND(buffer.getShape(), new int[]{first, 0}, new int[]{ny, nx}, null));
+		rows = ny;
 		
-		IDataset fm = ma.getSlice(s);
+		return setMap(buffer.getSlice(new Slice(0, ny)), axm);
+	}
+	
+	/**
+	 * The points of a row not written yet are NaN, and NaN never equals NaN,
+	 * so the rows are compared value by value with NaN the same as NaN.
+	 * 
+	 * @param fresh rows just read
+	 * @param read the same rows as read before
+	 * @return true if nothing has been written to the rows since
+	 */
+	private static boolean isSame(Dataset fresh, Dataset read) {
+		
+		if (!fresh.hasFloatingPointElements() || fresh.getElementsPerItem() != 1) return fresh.equals(read);
+		if (!Arrays.equals(fresh.getShape(), read.getShape())) return false;
+		
+		int[] shape = fresh.getShape();
+		for (int i = 0; i < shape[0]; i++) {
+			for (int j = 0; j < shape[1]; j++) {
+				double a = fresh.getDouble(i, j);
+				double b = read.getDouble(i, j);
+				if (a != b && !(Double.isNaN(a) && Double.isNaN(b))) return false;
+			}
+		}
+		return true;
+	}
+	
+	private IDataset setMap(IDataset fm, AxesMetadataImpl axm) {
 		fm.setMetadata(axm);
-		
 		setRange(calculateRange(fm));
 		map = fm;
 		return fm;
 	}
 	
+	/**
+	 * Reads one line of an axis, rather than all of a 2D one.
+	 * 
+	 * @param axis 1D or 2D
+	 * @param dim of a 2D axis to take the first of
+	 * @return 1D axis
+	 */
+	private IDataset getAxis(ILazyDataset axis, int dim) {
+		if (axis.getRank() != 2) return axis.getSlice();
+		
+		SliceND s = new SliceND(axis.getShape());
+		s.setSlice(dim, 0, 1, 1);
+		IDataset a = axis.getSlice(s);
+		a.squeeze();
+		return a;
+	}
+	
 	
 	protected double[] calculateRange(ILazyDataset m){
 		
@@ -121,6 +121,11 @@ public class LiveMappedDataBlock extends MappedDataBlock implements ILiveData {
 		return new ILazyDataset[]{axes.getAxes()[yDim]};
 	}
 
+	@Override
+	protected boolean isSpectrumCacheable() {
+		return false;
+	}
+
 	protected double[] calculateRange(ILazyDataset block){
 		
 		return null;
@@ -15,6 +15,7 @@ public class MappedDataBlock implements MapObject {
 	int yDim = 0;
 	int xDim = 1;
 	private double[] range;
+	private SpectrumCache cache, indexCache;
 	
 	public MappedDataBlock(String name, ILazyDataset dataset, int xDim, int yDim, String path) {
 		this.name = name;
@@ -40,8 +41,17 @@ public class MappedDataBlock implements MapObject {
 		return null;
 	}
 	
+	/**
+	 * @param x
+	 * @param y
+	 * @return the spectrum, read if it is near one asked for before, otherwise a view to read it from.
+	 */
 	public ILazyDataset getSpectrum(int x, int y) {
 		
+		SpectrumCache cache = getCache();
+		IDataset cached = cache == null ? null : cache.get(y, x);
+		if (cached != null) return cached;
+		
 		SliceND slice = new SliceND(dataset.getShape());
 		slice.setSlice(yDim,y,y+1,1);
 		slice.setSlice(xDim,x,x+1,1);
@@ -51,12 +61,37 @@ public class MappedDataBlock implements MapObject {
 	
 	public IDataset getSpectrum(int index) {
 		
+		SpectrumCache cache = getIndexCache();
+		IDataset cached = cache == null ? null : cache.get(index);
+		if (cached != null) return cached;
+		
 		SliceND slice = new SliceND(dataset.getShape());
 		slice.setSlice(0,index,index+1,1);
 		
 		return dataset.getSlice(slice);
 	}
 	
+	private synchronized SpectrumCache getCache() {
+		if (cache == null && xDim != yDim && isSpectrumCacheable() && SpectrumCache.isCacheable(dataset, yDim, xDim)) {
+			cache = new SpectrumCache(dataset, yDim, xDim);
+		}
+		return cache;
+	}
+	
+	private synchronized SpectrumCache getIndexCache() {
+		if (indexCache == null && isSpectrumCacheable() && SpectrumCache.isCacheable(dataset, 0)) {
+			indexCache = new SpectrumCache(dataset, 0);
+		}
+		return indexCache;
+	}
+	
+	/**
+	 * @return false if the spectra may change once read
+	 */
+	protected boolean isSpectrumCacheable() {
+		return true;
+	}
+	
 	public int[] getDataDimensions() {
 		int nDims = 0;
 		
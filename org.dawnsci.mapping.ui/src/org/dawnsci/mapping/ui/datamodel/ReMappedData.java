@@ -1,12 +1,16 @@
 package org.dawnsci.mapping.ui.datamodel;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.dawnsci.mapping.ui.MappingUtils;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.metadata.AxesMetadata;
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.Maths;
 import org.eclipse.dawnsci.analysis.dataset.impl.Stats;
 import org.eclipse.dawnsci.analysis.dataset.metadata.AxesMetadataImpl;
@@ -20,6 +24,12 @@ public class ReMappedData extends AbstractMapData {
 	private IDataset reMapped;
 	private IDataset lookup;
 	private int[] shape;
+	private double[] xBins, yBins; // The axes of reMapped, searched for the pixel of a point
+	
+	// What reMapped was made from, it is only made again when one of these changes
+	private IDataset remappedFrom;
+	private ILazyDataset[] remappedAxes;
+	private int[] remappedShape;
 	
 	public ReMappedData(String name, IDataset map, MappedDataBlock parent, String path) {
 		super(name, map, parent, path);
@@ -41,13 +51,27 @@ public class ReMappedData extends AbstractMapData {
 	}
 	
 	@Override
-	public IDataset getData(){
-		reMapped = null;
-		if (reMapped == null) updateRemappedData(null);
+	public synchronized IDataset getData(){
+		if (reMapped == null || !isRemappedFrom(map, getAxes(map), shape)) updateRemappedData(shape);
 		
 		return reMapped;
 	}
 	
+	private static ILazyDataset[] getAxes(IDataset map) {
+		AxesMetadata md = map.getFirstMetadata(AxesMetadata.class);
+		return md == null ? null : md.getAxis(0);
+	}
+	
+	private boolean isRemappedFrom(IDataset map, ILazyDataset[] axes, int[] shape) {
+		if (map != remappedFrom || !Arrays.equals(shape, remappedShape)) return false;
+		if (axes == null || remappedAxes == null) return axes == remappedAxes;
+		if (axes.length != remappedAxes.length) return false;
+		for (int i = 0; i < axes.length; i++) {
+			if (axes[i] != remappedAxes[i]) return false;
+		}
+		return true;
+	}
+	
 	private void updateRemappedData(int[] shape) {
 		
 		IDataset[] axes = MetadataPlotUtils.getAxesForDimension(map, 0);
@@ -88,32 +112,54 @@ public class ReMappedData extends AbstractMapData {
 		reMapped = data.get(1);
 		reMapped.addMetadata(axm);
 		lookup = data.get(3);
+		xBins = toDoubleArray(data.get(0));
+		yBins = toDoubleArray(data.get(2));
 		
+		remappedFrom = map;
+		remappedAxes = getAxes(map);
+		remappedShape = shape.clone();
+	}
+	
+	private static double[] toDoubleArray(Dataset axis) {
+		return ((DoubleDataset)DatasetUtils.cast(axis, Dataset.FLOAT64)).getData();
 	}
 	
 	public int[] getShape() {
 		return shape;
 	}
 	
-	public void setShape(int[] shape){
-		this.shape = shape;
-		updateRemappedData(shape);
+	public synchronized void setShape(int[] shape){
+		this.shape = shape.clone();
+		updateRemappedData(this.shape);
 	}
 	
-	private int[] getIndices(double x, double y) {
-
-		IDataset[] ax = MetadataPlotUtils.getAxesFromMetadata(reMapped);
-
-		IDataset yy = ax[0];
-		IDataset xx = ax[1];
-
-		Dataset xd = Maths.subtract(xx, x);
-		Dataset yd = Maths.subtract(yy, y);
+	private synchronized int[] getIndices(double x, double y) {
 		
-		int xi = Maths.abs(xd).argMin();
-		int yi = Maths.abs(yd).argMin();
+		if (reMapped == null) getData();
 
-		return new int[]{yi,xi};
+		return new int[]{getNearestIndex(yBins, y),getNearestIndex(xBins, x)};
+	}
+	
+	/**
+	 * @param axis ascending or descending
+	 * @param value
+	 * @return the index of the value of the axis nearest to the value
+	 */
+	static int getNearestIndex(double[] axis, double value) {
+		
+		int n = axis.length;
+		boolean descending = n > 1 && axis[0] > axis[n-1];
+		
+		// The first index not before the value
+		int lo = 0, hi = n;
+		while (lo < hi) {
+			int mid = (lo+hi) >>> 1;
+			if (descending ? axis[mid] > value : axis[mid] < value) lo = mid+1;
+			else hi = mid;
+		}
+		if (lo == 0) return 0;
+		if (lo == n) return n-1;
+		return Math.abs(axis[lo-1]-value) <= Math.abs(axis[lo]-value) ? lo-1 : lo;
 	}
 	
 	@Override
@@ -0,0 +1,176 @@
+package org.dawnsci.mapping.ui.datamodel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.SliceND;
+import org.eclipse.dawnsci.analysis.dataset.impl.AbstractDataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tiles of the spectra of a block, read in the background and kept while
+ * they fit in a budget of bytes, the least recently used going first.
+ *
+ * A tile is TILE spectra along each dimension of position, aligned to
+ * multiples of TILE, so it is read with one slice rather than one per spectrum.
+ * When the spectrum asked for moves from one tile to the next, the tile after
+ * that in the same direction is read too, so moving the mouse across the map
+ * finds the spectra already read.
+ */
+class SpectrumCache {
+
+	private static final int  TILE   = Integer.getInteger("org.dawnsci.mapping.spectrum.tile", 8);
+	private static final long BUDGET = Long.getLong("org.dawnsci.mapping.spectrum.cache.size", 64L*1024*1024);
+	private static final int  QUEUE  = 4; // The most tiles waiting to be read, the oldest are dropped
+
+	private static final Logger logger = LoggerFactory.getLogger(SpectrumCache.class);
+
+	private final ILazyDataset dataset;
+	private final int[] dims;
+	private final int[] shape;
+	private final Map<List<Integer>, IDataset> tiles;
+	private final LinkedList<List<Integer>> queue;
+	private long bytes;
+	private List<Integer> last;
+	private final Job reader;
+
+	/**
+	 * @param dataset
+	 * @param dims the dimensions of position in the dataset
+	 */
+	SpectrumCache(ILazyDataset dataset, int... dims) {
+		this.dataset = dataset;
+		this.dims = dims;
+		this.shape = dataset.getShape();
+		this.tiles = new LinkedHashMap<List<Integer>, IDataset>(16, 0.75f, true);
+		this.queue = new LinkedList<List<Integer>>();
+		this.reader = new Job("Read spectra") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				List<Integer> tile;
+				while ((tile = nextInQueue()) != null) {
+					if (monitor.isCanceled()) return Status.CANCEL_STATUS;
+					read(tile);
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		reader.setSystem(true);
+		reader.setPriority(Job.SHORT);
+	}
+
+	/**
+	 * @param dataset
+	 * @param dims the dimensions of position in the dataset
+	 * @return true if a tile of the spectra of the dataset is small enough to keep a few of
+	 */
+	static boolean isCacheable(ILazyDataset dataset, int... dims) {
+		int[] shape = dataset.getShape();
+		long size = getItemBytes(dataset);
+		for (int i = 0; i < shape.length; i++) size *= contains(dims, i) ? Math.min(TILE, shape[i]) : shape[i];
+		return size*4 <= BUDGET;
+	}
+
+	private static long getItemBytes(ILazyDataset d) {
+		return AbstractDataset.getItemsize(AbstractDataset.getDTypeFromClass(d.elementClass()), d.getElementsPerItem());
+	}
+
+	private static boolean contains(int[] dims, int dim) {
+		for (int d : dims) if (d == dim) return true;
+		return false;
+	}
+
+	/**
+	 * @param position in each of the dimensions of position
+	 * @return the spectrum if its tile has been read, otherwise null and the tile will be read.
+	 */
+	IDataset get(int... position) {
+
+		List<Integer> tile = new ArrayList<Integer>(dims.length);
+		for (int i = 0; i < dims.length; i++) tile.add(position[i]/TILE);
+
+		IDataset t = null;
+		synchronized (this) {
+			t = tiles.get(tile);
+
+			if (last != null && !last.equals(tile)) {
+				List<Integer> next = new ArrayList<Integer>(dims.length);
+				boolean inside = true;
+				for (int i = 0; i < dims.length; i++) {
+					int n = tile.get(i) + Integer.signum(tile.get(i) - last.get(i));
+					inside &= n >= 0 && n*TILE < shape[dims[i]];
+					next.add(n);
+				}
+				if (inside && !tiles.containsKey(next)) request(next);
+			}
+			if (t == null) request(tile); // Read before the next
+			last = tile;
+		}
+
+		if (t == null) return null;
+
+		SliceND slice = new SliceND(t.getShape());
+		for (int i = 0; i < dims.length; i++) {
+			int offset = position[i] - tile.get(i)*TILE;
+			slice.setSlice(dims[i], offset, offset+1, 1);
+		}
+		return t.getSlice(slice);
+	}
+
+	private void request(List<Integer> tile) {
+		queue.remove(tile);
+		queue.addFirst(tile);
+		while (queue.size() > QUEUE) queue.removeLast();
+		reader.schedule();
+	}
+
+	private synchronized List<Integer> nextInQueue() {
+		while (!queue.isEmpty()) {
+			List<Integer> tile = queue.removeFirst();
+			if (!tiles.containsKey(tile)) return tile;
+		}
+		return null;
+	}
+
+	private void read(List<Integer> tile) {
+
+		SliceND slice = new SliceND(shape);
+		for (int i = 0; i < dims.length; i++) {
+			int start = tile.get(i)*TILE;
+			slice.setSlice(dims[i], start, Math.min(start+TILE, shape[dims[i]]), 1);
+		}
+
+		IDataset t = null;
+		try {
+			t = dataset.getSlice(slice);
+		} catch (Exception e) {
+			logger.error("Could not read spectra " + slice, e);
+			return;
+		}
+
+		long size = t.getSize()*getItemBytes(t);
+
+		synchronized (this) {
+			tiles.put(tile, t);
+			bytes += size;
+			Iterator<Map.Entry<List<Integer>, IDataset>> it = tiles.entrySet().iterator();
+			while (bytes > BUDGET && it.hasNext()) {
+				IDataset old = it.next().getValue();
+				if (old == t) break;
+				bytes -= old.getSize()*getItemBytes(old);
+				it.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package org.dawnsci.plotting.draw2d.swtxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.dawnsci.analysis.api.downsample.DownsampleMode;
+import org.eclipse.dawnsci.analysis.dataset.function.Downsample;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks the bytes held by the levels of pyramids against the budget they share,
+ * and which levels are evicted when over it.
+ */
+public class ImagePyramidTest {
+
+	// The levels of a 64 by 64 image of doubles
+	private static final long BIN2  = 32*32*8;
+	private static final long BIN4  = 16*16*8;
+	private static final long BIN8  = 8*8*8;
+	private static final long BIN16 = 4*4*8;
+	private static final long BIN32 = 2*2*8;
+
+	private final List<ImagePyramid> pyramids = new ArrayList<ImagePyramid>();
+
+	private ImagePyramid createPyramid(long budget) {
+		final Dataset image = DatasetFactory.createRange(64*64, Dataset.FLOAT64);
+		image.setShape(64, 64);
+		final ImagePyramid pyramid = new ImagePyramid(image, DownsampleMode.MAXIMUM, budget);
+		pyramids.add(pyramid);
+		return pyramid;
+	}
+
+	@After
+	public void dispose() {
+		for (ImagePyramid pyramid : pyramids) pyramid.dispose();
+	}
+
+	@Test
+	public void testHeld() {
+		final long         start   = ImagePyramid.getHeldByAll();
+		final ImagePyramid pyramid = createPyramid(Long.MAX_VALUE);
+
+		final Dataset level = pyramid.getLevel(2);
+		assertSame(level, pyramid.getLevel(2));
+		pyramid.getLevel(4);
+		pyramid.getLevel(1); // The image, not held
+		assertEquals(BIN2+BIN4, pyramid.getHeld());
+		assertEquals(start+BIN2+BIN4, ImagePyramid.getHeldByAll());
+
+		pyramid.clear();
+		assertEquals(0, pyramid.getHeld());
+		assertEquals(start, ImagePyramid.getHeldByAll());
+		assertNotSame(level, pyramid.getLevel(2));
+
+		pyramid.dispose();
+		assertEquals(start, ImagePyramid.getHeldByAll());
+		pyramid.getLevel(4); // Made but not held once disposed
+		assertEquals(0, pyramid.getHeld());
+		assertEquals(start, ImagePyramid.getHeldByAll());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() {
+		final long         start   = ImagePyramid.getHeldByAll();
+		final ImagePyramid pyramid = createPyramid(start+BIN2+BIN4+BIN8);
+
+		final Dataset bin2 = pyramid.getLevel(2);
+		final Dataset bin4 = pyramid.getLevel(4);
+		final Dataset bin8 = pyramid.getLevel(8);
+		assertSame(bin2, pyramid.getLevel(2)); // Now 4, 8, 2 from least recently used
+
+		pyramid.getLevel(16); // Over by BIN16, so 4 goes
+		assertEquals(BIN8+BIN2+BIN16, pyramid.getHeld());
+		assertEquals(start+BIN8+BIN2+BIN16, ImagePyramid.getHeldByAll());
+		assertSame(bin8, pyramid.getLevel(8));
+		assertSame(bin2, pyramid.getLevel(2));
+		assertNotSame(bin4, pyramid.getLevel(4)); // Made again, and 16 goes as 8 and 2 were used since
+		assertEquals(BIN8+BIN2+BIN4, pyramid.getHeld());
+	}
+
+	@Test
+	public void testBudgetShared() {
+		final long         start  = ImagePyramid.getHeldByAll();
+		final long         budget = start+BIN2+BIN4+BIN8;
+		final ImagePyramid first  = createPyramid(budget);
+		final ImagePyramid second = createPyramid(budget);
+
+		first.getLevel(2);
+		first.getLevel(8);
+		first.getLevel(16);
+		assertEquals(BIN2+BIN8+BIN16, first.getHeld());
+
+		// Over the budget, but a pyramid only evicts its own levels and keeps the one added
+		second.getLevel(2);
+		assertEquals(BIN2+BIN8+BIN16, first.getHeld());
+		assertEquals(BIN2, second.getHeld());
+		assertEquals(start+2*BIN2+BIN8+BIN16, ImagePyramid.getHeldByAll());
+
+		// The first evicts its least recently used until both are within the budget
+		first.getLevel(32);
+		assertEquals(BIN8+BIN16+BIN32, first.getHeld());
+		assertEquals(start+BIN2+BIN8+BIN16+BIN32, ImagePyramid.getHeldByAll());
+
+		second.clear();
+		assertEquals(start+BIN8+BIN16+BIN32, ImagePyramid.getHeldByAll());
+		first.dispose();
+		assertEquals(start, ImagePyramid.getHeldByAll());
+	}
+
+	@Test
+	public void testLevelsFromLevels() {
+		// Maximum of maxima is the maximum, so levels made from levels are those made from the image
+		final ImagePyramid pyramid = createPyramid(Long.MAX_VALUE);
+		final Dataset      image   = pyramid.getLevel(1);
+		for (int bin : new int[]{2, 4, 8, 16, 32, 64}) {
+			final Downsample downsample = new Downsample(DownsampleMode.MAXIMUM, new int[]{bin, bin});
+			assertEquals("Bin "+bin, DatasetUtils.convertToDataset(downsample.value(image).get(0)), pyramid.getLevel(bin));
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package org.dawnsci.plotting.draw2d.swtxy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.BooleanDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.eclipse.dawnsci.analysis.dataset.impl.IntegerDataset;
+import org.eclipse.dawnsci.plotting.api.histogram.IImageService;
+import org.eclipse.dawnsci.plotting.api.histogram.ImageServiceBean;
+import org.eclipse.dawnsci.plotting.api.histogram.ImageServiceBean.ImageOrigin;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.RGB;
+import org.junit.Test;
+
+/**
+ * Checks the tiles put together are the image colour mapped in one go, for each
+ * origin, and that the least recently used tiles are mapped again.
+ */
+public class ImageTileCacheTest {
+
+	/**
+	 * Maps each value to the pixel of the same number, or 0 where masked, and
+	 * flips the image for the origin as the image service does.
+	 */
+	private static class MappingService implements InvocationHandler {
+
+		int     calls;
+		boolean failing;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if (!"getImageData".equals(method.getName())) throw new UnsupportedOperationException(method.getName());
+			calls++;
+			return failing ? null : getImageData((ImageServiceBean)args[0]);
+		}
+
+		private static ImageData getImageData(ImageServiceBean bean) {
+			final Dataset image = DatasetUtils.convertToDataset(bean.getImage());
+			final Dataset mask  = bean.getMask() != null ? DatasetUtils.convertToDataset(bean.getMask()) : null;
+			final int[]   shape = image.getShape();
+			final byte[]  data  = new byte[shape[0]*shape[1]];
+
+			int index = 0;
+			switch (bean.getOrigin()) {
+			case BOTTOM_LEFT:
+				for (int i = shape[1]-1; i >= 0; --i) for (int j = 0; j < shape[0]; ++j) data[index++] = getPixel(image, mask, j, i);
+				return createImageData(shape[0], shape[1], data);
+			case BOTTOM_RIGHT:
+				for (int i = shape[0]-1; i >= 0; --i) for (int j = shape[1]-1; j >= 0; --j) data[index++] = getPixel(image, mask, i, j);
+				return createImageData(shape[1], shape[0], data);
+			case TOP_RIGHT:
+				for (int i = 0; i < shape[1]; ++i) for (int j = shape[0]-1; j >= 0; --j) data[index++] = getPixel(image, mask, j, i);
+				return createImageData(shape[0], shape[1], data);
+			case TOP_LEFT:
+			default:
+				for (int i = 0; i < shape[0]; ++i) for (int j = 0; j < shape[1]; ++j) data[index++] = getPixel(image, mask, i, j);
+				return createImageData(shape[1], shape[0], data);
+			}
+		}
+
+		private static byte getPixel(Dataset image, Dataset mask, int i, int j) {
+			return mask == null || mask.getBoolean(i, j) ? (byte)image.getInt(i, j) : 0;
+		}
+
+		private static ImageData createImageData(int width, int height, byte[] data) {
+			final RGB[] rgbs = new RGB[256];
+			for (int i = 0; i < rgbs.length; i++) rgbs[i] = new RGB(i, i, i);
+			return new ImageData(width, height, 8, new PaletteData(rgbs), 1, data);
+		}
+	}
+
+	private static IImageService createService(MappingService mapping) {
+		return (IImageService)Proxy.newProxyInstance(ImageTileCacheTest.class.getClassLoader(), new Class<?>[]{IImageService.class}, mapping);
+	}
+
+	private static Dataset createImage(int rows, int cols, long seed) {
+		final Random random = new Random(seed);
+		final int[]  data   = new int[rows*cols];
+		for (int i = 0; i < data.length; i++) data[i] = 1+random.nextInt(255);
+		return new IntegerDataset(data, rows, cols);
+	}
+
+	private static Dataset createMask(int rows, int cols, long seed) {
+		final Random    random = new Random(seed);
+		final boolean[] data   = new boolean[rows*cols];
+		for (int i = 0; i < data.length; i++) data[i] = random.nextInt(5) > 0;
+		return new BooleanDataset(data, rows, cols);
+	}
+
+	private static ImageServiceBean createBean(Dataset image, Dataset mask, ImageOrigin origin) {
+		final ImageServiceBean bean = new ImageServiceBean();
+		bean.setImage(image);
+		bean.setMask(mask);
+		bean.setOrigin(origin);
+		return bean;
+	}
+
+	@Test
+	public void testOrigins() {
+		final MappingService mapping = new MappingService();
+		final IImageService  service = createService(mapping);
+		final Dataset        image   = createImage(37, 53, 1);
+		final Dataset        mask    = createMask(37, 53, 2);
+		final Random         random  = new Random(3);
+
+		for (ImageOrigin origin : ImageOrigin.values()) {
+			final ImageServiceBean bean  = createBean(image, mask, origin);
+			final ImageData        whole = service.getImageData(bean);
+
+			final ImageTileCache cache = new ImageTileCache(8, 1000);
+			cache.setImage(image, mask, 1, origin);
+			assertEquals(origin.toString(), whole.width,  cache.getWidth());
+			assertEquals(origin.toString(), whole.height, cache.getHeight());
+			assertArrayEquals(origin.toString(), whole.data, cache.getPixels(service, bean, 0, 0, whole.width, whole.height));
+
+			for (int i = 0; i < 200; i++) {
+				final int x = random.nextInt(whole.width);
+				final int y = random.nextInt(whole.height);
+				final int w = 1+random.nextInt(whole.width-x);
+				final int h = 1+random.nextInt(whole.height-y);
+
+				final byte[] expected = new byte[w*h];
+				for (int row = 0; row < h; row++) System.arraycopy(whole.data, (y+row)*whole.bytesPerLine+x, expected, row*w, w);
+				assertArrayEquals(origin+" "+x+", "+y+", "+w+", "+h, expected, cache.getPixels(service, bean, x, y, w, h));
+			}
+		}
+	}
+
+	/**
+	 * Gets a pixel of the tile, and returns the number of tiles which were mapped.
+	 */
+	private static int getTile(ImageTileCache cache, IImageService service, MappingService mapping, ImageServiceBean bean, int tx, int ty) {
+		final int calls = mapping.calls;
+		cache.getPixels(service, bean, tx*8, ty*8, 1, 1);
+		return mapping.calls-calls;
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() {
+		final MappingService   mapping = new MappingService();
+		final IImageService    service = createService(mapping);
+		final Dataset          image   = createImage(16, 32, 4); // 4 by 2 tiles
+		final ImageServiceBean bean    = createBean(image, null, ImageOrigin.TOP_LEFT);
+		final ImageTileCache   cache   = new ImageTileCache(8, 3);
+		cache.setImage(image, null, 1, ImageOrigin.TOP_LEFT);
+
+		assertEquals(1, getTile(cache, service, mapping, bean, 0, 0));
+		assertEquals(1, getTile(cache, service, mapping, bean, 1, 0));
+		assertEquals(1, getTile(cache, service, mapping, bean, 2, 0));
+		assertEquals(0, getTile(cache, service, mapping, bean, 0, 0)); // Now 1, 2, 0 from least recently used
+
+		assertEquals(1, getTile(cache, service, mapping, bean, 3, 1)); // Evicts 1
+		assertEquals(0, getTile(cache, service, mapping, bean, 2, 0));
+		assertEquals(0, getTile(cache, service, mapping, bean, 0, 0));
+		assertEquals(1, getTile(cache, service, mapping, bean, 1, 0)); // Evicts the tile at 3, 1
+
+		// An area over four tiles maps only those not held
+		final int calls = mapping.calls;
+		cache.getPixels(service, bean, 4, 4, 8, 8);
+		assertEquals(2, mapping.calls-calls);
+	}
+
+	@Test
+	public void testTilesPerBin() {
+		final MappingService   mapping = new MappingService();
+		final IImageService    service = createService(mapping);
+		final Dataset          image   = createImage(16, 32, 5);
+		final Dataset          binned  = createImage(8, 16, 6);
+		final ImageServiceBean bean    = createBean(image, null, ImageOrigin.TOP_LEFT);
+		final ImageTileCache   cache   = new ImageTileCache(8, 10);
+
+		cache.setImage(image, null, 1, ImageOrigin.TOP_LEFT);
+		assertEquals(1, getTile(cache, service, mapping, bean, 0, 0));
+		cache.setImage(binned, null, 2, ImageOrigin.TOP_LEFT);
+		assertEquals(1, getTile(cache, service, mapping, bean, 0, 0));
+		cache.setImage(image, null, 1, ImageOrigin.TOP_LEFT);
+		assertEquals(0, getTile(cache, service, mapping, bean, 0, 0));
+
+		cache.clear();
+		assertEquals(1, getTile(cache, service, mapping, bean, 0, 0));
+	}
+
+	@Test
+	public void testTileNotMapped() {
+		final MappingService   mapping = new MappingService();
+		final IImageService    service = createService(mapping);
+		final Dataset          image   = createImage(16, 32, 7);
+		final ImageServiceBean bean    = createBean(image, null, ImageOrigin.TOP_LEFT);
+		final ImageTileCache   cache   = new ImageTileCache(8, 10);
+		cache.setImage(image, null, 1, ImageOrigin.TOP_LEFT);
+
+		mapping.failing = true;
+		assertNull(cache.getPixels(service, bean, 0, 0, 4, 4));
+		mapping.failing = false;
+		assertEquals(1, getTile(cache, service, mapping, bean, 0, 0)); // Not held
+	}
+}
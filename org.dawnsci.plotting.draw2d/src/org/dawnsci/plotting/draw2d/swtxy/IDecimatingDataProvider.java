@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.draw2d.swtxy;
+
+import org.eclipse.nebula.visualization.xygraph.dataprovider.IDataProvider;
+import org.eclipse.nebula.visualization.xygraph.linearscale.Range;
+
+/**
+ * A data provider which can reduce its samples to those needed to draw
+ * it as a line a given number of pixels wide. LineTrace paints from the
+ * reduced samples when its provider implements this.
+ */
+public interface IDecimatingDataProvider extends IDataProvider {
+
+	/**
+	 * The samples needed to draw the line exactly when the x range
+	 * is drawn across the given number of pixels.
+	 *
+	 * @param xRange the range of the x axis
+	 * @param pixels the width of the x axis in pixels
+	 * @param log true if the x axis is log scale
+	 * @return a provider of the reduced samples or null if all the samples should be drawn.
+	 */
+	IDataProvider getDecimated(Range xRange, int pixels, boolean log);
+}
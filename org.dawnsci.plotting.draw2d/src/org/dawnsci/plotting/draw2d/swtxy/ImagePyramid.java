@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.draw2d.swtxy;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dawnsci.analysis.api.downsample.DownsampleMode;
+import org.eclipse.dawnsci.analysis.dataset.function.Downsample;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The downsampled levels of an image (or of a mask) for each bin used by an ImageTrace.
+ *
+ * Each level is downsampled from the coarsest level already held which divides
+ * its bin, rather than from the full image. So once bin 2 exists, bin 4 reads
+ * a quarter of the pixels, bin 8 a sixteenth and so on. For the maximum, minimum
+ * and point modes this gives the same values as downsampling the full image; for
+ * the mean mode it differs only in the partial blocks at the edges.
+ *
+ * Levels are held with strong references up to a memory budget shared by all the
+ * pyramids, those of masks as well as images. When the levels of all pyramids
+ * together are over the budget, a pyramid adding a level evicts its own least
+ * recently used levels. The coarser levels can be computed in the background as
+ * soon as the image is set, so that zooming out is immediate.
+ */
+class ImagePyramid {
+
+	private static final Logger logger = LoggerFactory.getLogger(ImagePyramid.class);
+
+	/**
+	 * Bytes which the levels of all pyramids together may use, by default an eighth of the heap.
+	 */
+	private static final long BUDGET = Long.getLong("org.dawnsci.plotting.draw2d.image.pyramid.budget", Runtime.getRuntime().maxMemory()/8);
+
+	/**
+	 * Bytes held in the levels of all pyramids.
+	 */
+	private static final AtomicLong HELD = new AtomicLong();
+
+	private final Dataset               image;
+	private final DownsampleMode        mode;
+	private final long                  budget;
+	private final Map<Integer, Dataset> levels;
+	private long                        bytes; // Held in the levels of this pyramid
+	private Job                         job;
+	private volatile boolean            disposed;
+
+	ImagePyramid(Dataset image, DownsampleMode mode) {
+		this(image, mode, BUDGET);
+	}
+
+	/**
+	 *
+	 * @param image full resolution image or mask
+	 * @param mode
+	 * @param budget maximum number of bytes held in the levels of all pyramids
+	 */
+	ImagePyramid(Dataset image, DownsampleMode mode, long budget) {
+		this.image  = image;
+		this.mode   = mode;
+		this.budget = budget;
+		this.levels = new LinkedHashMap<Integer, Dataset>(11, 0.75f, true);
+	}
+
+	/**
+	 * @param image
+	 * @param mode
+	 * @return true if this pyramid was made from this exact image and mode.
+	 */
+	boolean isPyramidOf(Dataset image, DownsampleMode mode) {
+		return this.image==image && this.mode==mode;
+	}
+
+	/**
+	 * Get the image downsampled by bin, creating the level if it is not held.
+	 * May be called from any thread; the downsampling is not done while holding
+	 * the lock so the UI is not kept waiting by a level being built in the background.
+	 *
+	 * @param bin
+	 * @return the level, the image itself if bin is 1 or less.
+	 */
+	Dataset getLevel(int bin) {
+		if (bin<=1) return image;
+
+		final int     sourceBin;
+		final Dataset source;
+		synchronized (this) {
+			final Dataset level = levels.get(bin);
+			if (level!=null) {
+				logger.trace("Downsample bin used, "+bin);
+				return level;
+			}
+			sourceBin = getSourceBin(bin);
+			source    = sourceBin>1 ? levels.get(sourceBin) : image;
+		}
+
+		final int factor = bin/sourceBin;
+		final Downsample downSampler = new Downsample(mode, new int[]{factor,factor});
+		final Dataset level = DatasetUtils.convertToDataset(downSampler.value(source).get(0));
+		logger.trace("Downsample bin created, "+bin+" from bin "+sourceBin);
+
+		synchronized (this) {
+			if (disposed) return level;
+			final Dataset existing = levels.get(bin);
+			if (existing!=null) return existing; // Built at the same time by another thread.
+			levels.put(bin, level);
+			bytes += getBytes(level);
+			HELD.addAndGet(getBytes(level));
+			evict(bin);
+		}
+		return level;
+	}
+
+	/**
+	 * The coarsest level held whose bin divides bin exactly.
+	 */
+	private int getSourceBin(int bin) {
+		int ret = 1;
+		for (int held : levels.keySet()) { // Does not change the access order.
+			if (held<bin && held>ret && bin%held==0) ret = held;
+		}
+		return ret;
+	}
+
+	/**
+	 * Removes the least recently used levels of this pyramid, other than keep,
+	 * until the levels of all pyramids are within the budget.
+	 */
+	private void evict(int keep) {
+		final Iterator<Map.Entry<Integer, Dataset>> it = levels.entrySet().iterator();
+		while (HELD.get()>budget && it.hasNext()) {
+			final Map.Entry<Integer, Dataset> entry = it.next();
+			if (entry.getKey()==keep) continue;
+			bytes -= getBytes(entry.getValue());
+			HELD.addAndGet(-getBytes(entry.getValue()));
+			it.remove();
+			logger.trace("Downsample bin evicted, "+entry.getKey());
+		}
+	}
+
+	/**
+	 * @return bytes held in the levels of this pyramid
+	 */
+	synchronized long getHeld() {
+		return bytes;
+	}
+
+	/**
+	 * @return bytes held in the levels of all pyramids
+	 */
+	static long getHeldByAll() {
+		return HELD.get();
+	}
+
+	private static long getBytes(Dataset set) {
+		return (long)set.getSize()*set.getItemsize();
+	}
+
+	/**
+	 * Builds the levels 2, 4, 8... up to maxBin in a background job, each from the one before.
+	 * Any previous precomputation of this pyramid is cancelled.
+	 *
+	 * @param maxBin
+	 */
+	synchronized void precompute(final int maxBin) {
+		if (disposed || maxBin<2) return;
+		if (job!=null) job.cancel();
+
+		job = new Job("Downsample image") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					for (int bin = 2; bin <= maxBin; bin *= 2) {
+						if (monitor.isCanceled() || disposed) return Status.CANCEL_STATUS;
+						getLevel(bin);
+					}
+				} catch (Exception ne) {
+					logger.debug("Cannot precompute downsampled image", ne);
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		job.setPriority(Job.DECORATE);
+		job.setUser(false);
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	/**
+	 * Removes all the levels, they will be recreated when next needed.
+	 */
+	synchronized void clear() {
+		if (job!=null) job.cancel();
+		levels.clear();
+		HELD.addAndGet(-bytes);
+		bytes = 0;
+	}
+
+	/**
+	 * Removes all the levels and stops any levels being held or precomputed.
+	 */
+	synchronized void dispose() {
+		disposed = true;
+		clear();
+		job = null;
+	}
+}
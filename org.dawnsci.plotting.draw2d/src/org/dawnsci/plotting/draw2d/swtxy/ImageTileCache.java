@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.draw2d.swtxy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.plotting.api.histogram.IImageService;
+import org.eclipse.dawnsci.plotting.api.histogram.ImageServiceBean;
+import org.eclipse.dawnsci.plotting.api.histogram.ImageServiceBean.ImageOrigin;
+import org.eclipse.swt.graphics.ImageData;
+
+/**
+ * Colour mapped tiles of the downsampled image of an ImageTrace. Only the tiles
+ * which intersect the area being drawn are colour mapped, so that panning and
+ * zooming a large image costs in proportion to what is on screen rather than
+ * to the size of the image.
+ *
+ * Tiles are in the coordinates of the ImageData, i.e. after the image origin
+ * has been applied, and are kept per downsample bin. The least recently used
+ * tiles are evicted when there are more than MAX_TILES. The cache must be cleared
+ * whenever the colouring changes, for instance palette, min, max or mask.
+ */
+class ImageTileCache {
+
+	private static final int TILE_SIZE = 256;
+	private static final int MAX_TILES = 256; // 16Mb of 8-bit tiles
+
+	private final int                 tileSize;
+	private final Map<Long, ImageData> tiles;
+
+	private Dataset     image;
+	private Dataset     mask;
+	private int         bin;
+	private ImageOrigin origin;
+	private int         width, height;
+
+	ImageTileCache() {
+		this(TILE_SIZE, MAX_TILES);
+	}
+
+	/**
+	 * @param tileSize width and height of the tiles
+	 * @param maxTiles number of tiles held
+	 */
+	ImageTileCache(int tileSize, final int maxTiles) {
+		this.tileSize = tileSize;
+		this.tiles    = new LinkedHashMap<Long, ImageData>(maxTiles, 0.75f, true) {
+			private static final long serialVersionUID = 3949524541478436014L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, ImageData> eldest) {
+				return size() > maxTiles;
+			}
+		};
+	}
+
+	/**
+	 * Set the downsampled image which tiles are created from.
+	 *
+	 * @param image downsampled image
+	 * @param mask downsampled mask, may be null
+	 * @param bin the downsample bin, tiles are cached per bin
+	 * @param origin
+	 */
+	void setImage(Dataset image, Dataset mask, int bin, ImageOrigin origin) {
+		if (origin==null) origin = ImageOrigin.TOP_LEFT;
+		this.image  = image;
+		this.mask   = mask;
+		this.bin    = bin;
+		this.origin = origin;
+
+		final int[] shape = image.getShape();
+		if (origin==ImageOrigin.TOP_LEFT || origin==ImageOrigin.BOTTOM_RIGHT) {
+			width  = shape[1];
+			height = shape[0];
+		} else {
+			width  = shape[0];
+			height = shape[1];
+		}
+	}
+
+	boolean isImageSet() {
+		return image!=null;
+	}
+
+	/**
+	 * @return width of the ImageData of the whole downsampled image.
+	 */
+	int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return height of the ImageData of the whole downsampled image.
+	 */
+	int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Removes all the tiles, for instance because the palette has changed.
+	 */
+	void clear() {
+		tiles.clear();
+	}
+
+	void dispose() {
+		tiles.clear();
+		image = null;
+		mask  = null;
+	}
+
+	/**
+	 * Get the 8-bit pixels of an area of the ImageData of the downsampled image,
+	 * colour mapping any tiles of it which are not cached.
+	 *
+	 * @param service
+	 * @param bean used to colour map the tiles, must have its min and max set.
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @return pixels w*h in size or null if a tile could not be mapped.
+	 */
+	byte[] getPixels(IImageService service, ImageServiceBean bean, int x, int y, int w, int h) {
+
+		final byte[] pixels = new byte[w*h];
+		for (int ty = y/tileSize; ty <= (y+h-1)/tileSize; ++ty) {
+			for (int tx = x/tileSize; tx <= (x+w-1)/tileSize; ++tx) {
+
+				final ImageData tile = getTile(service, bean, tx, ty);
+				if (tile==null) return null;
+
+				final int tileX = tx*tileSize;
+				final int tileY = ty*tileSize;
+				final int x0 = Math.max(x, tileX);
+				final int x1 = Math.min(x+w, tileX+tile.width);
+				final int y0 = Math.max(y, tileY);
+				final int y1 = Math.min(y+h, tileY+tile.height);
+				for (int row = y0; row < y1; ++row) {
+					System.arraycopy(tile.data, (row-tileY)*tile.bytesPerLine + (x0-tileX), pixels, (row-y)*w + (x0-x), x1-x0);
+				}
+			}
+		}
+		return pixels;
+	}
+
+	private ImageData getTile(IImageService service, ImageServiceBean bean, int tx, int ty) {
+
+		final Long key = ((long)bin << 40) | ((long)tx << 20) | ty;
+		ImageData tile = tiles.get(key);
+		if (tile!=null) return tile;
+
+		final int x0 = tx*tileSize;
+		final int y0 = ty*tileSize;
+		final int x1 = Math.min(x0+tileSize, width);
+		final int y1 = Math.min(y0+tileSize, height);
+
+		// The part of the image which the tile is drawn from, as the origin flips it.
+		final int rows = image.getShape()[0];
+		final int cols = image.getShape()[1];
+		final int[] start, stop;
+		switch(origin) {
+		case BOTTOM_LEFT:
+			start = new int[]{x0, cols-y1};
+			stop  = new int[]{x1, cols-y0};
+			break;
+		case BOTTOM_RIGHT:
+			start = new int[]{rows-y1, cols-x1};
+			stop  = new int[]{rows-y0, cols-x0};
+			break;
+		case TOP_RIGHT:
+			start = new int[]{rows-x1, y0};
+			stop  = new int[]{rows-x0, y1};
+			break;
+		case TOP_LEFT:
+		default:
+			start = new int[]{y0, x0};
+			stop  = new int[]{y1, x1};
+			break;
+		}
+
+		final ImageServiceBean tileBean = bean.clone();
+		tileBean.setImage(image.getSlice(start, stop, null));
+		tileBean.setImageValue(null);
+		tileBean.setMask(mask!=null ? mask.getSlice(start, stop, null) : null);
+		tileBean.setPalette(bean.getPalette()); // The cut colours are set in the palette used to draw.
+
+		tile = service.getImageData(tileBean);
+		if (tile!=null) tiles.put(key, tile);
+		return tile;
+	}
+}
@@ -8,14 +8,10 @@
  */
 package org.dawnsci.plotting.draw2d.swtxy;
 
-import java.lang.ref.Reference;
-import java.lang.ref.SoftReference;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 
 import org.dawb.common.ui.macro.TraceMacroEvent;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -89,6 +85,18 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 	
 	private static final int MINIMUM_ZOOM_SIZE  = 4;
 	private static final int MINIMUM_LABEL_SIZE = 10;
+	
+	/**
+	 * Images with at least this many pixels are colour mapped in tiles, 
+	 * only where they are visible, see ImageTileCache.
+	 */
+	private static final int TILE_THRESHOLD = 2048*2048;
+
+	/**
+	 * Images with at least this many pixels have their coarser downsampled
+	 * levels built in the background when the data is set, see ImagePyramid.
+	 */
+	private static final int PYRAMID_THRESHOLD = 1024*1024;
 
 	private String           name;
 	private String           dataName;
@@ -269,6 +277,33 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 	 * and the downsampled image data which it used.
 	 */
 	private ScaledImageData scaledData = new ScaledImageData();
+	
+	/**
+	 * Used instead of the downsampled image data of scaledData for large images.
+	 */
+	private ImageTileCache tileCache;
+	
+	private ImageTileCache getTileCache() {
+		if (tileCache==null) tileCache = new ImageTileCache();
+		return tileCache;
+	}
+	
+	/**
+	 * Large 8-bit images are colour mapped in tiles, only those tiles which 
+	 * are visible are mapped and they are kept while panning and zooming. 
+	 * Set org.dawnsci.plotting.draw2d.no.image.tiles to always map the whole image.
+	 * 
+	 * @return true if the image should be drawn from tiles.
+	 */
+	private boolean isTiled() {
+		if (Boolean.getBoolean("org.dawnsci.plotting.draw2d.no.image.tiles")) return false;
+		if (image==null || globalRange!=null)                     return false;
+		if (image instanceof RGBDataset || image.isComplex())     return false;
+		if (imageServiceBean==null)                               return false;
+		if (imageServiceBean.getFunctionObject()!=null)           return false; // Not 8-bit
+		if (imageServiceBean.isLogColorScale())                   return false; // Log offset is per image
+		return image.getSize() >= TILE_THRESHOLD;
+	}
 
 	/**
 	 * number of entries in intensity scale
@@ -289,8 +324,9 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 			
 		if (!imageCreationAllowed) return false;
 		
+		final boolean tiled = isTiled();
 		boolean requireImageGeneration = scaledData==null || 
-				                         scaledData.getDownsampledImageData() == null ||
+				                         (tiled ? !getTileCache().isImageSet() : scaledData.getDownsampledImageData() == null) ||
 				                         rescaleType==ImageScaleType.FORCE_REIMAGE || 
 				                         rescaleType==ImageScaleType.REHISTOGRAM; // We know that it is needed
 		
@@ -316,12 +352,14 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 
 		// 
 		if (requireImageGeneration)  {
+			// Tiles are kept per bin so they are only lost if the colouring changes.
+			if (tiled && rescaleType.ordinal() >= ImageScaleType.FORCE_REIMAGE.ordinal()) getTileCache().clear();
 			boolean ok = createDownsampledImageData(rescaleType, monitor);
 			if (!ok) return false;
 		}
 		
 		if (monitor!=null && monitor.isCanceled()) return false;
-		if (scaledData.getDownsampledImageData() == null) return false;
+		if (!tiled && scaledData.getDownsampledImageData() == null) return false;
 
 		try {
 			
@@ -331,7 +369,7 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 			if (scaledData != null) scaledData.disposeImage();
 			
 			ImageData imageData = scaledData.getDownsampledImageData();
-			if (imageData!=null && imageData.width==bounds.width && imageData.height==bounds.height) { 
+			if (!tiled && imageData!=null && imageData.width==bounds.width && imageData.height==bounds.height) { 
 				// No slice, faster
 				if (monitor!=null && monitor.isCanceled()) return false;
 				Image scaledImage  = new Image(Display.getDefault(), imageData);
@@ -363,8 +401,8 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 				double minY = yRange.getLower()/currentDownSampleBin;
 				double maxX = xRange.getUpper()/currentDownSampleBin;
 				double maxY = yRange.getUpper()/currentDownSampleBin;
-				int xSize = imageData.width;
-				int ySize = imageData.height;
+				int xSize = tiled ? getTileCache().getWidth()  : imageData.width;
+				int ySize = tiled ? getTileCache().getHeight() : imageData.height;
 				
 				// check as getLower and getUpper don't work as expected
 				if(maxX < minX){
@@ -397,11 +435,11 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 				
 				// Force a minimum size on the system
 				if (fullWidth <= MINIMUM_ZOOM_SIZE) {
-					if (fullWidth > imageData.width) fullWidth = MINIMUM_ZOOM_SIZE;
+					if (fullWidth > xSize) fullWidth = MINIMUM_ZOOM_SIZE;
 					isMaximumZoom = true;
 				}
 				if (fullHeight <= MINIMUM_ZOOM_SIZE) {
-					if (fullHeight > imageData.height) fullHeight = MINIMUM_ZOOM_SIZE;
+					if (fullHeight > ySize) fullHeight = MINIMUM_ZOOM_SIZE;
 					isMaximumZoom = true;
 				}
 				if (fullWidth <= MINIMUM_LABEL_SIZE && fullHeight <= MINIMUM_LABEL_SIZE) {
@@ -448,7 +486,12 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 				}
 				// Slice the data.
 				// Pixel slice on downsampled data = fast!
-				if (imageData.depth <= 8) {
+				if (tiled) {
+					// Only the tiles in the slice are colour mapped, if they are not already.
+					final byte[] pixels = getTileCache().getPixels(service, imageServiceBean, xPix, yPix, fullWidth, fullHeight);
+					if (pixels==null) return false;
+					data = new ImageData(fullWidth, fullHeight, 8, getPaletteData(), 1, pixels);
+				} else if (imageData.depth <= 8) {
 					// NOTE Assumes 8-bit images
 					final int size   = fullWidth*fullHeight;
 					final byte[] pixels = new byte[size];
@@ -850,8 +893,19 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 			}
 							
 			this.imageServiceBean.setAlpha(getAlpha());
-			ImageData imageData   = service.getImageData(imageServiceBean);
-			scaledData.setDownsampledImageData(imageData);
+			if (isTiled()) {
+				// The tiles are colour mapped when they are drawn, with the same min and max.
+				if (imageServiceBean.getMin()==null || imageServiceBean.getMax()==null) {
+					final double[] fa = service.getFastStatistics(imageServiceBean);
+					if (imageServiceBean.getMin()==null) imageServiceBean.setMin(fa[0]);
+					if (imageServiceBean.getMax()==null) imageServiceBean.setMax(fa[1]);
+				}
+				getTileCache().setImage((Dataset)reducedFullImage, (Dataset)imageServiceBean.getMask(), currentDownSampleBin, getImageOrigin());
+				scaledData.setDownsampledImageData(null);
+			} else {
+				ImageData imageData   = service.getImageData(imageServiceBean);
+				scaledData.setDownsampledImageData(imageData);
+			}
 			
 			try {
 				ImageServiceBean intensityScaleBean = imageServiceBean.clone();
@@ -887,8 +941,8 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 				(int) Math.ceil(xr.getUpper()), (int) Math.ceil(yr.getUpper())};
 	}
 
-	private Map<Integer, Reference<Object>> mipMap;
-	private Map<Integer, Reference<Object>> maskMap;
+	private ImagePyramid imagePyramid;
+	private ImagePyramid maskPyramid;
 	private Collection<IDownSampleListener> downsampleListeners;
 	
 	private IDataset getDownsampled(Dataset image) {
@@ -897,7 +951,7 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
  	}
 	
 	/**
-	 * Uses caches based on bin, not DownsampleMode.
+	 * Uses the image pyramid or the mask pyramid depending on whether image is the mask.
 	 * @param image
 	 * @param mode
 	 * @return
@@ -916,34 +970,7 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 		        logger.trace("No downsample bin (or bin=1)");
 				return image; // nothing to downsample
 			}
-			
-			if (image.getDtype()!=Dataset.BOOL) {
-				if (mipMap!=null && mipMap.containsKey(bin) && mipMap.get(bin).get()!=null) {
-			        logger.trace("Downsample bin used, "+bin);
-					return (Dataset)mipMap.get(bin).get();
-				}
-			} else {
-				if (maskMap!=null && maskMap.containsKey(bin) && maskMap.get(bin).get()!=null) {
-			        logger.trace("Downsample mask bin used, "+bin);
-					return (Dataset)maskMap.get(bin).get();
-				}
-			}
-			
-			final Downsample downSampler = new Downsample(mode, new int[]{bin,bin});
-			List<? extends IDataset>   sets = downSampler.value(image);
-			final IDataset set = sets.get(0);
-			
-			if (image.getDtype()!=Dataset.BOOL) {
-				if (mipMap==null) mipMap = new HashMap<Integer,Reference<Object>>(3);
-				mipMap.put(bin, new SoftReference<Object>(set));
-		        logger.trace("Downsample bin created, "+bin);
-			} else {
-				if (maskMap==null) maskMap = new HashMap<Integer,Reference<Object>>(3);
-				maskMap.put(bin, new SoftReference<Object>(set));
-		        logger.trace("Downsample mask bin created, "+bin);
-			}
-	      
-			return set;
+			return getPyramid(image, mode).getLevel(bin);
 			
         } finally {
         	if (newBin) { // We fire a downsample event.
@@ -952,6 +979,46 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
         }
 	}
 	
+	/**
+	 * The pyramid of image, a new one if image or mode have changed.
+	 * @param image
+	 * @param mode
+	 * @return
+	 */
+	private ImagePyramid getPyramid(Dataset image, DownsampleMode mode) {
+		if (image==fullMask) {
+			if (maskPyramid==null || !maskPyramid.isPyramidOf(image, mode)) {
+				if (maskPyramid!=null) maskPyramid.dispose();
+				maskPyramid = new ImagePyramid(image, mode);
+			}
+			return maskPyramid;
+		} 
+		if (imagePyramid==null || !imagePyramid.isPyramidOf(image, mode)) {
+			if (imagePyramid!=null) imagePyramid.dispose();
+			imagePyramid = new ImagePyramid(image, mode);
+		}
+		return imagePyramid;
+	}
+	
+	/**
+	 * Starts building the coarser levels of a large image or mask in the background.
+	 * Set org.dawnsci.plotting.draw2d.no.image.pyramid.job to build levels only when drawn.
+	 * @param image
+	 * @param mode
+	 */
+	private void precomputePyramid(Dataset image, DownsampleMode mode) {
+		if (Boolean.getBoolean("org.dawnsci.plotting.draw2d.no.image.pyramid.job")) return;
+		if (image==null || image.getRank()!=2 || image.getSize() < PYRAMID_THRESHOLD) return;
+		getPyramid(image, mode).precompute(getMaxDownsampleBin(image));
+	}
+	
+	private void disposePyramids() {
+		if (imagePyramid!=null) imagePyramid.dispose();
+		if (maskPyramid!=null)  maskPyramid.dispose();
+		imagePyramid = null;
+		maskPyramid  = null;
+	}
+	
 	protected void fireDownsampleListeners(DownSampleEvent evt) {
 		if (downsampleListeners==null) return;
 		for (IDownSampleListener l : downsampleListeners) l.downSampleChanged(evt);
@@ -1022,12 +1089,21 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 			}
 		}
 		// We make sure that the bin is no smaller than 1/64 of the shape
-		int dataSide  = Math.max(image.getShape()[0], image.getShape()[1]);
-		double sixtyF = dataSide/64;
-		if (ret>sixtyF) ret = (int)sixtyF; // No need to round, int portion accurate enough
+		int sixtyF = getMaxDownsampleBin(image);
+		if (ret>sixtyF) ret = sixtyF;
 		if (ret<1)      ret = 1;
 		return ret;
 	}
+	
+	/**
+	 * The largest bin getDownsampleBin() will return for an image, 1/64 of its longest side.
+	 * @param image
+	 * @return
+	 */
+	private static int getMaxDownsampleBin(Dataset image) {
+		int dataSide  = Math.max(image.getShape()[0], image.getShape()[1]);
+		return dataSide/64; // No need to round, int portion accurate enough
+	}
 
 	private double getSpan(Axis axis) {
 		final Range range = axis.getRange();
@@ -1084,14 +1160,14 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 	}
 	
 	public void sleep() {
-		if (mipMap!=null)           mipMap.clear();
-		if (maskMap!=null)          maskMap.clear();
+		disposePyramids();
+		if (tileCache!=null)        tileCache.dispose();
 		if (scaledData!=null)       scaledData.disposeImage();
 	}
 	public void remove() {
 		
-		if (mipMap!=null)           mipMap.clear();
-		if (maskMap!=null)          maskMap.clear();
+		disposePyramids();
+		if (tileCache!=null)        tileCache.dispose();
 		if (scaledData!=null)       scaledData.disposeImage();
 		
 		if (paletteListeners!=null) paletteListeners.clear();
@@ -1284,7 +1360,6 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 	}
 
 	public void setImageOrigin(ImageOrigin imageOrigin) {
-		if (this.mipMap!=null) mipMap.clear();
 		imageServiceBean.setOrigin(imageOrigin);
 		createAxisBounds();
 		performAutoscale();
@@ -1411,7 +1486,10 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 		// what is plotted.
 		if (image==null) return false;
 		this.image = (Dataset)im;
-		if (this.mipMap!=null)  mipMap.clear();
+		if (imagePyramid!=null) imagePyramid.dispose();
+		imagePyramid = null;
+		precomputePyramid(image, getDownsampleTypeDiamond());
+		if (tileCache!=null)    tileCache.dispose();
 		if (scaledData!=null) scaledData.disposeImage();
 		
 		if (imageServiceBean==null) imageServiceBean = new ImageServiceBean();
@@ -1613,8 +1691,7 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 	public void setDownsampleType(DownsampleType type) {
 		
 		DownsampleType orig = this.downsampleType;
-		if (this.mipMap!=null)  mipMap.clear();
-		if (this.maskMap!=null) maskMap.clear();
+		disposePyramids();
 		this.downsampleType = type;
 //		createScaledImage(ImageScaleType.FORCE_REIMAGE, null);
 		updateImageDirty(ImageScaleType.FORCE_REIMAGE);
@@ -1829,8 +1906,11 @@ public class ImageTrace extends Figure implements IImageTrace, IAxisListener, IT
 
 			mask = maskDataset;
 		}
-		if (maskMap!=null) maskMap.clear();
+		if (maskPyramid!=null) maskPyramid.dispose();
+		maskPyramid = null;
 		fullMask = (Dataset)mask;
+		// For masks, we preserve the min (the falses) to avoid losing fine lines
+		precomputePyramid(fullMask, DownsampleMode.MINIMUM);
 		remask();
 	}
 
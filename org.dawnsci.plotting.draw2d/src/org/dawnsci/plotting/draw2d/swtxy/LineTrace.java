@@ -13,6 +13,7 @@ import org.eclipse.dawnsci.plotting.api.preferences.PlottingConstants;
 import org.eclipse.dawnsci.plotting.api.trace.ITrace;
 import org.eclipse.dawnsci.plotting.api.trace.ITraceContainer;
 import org.eclipse.draw2d.ColorConstants;
+import org.eclipse.draw2d.Graphics;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.nebula.visualization.xygraph.dataprovider.IDataProvider;
 import org.eclipse.nebula.visualization.xygraph.figures.Axis;
@@ -22,6 +23,9 @@ import org.eclipse.ui.preferences.ScopedPreferenceStore;
 /**
  * Trace with drawPolyline(...) for faster rendering.
  * 
+ * Lines whose provider is an IDecimatingDataProvider are painted from the
+ * samples needed at the width of the plot, rather than from every sample.
+ * 
  * @author Matthew Gerring
  *
  */
@@ -48,6 +52,39 @@ public class LineTrace extends Trace implements ITraceContainer {
 		return new ScopedPreferenceStore(InstanceScope.INSTANCE, "org.dawnsci.plotting");
 	}
 
+	@Override
+	protected void paintFigure(Graphics graphics) {
+		
+		final IDataProvider full      = traceDataProvider;
+		final IDataProvider decimated = getDecimatedDataProvider();
+		if (decimated==null) {
+			super.paintFigure(graphics);
+			return;
+		}
+		try {
+			traceDataProvider = decimated;
+			super.paintFigure(graphics);
+		} finally {
+			traceDataProvider = full;
+		}
+	}
+	
+	/**
+	 * Only plain lines are decimated, points, areas, bars and error bars are drawn for every sample.
+	 * Set org.dawnsci.plotting.draw2d.no.line.decimation to always draw every sample.
+	 * 
+	 * @return the decimated samples or null to draw every sample.
+	 */
+	private IDataProvider getDecimatedDataProvider() {
+		if (Boolean.getBoolean("org.dawnsci.plotting.draw2d.no.line.decimation")) return null;
+		if (!(traceDataProvider instanceof IDecimatingDataProvider)) return null;
+		if (xAxis==null || getBounds().width<1)                  return null;
+		if (getTraceType()!=TraceType.SOLID_LINE && getTraceType()!=TraceType.DASH_LINE) return null;
+		if (getPointStyle()!=PointStyle.NONE || isErrorBarEnabled())                     return null;
+		
+		return ((IDecimatingDataProvider)traceDataProvider).getDecimated(xAxis.getRange(), getBounds().width, xAxis.isLogScaleEnabled());
+	}
+
 	public void dispose() {
 		
 		if (getParent()!=null) getParent().remove(this);
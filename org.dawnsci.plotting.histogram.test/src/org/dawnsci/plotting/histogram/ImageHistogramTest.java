@@ -0,0 +1,64 @@
+package org.dawnsci.plotting.histogram;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.IntegerDataset;
+import org.junit.Test;
+
+public class ImageHistogramTest {
+
+	@Test
+	public void testIntegerImageIsCountedByValue() {
+		Random random = new Random(1);
+		int[] data = new int[200*300];
+		for (int i = 0; i < data.length; i++) data[i] = 100 + random.nextInt(500);
+		ImageHistogram hist = ImageHistogram.create(new IntegerDataset(data, 200, 300), null);
+
+		assertEquals(100, hist.getMin(), 0);
+		assertEquals(599, hist.getMax(), 0);
+		assertEquals(499, hist.getBinCount(2048));
+		assertEquals(256, hist.getBinCount(256));
+
+		// Bins of 10 between 200 and 400, values outside are not counted
+		Dataset[] h = hist.getHistogram(20, 200, 400);
+		long[] expected = new long[20];
+		for (int v : data) {
+			if (v < 200 || v > 400) continue;
+			expected[Math.min(19, (int)((v - 200) / 200.0 * 20))]++;
+		}
+		for (int i = 0; i < 20; i++) {
+			assertEquals(200 + i*10, h[1].getDouble(i), 1e-10);
+			assertEquals(Math.log10(expected[i] + 1), h[0].getDouble(i), 1e-10);
+		}
+	}
+
+	@Test
+	public void testFloatImageIgnoresInvalidNumbers() {
+		Random random = new Random(2);
+		double[] data = new double[100*100];
+		for (int i = 0; i < data.length; i++) data[i] = random.nextGaussian();
+		data[0] = Double.NaN;
+		data[1] = Double.POSITIVE_INFINITY;
+		ImageHistogram hist = ImageHistogram.create(new DoubleDataset(data, 100, 100), null);
+
+		assertEquals(2, hist.getInvalidCount());
+		assertEquals(2048, hist.getBinCount(2048));
+
+		Dataset[] h = hist.getHistogram(64, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+		assertEquals(hist.getMin(), h[1].getDouble(0), 0);
+		double total = 0;
+		for (int i = 0; i < 64; i++) total += Math.pow(10, h[0].getDouble(i)) - 1;
+		assertEquals(data.length - 2, total, 1e-6);
+	}
+
+	@Test
+	public void testSingleValue() {
+		ImageHistogram hist = ImageHistogram.create(new DoubleDataset(new double[] { 3, 3, 3, 3 }, 2, 2), null);
+		Dataset[] h = hist.getHistogram(8, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+		assertEquals(Math.log10(5), h[0].getDouble(0), 1e-10);
+	}
+}
@@ -10,19 +10,17 @@ package org.dawnsci.plotting.histogram;
 
 import java.util.Arrays;
 import java.util.EventObject;
-import java.util.List;
 
 import org.dawnsci.plotting.histogram.functions.ColourSchemeContribution;
 import org.dawnsci.plotting.histogram.functions.TransferFunctionContribution;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.preferences.InstanceScope;
-import org.eclipse.dawnsci.analysis.api.dataset.Slice;
 import org.eclipse.dawnsci.analysis.dataset.impl.AbstractDataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
-import org.eclipse.dawnsci.analysis.dataset.impl.Maths;
 import org.eclipse.dawnsci.analysis.dataset.roi.RectangularROI;
 import org.eclipse.dawnsci.plotting.api.IPlottingSystem;
 import org.eclipse.dawnsci.plotting.api.PlotType;
@@ -83,8 +81,6 @@ import org.eclipse.ui.progress.UIJob;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import uk.ac.diamond.scisoft.analysis.dataset.function.Histogram;
-
 public class HistogramToolPage extends AbstractToolPage {
 
 	private static final String ZINGER_LABEL = "Zinger Min value cutoff";
@@ -123,6 +119,9 @@ public class HistogramToolPage extends AbstractToolPage {
 
 	private boolean histogramDirty = true;
 
+	private ImageHistogram histogram; // Of imageDataset, once it has been read
+	private HistogramJob   histogramJob = new HistogramJob();
+
 	// GUI
 	private Composite composite;
 	private ScrolledComposite sc;
@@ -958,18 +957,7 @@ public class HistogramToolPage extends AbstractToolPage {
 
 			unhide();
 
-			if (imageDataset.containsInvalidNumbers() ) {
-				logger.debug("imageDataset contains invalid numbers");
-			}
-
 			logger.trace("Image Data is of type :" + imageDataset.getDtype());
-			if (imageDataset.hasFloatingPointElements()) {
-				numBins = MAX_BINS;
-			} else {
-				// set the number of points to the range
-				numBins = (Integer) imageDataset.max(true).intValue() - imageDataset.min(true).intValue();
-				if (numBins > MAX_BINS) numBins = MAX_BINS;
-			}
 
 			ImageServiceBean bean = image.getImageServiceBean();
 			switch (mode) {
@@ -997,7 +985,7 @@ public class HistogramToolPage extends AbstractToolPage {
 			// Update the paletteData
 			if (paletteData==null) paletteData = image.getPaletteData();
 
-			// calculate the histogram
+			// calculate the histogram, or read it in the background if this is a new image
 			generateHistogram();
 
 			// update all based on slider positions
@@ -1064,26 +1052,34 @@ public class HistogramToolPage extends AbstractToolPage {
 
 
 	/**
-	 * This will take an image, and pull out all the parameters required to calculate the histogram
+	 * This will take the histogram of the image, and make the one to plot from it over the range.
+	 * The pixels are not read unless the image is new, when they are read in the background and
+	 * the tool is updated again afterwards.
 	 */
 	private void generateHistogram() {
-		// calculate the histogram for the whole image
-		double rMax = rangeMax;
-		double rMin = rangeMin;
-		if (Double.isInfinite(rMax)) rMax = imageDataset.max(true).doubleValue();
-		if (Double.isInfinite(rMin)) rMin = imageDataset.min(true).doubleValue();
-
-		Histogram hist = new Histogram(numBins, rMin, rMax, true);
-		List<? extends Dataset> histogram_values = hist.value(imageDataset);
-		histogramX = histogram_values.get(1).getSliceView(new Slice(numBins));
-		histogramX.setName("Intensity");
-		histogramY = histogram_values.get(0);
-		histogramY = Maths.log10((Maths.add(histogramY, 1.0)));
-		histogramY.setName("Histogram");
+		ImageHistogram hist = getHistogram();
+		if (hist == null) return;
+
+		// one bin per integer for integer images
+		numBins = hist.getBinCount(MAX_BINS);
+
+		Dataset[] histogram_values = hist.getHistogram(numBins, rangeMin, rangeMax);
+		histogramY = histogram_values[0];
+		histogramX = histogram_values[1];
 
 		histogramDirty = true;
 	}
 
+	/**
+	 * @return the histogram of the image, or null if it is being read.
+	 */
+	private ImageHistogram getHistogram() {
+		if (imageDataset == null) return null;
+		if (histogram != null && histogram.getImage() == imageDataset) return histogram;
+		histogramJob.read(imageDataset);
+		return null;
+	}
+
 
 	/**
 	 * Update all the gui element ranges based on the internal values for them
@@ -1099,8 +1095,12 @@ public class HistogramToolPage extends AbstractToolPage {
 
 		imageDataset = getImageData(image);
 
-		if (Double.isInfinite(scaleMaxTemp)) scaleMaxTemp = imageDataset.max(true).doubleValue();
-		if (Double.isInfinite(scaleMinTemp)) scaleMinTemp = imageDataset.min(true).doubleValue();
+		if (Double.isInfinite(scaleMaxTemp) || Double.isInfinite(scaleMinTemp)) {
+			ImageHistogram hist = getHistogram();
+			if (hist == null) return; // Updated when it has been read
+			if (Double.isInfinite(scaleMaxTemp)) scaleMaxTemp = hist.getMax();
+			if (Double.isInfinite(scaleMinTemp)) scaleMinTemp = hist.getMin();
+		}
 
 		if (mode == FIXED) {
 			if (scaleMaxTemp > scaleMax) scaleMax = scaleMaxTemp;
@@ -1281,6 +1281,59 @@ public class HistogramToolPage extends AbstractToolPage {
 		// Ensures that any listeners added here are killed off too.
         histogramPlot.dispose();
 		histoTrace = null;
+		histogramJob.cancel();
+		histogram = null;
+	}
+
+	/**
+	 * Reads the histogram of an image away from the UI thread, then updates the tool with it.
+	 */
+	private class HistogramJob extends Job {
+
+		private Dataset image;
+
+		HistogramJob() {
+			super("Histogram");
+			setSystem(true);
+			setPriority(Job.SHORT);
+		}
+
+		/**
+		 * Reads the image, unless it is already being read.
+		 * @param image
+		 */
+		synchronized void read(Dataset image) {
+			if (this.image == image && getState() != Job.NONE) return;
+			this.image = image;
+			cancel();
+			schedule();
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			final Dataset image;
+			synchronized (this) {
+				image = this.image;
+			}
+			final ImageHistogram hist = ImageHistogram.create(image, monitor);
+			if (hist == null) return Status.CANCEL_STATUS;
+			if (hist.getInvalidCount() > 0) {
+				logger.debug("imageDataset contains invalid numbers");
+			}
+
+			final Control control = getControl();
+			if (control == null || control.isDisposed()) return Status.CANCEL_STATUS;
+			control.getDisplay().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					if (isDisposed() || image != imageDataset) return;
+					histogram = hist;
+					generateHistogram();
+					updateHistogramToolElements(null, false, true);
+				}
+			});
+			return Status.OK_STATUS;
+		}
 	}
 
 	@Override
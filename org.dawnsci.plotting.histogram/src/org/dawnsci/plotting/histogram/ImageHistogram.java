@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.histogram;
+
+import java.lang.reflect.Array;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+
+/**
+ * The histogram of an image in fine bins, made once from the pixels, from which
+ * the histogram of any number of bins over any range is made without reading
+ * the pixels again.
+ *
+ * The image is read twice, once for its minimum and maximum and once to count
+ * the bins, which can take a while for a large image so should be done away from
+ * the UI thread. An image of integers whose range fits into BASE_BINS is counted
+ * by value, so a histogram made from it is the same as one of the pixels. Otherwise
+ * there are BASE_BINS bins from the minimum to the maximum, and a histogram made
+ * from it puts each in the bin which its centre falls in.
+ */
+class ImageHistogram {
+
+	private static final int BASE_BINS = Integer.getInteger("org.dawnsci.plotting.histogram.base.bins", 65536);
+	private static final int CHUNK     = 65536; // Pixels read at a time, between checks of the monitor
+
+	private final Dataset image;
+	private final boolean integer;
+	private final boolean exact;    // A bin per integer value
+	private final double  min;      // Of the finite values, NaN if there are none
+	private final double  max;
+	private final double  width;    // Of a bin
+	private final long[]  counts;
+	private final long    invalid;  // NaNs and infinities
+
+	private ImageHistogram(Dataset image, double min, double max, double width, long[] counts, long invalid) {
+		this.image   = image;
+		this.integer = !image.hasFloatingPointElements();
+		this.exact   = integer && width == 1 && counts.length == max - min + 1;
+		this.min     = min;
+		this.max     = max;
+		this.width   = width;
+		this.counts  = counts;
+		this.invalid = invalid;
+	}
+
+	/**
+	 * Reads the image, which can take a while.
+	 *
+	 * @param image
+	 * @param monitor may be null
+	 * @return the histogram, or null if the monitor was cancelled
+	 */
+	static ImageHistogram create(final Dataset image, final IProgressMonitor monitor) {
+
+		Dataset data = image;
+		final int isize = data.getElementsPerItem();
+		if (data.getBuffer() == null || Array.getLength(data.getBuffer()) != data.getSize()*isize) {
+			data = data.getSlice(); // A view of part of a bigger buffer
+		}
+		final Object buffer = data.getBuffer();
+		final int    size   = data.getSize();
+		final double[] values = new double[Math.min(CHUNK, Math.max(1, size))];
+
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		long invalid = 0;
+		for (int start = 0; start < size; start += CHUNK) {
+			if (monitor != null && monitor.isCanceled()) return null;
+			final int n = read(data, buffer, isize, start, values);
+			for (int i = 0; i < n; i++) {
+				final double v = values[i];
+				if (Double.isNaN(v) || Double.isInfinite(v)) {
+					invalid++;
+					continue;
+				}
+				if (v < min) min = v;
+				if (v > max) max = v;
+			}
+		}
+		if (invalid == size) {
+			return new ImageHistogram(image, Double.NaN, Double.NaN, 1, new long[1], invalid);
+		}
+
+		final int    bins;
+		final double width;
+		if (!data.hasFloatingPointElements() && max - min < BASE_BINS) {
+			bins  = (int)(max - min) + 1;
+			width = 1;
+		} else if (max > min) {
+			bins  = BASE_BINS;
+			width = (max - min) / BASE_BINS;
+		} else {
+			bins  = 1;
+			width = 1;
+		}
+
+		final long[] counts = new long[bins];
+		for (int start = 0; start < size; start += CHUNK) {
+			if (monitor != null && monitor.isCanceled()) return null;
+			final int n = read(data, buffer, isize, start, values);
+			for (int i = 0; i < n; i++) {
+				final double v = values[i];
+				if (Double.isNaN(v) || Double.isInfinite(v)) continue;
+				int bin = (int)((v - min) / width);
+				if (bin >= bins) bin = bins - 1;
+				counts[bin]++;
+			}
+		}
+		return new ImageHistogram(image, min, max, width, counts, invalid);
+	}
+
+	/**
+	 * @return the number of pixels read into values, from start
+	 */
+	private static int read(Dataset data, Object buffer, int isize, int start, double[] values) {
+		final int n = Math.min(values.length, data.getSize() - start);
+		if (buffer instanceof double[] && isize == 1) {
+			System.arraycopy(buffer, start, values, 0, n);
+		} else if (buffer instanceof float[] && isize == 1) {
+			final float[] b = (float[])buffer;
+			for (int i = 0; i < n; i++) values[i] = b[start+i];
+		} else if (buffer instanceof int[] && isize == 1) {
+			final int[] b = (int[])buffer;
+			for (int i = 0; i < n; i++) values[i] = b[start+i];
+		} else if (buffer instanceof short[] && isize == 1) {
+			final short[] b = (short[])buffer;
+			for (int i = 0; i < n; i++) values[i] = b[start+i];
+		} else if (buffer instanceof byte[] && isize == 1) {
+			final byte[] b = (byte[])buffer;
+			for (int i = 0; i < n; i++) values[i] = b[start+i];
+		} else {
+			for (int i = 0; i < n; i++) values[i] = data.getElementDoubleAbs((start+i)*isize);
+		}
+		return n;
+	}
+
+	/**
+	 * @return the image the histogram is of
+	 */
+	Dataset getImage() {
+		return image;
+	}
+
+	/**
+	 * @return the smallest finite value of the image, NaN if there is none
+	 */
+	double getMin() {
+		return min;
+	}
+
+	/**
+	 * @return the largest finite value of the image, NaN if there is none
+	 */
+	double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the number of NaNs and infinities in the image
+	 */
+	long getInvalidCount() {
+		return invalid;
+	}
+
+	/**
+	 * @param maxBins
+	 * @return one bin per integer between the minimum and maximum for an image of
+	 *         integers, but no more than maxBins, otherwise maxBins.
+	 */
+	int getBinCount(int maxBins) {
+		if (!integer || Double.isNaN(min)) return maxBins;
+		return (int)Math.max(1, Math.min(max - min, maxBins));
+	}
+
+	/**
+	 * Makes a histogram without reading the image.
+	 *
+	 * @param numBins
+	 * @param lo the lower edge of the first bin, or infinite for the minimum of the image
+	 * @param hi the upper edge of the last bin, or infinite for the maximum of the image
+	 * @return the log10 of one more than the count of each bin, named "Histogram", and the
+	 *         lower edge of each bin, named "Intensity". Values outside the range are not counted.
+	 */
+	Dataset[] getHistogram(int numBins, double lo, double hi) {
+
+		if (Double.isInfinite(lo)) lo = min;
+		if (Double.isInfinite(hi)) hi = max;
+		numBins = Math.max(1, numBins);
+
+		final double span = hi - lo;
+		final double[] y = new double[numBins];
+		final double[] x = new double[numBins];
+		for (int i = 0; i < numBins; i++) x[i] = lo + i*span/numBins;
+
+		for (int b = 0; b < counts.length; b++) {
+			if (counts[b] == 0) continue;
+			final double v = exact ? min + b : Math.min(max, min + (b + 0.5)*width);
+			if (!(v >= lo && v <= hi)) continue;
+			int bin = span > 0 ? (int)((v - lo) / span * numBins) : 0;
+			if (bin >= numBins) bin = numBins - 1;
+			y[bin] += counts[b];
+		}
+		for (int i = 0; i < numBins; i++) y[i] = Math.log10(y[i] + 1);
+
+		final Dataset histogramY = new DoubleDataset(y, numBins);
+		histogramY.setName("Histogram");
+		final Dataset histogramX = new DoubleDataset(x, numBins);
+		histogramX.setName("Intensity");
+		return new Dataset[] { histogramY, histogramX };
+	}
+}
@@ -1,22 +1,21 @@
 package org.dawnsci.plotting.histogram;
 
-import java.util.List;
-
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
-import org.eclipse.dawnsci.analysis.api.dataset.Slice;
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
 import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
-import org.eclipse.dawnsci.analysis.dataset.impl.Maths;
 import org.eclipse.dawnsci.plotting.api.histogram.ImageServiceBean;
 import org.eclipse.dawnsci.plotting.api.trace.IPaletteListener;
 import org.eclipse.dawnsci.plotting.api.trace.IPaletteTrace;
 import org.eclipse.dawnsci.plotting.api.trace.PaletteEvent;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.graphics.PaletteData;
-
-import uk.ac.diamond.scisoft.analysis.dataset.function.Histogram;
+import org.eclipse.swt.widgets.Control;
 
 public class ImageHistogramProvider implements IHistogramProvider {
 
@@ -30,6 +29,9 @@ public class ImageHistogramProvider implements IHistogramProvider {
 	private IDataset imageDataset;
 	private ImageServiceBean bean;
 
+	private volatile ImageHistogram histogram; // Of imageDataset, once it has been read
+	private Job histogramJob;
+
 	public ImageHistogramProvider() {
 
 	}
@@ -39,6 +41,45 @@ public class ImageHistogramProvider implements IHistogramProvider {
 		this.image = image;
 		this.imageDataset = getImageData(image);
 		this.bean = image.getImageServiceBean();
+		readHistogram((Dataset)imageDataset);
+	}
+
+	/**
+	 * Reads the histogram of the image away from the UI thread, then refreshes the viewer.
+	 */
+	private void readHistogram(final Dataset image) {
+		if (histogramJob != null) histogramJob.cancel();
+		if (image == null) return;
+		histogramJob = new Job("Histogram") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				final ImageHistogram hist = ImageHistogram.create(image, monitor);
+				if (hist == null) return Status.CANCEL_STATUS;
+				if (image != imageDataset) return Status.CANCEL_STATUS;
+				histogram = hist;
+
+				final Control control = viewer != null ? viewer.getControl() : null;
+				if (control == null || control.isDisposed()) return Status.OK_STATUS;
+				control.getDisplay().asyncExec(new Runnable() {
+					@Override
+					public void run() {
+						if (!control.isDisposed() && histogram == hist) viewer.refresh();
+					}
+				});
+				return Status.OK_STATUS;
+			}
+		};
+		histogramJob.setSystem(true);
+		histogramJob.setPriority(Job.SHORT);
+		histogramJob.schedule();
+	}
+
+	/**
+	 * @return the histogram of the image, or null if it is being read
+	 */
+	private ImageHistogram getHistogram() {
+		final ImageHistogram hist = histogram;
+		return hist != null && hist.getImage() == imageDataset ? hist : null;
 	}
 
 	/**
@@ -59,29 +100,26 @@ public class ImageHistogramProvider implements IHistogramProvider {
 
 	@Override
 	public int getNumberOfBins() {
-		if (((Dataset) imageDataset).hasFloatingPointElements()) {
-			return MAX_BINS;
-		} else {
-			// set the number of points to the range
-			int numBins = (Integer) imageDataset.max(true).intValue()
-					- imageDataset.min(true).intValue();
-			if (numBins > MAX_BINS)
-				numBins = MAX_BINS;
-			return numBins;
-		}
+		// one bin per integer for integer images, known once the histogram has been read
+		ImageHistogram hist = getHistogram();
+		return hist != null ? hist.getBinCount(MAX_BINS) : MAX_BINS;
 	}
 
 	public double getMaximumRange() {
 		double max = bean.getMaximumCutBound().getBound().doubleValue();
-		if (Double.isInfinite(max))
-			max = imageDataset.max(true).doubleValue();
+		if (Double.isInfinite(max)) {
+			ImageHistogram hist = getHistogram();
+			max = hist != null ? hist.getMax() : getMax();
+		}
 		return max;
 	}
 
 	public double getMininumRange() {
 		double rMin = bean.getMinimumCutBound().getBound().doubleValue();
-		if (Double.isInfinite(rMin))
-			rMin = imageDataset.min(true).doubleValue();
+		if (Double.isInfinite(rMin)) {
+			ImageHistogram hist = getHistogram();
+			rMin = hist != null ? hist.getMin() : getMin();
+		}
 		return rMin;
 	}
 
@@ -132,26 +170,24 @@ public class ImageHistogramProvider implements IHistogramProvider {
 
 
 	/**
-	 * This will take an image, and pull out all the parameters required to
-	 * calculate the histogram
+	 * This will take the histogram of the image, and make the one to plot from it.
+	 * Until the histogram has been read it is flat over the colour range.
 	 *
 	 * @return Calculated histogram, index 0 for Y values, 1 for X values
 	 */
-	private IDataset[] generateHistogramData(IDataset imageDataset, int numBins) {
+	private IDataset[] generateHistogramData(int numBins) {
 		double rangeMax = getMaximumRange();
 		double rangeMin = getMininumRange();
 
-		Histogram hist = new Histogram(numBins, rangeMin, rangeMax, true);
-		List<? extends Dataset> histogram_values = hist.value(imageDataset);
+		ImageHistogram hist = getHistogram();
+		if (hist != null) {
+			return hist.getHistogram(numBins, rangeMin, rangeMax);
+		}
 
-		Dataset histogramX = histogram_values.get(1).getSliceView(
-				new Slice(numBins));
+		Dataset histogramX = new DoubleDataset(new double[] { getMin(), getMax() }, 2);
 		histogramX.setName("Intensity");
-
-		Dataset histogramY = histogram_values.get(0);
-		histogramY = Maths.log10((Maths.add(histogramY, 1.0)));
+		Dataset histogramY = new DoubleDataset(2);
 		histogramY.setName("Histogram");
-
 		return new IDataset[] { histogramY, histogramX };
 	}
 
@@ -165,8 +201,7 @@ public class ImageHistogramProvider implements IHistogramProvider {
 		double histoMax = getMax();
 
 
-		IDataset[] histogramData = generateHistogramData(imageDataset,
-				getNumberOfBins());
+		IDataset[] histogramData = generateHistogramData(getNumberOfBins());
 		final IDataset histogramY = histogramData[0];
 		final IDataset histogramX = histogramData[1];
 
@@ -240,6 +275,7 @@ public class ImageHistogramProvider implements IHistogramProvider {
 
 	@Override
 	public void dispose() {
+		if (histogramJob != null) histogramJob.cancel();
 	}
 
 	@Override
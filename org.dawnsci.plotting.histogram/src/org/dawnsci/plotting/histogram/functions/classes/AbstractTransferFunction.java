@@ -32,12 +32,18 @@ public abstract class AbstractTransferFunction implements ITransferFunction {
 		return (short) ((SIZE - 1) * getPoint(input));
 	}
 
+	private volatile int[] array; // Made once, as getPoint(...) may search a table of points
+
 	@Override
 	public int[] getArray() {
-		int[] result = new int[SIZE];
-		for (int i = 0; i < result.length; i++) {
-			result[i] = (int) (getPoint((double) i / SIZE) * (SIZE - 1));
+		int[] result = array;
+		if (result == null) {
+			result = new int[SIZE];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = (int) (getPoint((double) i / SIZE) * (SIZE - 1));
+			}
+			array = result;
 		}
-		return result;
+		return result.clone();
 	}
 }
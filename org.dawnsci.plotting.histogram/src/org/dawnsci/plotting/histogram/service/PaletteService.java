@@ -9,8 +9,11 @@
 package org.dawnsci.plotting.histogram.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.dawnsci.plotting.histogram.Activator;
 import org.dawnsci.plotting.histogram.ExtensionPointManager;
@@ -28,6 +31,13 @@ import org.eclipse.ui.services.IServiceLocator;
 
 public class PaletteService extends AbstractServiceFactory implements IPaletteService {
 
+	private static final int MAX_TABLES = 64; // Lookup tables kept, more are made again when needed
+
+	/**
+	 * Of the transfer functions and inversions given to getLookupTable(...)
+	 */
+	private static final Map<List<Object>, int[]> lookupTables = new ConcurrentHashMap<List<Object>, int[]>();
+
 	private static IPaletteService pservice;
 	private ExtensionPointManager extensionManager;
 	public PaletteService() {
@@ -35,6 +45,11 @@ public class PaletteService extends AbstractServiceFactory implements IPaletteSe
 	}
 	private Collection<String> colourSchemeNames;
 
+	/**
+	 * Of each colour scheme and inversion, as made by getDirectPaletteData(...)
+	 */
+	private final Map<List<Object>, int[]> paletteTables = new ConcurrentHashMap<List<Object>, int[]>();
+
 	/**
 	 * Colour map inverted
 	 */
@@ -57,6 +72,27 @@ public class PaletteService extends AbstractServiceFactory implements IPaletteSe
 		if ("".equals(colourSchemeName)) {
 			colourSchemeName = "Film Negative";
 		}
+
+		final List<Object> key = Arrays.<Object>asList(colourSchemeName, isInverted);
+		int[] table = paletteTables.get(key);
+		if (table == null) {
+			table = createPaletteTable(colourSchemeName);
+			paletteTables.put(key, table);
+		}
+
+		RGB[] rgbs = new RGB[ITransferFunction.SIZE];
+
+		for (int i = 0; i < ITransferFunction.SIZE; i++) {
+			rgbs[i] = new RGB((table[i] >> 16) & 0xff, (table[i] >> 8) & 0xff, table[i] & 0xff);
+		}
+		return new PaletteData(rgbs);
+	}
+
+	/**
+	 * @param colourSchemeName
+	 * @return the colours of the scheme packed as 0xRRGGBB
+	 */
+	private int[] createPaletteTable(String colourSchemeName) {
 		ColourSchemeContribution csc = extensionManager.getColourSchemeContribution(colourSchemeName);
 		int[] red   = extensionManager.getTransferFunctionFromID(csc.getRedID()).getFunction().getArray();
 		int[] green = extensionManager.getTransferFunctionFromID(csc.getGreenID()).getFunction().getArray();
@@ -78,14 +114,56 @@ public class PaletteService extends AbstractServiceFactory implements IPaletteSe
 			}
 		}
 
-		RGB[] rgbs = new RGB[ITransferFunction.SIZE];
+		return pack(red, green, blue);
+	}
 
-		for (int i = 0; i < ITransferFunction.SIZE; i++) {
-			rgbs[i] = new RGB(red[i], green[i], blue[i]);
+	/**
+	 * The colours of a set of transfer functions, made once and kept, so that an image
+	 * is coloured by looking up each pixel in them rather than calling the functions.
+	 *
+	 * @param red
+	 * @param green
+	 * @param blue
+	 * @param inverseRed true for 255 less the red function
+	 * @param inverseGreen
+	 * @param inverseBlue
+	 * @return ITransferFunction.SIZE colours packed as 0xRRGGBB, the ith for the value i/SIZE.
+	 *         The array is shared so must not be changed.
+	 */
+	public static int[] getLookupTable(ITransferFunction red, ITransferFunction green, ITransferFunction blue,
+			                           boolean inverseRed, boolean inverseGreen, boolean inverseBlue) {
+
+		final List<Object> key = Arrays.<Object>asList(red, green, blue, inverseRed, inverseGreen, inverseBlue);
+		int[] table = lookupTables.get(key);
+		if (table == null) {
+			table = pack(getArray(red, inverseRed), getArray(green, inverseGreen), getArray(blue, inverseBlue));
+			if (lookupTables.size() >= MAX_TABLES) lookupTables.clear();
+			lookupTables.put(key, table);
 		}
-		return new PaletteData(rgbs);
+		return table;
 	}
-	
+
+	private static int[] getArray(ITransferFunction function, boolean inverse) {
+		int[] array = function.getArray();
+		if (inverse) {
+			array = array.clone();
+			for (int i = 0; i < array.length; i++) array[i] = 255 - array[i];
+		}
+		return array;
+	}
+
+	private static int[] pack(int[] red, int[] green, int[] blue) {
+		int[] table = new int[ITransferFunction.SIZE];
+		for (int i = 0; i < table.length; i++) {
+			table[i] = clamp(red[i]) << 16 | clamp(green[i]) << 8 | clamp(blue[i]);
+		}
+		return table;
+	}
+
+	private static int clamp(int value) {
+		return value < 0 ? 0 : value > 255 ? 255 : value;
+	}
+
 	private int[] invert(int[] array) {
 		int[] result = new int[array.length];
 		for(int i = 0; i < array.length; i++) {
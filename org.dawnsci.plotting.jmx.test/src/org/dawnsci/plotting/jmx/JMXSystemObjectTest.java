@@ -0,0 +1,211 @@
+package org.dawnsci.plotting.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.StandardMBean;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Calls an MBean through an RMI connector in the same VM, so the arguments are
+ * serialised and read back as they are between two VMs.
+ */
+public class JMXSystemObjectTest {
+
+	public interface Echo {
+		Object echo(Object value);
+		void add(String value);
+		Object getLast();
+	}
+
+	public interface BatchEcho extends Echo {
+		void invokeBatch(String[] methodNames, Object[][] args, String[][] classes);
+	}
+
+	public static class EchoImpl implements Echo {
+		private volatile Object last;
+		protected final List<String> added = Collections.synchronizedList(new ArrayList<String>());
+
+		@Override
+		public Object echo(Object value) {
+			last = value;
+			return value;
+		}
+
+		@Override
+		public void add(String value) {
+			added.add(value);
+		}
+
+		@Override
+		public Object getLast() {
+			return last;
+		}
+	}
+
+	public static class BatchEchoImpl extends EchoImpl implements BatchEcho {
+		private volatile int batches;
+
+		@Override
+		public void invokeBatch(String[] methodNames, Object[][] args, String[][] classes) {
+			batches++;
+			for (int i = 0; i < methodNames.length; i++) {
+				if ("add".equals(methodNames[i])) add((String)args[i][0]);
+				else echo(args[i][0]);
+			}
+		}
+	}
+
+	private static final String[] OBJECT = new String[]{Object.class.getName()};
+
+	private MBeanServer        server;
+	private JMXConnectorServer connectorServer;
+	private JMXConnector       connector;
+	private EchoImpl           echo;
+	private BatchEchoImpl      batchEcho;
+	private JMXSystemObject    system;
+	private JMXSystemObject    batchSystem;
+
+	@Before
+	public void start() throws Exception {
+		server = MBeanServerFactory.newMBeanServer();
+		echo   = new EchoImpl();
+		server.registerMBean(new StandardMBean(echo, Echo.class), JMXSystemObject.getObjectName("test"));
+		batchEcho = new BatchEchoImpl();
+		server.registerMBean(new StandardMBean(batchEcho, BatchEcho.class), JMXSystemObject.getObjectName("batch"));
+
+		connectorServer = JMXConnectorServerFactory.newJMXConnectorServer(new JMXServiceURL("service:jmx:rmi://"), null, server);
+		connectorServer.start();
+		connector = JMXConnectorFactory.connect(connectorServer.getAddress());
+		system      = new JMXSystemObject("test", connector.getMBeanServerConnection());
+		batchSystem = new JMXSystemObject("batch", connector.getMBeanServerConnection());
+	}
+
+	@After
+	public void stop() throws Exception {
+		connector.close();
+		connectorServer.stop();
+		MBeanServerFactory.releaseMBeanServer(server);
+	}
+
+	private static Dataset createData(int dtype) {
+		final Dataset data = DatasetFactory.createRange(2000, dtype);
+		data.setShape(40, 50);
+		data.setName("data");
+		return data;
+	}
+
+	private static void assertSameData(Dataset expected, Object actual) {
+		assertTrue("Read back as "+actual.getClass(), actual instanceof Dataset);
+		final Dataset data = (Dataset)actual;
+		assertEquals(expected.getClass(), data.getClass());
+		assertEquals(expected.getName(), data.getName());
+		assertTrue(Arrays.equals(expected.getShape(), data.getShape()));
+		assertEquals(expected, data);
+	}
+
+	@Test
+	public void testDatasetSerialisedByDefault() throws Exception {
+		assertFalse(system.isBinary());
+		final Dataset data = createData(Dataset.FLOAT64);
+		assertSameData(data, system.call("echo", OBJECT, data));
+		assertSameData(data, echo.getLast());
+	}
+
+	@Test
+	public void testDatasetAsBuffer() throws Exception {
+		system.setBinary(true);
+		for (int dtype : new int[]{Dataset.INT8, Dataset.INT16, Dataset.INT32, Dataset.INT64, Dataset.FLOAT32, Dataset.FLOAT64}) {
+			final Dataset data = createData(dtype);
+			assertSameData(data, system.call("echo", OBJECT, data));
+			assertSameData(data, echo.getLast()); // The MBean is called with the dataset
+		}
+	}
+
+	@Test
+	public void testListOfDatasetsAsBuffers() throws Exception {
+		system.setBinary(true);
+		final List<Dataset> data = Arrays.asList(createData(Dataset.FLOAT64), createData(Dataset.INT32));
+		system.call("echo", OBJECT, data);
+
+		final List<?> last = (List<?>)echo.getLast();
+		assertEquals(data.size(), last.size());
+		for (int i = 0; i < data.size(); i++) assertSameData(data.get(i), last.get(i));
+	}
+
+	@Test
+	public void testViewSerialised() throws Exception {
+		system.setBinary(true);
+		final Dataset view = createData(Dataset.FLOAT64).getSliceView(new int[]{10, 0}, new int[]{20, 50}, null);
+		view.setName("view");
+		final Dataset expected = view.getSlice();
+		expected.setName("view");
+		assertSameData(expected, system.call("echo", OBJECT, view));
+	}
+
+	@Test
+	public void testNotBatchingSendsAtOnce() throws Exception {
+		system.send("add", "a");
+		assertEquals(Arrays.asList("a"), echo.added);
+	}
+
+	@Test
+	public void testBatchSentInOrderWithoutBatchOperation() throws Exception {
+		system.setBatching(true);
+		system.send("add", "a");
+		system.send("add", "b");
+		assertTrue("Sent before flush", echo.added.isEmpty());
+
+		system.call("echo", OBJECT, "c"); // A call which returns something flushes first
+		assertEquals(Arrays.asList("a", "b"), echo.added);
+		assertEquals("c", echo.getLast());
+
+		system.send("add", "d");
+		system.setBatching(false);
+		assertEquals(Arrays.asList("a", "b", "d"), echo.added);
+	}
+
+	@Test
+	public void testBatchSentInOneCall() throws Exception {
+		batchSystem.setBatching(true);
+		for (int i = 0; i < 10; i++) batchSystem.send("add", String.valueOf(i));
+		assertTrue("Sent before flush", batchEcho.added.isEmpty());
+
+		batchSystem.flush();
+		assertEquals(1, batchEcho.batches);
+		assertEquals(Arrays.asList("0", "1", "2", "3", "4", "5", "6", "7", "8", "9"), batchEcho.added);
+	}
+
+	@Test
+	public void testBatchedDatasetSentAsAtCall() throws Exception {
+		batchSystem.setBinary(true);
+		batchSystem.setBatching(true);
+		final Dataset data = createData(Dataset.FLOAT64);
+		final Dataset sent = data.clone();
+		batchSystem.send("echo", OBJECT, data);
+		batchSystem.send("add", "a");
+		data.imultiply(2);
+
+		batchSystem.flush();
+		assertEquals(1, batchEcho.batches);
+		assertSameData(sent, batchEcho.getLast());
+	}
+}
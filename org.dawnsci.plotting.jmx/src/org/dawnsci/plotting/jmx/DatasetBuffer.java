@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.jmx;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.metadata.MetadataType;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+
+/**
+ * A dataset as it is sent to the remote plotting system: its name, shape and
+ * the bytes of its primitive buffer, deflated if that makes them a tenth or more
+ * smaller. It is read back as a dataset on the other side, so the plotting
+ * system is called with the dataset and never sees this class.
+ *
+ * The bytes are taken when the buffer is made, so a dataset changed after a
+ * call is sent as it was at the call, even if the call waits in a batch.
+ * Only datasets of one number per item without metadata, of the class which is
+ * read back, are sent like this, so the signature of the call still names the
+ * class of the argument. Others are serialised as they are.
+ */
+class DatasetBuffer implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int MIN_DEFLATE = 1024; // The fewest bytes deflating is tried on
+
+	private final String  name;
+	private final int     dtype;
+	private final int[]   shape;
+	private final int     length;   // Of the bytes before deflating
+	private final boolean deflated;
+	private final byte[]  bytes;
+
+	private DatasetBuffer(Dataset data) {
+		this.name  = data.getName();
+		this.dtype = data.getDtype();
+		this.shape = data.getShape();
+
+		final byte[] raw = getBytes(data.getBuffer(), dtype);
+		final byte[] packed = raw.length >= MIN_DEFLATE ? deflate(raw) : null;
+		this.length   = raw.length;
+		this.deflated = packed != null;
+		this.bytes    = packed != null ? packed : raw;
+	}
+
+	/**
+	 * @param arg of a call
+	 * @return the argument with datasets, and the datasets of lists, swapped for buffers where possible
+	 */
+	static Object encode(Object arg) {
+		if (arg instanceof IDataset) {
+			final Dataset data = getEncodable((IDataset)arg);
+			return data != null ? new DatasetBuffer(data) : arg;
+		}
+		if (arg instanceof List) {
+			final List<?> list = (List<?>)arg;
+			final List<Object> encoded = new ArrayList<Object>(list.size());
+			boolean any = false;
+			for (Object item : list) {
+				final Object e = encode(item);
+				any |= e != item;
+				encoded.add(e);
+			}
+			return any ? encoded : arg;
+		}
+		return arg;
+	}
+
+	private static Dataset getEncodable(IDataset d) {
+		try {
+			final List<MetadataType> meta = d.getMetadata(null);
+			if (meta != null && !meta.isEmpty()) return null;
+		} catch (Exception e) {
+			return null;
+		}
+		if (!(d instanceof Dataset)) return null;
+		final Dataset data = (Dataset)d;
+		if (data.getElementsPerItem() != 1) return null;
+		switch (data.getDtype()) {
+		case Dataset.INT8:
+		case Dataset.INT16:
+		case Dataset.INT32:
+		case Dataset.INT64:
+		case Dataset.FLOAT32:
+		case Dataset.FLOAT64:
+			break;
+		default:
+			return null;
+		}
+		if (data.getClass() != DatasetFactory.zeros(new int[]{1}, data.getDtype()).getClass()) return null;
+		// A view of part of a bigger buffer is sent as it is
+		final Object buffer = data.getBuffer();
+		return buffer != null && Array.getLength(buffer) == data.getSize() ? data : null;
+	}
+
+	private static byte[] getBytes(Object buffer, int dtype) {
+		final int size = Array.getLength(buffer);
+		switch (dtype) {
+		case Dataset.INT8:
+			return ((byte[])buffer).clone();
+		case Dataset.INT16: {
+			final ByteBuffer b = ByteBuffer.allocate(size*2);
+			b.asShortBuffer().put((short[])buffer);
+			return b.array();
+		}
+		case Dataset.INT32: {
+			final ByteBuffer b = ByteBuffer.allocate(size*4);
+			b.asIntBuffer().put((int[])buffer);
+			return b.array();
+		}
+		case Dataset.INT64: {
+			final ByteBuffer b = ByteBuffer.allocate(size*8);
+			b.asLongBuffer().put((long[])buffer);
+			return b.array();
+		}
+		case Dataset.FLOAT32: {
+			final ByteBuffer b = ByteBuffer.allocate(size*4);
+			b.asFloatBuffer().put((float[])buffer);
+			return b.array();
+		}
+		default: {
+			final ByteBuffer b = ByteBuffer.allocate(size*8);
+			b.asDoubleBuffer().put((double[])buffer);
+			return b.array();
+		}
+		}
+	}
+
+	private static Object getBuffer(byte[] raw, int dtype) {
+		final ByteBuffer b = ByteBuffer.wrap(raw);
+		switch (dtype) {
+		case Dataset.INT8:
+			return raw;
+		case Dataset.INT16: {
+			final short[] buffer = new short[raw.length/2];
+			b.asShortBuffer().get(buffer);
+			return buffer;
+		}
+		case Dataset.INT32: {
+			final int[] buffer = new int[raw.length/4];
+			b.asIntBuffer().get(buffer);
+			return buffer;
+		}
+		case Dataset.INT64: {
+			final long[] buffer = new long[raw.length/8];
+			b.asLongBuffer().get(buffer);
+			return buffer;
+		}
+		case Dataset.FLOAT32: {
+			final float[] buffer = new float[raw.length/4];
+			b.asFloatBuffer().get(buffer);
+			return buffer;
+		}
+		default: {
+			final double[] buffer = new double[raw.length/8];
+			b.asDoubleBuffer().get(buffer);
+			return buffer;
+		}
+		}
+	}
+
+	/**
+	 * @param raw
+	 * @return the deflated bytes, or null if they are not a tenth or more smaller
+	 */
+	private static byte[] deflate(byte[] raw) {
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			final byte[] packed = new byte[raw.length - raw.length/10];
+			int count = 0;
+			while (!deflater.finished() && count < packed.length) {
+				count += deflater.deflate(packed, count, packed.length - count);
+			}
+			return deflater.finished() ? Arrays.copyOf(packed, count) : null;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] packed, int length) throws DataFormatException {
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(packed);
+			final byte[] raw = new byte[length];
+			int count = 0;
+			while (count < length) {
+				final int n = inflater.inflate(raw, count, length - count);
+				if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+					throw new DataFormatException("Expected "+length+" bytes but found "+count);
+				}
+				count += n;
+			}
+			return raw;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * @return the dataset, which takes the place of this buffer when it is read
+	 */
+	private Object readResolve() throws ObjectStreamException {
+		final byte[] raw;
+		try {
+			raw = deflated ? inflate(bytes, length) : bytes;
+		} catch (DataFormatException e) {
+			final InvalidObjectException ie = new InvalidObjectException("Cannot inflate dataset "+name);
+			ie.initCause(e);
+			throw ie;
+		}
+		final Dataset data = DatasetFactory.createFromObject(getBuffer(raw, dtype));
+		data.setShape(shape);
+		data.setName(name);
+		return data;
+	}
+}
@@ -8,6 +8,10 @@
  */
 package org.dawnsci.plotting.jmx;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanOperationInfo;
 import javax.management.MBeanServerConnection;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
@@ -15,10 +19,39 @@ import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
 
+/**
+ * Calls the methods of a remote plotting system by name.
+ * 
+ * Datasets, and lists of them, may be sent as the bytes of their buffers rather
+ * than serialised as objects, see DatasetBuffer. The other side must then be able
+ * to load DatasetBuffer, from this bundle, so it is only done when turned on with
+ * -Dorg.dawnsci.plotting.jmx.binary=true or setBinary(true).
+ * 
+ * Methods which return nothing may be batched with setBatching(true). They then
+ * wait until flush() or a method which returns a value is called, or BATCH of them
+ * are waiting, and are sent in the order they were called. If the remote plotting
+ * system has the operation BATCH_OPERATION they are sent with one call to it,
+ * otherwise one after another.
+ */
 class JMXSystemObject {
 
-	private ObjectName            remotePlotName;
-	private MBeanServerConnection client;
+	private static final int BATCH = Integer.getInteger("org.dawnsci.plotting.jmx.batch", 64);
+
+	/**
+	 * The operation of the remote plotting system which is sent a batch as
+	 * (String[] methodNames, Object[][] args, String[][] classes)
+	 */
+	static final String BATCH_OPERATION = "invokeBatch";
+
+	private static final String[] BATCH_SIGNATURE = new String[]{String[].class.getName(), Object[][].class.getName(), String[][].class.getName()};
+
+	private final ObjectName            remotePlotName;
+	private final MBeanServerConnection client;
+	private boolean                     binary = Boolean.getBoolean("org.dawnsci.plotting.jmx.binary");
+
+	private final List<Object[]> batch = new ArrayList<Object[]>(); // Of {methodName, classes, args}
+	private volatile boolean batching;
+	private Boolean batchOperation; // Null until the remote plotting system is asked if it has BATCH_OPERATION
 
 	/**
 	 * The name of the plotting system as registered in the PlottingFactory.
@@ -26,29 +59,35 @@ class JMXSystemObject {
 	 * @throws MalformedObjectNameException 
 	 */
 	protected JMXSystemObject(final String plotName, final String hostName, final int port) throws Exception {
+		this(plotName, connect(hostName, port));
+	}
+
+	/**
+	 * For instance a connection to the platform MBean server, to talk to a plotting
+	 * system in the same VM.
+	 * 
+	 * @param plotName of the plotting system as registered in the PlottingFactory.
+	 * @param client
+	 * @throws MalformedObjectNameException 
+	 */
+	protected JMXSystemObject(final String plotName, final MBeanServerConnection client) throws MalformedObjectNameException {
+		this.client         = client;
+	    this.remotePlotName = getObjectName(plotName);
+	}
 
+	private static MBeanServerConnection connect(final String hostName, final int port) throws Exception {
 		JMXServiceURL serverUrl     = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://"+hostName+":"+port+"/plottingservice");
 		JMXConnector  conn = JMXConnectorFactory.connect(serverUrl);
-		client             = conn.getMBeanServerConnection();
-
-	    this.remotePlotName = new ObjectName("remote.plotting.system/"+plotName+":type=RemotePlottingSystem");
+		return conn.getMBeanServerConnection();
 	}
 
-	protected static final String getMethodName ( StackTraceElement ste[] ) {  
-		   
-	    String methodName = "";  
-	    boolean flag = false;  
-	   
-	    for ( StackTraceElement s : ste ) {  
-	   
-	        if ( flag ) {  
-	   
-	            methodName = s.getMethodName();  
-	            break;  
-	        }  
-	        flag = s.getMethodName().equals( "getStackTrace" );  
-	    }  
-	    return methodName;  
+	/**
+	 * @param plotName
+	 * @return the name the remote plotting system is registered with in its MBean server
+	 * @throws MalformedObjectNameException
+	 */
+	static ObjectName getObjectName(final String plotName) throws MalformedObjectNameException {
+		return new ObjectName("remote.plotting.system/"+plotName+":type=RemotePlottingSystem");
 	}
 
 	/**
@@ -57,12 +96,7 @@ class JMXSystemObject {
 	 * @param args
 	 */
 	protected Object call(final String methodName, final Object... args) {
-		
-		final String[] classes = args!=null ? new String[args.length] : null;
-		if (classes!=null) {
-			for (int i = 0; i < args.length; i++) classes[i]=args[i].getClass().getName();
-		}
-		return call(methodName, classes, args);
+		return call(methodName, getClasses(args), args);
 	}
 	
 	/**
@@ -71,6 +105,103 @@ class JMXSystemObject {
 	 * @param args
 	 */
 	protected Object call(final String methodName, final String[] classes, final Object... args) {
+		flush();
+		return invoke(methodName, classes, encode(args));
+	}
+
+	/**
+	 * Calls a method which returns nothing, after the next flush() if batching.
+	 * @param methodName
+	 * @param args
+	 */
+	protected void send(final String methodName, final Object... args) {
+		send(methodName, getClasses(args), args);
+	}
+
+	/**
+	 * Calls a method which returns nothing, after the next flush() if batching.
+	 * @param methodName
+	 * @param classes
+	 * @param args
+	 */
+	protected void send(final String methodName, final String[] classes, final Object... args) {
+		if (!batching) {
+			invoke(methodName, classes, encode(args));
+			return;
+		}
+		synchronized (batch) {
+			batch.add(new Object[]{methodName, classes, encode(args)});
+			if (batch.size() >= BATCH) flush();
+		}
+	}
+
+	/**
+	 * @param batching true to keep methods which return nothing until flush() is called,
+	 *                 false to flush and then call each method as it is called.
+	 */
+	protected void setBatching(boolean batching) {
+		if (!batching) flush();
+		this.batching = batching;
+	}
+
+	protected boolean isBatching() {
+		return batching;
+	}
+
+	/**
+	 * Sends the methods waiting in the batch, if any.
+	 */
+	protected void flush() {
+		synchronized (batch) {
+			if (batch.isEmpty()) return;
+			try {
+				if (batch.size() > 1 && hasBatchOperation()) {
+					final String[]   names   = new String[batch.size()];
+					final Object[][] args    = new Object[batch.size()][];
+					final String[][] classes = new String[batch.size()][];
+					for (int i = 0; i < names.length; i++) {
+						final Object[] c = batch.get(i);
+						names[i]   = (String)c[0];
+						classes[i] = (String[])c[1];
+						args[i]    = (Object[])c[2];
+					}
+					invoke(BATCH_OPERATION, BATCH_SIGNATURE, names, args, classes);
+				} else {
+					for (Object[] c : batch) invoke((String)c[0], (String[])c[1], (Object[])c[2]);
+				}
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	private boolean hasBatchOperation() {
+		if (batchOperation == null) {
+			batchOperation = Boolean.FALSE;
+			try {
+				for (MBeanOperationInfo info : client.getMBeanInfo(remotePlotName).getOperations()) {
+					if (BATCH_OPERATION.equals(info.getName())) batchOperation = Boolean.TRUE;
+				}
+			} catch (Exception e) {
+				System.out.println("Unable to read remote plotting system operations, calls will be sent one at a time.");
+			}
+		}
+		return batchOperation;
+	}
+
+	/**
+	 * @param binary true to send datasets as the bytes of their buffers, which the
+	 *               other side must be able to read, false to serialise them.
+	 */
+	protected void setBinary(boolean binary) {
+		this.binary = binary;
+	}
+
+	protected boolean isBinary() {
+		return binary;
+	}
+
+	private Object invoke(final String methodName, final String[] classes, final Object... args) {
 		
 		try {
 			return client.invoke(remotePlotName, methodName, args, classes);
@@ -81,4 +212,19 @@ class JMXSystemObject {
 		}
 	}
 
+	private static String[] getClasses(final Object[] args) {
+		final String[] classes = args!=null ? new String[args.length] : null;
+		if (classes!=null) {
+			for (int i = 0; i < args.length; i++) classes[i] = args[i]!=null ? args[i].getClass().getName() : Object.class.getName();
+		}
+		return classes;
+	}
+
+	private Object[] encode(final Object[] args) {
+		if (!binary || args==null) return args;
+		final Object[] encoded = new Object[args.length];
+		for (int i = 0; i < args.length; i++) encoded[i] = DatasetBuffer.encode(args[i]);
+		return encoded;
+	}
+
 }
@@ -0,0 +1,131 @@
+package org.dawnsci.plotting.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.AbstractDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.BooleanDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.plotting.api.histogram.ImageServiceBean.ImageOrigin;
+import org.junit.Test;
+
+public class ImageColourMapperTest {
+
+	private static final int ROWS = 5;
+	private static final int COLS = 7;
+
+	@Test
+	public void testSupported() {
+		assertTrue(ImageColourMapper.isSupported(createImage(Dataset.INT16), null));
+		assertTrue(ImageColourMapper.isSupported(createImage(Dataset.INT32), null));
+		assertTrue(ImageColourMapper.isSupported(createImage(Dataset.FLOAT32), null));
+		assertTrue(ImageColourMapper.isSupported(createImage(Dataset.FLOAT64), createMask()));
+		assertFalse(ImageColourMapper.isSupported(createImage(Dataset.INT64), null));
+		assertFalse(ImageColourMapper.isSupported(AbstractDataset.arange(10, Dataset.FLOAT64), null));
+	}
+
+	@Test
+	public void testAllOriginsAndTypes() {
+		final int[] dtypes = {Dataset.INT16, Dataset.INT32, Dataset.FLOAT32, Dataset.FLOAT64};
+		for (int dtype : dtypes) {
+			for (ImageOrigin origin : ImageOrigin.values()) {
+				check(createImage(dtype), null, origin);
+				check(createImage(dtype), createMask(), origin);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelTiles() {
+		final Dataset image = AbstractDataset.arange(1000*700, Dataset.FLOAT32).reshape(1000, 700);
+		final ImageColourMapper mapper = new ImageColourMapper(10, 500000, 252/499990d, 499990, 0, 600000);
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (ImageOrigin origin : ImageOrigin.values()) {
+				assertArrayEquals(mapper.map(image, null, origin, null), mapper.map(image, null, origin, null, pool));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testLayoutShape() {
+		ImageColourMapper.Layout layout = new ImageColourMapper.Layout(new int[]{ROWS, COLS}, ImageOrigin.TOP_LEFT);
+		assertEquals(COLS, layout.width);
+		assertEquals(ROWS, layout.height);
+
+		layout = new ImageColourMapper.Layout(new int[]{ROWS, COLS}, ImageOrigin.BOTTOM_LEFT);
+		assertEquals(ROWS, layout.width);
+		assertEquals(COLS, layout.height);
+	}
+
+	private void check(Dataset image, BooleanDataset mask, ImageOrigin origin) {
+		final double min = 3, max = 30, minCut = 1, maxCut = 33;
+		final double scale = 252/(max-min), maxPixel = max-min;
+
+		final ImageColourMapper mapper = new ImageColourMapper(min, max, scale, maxPixel, minCut, maxCut);
+		final byte[] actual   = mapper.map(image, mask, origin, null);
+		final byte[] expected = reference(image, mask, origin, min, max, scale, maxPixel, minCut, maxCut);
+
+		assertArrayEquals("Origin "+origin+", dtype "+image.getDtype(), expected, actual);
+	}
+
+	/**
+	 * The loops used by ImageService before the primitive buffers were read directly.
+	 */
+	private byte[] reference(Dataset image, BooleanDataset mask, ImageOrigin origin,
+			                 double min, double max, double scale, double maxPixel, double minCut, double maxCut) {
+
+		final int[]  shape = image.getShape();
+		final byte[] ret   = new byte[image.getSize()];
+		int index = 0;
+		switch(origin) {
+		case TOP_LEFT:
+			for (int i = 0; i<shape[0]; ++i) for (int j = 0; j<shape[1]; ++j) {
+				ret[index++] = mask==null || mask.getBoolean(i,j)
+						     ? ImageService.getPixelColorIndex(image.getDouble(i,j), min, max, scale, maxPixel, minCut, maxCut)
+						     : ImageService.NAN_PIX_BYTE;
+			}
+			break;
+		case BOTTOM_LEFT:
+			for (int i = shape[1]-1; i>=0; --i) for (int j = 0; j<shape[0]; ++j) {
+				ret[index++] = mask==null || mask.getBoolean(j,i)
+						     ? ImageService.getPixelColorIndex(image.getDouble(j,i), min, max, scale, maxPixel, minCut, maxCut)
+						     : ImageService.NAN_PIX_BYTE;
+			}
+			break;
+		case BOTTOM_RIGHT:
+			for (int i = shape[0]-1; i>=0; --i) for (int j = shape[1]-1; j>=0; --j) {
+				ret[index++] = mask==null || mask.getBoolean(i,j)
+						     ? ImageService.getPixelColorIndex(image.getDouble(i,j), min, max, scale, maxPixel, minCut, maxCut)
+						     : ImageService.NAN_PIX_BYTE;
+			}
+			break;
+		case TOP_RIGHT:
+			for (int i = 0; i<shape[1]; ++i) for (int j = shape[0]-1; j>=0; --j) {
+				ret[index++] = mask==null || mask.getBoolean(j,i)
+						     ? ImageService.getPixelColorIndex(image.getDouble(j,i), min, max, scale, maxPixel, minCut, maxCut)
+						     : ImageService.NAN_PIX_BYTE;
+			}
+			break;
+		}
+		return ret;
+	}
+
+	private Dataset createImage(int dtype) {
+		return AbstractDataset.arange(ROWS*COLS, dtype).reshape(ROWS, COLS);
+	}
+
+	private BooleanDataset createMask() {
+		final BooleanDataset mask = new BooleanDataset(ROWS, COLS);
+		mask.fill(true);
+		mask.set(false, 1, 2);
+		mask.set(false, 4, 6);
+		return mask;
+	}
+}
@@ -0,0 +1,70 @@
+package org.dawnsci.plotting.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.RGBDataset;
+import org.junit.Test;
+
+/**
+ * Checks the rows read straight from the buffers of images against those read
+ * through their colour models.
+ */
+public class PlotImageServiceTest {
+
+	private static final int[] TYPES = {BufferedImage.TYPE_INT_RGB,  BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+		                                BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR};
+
+	private static BufferedImage createImage(int type) {
+		final BufferedImage image = new BufferedImage(37, 23, type);
+		final Random random = new Random(type);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) image.setRGB(x, y, random.nextInt());
+		}
+		return image;
+	}
+
+	private static void assertSameRows(BufferedImage image) {
+		final int   width    = image.getWidth();
+		final int[] expected = new int[width];
+		final int[] row      = new int[width];
+		for (int y = 0; y < image.getHeight(); y++) {
+			image.getRGB(0, y, width, 1, expected, 0, width);
+			PlotImageService.getRGB(image, y, row);
+			assertArrayEquals("Type "+image.getType()+", row "+y, expected, row);
+		}
+	}
+
+	@Test
+	public void testGetRGB() {
+		for (int type : TYPES) assertSameRows(createImage(type));
+	}
+
+	@Test
+	public void testGetRGBOfSubimage() {
+		for (int type : TYPES) assertSameRows(createImage(type).getSubimage(5, 3, 20, 15));
+	}
+
+	@Test
+	public void testConvertToRGBDataset() {
+		for (int type : TYPES) {
+			final BufferedImage image = createImage(type).getSubimage(5, 3, 20, 15);
+			final RGBDataset    data  = PlotImageService.convertToRGBDataset(image);
+			assertArrayEquals(new int[]{image.getHeight(), image.getWidth()}, data.getShape());
+
+			final short[] rgb = data.getData();
+			for (int y = 0; y < image.getHeight(); y++) {
+				for (int x = 0; x < image.getWidth(); x++) {
+					final int argb = image.getRGB(x, y);
+					final int i = (y*image.getWidth()+x)*3;
+					assertEquals((argb >> 16) & 0xFF, rgb[i]);
+					assertEquals((argb >> 8)  & 0xFF, rgb[i+1]);
+					assertEquals(argb         & 0xFF, rgb[i+2]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package org.dawnsci.plotting.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StreamingHistogramTest {
+
+	/**
+	 * The bins are under 1% of their value wide.
+	 */
+	private static final double TOLERANCE = 0.01;
+
+	@Test
+	public void testEmpty() {
+		assertTrue(Double.isNaN(new StreamingHistogram().getQuantile(0.5)));
+	}
+
+	@Test
+	public void testQuantilesWithHotPixels() {
+		final Random random = new Random(42);
+		final double[] data = new double[100000];
+		for (int i = 0; i < data.length; i++) {
+			// Detector like, with a few saturated pixels which must not make the bins coarse.
+			data[i] = i%1000==0 ? Integer.MAX_VALUE : 100+10*random.nextGaussian();
+		}
+		check(data);
+	}
+
+	@Test
+	public void testQuantilesNegative() {
+		final Random random = new Random(42);
+		final double[] data = new double[100000];
+		for (int i = 0; i < data.length; i++) data[i] = random.nextDouble()-0.7;
+		check(data);
+	}
+
+	@Test
+	public void testMerge() {
+		final StreamingHistogram all   = new StreamingHistogram();
+		final StreamingHistogram left  = new StreamingHistogram();
+		final StreamingHistogram right = new StreamingHistogram();
+		for (int i = 0; i < 1000; i++) {
+			all.add(i);
+			if (i < 300) left.add(i); else right.add(i);
+		}
+		left.merge(right);
+		assertEquals(all.getTotal(), left.getTotal());
+		assertEquals(all.getQuantile(0.5), left.getQuantile(0.5), 0);
+		assertEquals(all.getQuantile(0.99), left.getQuantile(0.99), 0);
+	}
+
+	private void check(double[] data) {
+		final StreamingHistogram histogram = new StreamingHistogram();
+		for (double d : data) histogram.add(d);
+
+		final double[] sorted = data.clone();
+		Arrays.sort(sorted);
+		for (double fraction : new double[]{0.01, 0.1, 0.5, 0.9, 0.99}) {
+			final double expected = sorted[(int)Math.round(fraction*(sorted.length-1))];
+			assertEquals("Quantile "+fraction, expected, histogram.getQuantile(fraction), Math.abs(expected)*TOLERANCE);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package org.dawnsci.plotting.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.junit.Test;
+
+public class ThumbnailCacheTest {
+
+	private static ImageData createImage(int value) {
+		final ImageData data = new ImageData(8, 4, 24, new PaletteData(0xFF0000, 0xFF00, 0xFF));
+		for (int y = 0; y < data.height; y++) {
+			for (int x = 0; x < data.width; x++) data.setPixel(x, y, value + x + y);
+		}
+		return data;
+	}
+
+	private static File createDir() throws Exception {
+		final File dir = File.createTempFile("thumbnails", "");
+		dir.delete();
+		dir.mkdirs();
+		dir.deleteOnExit();
+		return dir;
+	}
+
+	@Test
+	public void testKeyChangesWithFile() throws Exception {
+		final File file = File.createTempFile("thumbnail", ".txt");
+		file.deleteOnExit();
+		final String key = ThumbnailCache.getKey(file, 64, 64, "Gray");
+
+		assertEquals(key, ThumbnailCache.getKey(file, 64, 64, "Gray"));
+		assertFalse(key.equals(ThumbnailCache.getKey(file, 32, 64, "Gray")));
+		assertFalse(key.equals(ThumbnailCache.getKey(file, 64, 64, "Jet")));
+
+		file.setLastModified(file.lastModified() - 10000);
+		assertFalse(key.equals(ThumbnailCache.getKey(file, 64, 64, "Gray")));
+	}
+
+	@Test
+	public void testReadFromDisk() throws Exception {
+		final File dir = createDir();
+		final ImageData data = createImage(100);
+		new ThumbnailCache(dir, 4, 100).put("abc", data);
+
+		final ImageData read = new ThumbnailCache(dir, 4, 100).get("abc");
+		assertNotNull(read);
+		assertEquals(data.width, read.width);
+		assertEquals(data.height, read.height);
+		for (int y = 0; y < data.height; y++) {
+			for (int x = 0; x < data.width; x++) {
+				assertEquals(data.palette.getRGB(data.getPixel(x, y)), read.palette.getRGB(read.getPixel(x, y)));
+			}
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedLeavesMemory() throws Exception {
+		final ThumbnailCache cache = new ThumbnailCache(null, 2, 0);
+		final ImageData a = createImage(1);
+		cache.put("a", a);
+		cache.put("b", createImage(2));
+		assertSame(a, cache.get("a"));
+		cache.put("c", createImage(3));
+
+		assertSame(a, cache.get("a"));
+		assertNull(cache.get("b"));
+	}
+
+	@Test
+	public void testReadOnceInBackground() throws Exception {
+		final ThumbnailCache cache = new ThumbnailCache(null, 4, 0);
+		final AtomicInteger reads = new AtomicInteger();
+		final Callable<ImageData> reader = new Callable<ImageData>() {
+			@Override
+			public ImageData call() throws Exception {
+				reads.incrementAndGet();
+				return createImage(reads.get());
+			}
+		};
+
+		final ImageData data = cache.get("a", true, reader).get(10, TimeUnit.SECONDS);
+		assertNotNull(data);
+		assertSame(data, cache.get("a", false, reader).get(10, TimeUnit.SECONDS));
+		assertEquals(1, reads.get());
+	}
+
+	@Test
+	public void testListenerToldWhenRead() throws Exception {
+		final ThumbnailCache cache = new ThumbnailCache(null, 4, 0);
+		final Callable<ImageData> reader = new Callable<ImageData>() {
+			@Override
+			public ImageData call() throws Exception {
+				return createImage(5);
+			}
+		};
+
+		final CountDownLatch read = new CountDownLatch(2);
+		final AtomicReference<ImageData> told = new AtomicReference<ImageData>();
+		final ThumbnailCache.Listener listener = new ThumbnailCache.Listener() {
+			@Override
+			public void thumbnailRead(ImageData data) {
+				told.set(data);
+				read.countDown();
+			}
+		};
+		final ImageData data = cache.get("a", true, reader, listener).get(10, TimeUnit.SECONDS);
+		cache.get("a", true, reader, listener); // From memory, told at once
+
+		assertTrue(read.await(10, TimeUnit.SECONDS));
+		assertSame(data, told.get());
+	}
+}
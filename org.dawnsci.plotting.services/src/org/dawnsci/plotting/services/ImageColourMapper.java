@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.services;
+
+import java.io.Serializable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.BooleanDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.plotting.api.histogram.ImageServiceBean;
+import org.eclipse.dawnsci.plotting.api.histogram.ImageServiceBean.ImageOrigin;
+
+/**
+ * Maps an image to 8-bit palette indices by reading the primitive
+ * buffer of the dataset directly, rather than going through getDouble(i,j)
+ * for every pixel.
+ *
+ * There is one kernel per supported dtype (int16, int32, float32 and float64).
+ * The image origin is dealt with by walking the input buffer with a start
+ * offset and a row and column stride, so all four origins share the same loops
+ * and the output array is always written sequentially.
+ *
+ * The scaling is identical to ImageService.getPixelColorIndex(...) which
+ * is used for each pixel and inlines well. In log mode the log of each pixel
+ * is taken as it is read so that no logged copy of the image is needed.
+ */
+class ImageColourMapper {
+
+	/**
+	 * Number of rows mapped between each check of the cancelled flag.
+	 */
+	private static final int ROW_BLOCK = 64;
+
+	/**
+	 * Approximate number of pixels in each tile when mapping in parallel.
+	 */
+	private static final int TILE_SIZE = 1<<16;
+
+	private final double min, max, scale, maxPixel, minCut, maxCut;
+	private final boolean log;
+	private final double  logOffset;
+
+	ImageColourMapper(double min, double max, double scale, double maxPixel, double minCut, double maxCut) {
+		this(min, max, scale, maxPixel, minCut, maxCut, false, 0);
+	}
+
+	/**
+	 * min, max and the cuts must already be logged if log is true.
+	 *
+	 * @param min
+	 * @param max
+	 * @param scale
+	 * @param maxPixel
+	 * @param minCut
+	 * @param maxCut
+	 * @param log true to map log10(pixel-logOffset) rather than the pixel
+	 * @param logOffset
+	 */
+	ImageColourMapper(double min, double max, double scale, double maxPixel, double minCut, double maxCut, boolean log, double logOffset) {
+		this.min       = min;
+		this.max       = max;
+		this.scale     = scale;
+		this.maxPixel  = maxPixel;
+		this.minCut    = minCut;
+		this.maxCut    = maxCut;
+		this.log       = log;
+		this.logOffset = logOffset;
+	}
+
+	/**
+	 *
+	 * @param image
+	 * @param mask, may be null
+	 * @return true if the image can be read from its primitive buffer by this mapper.
+	 */
+	static boolean isSupported(Dataset image, BooleanDataset mask) {
+		if (image==null || image.getRank()!=2 || image.getElementsPerItem()!=1) return false;
+
+		final int size = image.getSize();
+		switch(image.getDtype()) {
+		case Dataset.INT16:
+		case Dataset.INT32:
+		case Dataset.FLOAT32:
+		case Dataset.FLOAT64:
+			break;
+		default:
+			return false;
+		}
+		if (getLength(image.getBuffer())!=size) return false;
+
+		if (mask!=null) {
+			if (mask.getSize()!=size) return false;
+			if (getLength(mask.getBuffer())!=size) return false;
+		}
+		return true;
+	}
+
+	private static int getLength(Serializable buffer) {
+		if (buffer instanceof short[])   return ((short[])buffer).length;
+		if (buffer instanceof int[])     return ((int[])buffer).length;
+		if (buffer instanceof float[])   return ((float[])buffer).length;
+		if (buffer instanceof double[])  return ((double[])buffer).length;
+		if (buffer instanceof boolean[]) return ((boolean[])buffer).length;
+		return -1;
+	}
+
+	/**
+	 * Maps the whole image.
+	 *
+	 * @param image, must be supported, see isSupported(...)
+	 * @param mask, may be null
+	 * @param origin
+	 * @param bean used to check if the mapping has been cancelled
+	 * @return the indices in the order required by ImageData or null if cancelled.
+	 */
+	byte[] map(Dataset image, BooleanDataset mask, ImageOrigin origin, ImageServiceBean bean) {
+
+		final Layout layout = new Layout(image.getShape(), origin);
+		final byte[] out    = new byte[image.getSize()];
+
+		for (int row = 0; row < layout.height; row+=ROW_BLOCK) {
+			if (bean!=null && bean.isCancelled()) return null;
+			mapRows(image, mask, layout, out, row, Math.min(row+ROW_BLOCK, layout.height));
+		}
+		return out;
+	}
+
+	/**
+	 * Maps the whole image by splitting the output into tiles of rows which
+	 * are colour mapped concurrently on the pool into the same byte array.
+	 * The cancelled flag of the bean is checked before each tile.
+	 *
+	 * @param image, must be supported, see isSupported(...)
+	 * @param mask, may be null
+	 * @param origin
+	 * @param bean used to check if the mapping has been cancelled
+	 * @param pool
+	 * @return the indices in the order required by ImageData or null if cancelled.
+	 */
+	byte[] map(Dataset image, BooleanDataset mask, ImageOrigin origin, ImageServiceBean bean, ForkJoinPool pool) {
+
+		final Layout layout = new Layout(image.getShape(), origin);
+		final byte[] out    = new byte[image.getSize()];
+		final int tileRows  = Math.max(1, TILE_SIZE/Math.max(1, layout.width));
+
+		pool.invoke(new MapTilesAction(image, mask, layout, out, bean, tileRows, 0, layout.height));
+		if (bean!=null && bean.isCancelled()) return null;
+		return out;
+	}
+
+	/**
+	 * Splits the rows in half until there are no more than tileRows,
+	 * then maps them.
+	 */
+	private class MapTilesAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 3218870335463911204L;
+
+		private final Dataset          image;
+		private final BooleanDataset   mask;
+		private final Layout           layout;
+		private final byte[]           out;
+		private final ImageServiceBean bean;
+		private final int              tileRows;
+		private final int              rowStart, rowEnd;
+
+		MapTilesAction(Dataset image, BooleanDataset mask, Layout layout, byte[] out, ImageServiceBean bean,
+				       int tileRows, int rowStart, int rowEnd) {
+			this.image    = image;
+			this.mask     = mask;
+			this.layout   = layout;
+			this.out      = out;
+			this.bean     = bean;
+			this.tileRows = tileRows;
+			this.rowStart = rowStart;
+			this.rowEnd   = rowEnd;
+		}
+
+		@Override
+		protected void compute() {
+			if (bean!=null && bean.isCancelled()) return;
+
+			if (rowEnd-rowStart <= tileRows) {
+				mapRows(image, mask, layout, out, rowStart, rowEnd);
+				return;
+			}
+			final int mid = (rowStart+rowEnd) >>> 1;
+			invokeAll(new MapTilesAction(image, mask, layout, out, bean, tileRows, rowStart, mid),
+					  new MapTilesAction(image, mask, layout, out, bean, tileRows, mid, rowEnd));
+		}
+	}
+
+	/**
+	 * Maps the output rows from rowStart (inclusive) to rowEnd (exclusive) into
+	 * out. Rows are rows of the ImageData, which are not rows of the image unless the
+	 * origin is TOP_LEFT or BOTTOM_RIGHT.
+	 *
+	 * This method writes only to its own rows of out and may be called concurrently
+	 * for different row ranges.
+	 *
+	 * @param image
+	 * @param mask, may be null
+	 * @param layout
+	 * @param out
+	 * @param rowStart
+	 * @param rowEnd
+	 */
+	void mapRows(Dataset image, BooleanDataset mask, Layout layout, byte[] out, int rowStart, int rowEnd) {
+
+		final boolean[] mbuf = mask!=null ? (boolean[])mask.getBuffer() : null;
+		final Serializable buffer = image.getBuffer();
+
+		if (buffer instanceof short[]) {
+			mapShorts((short[])buffer, mbuf, layout, out, rowStart, rowEnd);
+		} else if (buffer instanceof int[]) {
+			mapInts((int[])buffer, mbuf, layout, out, rowStart, rowEnd);
+		} else if (buffer instanceof float[]) {
+			mapFloats((float[])buffer, mbuf, layout, out, rowStart, rowEnd);
+		} else if (buffer instanceof double[]) {
+			mapDoubles((double[])buffer, mbuf, layout, out, rowStart, rowEnd);
+		} else {
+			throw new IllegalArgumentException("The dataset buffer of "+image.getName()+" cannot be mapped directly!");
+		}
+	}
+
+	private void mapShorts(final short[] data, final boolean[] mask, final Layout l, final byte[] out, int rowStart, int rowEnd) {
+		for (int row = rowStart; row < rowEnd; ++row) {
+			int in  = l.start + row*l.rowStride;
+			int pix = row*l.width;
+			for (int col = 0; col < l.width; ++col, in+=l.colStride, ++pix) {
+				out[pix] = mask==null || mask[in]
+						 ? ImageService.getPixelColorIndex(value(data[in]), min, max, scale, maxPixel, minCut, maxCut)
+						 : ImageService.NAN_PIX_BYTE;
+			}
+		}
+	}
+
+	private void mapInts(final int[] data, final boolean[] mask, final Layout l, final byte[] out, int rowStart, int rowEnd) {
+		for (int row = rowStart; row < rowEnd; ++row) {
+			int in  = l.start + row*l.rowStride;
+			int pix = row*l.width;
+			for (int col = 0; col < l.width; ++col, in+=l.colStride, ++pix) {
+				out[pix] = mask==null || mask[in]
+						 ? ImageService.getPixelColorIndex(value(data[in]), min, max, scale, maxPixel, minCut, maxCut)
+						 : ImageService.NAN_PIX_BYTE;
+			}
+		}
+	}
+
+	private void mapFloats(final float[] data, final boolean[] mask, final Layout l, final byte[] out, int rowStart, int rowEnd) {
+		for (int row = rowStart; row < rowEnd; ++row) {
+			int in  = l.start + row*l.rowStride;
+			int pix = row*l.width;
+			for (int col = 0; col < l.width; ++col, in+=l.colStride, ++pix) {
+				out[pix] = mask==null || mask[in]
+						 ? ImageService.getPixelColorIndex(value(data[in]), min, max, scale, maxPixel, minCut, maxCut)
+						 : ImageService.NAN_PIX_BYTE;
+			}
+		}
+	}
+
+	private void mapDoubles(final double[] data, final boolean[] mask, final Layout l, final byte[] out, int rowStart, int rowEnd) {
+		for (int row = rowStart; row < rowEnd; ++row) {
+			int in  = l.start + row*l.rowStride;
+			int pix = row*l.width;
+			for (int col = 0; col < l.width; ++col, in+=l.colStride, ++pix) {
+				out[pix] = mask==null || mask[in]
+						 ? ImageService.getPixelColorIndex(value(data[in]), min, max, scale, maxPixel, minCut, maxCut)
+						 : ImageService.NAN_PIX_BYTE;
+			}
+		}
+	}
+
+	private final double value(final double val) {
+		return log ? Math.log10(val - logOffset) : val;
+	}
+
+	/**
+	 * The walk over the image buffer needed to produce the ImageData rows
+	 * for a given origin. The pixel at (row, col) of the ImageData is at
+	 * start + row*rowStride + col*colStride in the image buffer.
+	 */
+	static final class Layout {
+
+		final int width, height;
+		final int start, rowStride, colStride;
+
+		Layout(int[] shape, ImageOrigin origin) {
+			final int rows = shape[0];
+			final int cols = shape[1];
+			if (origin==null) origin = ImageOrigin.TOP_LEFT;
+
+			switch(origin) {
+			case BOTTOM_LEFT:
+				width     = rows;
+				height    = cols;
+				start     = cols-1;
+				rowStride = -1;
+				colStride = cols;
+				break;
+			case BOTTOM_RIGHT:
+				width     = cols;
+				height    = rows;
+				start     = rows*cols-1;
+				rowStride = -cols;
+				colStride = -1;
+				break;
+			case TOP_RIGHT:
+				width     = rows;
+				height    = cols;
+				start     = (rows-1)*cols;
+				rowStride = 1;
+				colStride = -cols;
+				break;
+			case TOP_LEFT:
+			default:
+				width     = cols;
+				height    = rows;
+				start     = 0;
+				rowStride = cols;
+				colStride = 1;
+				break;
+			}
+		}
+	}
+}
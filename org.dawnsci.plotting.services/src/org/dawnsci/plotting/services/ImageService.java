@@ -16,6 +16,7 @@ import java.awt.image.WritableRaster;
 
 import org.dawb.common.services.ServiceManager;
 import org.dawnsci.plotting.services.util.SWTImageUtils;
+import org.dawnsci.plotting.util.PoolUtils;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.dawnsci.analysis.dataset.impl.BooleanDataset;
@@ -87,6 +88,18 @@ public class ImageService extends AbstractServiceFactory implements IImageServic
 		// Important do nothing here, OSGI may start the service more than once.
 	}
 	
+	/**
+	 * Images with at least this many pixels are colour mapped and have their
+	 * statistics calculated in tiles on the pool, unless the property
+	 * org.dawnsci.plotting.services.no.thread.pool is set.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1<<18;
+	
+	private static boolean isParallel(Dataset image) {
+		if (Boolean.getBoolean("org.dawnsci.plotting.services.no.thread.pool")) return false;
+		return image.getSize() >= PARALLEL_THRESHOLD;
+	}
+	
 	/**
 	 * This method is not thread safe
 	 */
@@ -99,9 +112,9 @@ public class ImageService extends AbstractServiceFactory implements IImageServic
 	private static final int NAN_PIX_INDEX = 254;
 	private static final int MAX_PIX_INDEX = 255;
 	
-	private static final byte MIN_PIX_BYTE = (byte)(MIN_PIX_INDEX & 0xFF);
-	private static final byte NAN_PIX_BYTE = (byte)(NAN_PIX_INDEX & 0xFF);
-	private static final byte MAX_PIX_BYTE = (byte)(MAX_PIX_INDEX & 0xFF);
+	static final byte MIN_PIX_BYTE = (byte)(MIN_PIX_INDEX & 0xFF);
+	static final byte NAN_PIX_BYTE = (byte)(NAN_PIX_INDEX & 0xFF);
+	static final byte MAX_PIX_BYTE = (byte)(MAX_PIX_INDEX & 0xFF);
 	
 	/**
 	 * getImageData(...) provides an image in a given palette data and origin.
@@ -146,9 +159,19 @@ public class ImageService extends AbstractServiceFactory implements IImageServic
 		double maxCut = getMaxCut(bean);
 		double minCut = getMinCut(bean);
 
+		BooleanDataset mask = bean.getMask()!=null
+							? (BooleanDataset)DatasetUtils.cast((Dataset)bean.getMask(), Dataset.BOOL)
+							: null;
+
 		// now deal with the log if needed
+		boolean logInline = false;
 		if (bean.isLogColorScale()) {
-			image = getImageLoggedData(bean);
+			// Images which ImageColourMapper supports have the log taken as they are
+			// mapped, which saves creating and passing over a logged copy of the image.
+			logInline = !oImage.isComplex()
+					 && !(bean.getFunctionObject() instanceof FunctionContainer)
+					 && ImageColourMapper.isSupported(oImage, mask);
+			if (!logInline) image = getImageLoggedData(bean);
 			max = Math.log10(max);
 			// note createMaxMin() -> getFastStatistics() -> getImageLogged() which ensures min >= 0 
 			min = Math.log10(min);
@@ -209,13 +232,24 @@ public class ImageService extends AbstractServiceFactory implements IImageServic
 			maxPixel = 0xFF;
 		}
 		if (bean.isCancelled()) return null;
-		
-		BooleanDataset mask = bean.getMask()!=null
-							? (BooleanDataset)DatasetUtils.cast((Dataset)bean.getMask(), Dataset.BOOL)
-							: null;
 
 		ImageData imageData = null;
 
+		// Supported dtypes are mapped straight from the primitive buffer which avoids
+		// a getDouble(i,j) and getBoolean(i,j) per pixel.
+		if (ImageColourMapper.isSupported(image, mask)) {
+			final ImageColourMapper mapper = new ImageColourMapper(min, max, scale, maxPixel, minCut, maxCut, logInline, getLogOffset(bean));
+			final byte[] mapped = isParallel(image)
+					            ? mapper.map(image, mask, origin, bean, PoolUtils.getPool())
+					            : mapper.map(image, mask, origin, bean);
+			if (mapped==null) return null; // Cancelled
+			
+			final ImageColourMapper.Layout layout = new ImageColourMapper.Layout(shape, origin);
+			imageData = new ImageData(layout.width, layout.height, 8, palette, 1, mapped);
+			imageData.alpha = bean.getAlpha();
+			return imageData;
+		}
+
 		// We use a byte array directly as this is faster than using setPixel(...)
 		// on image data. Set pixel does extra floating point operations. The downside
 		// is that by doing this we certainly have to have 8 bit as getPixelColorIndex(...)
@@ -378,6 +412,7 @@ public class ImageService extends AbstractServiceFactory implements IImageServic
 
 	/**
 	 * private finals inline well by the compiler.
+	 * Package private as ImageColourMapper also uses it for each pixel.
 	 * @param val
 	 * @param min
 	 * @param max
@@ -385,7 +420,7 @@ public class ImageService extends AbstractServiceFactory implements IImageServic
 	 * @param maxPixel
 	 * @param scaledImageAsByte
 	 */
-	private final static byte getPixelColorIndex(final double  val, 
+	final static byte getPixelColorIndex(final double  val, 
 												 final double  min, 
 												 final double  max, 
 												 final double  scale, 
@@ -451,6 +486,18 @@ public class ImageService extends AbstractServiceFactory implements IImageServic
 		}
 		return ret;
 	}
+	
+	/**
+	 * The offset subtracted before the log is taken, as getImageLoggedDataCalc(...)
+	 * does it, for when the log is taken pixel by pixel.
+	 * @param bean
+	 * @return offset or 0 if the offset is not a number
+	 */
+	static double getLogOffset(ImageServiceBean bean) {
+		double offset = bean.getLogOffset();
+		if (Double.isNaN(offset) || Double.isInfinite(offset)) return 0;
+		return offset;
+	}
 
 	/**
 	 * Fast statistics as a rough guide - this is faster than Dataset.getMin()
@@ -464,6 +511,15 @@ public class ImageService extends AbstractServiceFactory implements IImageServic
 	 */
 	public double[] getFastStatistics(ImageServiceBean bean) {
 		
+		BooleanDataset mask = bean.getMask()!=null
+	                        ? (BooleanDataset) DatasetUtils.cast(bean.getMask(), Dataset.BOOL)
+	                        : null;
+	                        
+		final Dataset raw = (Dataset)bean.getImage();
+		if (ImageColourMapper.isSupported(raw, mask)) {
+			return getFusedStatistics(bean, raw, mask);
+		}
+		
 		Dataset image    = getImageLoggedData(bean);
 		
 		if (bean.getHistogramType()==HistoType.OUTLIER_VALUES && !bean.isLogColorScale()) {
@@ -490,10 +546,6 @@ public class ImageService extends AbstractServiceFactory implements IImageServic
 		double max = -Double.MAX_VALUE;
 		double sum = 0.0;
 		int size = 0;
-		
-		BooleanDataset mask = bean.getMask()!=null
-	                        ? (BooleanDataset) DatasetUtils.cast(bean.getMask(), Dataset.BOOL)
-	                        : null;
 
 	    // Big loop warning:
 	    final IndexIterator it = image.getIterator();
@@ -545,6 +597,52 @@ public class ImageService extends AbstractServiceFactory implements IImageServic
 
 		return new double[]{min, retMax, retExtra, max};
 	}
+	
+	/**
+	 * Phase one of a redraw, the same statistics as getFastStatistics(...) in one pass
+	 * over the primitive buffer of the image. In log mode the log of each pixel is taken
+	 * as it is read. The median and outlier values are approximated from a histogram
+	 * filled in the same pass, rather than sorting the image.
+	 * 
+	 * @param bean
+	 * @param image, must be supported by ImageColourMapper
+	 * @param mask, may be null
+	 * @return as getFastStatistics(...)
+	 */
+	private double[] getFusedStatistics(ImageServiceBean bean, Dataset image, BooleanDataset mask) {
+		
+		final boolean outliers  = bean.getHistogramType()==HistoType.OUTLIER_VALUES && !bean.isLogColorScale();
+		final boolean median    = bean.getHistogramType()==HistoType.MEDIAN;
+		final boolean parallel  = isParallel(image);
+		
+		final ImageStatisticsTask task = new ImageStatisticsTask(image, mask, bean, outliers || median, parallel);
+		final ImageStatisticsTask.Statistics stats = parallel ? PoolUtils.getPool().invoke(task) : task.compute();
+		
+		if (outliers) {
+			if (bean.getLo() < 0 || bean.getHi() > 100 || bean.getLo() >= bean.getHi()) {
+				bean.setLo(10);
+				bean.setHi(90);
+			}
+			return new double[]{stats.histogram.getQuantile(bean.getLo()/100d), stats.histogram.getQuantile(bean.getHi()/100d), -1};
+		}
+		
+		double retMax;
+		double retExtra;
+		if (median) {
+			retExtra = stats.histogram.getQuantile(0.5);
+			retMax   = 2 * retExtra;
+		} else { // Use mean based histo
+			retExtra = stats.getMean();
+			retMax   = (Math.E)*retExtra; // Not statistical, E seems to be better than 3...
+		}
+		
+		if (retMax > stats.max) retMax = stats.max;
+		
+		if (bean.isLogColorScale()) {
+			return new double[]{Math.pow(10, stats.min), Math.pow(10, retMax), Math.pow(10, retExtra)};
+		}
+		return new double[]{stats.min, retMax, retExtra, stats.max};
+	}
 
 	@Override
 	public Object create(@SuppressWarnings("rawtypes") Class serviceInterface, IServiceLocator parentLocator, IServiceLocator locator) {
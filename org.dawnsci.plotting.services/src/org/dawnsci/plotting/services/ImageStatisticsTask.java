@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.services;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveTask;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.BooleanDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.plotting.api.histogram.ImageServiceBean;
+
+/**
+ * Reduction of the min, max and sum of the unmasked, in bounds and non-NaN
+ * pixels of an image in one pass over its primitive buffer. The image must be
+ * supported by ImageColourMapper. Optionally a histogram is filled in the same
+ * pass from which the median and outlier values can be read. Like the median and
+ * outliers of Stats, the histogram is of all the non-NaN pixels, whether masked,
+ * out of bounds or not.
+ *
+ * When the bean is in log mode the log of each pixel is taken as it is read,
+ * in the same way as getImageLoggedData(...), without creating a logged image.
+ *
+ * In parallel the image is reduced in tiles which are merged. Each worker thread
+ * fills one histogram for all the tiles it reduces, and those are merged at the end,
+ * so a tile costs no more than its pixels. If the bean is cancelled, tiles not yet
+ * started are skipped and the result should be discarded.
+ */
+class ImageStatisticsTask extends RecursiveTask<ImageStatisticsTask.Statistics> {
+
+	private static final long serialVersionUID = 5203460616457286386L;
+
+	/**
+	 * Number of pixels reduced by each tile.
+	 */
+	private static final int TILE_SIZE = 1<<16;
+
+	private final Serializable     buffer;
+	private final boolean[]        mask;
+	private final ImageServiceBean bean;
+	private final Map<Thread, StreamingHistogram> histograms; // Null if no histogram is filled
+	private final boolean          root;
+	private final boolean          log;
+	private final double           logOffset;
+	private final int              tileSize;
+	private final int              start, end;
+
+	/**
+	 *
+	 * @param image
+	 * @param mask, may be null
+	 * @param bean
+	 * @param histogram true to fill a histogram as well
+	 * @param parallel false if the task will be computed directly rather than on a pool
+	 */
+	ImageStatisticsTask(Dataset image, BooleanDataset mask, ImageServiceBean bean, boolean histogram, boolean parallel) {
+		this(image.getBuffer(), mask!=null ? (boolean[])mask.getBuffer() : null, bean,
+			 histogram ? new ConcurrentHashMap<Thread, StreamingHistogram>() : null, true,
+			 !parallel ? Integer.MAX_VALUE : TILE_SIZE,
+			 0, image.getSize());
+	}
+
+	private ImageStatisticsTask(Serializable buffer, boolean[] mask, ImageServiceBean bean, Map<Thread, StreamingHistogram> histograms, boolean root, int tileSize, int start, int end) {
+		this.buffer     = buffer;
+		this.mask       = mask;
+		this.bean       = bean;
+		this.histograms = histograms;
+		this.root       = root;
+		this.log       = bean.isLogColorScale();
+		this.logOffset = ImageService.getLogOffset(bean);
+		this.tileSize  = tileSize;
+		this.start     = start;
+		this.end       = end;
+	}
+
+	@Override
+	protected Statistics compute() {
+		final Statistics ret = reduce();
+		if (root && histograms!=null) {
+			ret.histogram = new StreamingHistogram();
+			for (StreamingHistogram h : histograms.values()) ret.histogram.merge(h);
+		}
+		return ret;
+	}
+
+	private Statistics reduce() {
+
+		if (end-start <= tileSize) {
+			final Statistics ret = new Statistics();
+			if (bean.isCancelled()) return ret;
+
+			final StreamingHistogram histogram = getHistogram();
+			if (buffer instanceof short[]) {
+				final short[] data = (short[])buffer;
+				for (int i = start; i < end; ++i) reduce(ret, histogram, i, value(data[i]));
+			} else if (buffer instanceof int[]) {
+				final int[] data = (int[])buffer;
+				for (int i = start; i < end; ++i) reduce(ret, histogram, i, value(data[i]));
+			} else if (buffer instanceof float[]) {
+				final float[] data = (float[])buffer;
+				for (int i = start; i < end; ++i) reduce(ret, histogram, i, value(data[i]));
+			} else if (buffer instanceof double[]) {
+				final double[] data = (double[])buffer;
+				for (int i = start; i < end; ++i) reduce(ret, histogram, i, value(data[i]));
+			} else {
+				throw new IllegalArgumentException("Cannot reduce a buffer of type "+buffer.getClass().getSimpleName());
+			}
+			return ret;
+		}
+
+		final int mid = (start+end) >>> 1;
+		final ImageStatisticsTask left  = new ImageStatisticsTask(buffer, mask, bean, histograms, false, tileSize, start, mid);
+		final ImageStatisticsTask right = new ImageStatisticsTask(buffer, mask, bean, histograms, false, tileSize, mid, end);
+		left.fork();
+		final Statistics r = right.compute();
+		final Statistics l = left.join();
+		l.merge(r);
+		return l;
+	}
+
+	/**
+	 * @return the histogram of the current worker, or null if none is filled
+	 */
+	private StreamingHistogram getHistogram() {
+		if (histograms==null) return null;
+		final Thread thread = Thread.currentThread();
+		StreamingHistogram histogram = histograms.get(thread);
+		if (histogram==null) {
+			histogram = new StreamingHistogram();
+			histograms.put(thread, histogram);
+		}
+		return histogram;
+	}
+
+	private final double value(final double val) {
+		return log ? Math.log10(val - logOffset) : val;
+	}
+
+	private final void reduce(final Statistics ret, final StreamingHistogram histogram, final int i, final double val) {
+		if (Double.isNaN(val))     return;
+		if (histogram!=null) histogram.add(val);
+		if (mask!=null && !mask[i]) return;
+		if (!bean.isInBounds(val)) return;
+
+		ret.sum += val;
+		if (val < ret.min) ret.min = val;
+		if (val > ret.max) ret.max = val;
+		ret.count++;
+	}
+
+	/**
+	 * The result of the reduction, in log space if the bean is in log mode.
+	 */
+	static final class Statistics {
+
+		double min   = Double.MAX_VALUE;
+		double max   = -Double.MAX_VALUE;
+		double sum   = 0;
+		long   count = 0;
+		StreamingHistogram histogram; // Of the whole image, set once all the tiles are reduced
+
+		void merge(Statistics other) {
+			min    = Math.min(min, other.min);
+			max    = Math.max(max, other.max);
+			sum   += other.sum;
+			count += other.count;
+		}
+
+		double getMean() {
+			return sum / count;
+		}
+	}
+}
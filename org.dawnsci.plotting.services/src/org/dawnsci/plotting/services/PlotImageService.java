@@ -10,29 +10,38 @@ package org.dawnsci.plotting.services;
 
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 import java.awt.image.DirectColorModel;
 import java.awt.image.IndexColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.swing.ImageIcon;
 import javax.swing.filechooser.FileSystemView;
 
 import org.dawb.common.services.ServiceManager;
 import org.dawb.common.util.io.FileUtils;
-import org.dawnsci.io.h5.H5Loader;
 import org.dawnsci.plotting.AbstractPlottingSystem;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
 import org.eclipse.dawnsci.analysis.api.downsample.DownsampleMode;
+import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
 import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
 import org.eclipse.dawnsci.analysis.dataset.function.Downsample;
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
 import org.eclipse.dawnsci.analysis.dataset.impl.RGBDataset;
 import org.eclipse.dawnsci.plotting.api.IPlottingSystem;
 import org.eclipse.dawnsci.plotting.api.PlotType;
@@ -87,9 +96,21 @@ public class PlotImageService extends AbstractServiceFactory implements IPlotIma
 	private static float minimumThreshold = 0.98f;
 	private static int colourMapChoice    = 1;
     private static ImageRegistry imageRegistry;
+    private static ThumbnailCache thumbnails;
+    
+    private static synchronized ThumbnailCache getThumbnails() {
+    	if (thumbnails==null) {
+    		final boolean noDisk = Boolean.getBoolean("org.dawnsci.plotting.no.thumbnail.disk");
+    		final File    dir    = noDisk || Activator.getDefault()==null
+    				             ? null
+    				             : Activator.getDefault().getStateLocation().append("thumbnails").toFile();
+    		thumbnails = new ThumbnailCache(dir);
+    	}
+    	return thumbnails;
+    }
     
     @Override
-	public Image createImage(final File f, final int width, int height) {
+	public Image createImage(final File f, final int width, final int height) {
 		
 		if (f.isDirectory()) {
 			final Image image = Activator.getImageDescriptor("icons/folder.gif").createImage();
@@ -101,42 +122,193 @@ public class PlotImageService extends AbstractServiceFactory implements IPlotIma
 	        return blank;
 		}
 		
+		// This is called on the UI thread, so the file is read on the pool and the
+		// image shows the icon of the file until the thumbnail is drawn over it
+		final Image   image   = createIcon(f, width, height);
+		final Display display = Display.getCurrent()!=null ? Display.getCurrent() : Display.getDefault();
+		final Future<ImageData> thumb;
 		try {
-			final Dataset thumb = getThumbnail(f, width, height);
-		    return createImageSWT(thumb, null);
-		    
+			thumb = getThumbnailData(f, width, height, true, new ThumbnailCache.Listener() {
+				@Override
+				public void thumbnailRead(final ImageData data) {
+					if (data==null || display.isDisposed()) return;
+					display.asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							if (!image.isDisposed()) drawThumbnail(image, data);
+						}
+					});
+				}
+			});
 		} catch (Throwable ne) {
-			
-			if (imageRegistry == null) imageRegistry = new ImageRegistry(Display.getDefault());
-			final String extension = FileUtils.getFileExtension(f);
-			Image image = imageRegistry.get(extension);
-			if (image != null) return image;
+			return image; // Shown by its icon instead
+		}
+
+		if (thumb.isDone()) { // It was in memory
+			try {
+				final ImageData data = thumb.get();
+				if (data!=null) {
+					image.dispose();
+					return new Image(display, data);
+				}
+			} catch (Exception ne) {
+				// Shown by its icon instead
+			}
+		}
+		return image;
+	}
 
+	/**
+	 * @return the icon of the file's program, or else of its editor, in the middle of an image of the size given
+	 */
+	private Image createIcon(final File f, final int width, final int height) {
+		if (imageRegistry == null) imageRegistry = new ImageRegistry(Display.getDefault());
+		final String extension = FileUtils.getFileExtension(f);
+		Image icon = imageRegistry.get(extension);
+		if (icon == null) {
 			Program program = Program.findProgram(extension);
 			ImageData imageData = (program == null ? null : program.getImageData());
 			if (imageData != null) {
-				image = new Image(Display.getDefault(), imageData);
-				imageRegistry.put(extension, image);
-			    return image;
+				icon = new Image(Display.getDefault(), imageData);
+				imageRegistry.put(extension, icon);
 			}
-
 		}
-		
-		final Image image = PlatformUI.getWorkbench().getEditorRegistry().getImageDescriptor(f.getAbsolutePath()).createImage();
+		final boolean editorIcon = icon == null;
+		if (editorIcon) icon = PlatformUI.getWorkbench().getEditorRegistry().getImageDescriptor(f.getAbsolutePath()).createImage();
+
 		final Image blank = new Image(Display.getDefault(), width, height);
 		GC gc = new GC(blank);
-        gc.drawImage(image, (width/2)-image.getImageData().width/2, height/2-image.getImageData().height/2);
-        gc.dispose();
-        
-        return blank;
+		gc.drawImage(icon, (width/2)-icon.getImageData().width/2, height/2-icon.getImageData().height/2);
+		gc.dispose();
+		if (editorIcon) icon.dispose();
+
+		return blank;
 	}
-	
-	private Dataset getThumbnail(final File f, final int wdith, final int height) throws Throwable {
+
+	/**
+	 * Draws the thumbnail over the image, as large as it fits without changing its shape.
+	 */
+	private static void drawThumbnail(Image image, ImageData data) {
+		final Rectangle bounds = image.getBounds();
+		final double    scale  = Math.min((double)bounds.width/data.width, (double)bounds.height/data.height);
+		final int       w      = Math.max(1, (int)Math.round(data.width*scale));
+		final int       h      = Math.max(1, (int)Math.round(data.height*scale));
+
+		final Image thumb = new Image(image.getDevice(), data);
+		final GC gc = new GC(image);
+		try {
+			gc.setBackground(image.getDevice().getSystemColor(SWT.COLOR_WHITE));
+			gc.fillRectangle(bounds);
+			gc.drawImage(thumb, 0, 0, data.width, data.height, (bounds.width-w)/2, (bounds.height-h)/2, w, h);
+		} finally {
+			gc.dispose();
+			thumb.dispose();
+		}
+	}
+
+	/**
+	 * The thumbnail of a file, from the cache if the file has not changed since it
+	 * was made, otherwise read now and cached. As the file may be large this is not
+	 * to be called on the UI thread, see getThumbnailData(f, width, height, visible).
+	 * 
+	 * @param f
+	 * @param width
+	 * @param height
+	 * @return the thumbnail, or null if the file has no image
+	 * @throws Exception
+	 */
+	public ImageData getThumbnailData(final File f, final int width, final int height) throws Exception {
+		final ImageServiceBean bean = createBean();
+		final String key = ThumbnailCache.getKey(f, width, height, getVariant(bean));
+		ImageData data = getThumbnails().get(key);
+		if (data==null) {
+			data = readThumbnail(f, width, height, bean);
+			if (data!=null) getThumbnails().put(key, data);
+		}
+		return data;
+	}
+
+	/**
+	 * The thumbnail of a file, read on a pool of background threads if it is not
+	 * cached. Visible thumbnails are read before others, the last asked for first.
+	 * 
+	 * @param f
+	 * @param width
+	 * @param height
+	 * @param visible true if the thumbnail is being shown now, false to read it ahead
+	 * @return the thumbnail, which is null if the file has no image
+	 * @throws Exception
+	 */
+	public Future<ImageData> getThumbnailData(final File f, final int width, final int height, boolean visible) throws Exception {
+		return getThumbnailData(f, width, height, visible, null);
+	}
+
+	private Future<ImageData> getThumbnailData(final File f, final int width, final int height, boolean visible, ThumbnailCache.Listener listener) throws Exception {
+		final ImageServiceBean bean = createBean();
+		final String key = ThumbnailCache.getKey(f, width, height, getVariant(bean));
+		return getThumbnails().get(key, visible, new Callable<ImageData>() {
+			@Override
+			public ImageData call() throws Exception {
+				return readThumbnail(f, width, height, bean);
+			}
+		}, listener);
+	}
+
+	private static String getVariant(ImageServiceBean bean) {
+		final ScopedPreferenceStore store = new ScopedPreferenceStore(InstanceScope.INSTANCE, "org.dawnsci.plotting");
+		return store.getString(PlottingConstants.COLOUR_SCHEME)+"\n"+bean.getOrigin();
+	}
+
+	private ImageData readThumbnail(final File f, final int width, final int height, final ImageServiceBean bean) throws Exception {
+		if (f.isDirectory()) return null;
+		final Dataset thumb = getThumbnail(f, width, height);
+		if (thumb==null) return null;
+		bean.setImage(thumb);
+		final IImageService service = (IImageService)ServiceManager.getService(IImageService.class);
+		return service.getImageData(bean);
+	}
+
+	/**
+	 * Reads every step'th pixel of the largest image in the file, so only the
+	 * thumbnail is read from HDF5 and other files read lazily.
+	 */
+	private Dataset getThumbnail(final File f, final int width, final int height) throws Exception {
 		
-	    if (H5Loader.isH5(f.getAbsolutePath())) return null; // Cannot risk loading large datasets!
 		final ILoaderService loader = (ILoaderService)ServiceManager.getService(ILoaderService.class);
-		final Dataset set   = (Dataset)loader.getDataset(f.getAbsolutePath(), null);
-		final Dataset thumb = getThumbnail(set, wdith, height);
+		final IDataHolder  holder = loader.getData(f.getAbsolutePath(), null);
+		if (holder==null) return null;
+		
+		ILazyDataset image = null;
+		long         area  = 0;
+		for (String name : holder.getNames()) {
+			final ILazyDataset lazy = holder.getLazyDataset(name);
+			if (lazy==null || lazy.getRank() < 2) continue;
+			final int[] shape = lazy.getShape();
+			final long  a     = (long)shape[shape.length-2]*shape[shape.length-1];
+			if (shape[shape.length-2] > 1 && shape[shape.length-1] > 1 && a > area) {
+				image = lazy;
+				area  = a;
+			}
+		}
+		if (image==null) return null;
+		
+		final int[] shape = image.getShape();
+		final int   rank  = shape.length;
+		final int[] start = new int[rank];
+		final int[] stop  = new int[rank];
+		final int[] step  = new int[rank];
+		for (int i = 0; i < rank; i++) { // The first image of a stack
+			stop[i] = 1;
+			step[i] = 1;
+		}
+		stop[rank-2] = shape[rank-2];
+		stop[rank-1] = shape[rank-1];
+		step[rank-2] = Math.max(1, shape[rank-2] / height);
+		step[rank-1] = Math.max(1, shape[rank-1] / width);
+		
+		final Dataset thumb = DatasetUtils.convertToDataset(image.getSlice(start, stop, step));
+		thumb.setShape(thumb.getShape()[rank-2], thumb.getShape()[rank-1]);
+		thumb.setName(image.getName());
 		return thumb;
 	}
 
@@ -167,20 +339,24 @@ public class PlotImageService extends AbstractServiceFactory implements IPlotIma
 	 */
 	public Image createImageSWT(final IDataset thumbnail, ImageServiceBean bean) throws Exception {
         
-		final ScopedPreferenceStore store = new ScopedPreferenceStore(InstanceScope.INSTANCE, "org.dawnsci.plotting");
-		
-		if (bean==null) {
-			bean = new ImageServiceBean();
-			final IPaletteService pservice = (IPaletteService)ServiceManager.getService(IPaletteService.class);
-			bean.setPalette(pservice.getDirectPaletteData(store.getString(PlottingConstants.COLOUR_SCHEME)));	
-			bean.setOrigin(ImageOrigin.forLabel(store.getString(PlottingConstants.ORIGIN_PREF)));
-		}
+		if (bean==null) bean = createBean();
 		bean.setImage(thumbnail);
 		
 		final IImageService service = (IImageService)ServiceManager.getService(IImageService.class);
 		return  service.getImage(bean);
 	}
 
+	private static ImageServiceBean createBean() throws Exception {
+		
+		final ScopedPreferenceStore store = new ScopedPreferenceStore(InstanceScope.INSTANCE, "org.dawnsci.plotting");
+		
+		final ImageServiceBean bean = new ImageServiceBean();
+		final IPaletteService pservice = (IPaletteService)ServiceManager.getService(IPaletteService.class);
+		bean.setPalette(pservice.getDirectPaletteData(store.getString(PlottingConstants.COLOUR_SCHEME)));	
+		bean.setOrigin(ImageOrigin.forLabel(store.getString(PlottingConstants.ORIGIN_PREF)));
+		return bean;
+	}
+
 	@Override
 	public Object create(Class serviceInterface, IServiceLocator parentLocator,
 			IServiceLocator locator) {
@@ -424,22 +600,9 @@ public class PlotImageService extends AbstractServiceFactory implements IPlotIma
 
     
     static ImageData convertToSWT(BufferedImage bufferedImage) {
-        if (bufferedImage.getColorModel() instanceof DirectColorModel) {
-            DirectColorModel colorModel = (DirectColorModel)bufferedImage.getColorModel();
-            PaletteData palette = new PaletteData(colorModel.getRedMask(), colorModel.getGreenMask(), colorModel.getBlueMask());
-            ImageData data = new ImageData(bufferedImage.getWidth(), bufferedImage.getHeight(), colorModel.getPixelSize(), palette);
-            for (int y = 0; y < data.height; y++) {
-                    for (int x = 0; x < data.width; x++) {
-                            int rgb = bufferedImage.getRGB(x, y);
-                            int pixel = palette.getPixel(new RGB((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF)); 
-                            data.setPixel(x, y, pixel);
-                            if (colorModel.hasAlpha()) {
-                                    data.setAlpha(x, y, (rgb >> 24) & 0xFF);
-                            }
-                    }
-            }
-            return data;            
-        } else if (bufferedImage.getColorModel() instanceof IndexColorModel) {
+    	final int width  = bufferedImage.getWidth();
+    	final int height = bufferedImage.getHeight();
+        if (bufferedImage.getColorModel() instanceof IndexColorModel) {
             IndexColorModel colorModel = (IndexColorModel)bufferedImage.getColorModel();
             int size = colorModel.getMapSize();
             byte[] reds = new byte[size];
@@ -453,82 +616,146 @@ public class PlotImageService extends AbstractServiceFactory implements IPlotIma
                     rgbs[i] = new RGB(reds[i] & 0xFF, greens[i] & 0xFF, blues[i] & 0xFF);
             }
             PaletteData palette = new PaletteData(rgbs);
-            ImageData data = new ImageData(bufferedImage.getWidth(), bufferedImage.getHeight(), colorModel.getPixelSize(), palette);
+            ImageData data = new ImageData(width, height, colorModel.getPixelSize(), palette);
             data.transparentPixel = colorModel.getTransparentPixel();
             WritableRaster raster = bufferedImage.getRaster();
-            int[] pixelArray = new int[1];
-            for (int y = 0; y < data.height; y++) {
-                    for (int x = 0; x < data.width; x++) {
-                            raster.getPixel(x, y, pixelArray);
-                            data.setPixel(x, y, pixelArray[0]);
-                    }
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                    raster.getPixels(0, y, width, 1, row);
+                    data.setPixels(0, y, width, row, 0);
             }
             return data;
+            
+        } else if (bufferedImage.getColorModel() instanceof DirectColorModel || isRGB(bufferedImage)) {
+        	// Written straight into the bytes of the image data, red, green then blue
+            PaletteData palette = new PaletteData(0xFF0000, 0xFF00, 0xFF);
+            ImageData data = new ImageData(width, height, 24, palette);
+            final boolean alpha = bufferedImage.getColorModel().hasAlpha();
+            if (alpha) data.alphaData = new byte[width*height];
+            final byte[] bytes = data.data;
+            final int[]  row   = new int[width];
+            for (int y = 0; y < height; y++) {
+            	getRGB(bufferedImage, y, row);
+            	int i = y*data.bytesPerLine;
+            	for (int x = 0; x < width; x++) {
+            		final int argb = row[x];
+            		bytes[i++] = (byte)(argb >> 16);
+            		bytes[i++] = (byte)(argb >> 8);
+            		bytes[i++] = (byte)argb;
+            	}
+            	if (alpha) {
+            		final int a = y*width;
+            		for (int x = 0; x < width; x++) data.alphaData[a+x] = (byte)(row[x] >>> 24);
+            	}
+            }
+            return data;            
         }
         return null;
     }
     
     static RGBDataset convertToRGBDataset(BufferedImage bufferedImage) {
     	
-        RGBDataset data = new RGBDataset(bufferedImage.getHeight(), bufferedImage.getWidth());
+    	final int width  = bufferedImage.getWidth();
+    	final int height = bufferedImage.getHeight();
+        RGBDataset data = new RGBDataset(height, width);
+        final short[] rgb = data.getData(); // Red, green and blue of each pixel in turn
+        int i = 0;
        
-        if (bufferedImage.getColorModel() instanceof DirectColorModel) {
-            DirectColorModel colorModel = (DirectColorModel)bufferedImage.getColorModel();
-            for (int y = 0; y < bufferedImage.getHeight(); y++) {
-                    for (int x = 0; x < bufferedImage.getWidth(); x++) {
-                            int value = bufferedImage.getRGB(x, y);
-                            RGB rgb = new RGB((value >> 16) & 0xFF, (value >> 8) & 0xFF, value & 0xFF); 
-                            data.set(new short[]{(short)rgb.red, (short)rgb.green, (short)rgb.blue}, y, x);
-                            if (colorModel.hasAlpha()) {
-                            	// TODO
-                                    //data.set(x, y, (rgb >> 24) & 0xFF);
-                            }
-                    }
-            }
-            return data;
-            
-        } else if (bufferedImage.getColorModel() instanceof IndexColorModel) {
+        if (bufferedImage.getColorModel() instanceof DirectColorModel || 
+        	bufferedImage.getColorModel() instanceof IndexColorModel  ||
+        	isRGB(bufferedImage)) {
         	
-            IndexColorModel colorModel = (IndexColorModel)bufferedImage.getColorModel();
-            int size = colorModel.getMapSize();
-            byte[] reds = new byte[size];
-            byte[] greens = new byte[size];
-            byte[] blues = new byte[size];
-            colorModel.getReds(reds);
-            colorModel.getGreens(greens);
-            colorModel.getBlues(blues);
-            RGB[] rgbs = new RGB[size];
-            for (int i = 0; i < rgbs.length; i++) {
-                    rgbs[i] = new RGB(reds[i] & 0xFF, greens[i] & 0xFF, blues[i] & 0xFF);
-            }
-            PaletteData palette = new PaletteData(rgbs);
-            WritableRaster raster = bufferedImage.getRaster();
-            int[] pixelArray = new int[1];
-            for (int y = 0; y < bufferedImage.getHeight(); y++) {
-            	for (int x = 0; x < bufferedImage.getWidth(); x++) {
-            		raster.getPixel(x, y, pixelArray);
-            		RGB rgb = palette.getRGB(pixelArray[0]);
-            		data.set(new short[]{(short)rgb.red, (short)rgb.green, (short)rgb.blue}, y, x);
+        	// An RGB dataset has no alpha, so that of each pixel is dropped
+        	final int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+            	getRGB(bufferedImage, y, row);
+            	for (int x = 0; x < width; x++) {
+            		final int argb = row[x];
+            		rgb[i++] = (short)((argb >> 16) & 0xFF);
+            		rgb[i++] = (short)((argb >> 8) & 0xFF);
+            		rgb[i++] = (short)(argb & 0xFF);
             	}
             }
+            
         } else {
-
+        	// The samples as they are, which may be more than 8 bits
         	WritableRaster raster = bufferedImage.getRaster();
-        	int[] pixelArray = new int[3];
-        	for (int y = 0; y < bufferedImage.getHeight(); y++) {
-        		for (int x = 0; x < bufferedImage.getWidth(); x++) {
-        			raster.getPixel(x, y, pixelArray);
-        			data.set(new short[]{
-        					(short)pixelArray[0], 
-        					(short)pixelArray[1], 
-        					(short)pixelArray[2]},
-        					y, x);
+        	final int bands = raster.getNumBands();
+        	int[] row = new int[width*bands];
+        	for (int y = 0; y < height; y++) {
+        		raster.getPixels(0, y, width, 1, row);
+        		for (int x = 0; x < width; x++) {
+        			final int p = x*bands;
+        			rgb[i++] = (short)row[p];
+        			rgb[i++] = bands > 1 ? (short)row[p+1] : 0;
+        			rgb[i++] = bands > 2 ? (short)row[p+2] : 0;
         		}
         	}  
         }
        return data;
     }
 
+    /**
+     * @return true if the image is 8 bit interleaved red, green and blue, which
+     * {@link #getRGB(BufferedImage, int, int[])} reads straight from its bytes
+     */
+    private static boolean isRGB(BufferedImage image) {
+    	return image.getType()==BufferedImage.TYPE_3BYTE_BGR || image.getType()==BufferedImage.TYPE_4BYTE_ABGR;
+    }
+
+    /**
+     * Reads a row of the image as 0xAARRGGBB. Packed int and interleaved byte images
+     * are read straight from their buffers, others through their colour model.
+     * 
+     * @param image
+     * @param y
+     * @param row as long as the width of the image
+     */
+    static void getRGB(BufferedImage image, int y, int[] row) {
+    	
+    	final int width = image.getWidth();
+    	final WritableRaster raster = image.getRaster();
+    	final DataBuffer     buffer = raster.getDataBuffer();
+    	final int tx = raster.getSampleModelTranslateX(); // Non zero for part of a bigger image
+    	final int ty = raster.getSampleModelTranslateY();
+    	
+    	switch (image.getType()) {
+    	case BufferedImage.TYPE_INT_RGB:
+    	case BufferedImage.TYPE_INT_ARGB:
+    	case BufferedImage.TYPE_INT_BGR: {
+    		final SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel)raster.getSampleModel();
+    		final int[] pixels = ((DataBufferInt)buffer).getData();
+    		System.arraycopy(pixels, buffer.getOffset() + model.getOffset(-tx, y-ty), row, 0, width);
+    		if (image.getType()==BufferedImage.TYPE_INT_RGB) {
+    			for (int x = 0; x < width; x++) row[x] |= 0xFF000000;
+    		} else if (image.getType()==BufferedImage.TYPE_INT_BGR) {
+    			for (int x = 0; x < width; x++) {
+    				final int bgr = row[x];
+    				row[x] = 0xFF000000 | (bgr & 0xFF) << 16 | (bgr & 0xFF00) | (bgr >> 16) & 0xFF;
+    			}
+    		}
+    		return;
+    	}
+    	case BufferedImage.TYPE_3BYTE_BGR:
+    	case BufferedImage.TYPE_4BYTE_ABGR: {
+    		final ComponentSampleModel model = (ComponentSampleModel)raster.getSampleModel();
+    		final byte[] bytes  = ((DataBufferByte)buffer).getData();
+    		final int[]  bands  = model.getBandOffsets(); // Red, green, blue then alpha
+    		final int    stride = model.getPixelStride();
+    		final int    r = bands[0], g = bands[1], b = bands[2];
+    		final int    a = bands.length > 3 ? bands[3] : -1;
+    		int i = buffer.getOffset() + (y-ty)*model.getScanlineStride() - tx*stride;
+    		for (int x = 0; x < width; x++, i += stride) {
+    			final int alpha = a < 0 ? 0xFF : bytes[i+a] & 0xFF;
+    			row[x] = alpha << 24 | (bytes[i+r] & 0xFF) << 16 | (bytes[i+g] & 0xFF) << 8 | (bytes[i+b] & 0xFF);
+    		}
+    		return;
+    	}
+    	default:
+    		image.getRGB(0, y, width, 1, row, 0, width);
+    	}
+    }
+
     
     static Image getImageSWT(File file) {
         ImageIcon systemIcon = (ImageIcon) FileSystemView.getFileSystemView().getSystemIcon(file);
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.services;
+
+/**
+ * A fixed set of bins filled in one pass without knowing the range of the
+ * data in advance. This is used to approximate the median and the outlier
+ * percentiles of an image in the same pass as its min, max and mean.
+ *
+ * The bins are the top 16 bits of the value as a float, i.e. the sign, the exponent
+ * and 7 bits of mantissa. So each bin is less than 1% of its value wide whatever
+ * the range of the data is, and a few hot pixels do not make the bins of the
+ * rest of the image coarse. Histograms of different tiles of an image are merged
+ * by adding their bins.
+ */
+class StreamingHistogram {
+
+	private static final int BINS = 1<<16;
+	private static final int ZERO = 1<<15; // Bin of +0, negative values are below it.
+
+	private final int[] counts;
+	private long total;
+
+	StreamingHistogram() {
+		this.counts = new int[BINS];
+	}
+
+	long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Adds a value, which must not be NaN.
+	 * This is called for every pixel so is kept short.
+	 * @param val
+	 */
+	final void add(final double val) {
+		counts[getBin(val)]++;
+		total++;
+	}
+
+	private static int getBin(double val) {
+		float fval = (float)val;
+		if (Float.isInfinite(fval)) fval = fval > 0 ? Float.MAX_VALUE : -Float.MAX_VALUE;
+		final int top = Float.floatToRawIntBits(fval) >>> 16;
+		return (top & 0x8000) == 0 ? ZERO + top : ZERO - 1 - (top & 0x7FFF);
+	}
+
+	/**
+	 * The lowest value which goes in a bin.
+	 */
+	private static double getLower(int bin) {
+		if (bin >= ZERO) return Math.min(Float.MAX_VALUE, Float.intBitsToFloat((bin-ZERO) << 16));
+		final int magnitude = ZERO - 1 - bin;
+		return -Math.min(Float.MAX_VALUE, Float.intBitsToFloat((magnitude+1) << 16));
+	}
+
+	/**
+	 * Adds the bins of another histogram to this one.
+	 * @param other
+	 */
+	void merge(StreamingHistogram other) {
+		if (other.total==0) return;
+		for (int i = 0; i < BINS; i++) counts[i] += other.counts[i];
+		total += other.total;
+	}
+
+	/**
+	 * Approximates a quantile by interpolating linearly inside the bin which contains it.
+	 *
+	 * @param fraction from 0 to 1, e.g. 0.5 for the median.
+	 * @return the value or NaN if the histogram is empty.
+	 */
+	double getQuantile(double fraction) {
+		if (total==0) return Double.NaN;
+		final double target = Math.max(0, Math.min(1, fraction)) * total;
+
+		double cumulative = 0;
+		for (int i = 0; i < BINS; i++) {
+			if (counts[i]==0) continue;
+			if (cumulative + counts[i] >= target) {
+				final double lower  = getLower(i);
+				final double upper  = i < BINS-1 ? getLower(i+1) : Float.MAX_VALUE;
+				final double inside = (target-cumulative) / counts[i];
+				return lower + inside*(upper-lower);
+			}
+			cumulative += counts[i];
+		}
+		return Float.MAX_VALUE;
+	}
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.services;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.ImageLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thumbnails of files, kept in memory and on disk so that a file is only read
+ * again once it has changed.
+ *
+ * A thumbnail is found by a digest of the path, modification time and size of
+ * the file, the size of the thumbnail and anything else it was drawn with, such
+ * as the colour scheme. The newest MEMORY are kept in memory as image data ready
+ * for SWT, and up to DISK as PNG files, the least recently used being deleted
+ * when the cache is opened.
+ *
+ * Thumbnails are read on a pool of a few threads. Those asked for as visible are
+ * read first, the most recently asked first, so whatever was scrolled to last
+ * comes up first; the others are read in the order they were asked for.
+ */
+class ThumbnailCache {
+
+	private static final int MEMORY  = Integer.getInteger("org.dawnsci.plotting.thumbnail.memory", 512);
+	private static final int DISK    = Integer.getInteger("org.dawnsci.plotting.thumbnail.disk", 20000);
+	private static final int THREADS = Integer.getInteger("org.dawnsci.plotting.thumbnail.threads",
+			                                              Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()-1)));
+
+	private static final Logger logger = LoggerFactory.getLogger(ThumbnailCache.class);
+
+	/**
+	 * Told when a thumbnail read on the pool is ready.
+	 */
+	interface Listener {
+		/**
+		 * Called on the thread which read the thumbnail, or the caller's if it was in memory.
+		 * @param data the thumbnail, or null if there is none or it could not be read
+		 */
+		void thumbnailRead(ImageData data);
+	}
+
+	private final File dir; // Null to keep thumbnails in memory only
+	private final int  disk;
+	private final Map<String, ImageData> memory;
+	private final Map<String, Task>      pending = new ConcurrentHashMap<String, Task>();
+	private final AtomicLong             count   = new AtomicLong();
+	private ThreadPoolExecutor           pool;
+
+	/**
+	 * @param dir for the thumbnails on disk, or null to keep them in memory only
+	 */
+	ThumbnailCache(File dir) {
+		this(dir, MEMORY, DISK);
+	}
+
+	/**
+	 * @param dir for the thumbnails on disk, or null to keep them in memory only
+	 * @param memory the number of thumbnails kept in memory
+	 * @param disk the number of thumbnails kept on disk
+	 */
+	ThumbnailCache(File dir, final int memory, int disk) {
+		this.dir  = dir!=null && (dir.isDirectory() || dir.mkdirs()) ? dir : null;
+		this.disk = disk;
+		this.memory = new LinkedHashMap<String, ImageData>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ImageData> eldest) {
+				return size() > memory;
+			}
+		};
+		if (this.dir!=null) submit(new Task(false, new Callable<ImageData>() {
+			@Override
+			public ImageData call() {
+				prune();
+				return null;
+			}
+		}));
+	}
+
+	/**
+	 * @param file
+	 * @param width
+	 * @param height
+	 * @param variant anything else the thumbnail depends on, such as the colour scheme
+	 * @return the key of the thumbnail, which changes when the file does
+	 */
+	static String getKey(File file, int width, int height, String variant) {
+		final String id = file.getAbsolutePath()+"\n"+file.lastModified()+"\n"+file.length()+"\n"+width+"x"+height+"\n"+variant;
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-1").digest(id.getBytes(Charset.forName("UTF-8")));
+			final StringBuilder buf = new StringBuilder(digest.length*2);
+			for (byte b : digest) buf.append(Character.forDigit((b>>4)&0xF, 16)).append(Character.forDigit(b&0xF, 16));
+			return buf.toString();
+		} catch (Exception ne) {
+			return Integer.toHexString(id.hashCode())+"_"+Integer.toHexString(id.length());
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return the thumbnail from memory or disk, or null if it has not been cached
+	 */
+	ImageData get(String key) {
+		synchronized (memory) {
+			final ImageData data = memory.get(key);
+			if (data!=null) return data;
+		}
+		if (dir==null) return null;
+
+		final File file = new File(dir, key+".png");
+		if (!file.isFile()) return null;
+		try {
+			final ImageData data = new ImageLoader().load(file.getAbsolutePath())[0];
+			file.setLastModified(System.currentTimeMillis());
+			synchronized (memory) {
+				memory.put(key, data);
+			}
+			return data;
+		} catch (Exception ne) {
+			logger.debug("Cannot read thumbnail "+file, ne);
+			file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Keeps the thumbnail in memory and on disk.
+	 *
+	 * @param key
+	 * @param data
+	 */
+	void put(String key, ImageData data) {
+		synchronized (memory) {
+			memory.put(key, data);
+		}
+		if (dir==null) return;
+
+		final File file = new File(dir, key+".png");
+		final File tmp  = new File(dir, key+"."+Thread.currentThread().getId()+".tmp");
+		try {
+			final ImageLoader loader = new ImageLoader();
+			loader.data = new ImageData[] { data };
+			loader.save(tmp.getAbsolutePath(), SWT.IMAGE_PNG);
+			if (!tmp.renameTo(file)) tmp.delete(); // Another thread wrote it first
+		} catch (Exception ne) {
+			logger.debug("Cannot write thumbnail "+file, ne);
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Reads a thumbnail on the pool unless it is cached. If it is already waiting
+	 * to be read, the same read is returned, moved up if it is now visible.
+	 *
+	 * @param key
+	 * @param visible true if the thumbnail is being shown, false to read it ahead
+	 * @param reader which reads the thumbnail when it is not cached, and may return null
+	 * @return the thumbnail
+	 */
+	Future<ImageData> get(final String key, boolean visible, final Callable<ImageData> reader) {
+		return get(key, visible, reader, null);
+	}
+
+	/**
+	 * Reads a thumbnail on the pool unless it is cached, as get(key, visible, reader),
+	 * telling the listener when it is ready.
+	 *
+	 * @param key
+	 * @param visible true if the thumbnail is being shown, false to read it ahead
+	 * @param reader which reads the thumbnail when it is not cached, and may return null
+	 * @param listener may be null
+	 * @return the thumbnail
+	 */
+	Future<ImageData> get(final String key, boolean visible, final Callable<ImageData> reader, Listener listener) {
+
+		synchronized (memory) {
+			final ImageData data = memory.get(key);
+			if (data!=null) {
+				if (listener!=null) listener.thumbnailRead(data);
+				final FutureTask<ImageData> done = new FutureTask<ImageData>(new Callable<ImageData>() {
+					@Override
+					public ImageData call() {
+						return data;
+					}
+				});
+				done.run();
+				return done;
+			}
+		}
+
+		final Task task = new Task(visible, new Callable<ImageData>() {
+			@Override
+			public ImageData call() throws Exception {
+				try {
+					ImageData data = get(key);
+					if (data==null) {
+						data = reader.call();
+						if (data!=null) put(key, data);
+					}
+					return data;
+				} finally {
+					pending.remove(key);
+				}
+			}
+		});
+
+		synchronized (pending) {
+			final Task waiting = pending.get(key);
+			if (waiting!=null) {
+				if (visible && getPool().getQueue().remove(waiting)) {
+					waiting.promote(count.incrementAndGet());
+					getPool().getQueue().add(waiting);
+				}
+				if (listener!=null) waiting.addListener(listener);
+				return waiting;
+			}
+			pending.put(key, task);
+		}
+		if (listener!=null) task.addListener(listener);
+		submit(task);
+		return task;
+	}
+
+	private void submit(Task task) {
+		task.order = count.incrementAndGet();
+		getPool().execute(task);
+	}
+
+	private synchronized ThreadPoolExecutor getPool() {
+		if (pool==null) {
+			pool = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "Thumbnail reader");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			});
+		}
+		return pool;
+	}
+
+	/**
+	 * Deletes the least recently used thumbnails on disk, down to three quarters
+	 * of DISK, if there are more than DISK.
+	 */
+	private void prune() {
+		final File[] files = dir.listFiles();
+		if (files==null || files.length <= disk) return;
+
+		final long[] used = new long[files.length];
+		final Integer[] order = new Integer[files.length];
+		for (int i = 0; i < files.length; i++) {
+			used[i]  = files[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(used[a], used[b]);
+			}
+		});
+		final int remove = files.length - disk*3/4;
+		for (int i = 0; i < remove; i++) files[order[i]].delete();
+		logger.debug("Deleted {} thumbnails from {}", remove, dir);
+	}
+
+	/**
+	 * A read, visible ones first and the newest of those first, then the others oldest first.
+	 */
+	private static class Task extends FutureTask<ImageData> implements Comparable<Task> {
+
+		private volatile boolean visible;
+		private volatile long    order;
+		private final List<Listener> listeners = new ArrayList<Listener>(1);
+
+		Task(boolean visible, Callable<ImageData> callable) {
+			super(callable);
+			this.visible = visible;
+		}
+
+		void promote(long order) {
+			this.visible = true;
+			this.order   = order;
+		}
+
+		void addListener(Listener listener) {
+			synchronized (listeners) {
+				if (!isDone()) {
+					listeners.add(listener);
+					return;
+				}
+			}
+			listener.thumbnailRead(getData());
+		}
+
+		@Override
+		protected void done() {
+			final List<Listener> done;
+			synchronized (listeners) {
+				done = new ArrayList<Listener>(listeners);
+				listeners.clear();
+			}
+			if (done.isEmpty()) return;
+			final ImageData data = getData();
+			for (Listener listener : done) listener.thumbnailRead(data);
+		}
+
+		private ImageData getData() {
+			try {
+				return get();
+			} catch (Exception ne) {
+				logger.debug("Cannot read thumbnail", ne);
+				return null;
+			}
+		}
+
+		@Override
+		public int compareTo(Task o) {
+			if (visible != o.visible) return visible ? -1 : 1;
+			return visible ? Long.compare(o.order, order) : Long.compare(order, o.order);
+		}
+	}
+}
@@ -9,6 +9,7 @@
 
 package org.dawnsci.plotting.services.util;
 
+import org.dawnsci.plotting.histogram.service.PaletteService;
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.IndexIterator;
 import org.eclipse.dawnsci.analysis.dataset.impl.RGBDataset;
@@ -94,14 +95,19 @@ public class SWTImageUtils {
 		final IndexIterator iter = a.getIterator(true);
 		final int[] pos = iter.getPos();
 		img = new ImageData(width, height, 24, new PaletteData(0xff0000, 0x00ff00, 0x0000ff));
-		double delta = maxv - minv;
+
+		// The functions are looked up rather than called for each pixel
+		final int[] lut = PaletteService.getLookupTable(redFunc, greenFunc, blueFunc, inverseRed, inverseGreen, inverseBlue);
+		final int last = lut.length - 1;
+		final double scale = lut.length/(maxv - minv);
+		final int[] row = new int[width];
 		while (iter.hasNext()) {
-			double value = (a.getElementDoubleAbs(iter.index) - minv)/delta;
-			final int red = (inverseRed ? (255-redFunc.mapToByte(value)) : redFunc.mapToByte(value));
-			final int green = (inverseGreen ? (255-greenFunc.mapToByte(value)) : greenFunc.mapToByte(value));
-			final int blue = (inverseBlue ? (255-blueFunc.mapToByte(value)) : blueFunc.mapToByte(value));
-			final int rgb = (red << 16) | green << 8 | blue; 		
-			img.setPixel(pos[1], pos[0],rgb); 
+			int index = (int)((a.getElementDoubleAbs(iter.index) - minv)*scale);
+			if (index < 0) index = 0; // NaN is 0 too
+			else if (index > last) index = last;
+			final int x = pos.length > 1 ? pos[1] : 0;
+			row[x] = lut[index];
+			if (x == width - 1) img.setPixels(0, pos[0], width, row, 0);
 		}
 		return img;
 	}
@@ -205,32 +211,39 @@ public class SWTImageUtils {
 	static public RGBDataset createRGBDataset(final ImageData image) {
 		final int[] data = new int[image.width];
 		final RGBDataset rgb = new RGBDataset(image.height, image.width);
-		final short[] p = new short[3];
+		final short[] out = rgb.getData(); // Red, green and blue of each pixel in turn
 		final PaletteData palette = image.palette;
+		int k = 0;
 		if (palette.isDirect) {
+			final int redMask   = palette.redMask,   redShift   = palette.redShift;
+			final int greenMask = palette.greenMask, greenShift = palette.greenShift;
+			final int blueMask  = palette.blueMask,  blueShift  = palette.blueShift;
 			for (int i = 0; i < image.height; i++) {
 				image.getPixels(0, i, image.width, data, 0);
 				for (int j = 0; j < image.width; j++) {
-					int value = data[j];
-					p[0] = palette.redShift >= 0 ? (short) ((value & palette.redMask) << palette.redShift) :
-						(short) ((value & palette.redMask) >>> -palette.redShift);
-					p[1] = palette.greenShift >= 0 ? (short) ((value & palette.greenMask) << palette.greenShift) :
-						(short) ((value & palette.greenMask) >>> -palette.greenShift);
-					p[2] = palette.blueShift >= 0 ? (short) ((value & palette.blueMask) << palette.blueShift) :
-						(short) ((value & palette.blueMask) >>> -palette.blueShift);
-					rgb.setItem(p, i, j);
+					final int value = data[j];
+					out[k++] = (short) shift(value & redMask, redShift);
+					out[k++] = (short) shift(value & greenMask, greenShift);
+					out[k++] = (short) shift(value & blueMask, blueShift);
 				}
 			}
 		} else {
 			final RGB[] table = palette.getRGBs();
+			final short[] reds   = new short[table.length];
+			final short[] greens = new short[table.length];
+			final short[] blues  = new short[table.length];
+			for (int i = 0; i < table.length; i++) {
+				reds[i]   = (short) table[i].red;
+				greens[i] = (short) table[i].green;
+				blues[i]  = (short) table[i].blue;
+			}
 			for (int i = 0; i < image.height; i++) {
 				image.getPixels(0, i, image.width, data, 0);
 				for (int j = 0; j < image.width; j++) {
-					RGB value = table[data[j]];
-					p[0] = (short) value.red;
-					p[1] = (short) value.green;
-					p[2] = (short) value.blue;
-					rgb.setItem(p, i, j);
+					final int index = data[j];
+					out[k++] = reds[index];
+					out[k++] = greens[index];
+					out[k++] = blues[index];
 				}
 			}
 		}
@@ -238,4 +251,11 @@ public class SWTImageUtils {
 		return rgb;
 	}
 
+	/**
+	 * @return the channel of a pixel masked out, shifted as in {@link PaletteData}
+	 */
+	private static int shift(int channel, int shift) {
+		return shift >= 0 ? channel << shift : channel >>> -shift;
+	}
+
 }
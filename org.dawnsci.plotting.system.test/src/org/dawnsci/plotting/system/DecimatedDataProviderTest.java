@@ -0,0 +1,177 @@
+package org.dawnsci.plotting.system;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.eclipse.nebula.visualization.xygraph.dataprovider.ISample;
+import org.junit.Test;
+
+/**
+ * Checks the M4 samples against the first, last, minimum, maximum and first NaN
+ * point of each pixel column, found by looking at every point.
+ */
+public class DecimatedDataProviderTest {
+
+	private static class ArrayLine implements DecimatedDataProvider.Line {
+		final double[] x, y;
+		ArrayLine(double[] x, double[] y) {
+			this.x = x;
+			this.y = y;
+		}
+		@Override
+		public int size() {
+			return x.length;
+		}
+		@Override
+		public double getX(int i) {
+			return x[i];
+		}
+		@Override
+		public double getY(int i) {
+			return y[i];
+		}
+	}
+
+	/**
+	 * @param nans the fraction of the y values which are NaN
+	 * @return a line whose x does not decrease, with repeated x and y values
+	 */
+	private static ArrayLine createLine(int size, double nans, long seed) {
+		final Random   random = new Random(seed);
+		final double[] x = new double[size];
+		final double[] y = new double[size];
+		double xValue = 1;
+		for (int i = 0; i < size; i++) {
+			if (random.nextInt(4) > 0) xValue += random.nextDouble();
+			x[i] = xValue;
+			y[i] = random.nextDouble() < nans ? Double.NaN : random.nextInt(50) - 25;
+		}
+		return new ArrayLine(x, y);
+	}
+
+	/**
+	 * @return the indices of the points to keep, in order, by looking at every point
+	 */
+	private static List<Integer> getExpected(ArrayLine line, double lower, double upper, int pixels, boolean log) {
+		final double lo = log ? Math.log10(lower) : lower;
+		final double hi = log ? Math.log10(upper) : upper;
+		final List<Integer> expected = new ArrayList<Integer>();
+		for (int column = -1; column <= pixels; column++) {
+			final List<Integer> points = new ArrayList<Integer>();
+			for (int i = 0; i < line.size(); i++) {
+				if (Double.isNaN(line.x[i])) continue;
+				final double pos = log ? Math.log10(line.x[i]) : line.x[i];
+				final int    col = pos < lo ? -1 : pos > hi ? pixels : Math.min(pixels-1, (int)((pos-lo)*pixels/(hi-lo)));
+				if (col == column) points.add(i);
+			}
+			if (points.isEmpty()) continue;
+
+			final SortedSet<Integer> kept = new TreeSet<Integer>();
+			kept.add(points.get(0));
+			kept.add(points.get(points.size()-1));
+			int min = -1, max = -1, nan = -1;
+			for (int i : points) {
+				final double value = line.y[i];
+				if (Double.isNaN(value)) {
+					if (nan < 0) nan = i;
+					continue;
+				}
+				if (min < 0 || value < line.y[min]) min = i;
+				if (max < 0 || value > line.y[max]) max = i;
+			}
+			for (int i : new int[]{min, max, nan}) if (i >= 0) kept.add(i);
+			expected.addAll(kept);
+		}
+		return expected;
+	}
+
+	private static void assertSamples(ArrayLine line, List<Integer> expected, DecimatedDataProvider provider) {
+		assertEquals(expected.size(), provider.getSize());
+		for (int i = 0; i < expected.size(); i++) {
+			final ISample sample = provider.getSample(i);
+			final int     index  = expected.get(i);
+			assertEquals("Sample "+i, line.x[index], sample.getXValue(), 0);
+			assertEquals("Sample "+i, line.y[index], sample.getYValue(), 0);
+		}
+	}
+
+	private static void assertM4(ArrayLine line, double lower, double upper, int pixels, boolean log) {
+		// Every point is looked at when x may be NaN
+		final List<Integer> expected = getExpected(line, lower, upper, pixels, log);
+		assertSamples(line, expected, DecimatedDataProvider.create(line, lower, upper, pixels, log, false, null, null));
+
+		// Only the points in range and one either side when it is not
+		final List<Integer> inRange = new ArrayList<Integer>();
+		for (int i : expected) if (line.x[i] >= lower && line.x[i] <= upper) inRange.add(i);
+		int before = -1, after = line.size();
+		for (int i = 0; i < line.size(); i++) {
+			if (line.x[i] < lower) before = i;
+			if (line.x[i] > upper && after == line.size()) after = i;
+		}
+		if (before >= 0)          inRange.add(0, before);
+		if (after < line.size())  inRange.add(after);
+		assertSamples(line, inRange, DecimatedDataProvider.create(line, lower, upper, pixels, log, true, null, null));
+	}
+
+	@Test
+	public void testColumns() {
+		final double[] x = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+		final double[] y = {5, 1, 9, 3, 4, 2, 8, 0, 7, 6};
+		final ArrayLine line = new ArrayLine(x, y);
+		// Two columns of five points, 0-4 keeps first, min at 1, max at 2 and last
+		final DecimatedDataProvider provider = DecimatedDataProvider.create(line, 0, 10, 2, false, true, null, null);
+		final List<Integer> expected = new ArrayList<Integer>();
+		for (int i : new int[]{0, 1, 2, 4, 5, 6, 7, 9}) expected.add(i);
+		assertSamples(line, expected, provider);
+	}
+
+	@Test
+	public void testRandomLines() {
+		for (int seed = 0; seed < 20; seed++) {
+			final ArrayLine line = createLine(2000, 0, seed);
+			final double    last = line.x[line.size()-1];
+			assertM4(line, 1, last, 50, false);
+			assertM4(line, last/4, last/2, 37, false);
+			assertM4(line, last/3, last/3+0.5, 100, false); // More pixels than points
+		}
+	}
+
+	@Test
+	public void testLog() {
+		for (int seed = 0; seed < 10; seed++) {
+			final ArrayLine line = createLine(2000, 0, seed);
+			assertM4(line, 2, line.x[line.size()-1]/2, 40, true);
+		}
+	}
+
+	@Test
+	public void testNaNY() {
+		for (int seed = 0; seed < 10; seed++) {
+			final ArrayLine line = createLine(2000, 0.1, seed);
+			final double    last = line.x[line.size()-1];
+			assertM4(line, 1, last, 50, false);
+			assertM4(line, last/4, last/2, 20, false);
+		}
+		// A column of NaNs keeps its first and last point, and a NaN is kept where there are numbers
+		final double    nan  = Double.NaN;
+		final ArrayLine line = new ArrayLine(new double[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11},
+				                             new double[]{1, 5, 2, 3, nan, nan, nan, nan, 3, nan, nan, 4});
+		final List<Integer> expected = new ArrayList<Integer>();
+		for (int i : new int[]{0, 1, 3, 4, 7, 8, 9, 11}) expected.add(i);
+		assertSamples(line, expected, DecimatedDataProvider.create(line, 0, 12, 3, false, false, null, null));
+	}
+
+	@Test
+	public void testNaNX() {
+		final ArrayLine line = createLine(2000, 0.05, 1);
+		final Random random = new Random(2);
+		for (int i = 0; i < 100; i++) line.x[random.nextInt(line.size())] = Double.NaN;
+		final DecimatedDataProvider provider = DecimatedDataProvider.create(line, 1, 500, 30, false, false, null, null);
+		assertSamples(line, getExpected(line, 1, 500, 30, false), provider);
+	}
+}
@@ -0,0 +1,54 @@
+package org.dawnsci.plotting.system;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.eclipse.nebula.visualization.xygraph.linearscale.Range;
+import org.junit.Test;
+
+/**
+ * Checks an appended line is decimated again once the point where its x
+ * decreased has been dropped from the window.
+ */
+public class LightWeightDataProviderTest {
+
+	private static final int   WINDOW = 12000;
+	private static final Range RANGE  = new Range(0, 20000);
+
+	/**
+	 * @return a full window of points whose x goes back once, to -1 at the index given
+	 */
+	private static LightWeightDataProvider createLine(int decreasing) {
+		final LightWeightDataProvider provider = new LightWeightDataProvider();
+		provider.setWindow(WINDOW);
+		for (int i = 0; i < WINDOW; i++) provider.append(i == decreasing ? -1 : i, Math.sin(i));
+		return provider;
+	}
+
+	@Test
+	public void testDecimatedOnceDecreasingDropped() {
+		final LightWeightDataProvider provider = createLine(5);
+		assertNull(provider.getDecimated(RANGE, 500, false));
+
+		for (int i = WINDOW; i < WINDOW+4; i++) provider.append(i, Math.sin(i));
+		assertNull("The point before x goes back is still held", provider.getDecimated(RANGE, 500, false));
+
+		provider.append(WINDOW+4, 0);
+		assertNotNull(provider.getDecimated(RANGE, 500, false));
+
+		provider.append(0, 0);
+		assertNull(provider.getDecimated(RANGE, 500, false));
+	}
+
+	@Test
+	public void testDecimatedOnceWindowShrinks() {
+		final LightWeightDataProvider provider = createLine(100);
+		assertNull(provider.getDecimated(RANGE, 500, false));
+
+		provider.setWindow(WINDOW-99);
+		assertNull("The point before x goes back is still held", provider.getDecimated(RANGE, 500, false));
+
+		provider.setWindow(WINDOW-100);
+		assertNotNull(provider.getDecimated(RANGE, 500, false));
+	}
+}
@@ -0,0 +1,137 @@
+package org.dawnsci.plotting.system;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Posts updates and drains them by hand, rather than on the UI thread, to check
+ * which run and in what order.
+ */
+public class PlotUpdateQueueTest {
+
+	private static class TestQueue extends PlotUpdateQueue {
+		int scheduled;
+
+		TestQueue() {
+			super(null);
+		}
+
+		@Override
+		void schedule() {
+			scheduled++;
+		}
+	}
+
+	private TestQueue    queue;
+	private List<String> run;
+
+	@Before
+	public void create() {
+		queue = new TestQueue();
+		run   = new ArrayList<String>();
+	}
+
+	private Runnable update(final String name) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				run.add(name);
+			}
+		};
+	}
+
+	@Test
+	public void testNewestInSlotRuns() {
+		queue.post("a", update("a1"));
+		queue.post("a", update("a2"));
+		queue.post("b", update("b1"));
+		queue.post("a", update("a3"));
+		queue.drain();
+
+		// The newest update of a slot runs after those posted before it
+		assertEquals(Arrays.asList("b1", "a3"), run);
+		assertEquals(4, queue.getPostedCount());
+		assertEquals(2, queue.getDroppedCount());
+		assertEquals(1, queue.getDrainCount());
+	}
+
+	@Test
+	public void testSlotsRunInOrderPosted() {
+		for (String key : new String[]{"c", "a", "b"}) queue.post(key, update(key));
+		queue.drain();
+		assertEquals(Arrays.asList("c", "a", "b"), run);
+		assertEquals(0, queue.getDroppedCount());
+	}
+
+	@Test
+	public void testAddedNeverDropped() {
+		queue.post("a", update("a1"));
+		queue.add(update("x1"));
+		queue.add(update("x2"));
+		queue.post("a", update("a2"));
+		queue.add(update("x3"));
+		queue.drain();
+
+		assertEquals(Arrays.asList("x1", "x2", "a2", "x3"), run);
+		assertEquals(5, queue.getPostedCount());
+		assertEquals(1, queue.getDroppedCount());
+	}
+
+	@Test
+	public void testEqualKeysShareSlot() {
+		// As PlottingSystemImpl keys unnamed data by their place in the call
+		queue.post(Arrays.asList("1D", 0), update("first"));
+		queue.post(Arrays.asList("1D", 1), update("second"));
+		queue.post(Arrays.asList("1D", 0), update("third"));
+		queue.drain();
+
+		assertEquals(Arrays.asList("second", "third"), run);
+		assertEquals(1, queue.getDroppedCount());
+	}
+
+	@Test
+	public void testScheduledOncePerDrain() {
+		queue.post("a", update("a1"));
+		queue.post("b", update("b1"));
+		queue.add(update("x1"));
+		assertEquals(1, queue.scheduled);
+
+		queue.drain();
+		queue.post("a", update("a2"));
+		assertEquals(2, queue.scheduled);
+
+		queue.drain();
+		assertEquals(Arrays.asList("a1", "b1", "x1", "a2"), run);
+		assertEquals(2, queue.getDrainCount());
+	}
+
+	@Test
+	public void testFailedUpdateDoesNotStopOthers() {
+		queue.post("a", new Runnable() {
+			@Override
+			public void run() {
+				throw new RuntimeException("Cannot update");
+			}
+		});
+		queue.post("b", update("b1"));
+		queue.drain();
+		assertEquals(Arrays.asList("b1"), run);
+	}
+
+	@Test
+	public void testDisposedRunsNothing() {
+		queue.post("a", update("a1"));
+		queue.dispose();
+		queue.post("b", update("b1"));
+		queue.drain();
+
+		assertEquals(0, run.size());
+		assertEquals(1, queue.getPostedCount());
+	}
+}
@@ -0,0 +1,190 @@
+package org.dawnsci.plotting.system;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the values, min and max held against those of a list which drops its
+ * oldest values, as the buffer wraps, grows and has its window changed.
+ */
+public class RingBufferTest {
+
+	/**
+	 * The values which should be held, found by looking at each of them.
+	 */
+	private static class Expected {
+		final List<Double> values = new ArrayList<Double>();
+		int window;
+
+		Expected(int window) {
+			this.window = window;
+		}
+
+		void add(double value) {
+			values.add(value);
+			drop();
+		}
+
+		void setWindow(int window) {
+			this.window = window;
+			drop();
+		}
+
+		private void drop() {
+			while (values.size() > window) values.remove(0);
+		}
+
+		double getMin() {
+			double min = Double.NaN;
+			for (double value : values) if (!Double.isNaN(value) && !(value >= min)) min = value;
+			return min;
+		}
+
+		double getMax() {
+			double max = Double.NaN;
+			for (double value : values) if (!Double.isNaN(value) && !(value <= max)) max = value;
+			return max;
+		}
+	}
+
+	private static void assertSame(Expected expected, RingBuffer buffer) {
+		final String message = "Window "+buffer.getWindow();
+		assertEquals(message, expected.values.size(), buffer.size());
+		final double[] values = new double[expected.values.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = expected.values.get(i);
+			assertEquals(message+", value "+i, values[i], buffer.get(i), 0);
+		}
+		assertArrayEquals(message, values, buffer.toArray(), 0);
+		assertEquals(message+", min", expected.getMin(), buffer.getMin(), 0);
+		assertEquals(message+", max", expected.getMax(), buffer.getMax(), 0);
+	}
+
+	/**
+	 * @param nans the fraction of values which are NaN
+	 * @param levels the number of distinct values, few so that extremes are repeated
+	 */
+	private static double nextValue(Random random, double nans, int levels) {
+		return random.nextDouble() < nans ? Double.NaN : random.nextInt(levels);
+	}
+
+	private static void assertAdds(RingBuffer buffer, Expected expected, Random random, int count, double nans, int levels) {
+		for (int i = 0; i < count; i++) {
+			final double value = nextValue(random, nans, levels);
+			buffer.add(value);
+			expected.add(value);
+			assertSame(expected, buffer);
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		final RingBuffer buffer = new RingBuffer(10);
+		assertSame(new Expected(10), buffer);
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testGetOutsideBuffer() {
+		final RingBuffer buffer = new RingBuffer(10);
+		buffer.add(1);
+		buffer.get(1);
+	}
+
+	@Test
+	public void testWraparound() {
+		for (int window : new int[]{1, 2, 3, 17, 64, 100}) {
+			final Random random = new Random(window);
+			final RingBuffer buffer = new RingBuffer(window);
+			assertAdds(buffer, new Expected(window), random, window*5+3, 0.1, 10);
+		}
+	}
+
+	@Test
+	public void testGrowth() {
+		// Past the initial 64 values, with and without a window
+		final Random random = new Random(1);
+		assertAdds(new RingBuffer(Integer.MAX_VALUE), new Expected(Integer.MAX_VALUE), random, 1000, 0.1, 1000);
+		assertAdds(new RingBuffer(300), new Expected(300), random, 1000, 0.1, 1000);
+	}
+
+	@Test
+	public void testExtremesDropped() {
+		// The min and max are the oldest values so both change as each is dropped
+		final RingBuffer buffer   = new RingBuffer(5);
+		final Expected   expected = new Expected(5);
+		for (double value : new double[]{-5, 5, -4, 4, -3, 3, -2, 2, -1, 1, 0, 0, 0}) {
+			buffer.add(value);
+			expected.add(value);
+			assertSame(expected, buffer);
+		}
+		// Decreasing, so every value is a candidate for the max
+		for (int i = 100; i > 0; i--) {
+			buffer.add(i);
+			expected.add(i);
+			assertSame(expected, buffer);
+		}
+	}
+
+	@Test
+	public void testOnlyNaNs() {
+		final RingBuffer buffer   = new RingBuffer(3);
+		final Expected   expected = new Expected(3);
+		for (double value : new double[]{1, Double.NaN, Double.NaN, Double.NaN, 2, Double.NaN}) {
+			buffer.add(value);
+			expected.add(value);
+			assertSame(expected, buffer);
+		}
+	}
+
+	@Test
+	public void testSetWindow() {
+		final Random     random   = new Random(2);
+		final RingBuffer buffer   = new RingBuffer(Integer.MAX_VALUE);
+		final Expected   expected = new Expected(Integer.MAX_VALUE);
+		assertAdds(buffer, expected, random, 150, 0.1, 20);
+
+		for (int window : new int[]{100, 100, 37, 1, 50, 200, Integer.MAX_VALUE, 10}) {
+			buffer.setWindow(window);
+			expected.setWindow(window);
+			assertSame(expected, buffer);
+			assertAdds(buffer, expected, random, 120, 0.1, 20); // Dropping after the change too
+		}
+	}
+
+	@Test
+	public void testSetWindowDropsExtremes() {
+		final RingBuffer buffer   = new RingBuffer(10);
+		final Expected   expected = new Expected(10);
+		for (double value : new double[]{-100, 100, 1, 2, 3, 4, 5, 6, 7, 8}) {
+			buffer.add(value);
+			expected.add(value);
+		}
+		buffer.setWindow(8);
+		expected.setWindow(8);
+		assertSame(expected, buffer);
+		assertEquals(1, buffer.getMin(), 0);
+		assertEquals(8, buffer.getMax(), 0);
+	}
+
+	@Test
+	public void testClear() {
+		final Random     random = new Random(3);
+		final RingBuffer buffer = new RingBuffer(20);
+		assertAdds(buffer, new Expected(20), random, 50, 0.1, 20);
+		buffer.clear();
+		final Expected expected = new Expected(20);
+		assertSame(expected, buffer);
+		assertAdds(buffer, expected, random, 50, 0.1, 20);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testNoWindow() {
+		new RingBuffer(10).setWindow(0);
+	}
+}
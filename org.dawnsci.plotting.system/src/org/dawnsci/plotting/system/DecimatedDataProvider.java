@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.system;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.nebula.visualization.xygraph.dataprovider.IDataProvider;
+import org.eclipse.nebula.visualization.xygraph.dataprovider.IDataProviderListener;
+import org.eclipse.nebula.visualization.xygraph.dataprovider.ISample;
+import org.eclipse.nebula.visualization.xygraph.dataprovider.Sample;
+import org.eclipse.nebula.visualization.xygraph.linearscale.Range;
+
+/**
+ * The samples of a line needed to draw it at a given width, made by an M4 reduction.
+ *
+ * The x range is divided into one column per pixel and for each column the first,
+ * last, minimum and maximum points are kept, in their original order. A line drawn
+ * through these is the same, pixel for pixel, as one drawn through every point, so no
+ * spikes are lost however many points there are. The points before and after the range
+ * are reduced to one column each so that the lines into and out of the plot are kept.
+ *
+ * The x data must not decrease. A point with a NaN y is kept in each column where
+ * there is one, so gaps in the line are kept.
+ *
+ * The points are read where they are held, through a Line, so a line appended to
+ * in ring buffers is not copied first. When no x is NaN the points in range are
+ * found by binary search, so only those and one either side are read.
+ */
+class DecimatedDataProvider implements IDataProvider {
+
+	private final ISample[] samples;
+	private final Range     xRange, yRange;
+
+	private DecimatedDataProvider(ISample[] samples, Range xRange, Range yRange) {
+		this.samples = samples;
+		this.xRange  = xRange;
+		this.yRange  = yRange;
+	}
+
+	/**
+	 * The points of a line, read where they are held.
+	 */
+	interface Line {
+		int size();
+		double getX(int i);
+		double getY(int i);
+	}
+
+	/**
+	 * @param x 1D which does not decrease
+	 * @param y 1D
+	 * @return the points of the datasets, which may be views
+	 */
+	static Line getLine(Dataset x, Dataset y) {
+		final Dataset xd = getContiguous(x);
+		final Dataset yd = getContiguous(y);
+		final int     size = Math.min(xd.getSize(), yd.getSize());
+		return new Line() {
+			@Override
+			public int size() {
+				return size;
+			}
+			@Override
+			public double getX(int i) {
+				return xd.getElementDoubleAbs(i);
+			}
+			@Override
+			public double getY(int i) {
+				return yd.getElementDoubleAbs(i);
+			}
+		};
+	}
+
+	/**
+	 * @return the dataset, or a copy if it is a view of part of a bigger buffer
+	 */
+	private static Dataset getContiguous(Dataset a) {
+		final Object buffer = a.getBuffer();
+		if (buffer!=null && Array.getLength(buffer)==a.getSize()) return a;
+		return a.getSlice();
+	}
+
+	/**
+	 *
+	 * @param line whose x does not decrease
+	 * @param lower of the x axis
+	 * @param upper of the x axis
+	 * @param pixels width of the x axis
+	 * @param log true if the x axis is log scale
+	 * @param sorted true if no x is NaN, so the points in range can be found by binary search
+	 * @param xRange of the full data
+	 * @param yRange of the full data
+	 * @return
+	 */
+	static DecimatedDataProvider create(Line line, double lower, double upper, int pixels, boolean log,
+			                            boolean sorted, Range xRange, Range yRange) {
+
+		int start = 0;
+		int end   = line.size();
+		if (sorted) { // One point either side, for the lines into and out of the plot
+			start = Math.max(0, search(line, lower, false)-1);
+			end   = Math.min(end, search(line, upper, true)+1);
+		}
+		if (log) {
+			lower = Math.log10(lower);
+			upper = Math.log10(upper);
+		}
+		final double scale = pixels/(upper-lower);
+
+		final Columns columns = new Columns(line, pixels*4+8);
+		for (int i = start; i < end; i++) {
+			final double xValue = line.getX(i);
+			if (Double.isNaN(xValue)) continue;
+
+			final double pos = log ? Math.log10(xValue) : xValue;
+			final int column;
+			if (pos < lower) {
+				column = -1;
+			} else if (pos > upper) {
+				column = pixels;
+			} else {
+				column = Math.min(pixels-1, (int)((pos-lower)*scale));
+			}
+			columns.add(column, i, line.getY(i));
+		}
+		columns.flush();
+
+		return new DecimatedDataProvider(columns.samples.toArray(new ISample[columns.samples.size()]), xRange, yRange);
+	}
+
+	/**
+	 * @param line whose x does not decrease and is never NaN
+	 * @param value
+	 * @param above true for the first point whose x is above value, false for at or above
+	 * @return the index of the first such point, or the size of the line if there is none
+	 */
+	private static int search(Line line, double value, boolean above) {
+		int lo = 0;
+		int hi = line.size();
+		while (lo < hi) {
+			final int    mid = (lo+hi) >>> 1;
+			final double x   = line.getX(mid);
+			if (above ? x <= value : x < value) {
+				lo = mid+1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * The first, last, min, max and first NaN points of the current column.
+	 */
+	private static final class Columns {
+
+		private final Line          line;
+		private final List<ISample> samples;
+		private final int[]         indices = new int[5];
+
+		private int    column = Integer.MIN_VALUE;
+		private int    first, last, min, max, nan;
+		private double minValue, maxValue;
+
+		Columns(Line line, int capacity) {
+			this.line    = line;
+			this.samples = new ArrayList<ISample>(capacity);
+		}
+
+		void add(int col, int i, double value) {
+			if (col!=column) {
+				flush();
+				column = col;
+				first  = i;
+				min    = max = nan = -1;
+			}
+			last = i;
+			if (Double.isNaN(value)) {
+				if (nan<0) nan = i;
+			} else {
+				if (min<0 || value<minValue) {
+					min      = i;
+					minValue = value;
+				}
+				if (max<0 || value>maxValue) {
+					max      = i;
+					maxValue = value;
+				}
+			}
+		}
+
+		void flush() {
+			if (column==Integer.MIN_VALUE) return;
+			indices[0] = first;
+			indices[1] = min;
+			indices[2] = max;
+			indices[3] = nan;
+			indices[4] = last;
+			Arrays.sort(indices);
+			int previous = -1;
+			for (int i : indices) {
+				if (i<0 || i==previous) continue;
+				samples.add(new Sample(line.getX(i), line.getY(i), 0d, 0d, 0d, 0d));
+				previous = i;
+			}
+			column = Integer.MIN_VALUE;
+		}
+	}
+
+	@Override
+	public int getSize() {
+		return samples.length;
+	}
+
+	@Override
+	public ISample getSample(int index) {
+		if (index<0 || index>=samples.length) return null;
+		return samples[index];
+	}
+
+	@Override
+	public Range getXDataMinMax() {
+		return xRange;
+	}
+
+	@Override
+	public Range getYDataMinMax() {
+		return yRange;
+	}
+
+	@Override
+	public boolean isChronological() {
+		return false;
+	}
+
+	/**
+	 * Does nothing, the samples do not change.
+	 */
+	@Override
+	public void addDataProviderListener(IDataProviderListener listener) {
+	}
+
+	/**
+	 * Does nothing, the samples do not change.
+	 */
+	@Override
+	public boolean removeDataProviderListener(IDataProviderListener listener) {
+		return false;
+	}
+
+	@Override
+	public boolean hasErrors() {
+		return false;
+	}
+}
@@ -10,7 +10,10 @@ package org.dawnsci.plotting.system;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.dawnsci.plotting.draw2d.swtxy.IDecimatingDataProvider;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.IErrorDataset;
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
@@ -26,16 +29,50 @@ import org.eclipse.nebula.visualization.xygraph.linearscale.Range;
 /**
  * A IDataProvider which uses a Dataset for its data.
  * 
+ * Once points are appended the data is held in ring buffers instead, so each
+ * append is constant time, and the oldest points are dropped once there are more
+ * than the window. The datasets are only made from the buffers when asked for.
+ * 
+ * Large lines are painted from the samples needed at the width of the plot,
+ * see DecimatedDataProvider, which are kept for the last few zooms. They are read
+ * straight from the ring buffers, and whether x increases is kept up to date as
+ * points are appended, so painting after an append does not copy or rescan the line.
+ * 
  * @author Matthew Gerring
  *
  */
-class LightWeightDataProvider implements IDataProvider {
+class LightWeightDataProvider implements IDecimatingDataProvider {
+	
+	/**
+	 * Lines with fewer points than this are always painted from every point.
+	 */
+	private static final int DECIMATION_THRESHOLD = 10000;
+	private static final int DECIMATION_CACHE     = 8;
 	
 	private Dataset x;
 	private Dataset y;
 	private Dataset xerr;
 	private Dataset yerr;
 	private Range cachedXRange, cachedYRange;
+	
+	/**
+	 * Used instead of x and y when points are appended, null otherwise.
+	 */
+	private RingBuffer xBuffer, yBuffer;
+	
+	/**
+	 * The number of points held when appending, by default all of them.
+	 * Set org.dawnsci.plotting.system.append.window to change the default.
+	 */
+	private int window = Integer.getInteger("org.dawnsci.plotting.system.append.window", Integer.MAX_VALUE);
+	
+	/**
+	 * The decimated samples for each zoom, most recently used last.
+	 */
+	private Map<String, DecimatedDataProvider> decimated;
+	private Boolean xIncreasing; // Ignoring NaNs, null until the line is scanned
+	private boolean xNaN;        // True if an x may be NaN
+	private double  lastX;       // The last x which is not NaN
 
 	public LightWeightDataProvider() {
 		
@@ -46,6 +83,7 @@ class LightWeightDataProvider implements IDataProvider {
 
 	@Override
 	public int getSize() {
+		if (yBuffer!=null) return yBuffer.size();
 		if (y==null) return 0;
 		if (y.getShape()==null || y.getShape().length<1) return 0;
 		return y.getSize();
@@ -53,6 +91,10 @@ class LightWeightDataProvider implements IDataProvider {
 
 	@Override
 	public ISample getSample(int index) {
+		if (yBuffer!=null) {
+			if (index<0 || index>=yBuffer.size()) return null;
+			return new Sample(xBuffer.get(index), yBuffer.get(index), 0d, 0d, 0d, 0d);
+		}
 		if (x==null||y==null) return null;
 		try {
 			final double xDat = x.getDouble(index);
@@ -69,6 +111,7 @@ class LightWeightDataProvider implements IDataProvider {
 
 	@Override
 	public Range getXDataMinMax() {
+		if (xBuffer!=null) return getRange(xBuffer);
 		if (x==null) return new Range(0,100);
 		if (cachedXRange!=null) return cachedXRange;
 		try {
@@ -81,6 +124,7 @@ class LightWeightDataProvider implements IDataProvider {
 
 	@Override
 	public Range getYDataMinMax() {
+		if (yBuffer!=null) return getRange(yBuffer);
 		if (y==null) return new Range(0,100);
 		if (cachedYRange!=null) return cachedYRange;
 		try {
@@ -91,6 +135,12 @@ class LightWeightDataProvider implements IDataProvider {
 		}
 	}
 	
+	private Range getRange(RingBuffer buffer) {
+		final double min = buffer.getMin();
+		if (Double.isNaN(min)) return new Range(0,100);
+		return new Range(min, buffer.getMax());
+	}
+	
 	private double getMin(Dataset a) {
 		return a.min(true).doubleValue();
 	}
@@ -99,6 +149,91 @@ class LightWeightDataProvider implements IDataProvider {
 		return a.max(true).doubleValue();
 	}
 
+	@Override
+	public IDataProvider getDecimated(Range xRange, int pixels, boolean log) {
+		
+		if (getSize() < DECIMATION_THRESHOLD || getSize() <= 4*pixels) return null;
+		final DecimatedDataProvider.Line line = getLine();
+		if (line==null)                                                return null;
+		if (!isXIncreasing(line))                                      return null;
+		
+		final double lower = Math.min(xRange.getLower(), xRange.getUpper());
+		final double upper = Math.max(xRange.getLower(), xRange.getUpper());
+		if (!(upper>lower) || (log && lower<=0))                       return null;
+		
+		if (decimated==null) decimated = new LinkedHashMap<String, DecimatedDataProvider>(DECIMATION_CACHE, 0.75f, true) {
+			private static final long serialVersionUID = -4431893015557004417L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, DecimatedDataProvider> eldest) {
+				return size() > DECIMATION_CACHE;
+			}
+		};
+		final String key = lower+" "+upper+" "+pixels+" "+log;
+		DecimatedDataProvider ret = decimated.get(key);
+		if (ret==null) {
+			ret = DecimatedDataProvider.create(line, lower, upper, pixels, log, !xNaN, getXDataMinMax(), getYDataMinMax());
+			decimated.put(key, ret);
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return the points, from the ring buffers when appending, or null if they cannot be decimated
+	 */
+	private DecimatedDataProvider.Line getLine() {
+		if (yBuffer!=null) {
+			final RingBuffer xb = xBuffer;
+			final RingBuffer yb = yBuffer;
+			return new DecimatedDataProvider.Line() {
+				@Override
+				public int size() {
+					return yb.size();
+				}
+				@Override
+				public double getX(int i) {
+					return xb.get(i);
+				}
+				@Override
+				public double getY(int i) {
+					return yb.get(i);
+				}
+			};
+		}
+		if (x==null || y==null)                                  return null;
+		if (x.getRank()!=1 || y.getRank()!=1)                    return null;
+		if (x.getElementsPerItem()!=1 || y.getElementsPerItem()!=1) return null;
+		return DecimatedDataProvider.getLine(x, y);
+	}
+	
+	private boolean isXIncreasing(DecimatedDataProvider.Line line) {
+		if (xIncreasing==null) {
+			xIncreasing = true;
+			xNaN        = false;
+			lastX       = -Double.MAX_VALUE;
+			for (int i = 0, size = line.size(); i < size; i++) {
+				updateXIncreasing(line.getX(i));
+				if (!xIncreasing) break;
+			}
+		}
+		return xIncreasing;
+	}
+	
+	/**
+	 * Keeps whether x increases up to date as a point is added.
+	 */
+	private void updateXIncreasing(double value) {
+		if (Double.isNaN(value)) {
+			xNaN = true;
+		} else {
+			if (value<lastX) xIncreasing = false;
+			lastX = value;
+		}
+	}
+	
+	private void clearDecimated() {
+		decimated = null;
+	}
+
 	@Override
 	public boolean isChronological() {
 		return false;
@@ -130,6 +265,8 @@ class LightWeightDataProvider implements IDataProvider {
 	}
 	
 	private void setDataInternal(IDataset xData, IDataset yData) {
+		this.xBuffer = null;
+		this.yBuffer = null;
 		this.x = DatasetUtils.convertToDataset(xData);
 		this.y = DatasetUtils.convertToDataset(yData);
 		ILazyDataset xel = x.getError();
@@ -138,6 +275,8 @@ class LightWeightDataProvider implements IDataProvider {
 		if (yel != null) this.yerr = DatasetUtils.convertToDataset(yel.getSlice());
 		this.cachedXRange = null;
 		this.cachedYRange = null;
+		this.xIncreasing  = null;
+		clearDecimated();
 	}
 
 	private void fireDataProviderListeners() {
@@ -148,42 +287,84 @@ class LightWeightDataProvider implements IDataProvider {
 	}
 
 	public Dataset getY() {
+		if (y==null && yBuffer!=null) y = createDataset(yBuffer);
 		return y;
 	}
 	
 	public Dataset getX() {
+		if (x==null && xBuffer!=null) x = createDataset(xBuffer);
 		return x;
 	}
+	
+	private static Dataset createDataset(RingBuffer buffer) {
+		final double[] data = buffer.toArray();
+		return new DoubleDataset(data, data.length);
+	}
+	
+	public int getWindow() {
+		return window;
+	}
 
 	/**
-	 * Works if x and y have not been set yet.
-	 * Should be possible to make this faster by adding mode whereby viewed size is constant and
-	 * append adds to end and removes from start.
+	 * Sets the number of points kept when appending, older points are dropped.
+	 * 
+	 * @param window, Integer.MAX_VALUE to keep all the points.
+	 */
+	public void setWindow(int window) {
+		if (window<1) throw new IllegalArgumentException("The window must be at least one point!");
+		this.window = window;
+		if (yBuffer!=null) {
+			// The points which made x decrease, or were NaN, may be dropped
+			if (window<yBuffer.size()) xIncreasing = null;
+			xBuffer.setWindow(window);
+			yBuffer.setWindow(window);
+			this.x = null;
+			this.y = null;
+			clearDecimated();
+			fireDataProviderListeners();
+		}
+	}
+
+	/**
+	 * Works if x and y have not been set yet. The first append copies the
+	 * data into ring buffers, after that each append is constant time.
 	 * 
 	 * @param xValue
 	 * @param yValue
 	 */
 	public void append(Number xValue, Number yValue) {
 
-		final double[] xArray = x!=null && x.getShape()!=null && x.getShape().length>0
-				              ? (double[])DatasetUtils.cast(x, Dataset.FLOAT64).getBuffer()
-		                      : new double[0];
-		final double[] yArray = y!=null && y.getShape()!=null && y.getShape().length>0
-	                          ? (double[])DatasetUtils.cast(y, Dataset.FLOAT64).getBuffer()
-                              : new double[0];
-	                          
-	    final double[] xa = new double[xArray.length+1];
-	    System.arraycopy(xArray, 0, xa, 0, xArray.length);
-	    xa[xa.length-1] = xValue.doubleValue();
-	    this.x = new DoubleDataset(xa, xa.length);
-	    
-	    final double[] ya = new double[yArray.length+1];
-	    System.arraycopy(yArray, 0, ya, 0, yArray.length);
-	    ya[ya.length-1] = yValue.doubleValue();
-	    this.y = new DoubleDataset(ya, ya.length);
-	    
+		if (yBuffer==null) {
+			xBuffer = new RingBuffer(window);
+			yBuffer = new RingBuffer(window);
+			if (x!=null && y!=null && x.getShape()!=null && x.getShape().length>0) {
+				final int size = Math.min(x.getSize(), y.getSize());
+				if (size>window) xIncreasing = null; // Only the points in the window are kept
+				for (int i = Math.max(0, size-window); i < size; i++) {
+					xBuffer.add(x.getDouble(i));
+					yBuffer.add(y.getDouble(i));
+				}
+			}
+			this.xerr = null;
+			this.yerr = null;
+		}
+		final boolean dropping = yBuffer.size()==window;
+		xBuffer.add(xValue.doubleValue());
+		yBuffer.add(yValue.doubleValue());
+		if (xIncreasing!=null) {
+			if (dropping && (!xIncreasing || xNaN)) {
+				xIncreasing = null; // The oldest point may have been the one which made x decrease, or NaN
+			} else if (xIncreasing) {
+				updateXIncreasing(xValue.doubleValue());
+			}
+		}
+		
+		// Made again from the buffers if asked for.
+		this.x = null;
+		this.y = null;
 		this.cachedXRange = null;
 		this.cachedYRange = null;
+		clearDecimated();
 	    
 	    fireDataProviderListeners();
 	}
@@ -376,6 +376,31 @@ public class LineTraceImpl implements ILineTrace, ITraceListener{
 		return trace;
 	}
 
+	private int appendWindow = -1;
+
+	/**
+	 * The number of points kept when points are appended to this trace.
+	 * @return
+	 */
+	public int getAppendWindow() {
+		LightWeightDataProvider prov = (LightWeightDataProvider)trace.getDataProvider();
+		if (prov!=null) return prov.getWindow();
+		return appendWindow;
+	}
+
+	/**
+	 * Sets the number of points kept when points are appended to this trace, for
+	 * instance by IPlottingSystem.append(...). Once there are more the oldest are
+	 * dropped, so the trace shows a rolling window of the newest points.
+	 * 
+	 * @param appendWindow, Integer.MAX_VALUE to keep all the points.
+	 */
+	public void setAppendWindow(int appendWindow) {
+		this.appendWindow = appendWindow;
+		LightWeightDataProvider prov = (LightWeightDataProvider)trace.getDataProvider();
+		if (prov!=null) prov.setWindow(appendWindow);
+	}
+
 	private boolean settingLineData = false;
 	/**
 	 * You may need a repaint after calling this
@@ -396,6 +421,7 @@ public class LineTraceImpl implements ILineTrace, ITraceListener{
 				prov.removeDataProviderListener(trace);
 			} else {
 				prov = new LightWeightDataProvider();
+				if (appendWindow>0) prov.setWindow(appendWindow);
 			}
 			
 			if (sys!=null) try {
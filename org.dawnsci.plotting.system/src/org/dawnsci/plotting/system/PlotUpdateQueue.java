@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.system;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.swt.widgets.Display;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Updates to a plot posted from threads other than the UI thread, which
+ * are run on the UI thread at most once per frame interval.
+ *
+ * Each update is posted to a slot with a key, for instance the name of
+ * the trace it updates. If the slot already has an update which has not been
+ * run, that update is dropped and only the newest one is run. So a thread
+ * producing data faster than the plot can be drawn never waits for the UI
+ * thread, and the plot shows the newest data at the rate of the display.
+ *
+ * Updates which must not be dropped, such as appended points, are added
+ * to a slot of their own and are all run in the order they were added.
+ */
+class PlotUpdateQueue {
+
+	private static final Logger logger = LoggerFactory.getLogger(PlotUpdateQueue.class);
+
+	/**
+	 * Milliseconds between runs of the updates, by default 25 frames a second.
+	 */
+	private static final int FRAME_INTERVAL = Integer.getInteger("org.dawnsci.plotting.system.update.interval", 40);
+
+	/**
+	 * Milliseconds between logging the number of updates dropped.
+	 */
+	private static final long REPORT_INTERVAL = 10000;
+
+	private final Display               display;
+	private final Map<Object, Runnable> slots;
+
+	private boolean scheduled;
+	private long    lastDrain;
+	private long    posted, dropped, drains;
+	private long    lastReport, droppedAtReport;
+	private volatile boolean disposed;
+
+	/**
+	 * @param display whose UI thread runs the updates
+	 */
+	PlotUpdateQueue(Display display) {
+		this.display = display;
+		this.slots   = new LinkedHashMap<Object, Runnable>(7);
+	}
+
+	/**
+	 * Posts an update, replacing any update in the same slot which has not run yet.
+	 * Does not block.
+	 *
+	 * @param key of the slot, e.g. the name of the trace updated
+	 * @param update run on the UI thread
+	 */
+	void post(Object key, Runnable update) {
+		if (disposed) return;
+		final boolean schedule;
+		synchronized (this) {
+			// Removed first so that the newest update runs after those posted before it.
+			if (slots.remove(key)!=null) dropped++;
+			slots.put(key, update);
+			posted++;
+			schedule  = !scheduled;
+			scheduled = true;
+		}
+		if (schedule) schedule();
+	}
+
+	/**
+	 * Adds an update which is never dropped. Does not block.
+	 *
+	 * @param update run on the UI thread
+	 */
+	void add(Runnable update) {
+		post(new Object(), update);
+	}
+
+	/**
+	 * Arranges for drain() to be called on the UI thread, at least a frame interval
+	 * after it was last called.
+	 */
+	void schedule() {
+		if (display.isDisposed()) return;
+		display.asyncExec(new Runnable() {
+			public void run() {
+				final long wait = lastDrain + FRAME_INTERVAL - System.currentTimeMillis();
+				if (wait > 0) {
+					display.timerExec((int)wait, new Runnable() {
+						public void run() {
+							drain();
+						}
+					});
+				} else {
+					drain();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Runs the updates in the slots, must be called in the UI thread.
+	 */
+	void drain() {
+
+		final List<Runnable> updates;
+		synchronized (this) {
+			updates   = new ArrayList<Runnable>(slots.values());
+			slots.clear();
+			scheduled = false;
+			lastDrain = System.currentTimeMillis();
+			drains++;
+			if (lastDrain - lastReport > REPORT_INTERVAL && dropped > droppedAtReport) {
+				logger.debug("Plot updates dropped, "+(dropped-droppedAtReport)+" since last report, "+dropped+" of "+posted+" posted in total");
+				lastReport      = lastDrain;
+				droppedAtReport = dropped;
+			}
+		}
+		if (disposed) return;
+
+		for (Runnable update : updates) {
+			try {
+				update.run();
+			} catch (Throwable ne) {
+				logger.error("Cannot update plot", ne);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of updates posted or added.
+	 */
+	synchronized long getPostedCount() {
+		return posted;
+	}
+
+	/**
+	 * @return the number of updates replaced by a newer update before they ran.
+	 */
+	synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	/**
+	 * @return the number of times the updates have been run on the UI thread.
+	 */
+	synchronized long getDrainCount() {
+		return drains;
+	}
+
+	/**
+	 * Discards any updates which have not run.
+	 */
+	void dispose() {
+		disposed = true;
+		synchronized (this) {
+			slots.clear();
+		}
+	}
+}
@@ -144,6 +144,54 @@ public class PlottingSystemImpl<T> extends AbstractPlottingSystem<T> {
 		}
 	}
 
+	/**
+	 * If true, updates from threads other than the UI thread are posted to the
+	 * update queue rather than waiting for the UI thread, see PlotUpdateQueue.
+	 * Set org.dawnsci.plotting.system.asynchronous.updates to make it the default.
+	 */
+	private volatile boolean asynchronousUpdates = Boolean.getBoolean("org.dawnsci.plotting.system.asynchronous.updates");
+	private PlotUpdateQueue  updateQueue;
+
+	public boolean isAsynchronousUpdates() {
+		return asynchronousUpdates;
+	}
+
+	/**
+	 * When true, updatePlot1D(...), updatePlot2D(...), createPlot1D(...) and append(...) do not
+	 * block when called from a thread other than the UI thread. The plot is updated with the newest
+	 * data for each trace at most once per frame, older data which was not plotted is dropped. In
+	 * this mode createPlot1D(...) returns no traces and the update methods return the traces which
+	 * exist when they are called.
+	 *
+	 * @param asynchronousUpdates
+	 */
+	public void setAsynchronousUpdates(boolean asynchronousUpdates) {
+		this.asynchronousUpdates = asynchronousUpdates;
+	}
+
+	/**
+	 * @return the number of updates posted while in asynchronous mode.
+	 */
+	public long getPostedUpdateCount() {
+		return updateQueue!=null ? updateQueue.getPostedCount() : 0;
+	}
+
+	/**
+	 * @return the number of updates dropped in asynchronous mode because a newer one was posted before the plot was drawn.
+	 */
+	public long getDroppedUpdateCount() {
+		return updateQueue!=null ? updateQueue.getDroppedCount() : 0;
+	}
+
+	private boolean isAsynchronousUpdate() {
+		return asynchronousUpdates && getDisplay().getThread() != Thread.currentThread();
+	}
+
+	private synchronized PlotUpdateQueue getUpdateQueue() {
+		if (updateQueue==null) updateQueue = new PlotUpdateQueue(getDisplay());
+		return updateQueue;
+	}
+
 	public boolean isShowValueLabels() {
 		return showValueLabels;
 	}
@@ -386,6 +434,24 @@ public class PlottingSystemImpl<T> extends AbstractPlottingSystem<T> {
 									 final String                   plotTitle,
 									 final IProgressMonitor         monitor) {
 
+		if (isAsynchronousUpdate()) {
+			final List<ITrace> updated = new ArrayList<ITrace>(3);
+			final IDataset     finalX  = x;
+			for (int i = 0; i < ys.size(); i++) {
+				final IDataset     y     = ys.get(i);
+				final List<String> names = dataNames!=null ? Arrays.asList(dataNames.get(i)) : null;
+				// Unnamed data make a new trace each, so are kept apart by their place in the call
+				final Object       key   = y.getName()!=null ? "1D "+y.getName() : Arrays.asList("1D", i);
+				getUpdateQueue().post(key, new Runnable() {
+					public void run() {
+						updatePlot1D(finalX, Arrays.asList(y), names, plotTitle, monitor);
+					}
+				});
+				final ITrace trace = getTrace(y.getName());
+				if (trace!=null) updated.add(trace);
+			}
+			return updated;
+		}
 
 		final List<ITrace> updatedAndCreated = new ArrayList<ITrace>(3);
 		final List<IDataset> unfoundYs    = new ArrayList<IDataset>(ys.size());
@@ -481,6 +547,14 @@ public class PlottingSystemImpl<T> extends AbstractPlottingSystem<T> {
 		if (getDisplay().getThread() == Thread.currentThread()) {
 			List<ITrace> ts = createPlot1DInternal(x, ysIn, dataNames, title, monitor);
 			if (ts != null) traces.addAll(ts);
+		} else if (asynchronousUpdates) {
+			final StringBuilder key = new StringBuilder("Create 1D");
+			for (IDataset y : ysIn) key.append(' ').append(y.getName());
+			getUpdateQueue().post(key.toString(), new Runnable() {
+				public void run() {
+					createPlot1DInternal(x, ysIn, dataNames, title, monitor);
+				}
+			});
 		} else {
 			getDisplay().syncExec(new Runnable() {
 				@Override
@@ -508,6 +582,12 @@ public class PlottingSystemImpl<T> extends AbstractPlottingSystem<T> {
 
 		if (getDisplay().getThread() == Thread.currentThread()) {
 			appendInternal(name, xValue, yValue, monitor);
+		} else if (asynchronousUpdates) {
+			getUpdateQueue().add(new Runnable() {
+				public void run() {
+					appendInternal(name, xValue, yValue, monitor);
+				}
+			});
 		} else {
 			getDisplay().syncExec(new Runnable() {
 				@Override
@@ -545,6 +625,16 @@ public class PlottingSystemImpl<T> extends AbstractPlottingSystem<T> {
 			 				   final String                dataName,
 				               final IProgressMonitor      monitor) {
 
+		if (isAsynchronousUpdate()) {
+			getUpdateQueue().post("2D", new Runnable() {
+				public void run() {
+					updatePlot2D(data, axes, dataName, monitor);
+				}
+			});
+			final Collection<ITrace> traces = getTraces(IImageTrace.class);
+			return traces!=null && !traces.isEmpty() ? traces.iterator().next() : null;
+		}
+
 		if (plottingMode.is1D()) {
 			if (getDisplay().getThread() == Thread.currentThread()) {
 				switchPlottingType(PlotType.IMAGE);
@@ -1170,6 +1260,7 @@ public class PlottingSystemImpl<T> extends AbstractPlottingSystem<T> {
 	@Override
 	public void dispose() {
 		super.dispose();
+		if (updateQueue!=null) updateQueue.dispose();
 		store = null;
 		if (colorMap!=null) {
 			colorMap.clear();
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.system;
+
+/**
+ * A buffer of doubles which values are appended to in constant (amortised) time.
+ *
+ * The buffer grows by doubling until it holds window values, after which
+ * each value appended replaces the oldest one. The min and max of the values
+ * held are kept as values are added, ignoring NaNs, so they are never rescanned.
+ * Once values are being dropped they are kept with a queue of the candidate
+ * extremes in the window, in which each value is added and removed at most once.
+ */
+class RingBuffer {
+
+	private double[] data;
+	private int      head; // Index of the oldest value
+	private int      size;
+	private int      window;
+	private long     added; // Number of values ever added, i.e. the sequence number of the next
+
+	private double         min, max;
+	private ExtremeQueue   minQueue, maxQueue;
+
+	/**
+	 * @param window the number of values held, Integer.MAX_VALUE to keep all of them.
+	 */
+	RingBuffer(int window) {
+		this.window = window;
+		clear();
+	}
+
+	void clear() {
+		data  = new double[Math.min(window, 64)];
+		head  = 0;
+		size  = 0;
+		added = 0;
+		min   = Double.NaN;
+		max   = Double.NaN;
+		if (window < Integer.MAX_VALUE) {
+			minQueue = new ExtremeQueue(true);
+			maxQueue = new ExtremeQueue(false);
+		} else {
+			minQueue = null;
+			maxQueue = null;
+		}
+	}
+
+	int getWindow() {
+		return window;
+	}
+
+	/**
+	 * Changes the number of values held, dropping the oldest if there are now too many.
+	 * This is the only operation which copies all the values.
+	 *
+	 * @param window
+	 */
+	void setWindow(int window) {
+		if (window<1) throw new IllegalArgumentException("The window must be at least one value!");
+		if (window==this.window) return;
+		final double[] values = toArray();
+		this.window = window;
+		clear();
+		for (int i = Math.max(0, values.length-window); i < values.length; i++) add(values[i]);
+	}
+
+	int size() {
+		return size;
+	}
+
+	void add(final double value) {
+		if (size==window) {
+			// Replace the oldest, the buffer is always window long by now.
+			final long oldest = added - size;
+			minQueue.remove(oldest);
+			maxQueue.remove(oldest);
+			data[head] = value;
+			head = head+1==data.length ? 0 : head+1;
+		} else {
+			if (size==data.length) grow();
+			data[index(size)] = value;
+			size++;
+		}
+
+		if (!Double.isNaN(value)) {
+			if (minQueue!=null) {
+				minQueue.add(added, value);
+				maxQueue.add(added, value);
+			} else {
+				if (!(value >= min)) min = value; // Also true when min is NaN
+				if (!(value <= max)) max = value;
+			}
+		}
+		added++;
+	}
+
+	private void grow() {
+		final double[] grown = new double[(int)Math.min(window, Math.max(1L, 2L*data.length))];
+		copyInto(grown);
+		data = grown;
+		head = 0;
+	}
+
+	/**
+	 * @param i from 0, the oldest, to size()-1, the newest.
+	 * @return
+	 */
+	double get(int i) {
+		if (i<0 || i>=size) throw new IndexOutOfBoundsException("Index "+i+" is not in a buffer of size "+size);
+		return data[index(i)];
+	}
+
+	private int index(int i) {
+		final int index = head+i;
+		return index>=data.length ? index-data.length : index;
+	}
+
+	/**
+	 * @return the min of the values held or NaN if there are none which are not NaN.
+	 */
+	double getMin() {
+		return minQueue!=null ? minQueue.get() : min;
+	}
+
+	/**
+	 * @return the max of the values held or NaN if there are none which are not NaN.
+	 */
+	double getMax() {
+		return maxQueue!=null ? maxQueue.get() : max;
+	}
+
+	/**
+	 * @return a copy of the values from the oldest to the newest.
+	 */
+	double[] toArray() {
+		final double[] ret = new double[size];
+		copyInto(ret);
+		return ret;
+	}
+
+	private void copyInto(double[] dest) {
+		final int first = Math.min(size, data.length-head);
+		System.arraycopy(data, head, dest, 0, first);
+		System.arraycopy(data, 0, dest, first, size-first);
+	}
+
+	/**
+	 * The values in the window which may still become the min (or max) as older values
+	 * are dropped, in the order they were added. The front is the current extreme.
+	 * A value is never a candidate once a newer value at least as extreme is added.
+	 */
+	private static final class ExtremeQueue {
+
+		private final boolean minimum;
+		private long[]   seqs   = new long[16];
+		private double[] values = new double[16];
+		private int      head, size;
+
+		ExtremeQueue(boolean minimum) {
+			this.minimum = minimum;
+		}
+
+		void add(long seq, double value) {
+			while (size>0) {
+				final double last = values[index(size-1)];
+				if (minimum ? last < value : last > value) break;
+				size--;
+			}
+			if (size==seqs.length) grow();
+			final int i = index(size);
+			seqs[i]   = seq;
+			values[i] = value;
+			size++;
+		}
+
+		/**
+		 * Called when the value with this sequence number is dropped from the window.
+		 */
+		void remove(long seq) {
+			if (size>0 && seqs[head]==seq) {
+				head = head+1==seqs.length ? 0 : head+1;
+				size--;
+			}
+		}
+
+		double get() {
+			return size>0 ? values[head] : Double.NaN;
+		}
+
+		private int index(int i) {
+			final int index = head+i;
+			return index>=seqs.length ? index-seqs.length : index;
+		}
+
+		private void grow() {
+			final long[]   s = new long[seqs.length*2];
+			final double[] v = new double[values.length*2];
+			for (int i = 0; i < size; i++) {
+				s[i] = seqs[index(i)];
+				v[i] = values[index(i)];
+			}
+			seqs   = s;
+			values = v;
+			head   = 0;
+		}
+	}
+}
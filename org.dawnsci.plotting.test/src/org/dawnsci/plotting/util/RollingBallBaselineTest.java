@@ -0,0 +1,137 @@
+package org.dawnsci.plotting.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.junit.Test;
+
+/**
+ * Compares the baseline with that of the loops which sliced out each window, as
+ * the spectrum process and powder check did before.
+ */
+public class RollingBallBaselineTest {
+
+	private static final int[] WIDTHS = {1, 2, 3, 7, 20};
+
+	/**
+	 * The baseline as it was, a window at a time.
+	 */
+	private static Dataset getSlicedBaseline(Dataset y, int width) {
+
+		Dataset t1 = DatasetFactory.zeros(y);
+		Dataset t2 = DatasetFactory.zeros(y);
+
+		for (int i = 0 ; i < y.getSize()-1; i++) {
+			int start = (i-width) < 0 ? 0 : (i - width);
+			int end = (i+width) > (y.getSize()-1) ? (y.getSize()-1) : (i+width);
+			double val = y.getSlice(new int[]{start}, new int[]{end}, null).min().doubleValue();
+			t1.set(val, i);
+		}
+
+		for (int i = 0 ; i < y.getSize()-1; i++) {
+			int start = (i-width) < 0 ? 0 : (i - width);
+			int end = (i+width) > (y.getSize()-1) ? (y.getSize()-1) : (i+width);
+			double val = t1.getSlice(new int[]{start}, new int[]{end}, null).max().doubleValue();
+			t2.set(val, i);
+		}
+
+		for (int i = 0 ; i < y.getSize()-1; i++) {
+			int start = (i-width) < 0 ? 0 : (i - width);
+			int end = (i+width) > (y.getSize()-1) ? (y.getSize()-1) : (i+width);
+			double val = (Double)t2.getSlice(new int[]{start}, new int[]{end}, null).mean();
+			t1.set(val, i);
+		}
+
+		return t1;
+	}
+
+	private static Dataset createSpectrum(int size, int dtype, long seed) {
+		final Random   random = new Random(seed);
+		final double[] values = new double[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = 1000*Math.exp(-(i-size/2.)*(i-size/2.)/size) + 200*random.nextDouble() - 50;
+		}
+		return DatasetUtils.cast(DatasetFactory.createFromObject(values), dtype);
+	}
+
+	private static void assertSameBaseline(Dataset y, int width) {
+		final Dataset expected = getSlicedBaseline(y, width);
+		final Dataset actual   = RollingBallBaseline.getBaseline(y, width);
+		final String  message  = "Size "+y.getSize()+", width "+width+", dtype "+y.getDtype();
+
+		assertEquals(message, y.getDtype(), actual.getDtype());
+		assertArrayEquals(message, y.getShape(), actual.getShape());
+		for (int i = 0; i < y.getSize(); i++) {
+			final double e = expected.getDouble(i);
+			final double a = actual.getDouble(i);
+			if (actual.hasFloatingPointElements()) {
+				final double tolerance = y.getDtype() == Dataset.FLOAT32 ? 1e-5 : 1e-9;
+				assertEquals(message+", point "+i, e, a, tolerance*Math.max(1, Math.abs(e)));
+			} else {
+				// A mean which is a whole number may have come out a hair either
+				// side of it from the old sum, and so been truncated to the next
+				assertEquals(message+", point "+i, e, a, 1);
+			}
+		}
+		if (y.getSize() > 0) assertEquals(message+", last point", 0, actual.getDouble(y.getSize()-1), 0);
+	}
+
+	@Test
+	public void testFloat() {
+		for (int width : WIDTHS) {
+			assertSameBaseline(createSpectrum(200, Dataset.FLOAT64, width), width);
+			assertSameBaseline(createSpectrum(200, Dataset.FLOAT32, width), width);
+		}
+	}
+
+	@Test
+	public void testInteger() {
+		for (int width : WIDTHS) {
+			for (int dtype : new int[]{Dataset.INT8, Dataset.INT16, Dataset.INT32, Dataset.INT64}) {
+				assertSameBaseline(createSpectrum(200, dtype, width), width);
+			}
+		}
+	}
+
+	@Test
+	public void testWindowsAtEdges() {
+		// Windows as wide as or wider than the spectrum, and spectra of a point or two
+		for (int size = 1; size < 12; size++) {
+			for (int width = 1; width < 15; width++) {
+				assertSameBaseline(createSpectrum(size, Dataset.FLOAT64, size*100+width), width);
+				assertSameBaseline(createSpectrum(size, Dataset.INT32,   size*100+width), width);
+			}
+		}
+	}
+
+	@Test
+	public void testView() {
+		final Dataset spectrum = createSpectrum(300, Dataset.FLOAT64, 1);
+		final Dataset view     = spectrum.getSliceView(new int[]{20}, new int[]{280}, new int[]{2});
+		assertSameBaseline(view, 5);
+	}
+
+	@Test
+	public void testBaselines() {
+		final List<Dataset> ys = new ArrayList<Dataset>();
+		for (int i = 0; i < 20; i++) ys.add(createSpectrum(100+i*7, i%2==0 ? Dataset.FLOAT64 : Dataset.INT32, i));
+
+		final List<Dataset> baselines = RollingBallBaseline.getBaselines(ys, 4);
+		assertEquals(ys.size(), baselines.size());
+		for (int i = 0; i < ys.size(); i++) {
+			assertEquals(RollingBallBaseline.getBaseline(ys.get(i), 4), baselines.get(i));
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testNoWidth() {
+		RollingBallBaseline.getBaseline(createSpectrum(10, Dataset.FLOAT64, 0), 0);
+	}
+}
@@ -0,0 +1,234 @@
+package org.dawnsci.plotting.tools.masking;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.BooleanDataset;
+import org.junit.Test;
+
+/**
+ * Paints random spans and pixels into masks, some in parallel, and checks that
+ * executing, undoing and redoing the operations leaves the mask as painting the
+ * same pixels into a copy of it does.
+ */
+public class MaskOperationTest {
+
+	private static final int[] SHAPE = {120, 100};
+
+	/**
+	 * Sets the pixels of a row from xStart to xEnd (exclusive) to mv.
+	 */
+	private static class Paint {
+		final boolean mv;
+		final int     y, xStart, xEnd;
+
+		Paint(boolean mv, int y, int xStart, int xEnd) {
+			this.mv     = mv;
+			this.y      = y;
+			this.xStart = xStart;
+			this.xEnd   = xEnd;
+		}
+
+		void applyTo(boolean[] mask) {
+			for (int x = xStart; x < xEnd; x++) mask[y*SHAPE[1]+x] = mv;
+		}
+
+		void addTo(MaskOperation.Stripe stripe) {
+			if (xEnd-xStart == 1) {
+				stripe.add(mv, y, xStart);
+			} else {
+				stripe.fill(mv, y, xStart, xEnd);
+			}
+		}
+	}
+
+	/**
+	 * Spans painted in some rows by one thread, and single pixels painted after
+	 * with addVertex(...) over all the rows.
+	 */
+	private static class Paints {
+		final List<int[]>       bands  = new ArrayList<int[]>(); // Start and end (exclusive) rows
+		final List<List<Paint>> spans  = new ArrayList<List<Paint>>();
+		final List<Paint>       pixels = new ArrayList<Paint>();
+	}
+
+	/**
+	 * @param spans the most spans painted in each band of rows
+	 * @param pixels the number of single pixels painted
+	 */
+	private static Paints createPaints(Random random, int spans, int pixels) {
+		final Paints paints = new Paints();
+		for (int yStart = 0; yStart < SHAPE[0]; ) {
+			final int yEnd = Math.min(SHAPE[0], yStart+1+random.nextInt(SHAPE[0]/2));
+			final List<Paint> band = new ArrayList<Paint>();
+			final int count = random.nextInt(spans+1);
+			for (int i = 0; i < count; i++) {
+				final int y      = yStart+random.nextInt(yEnd-yStart);
+				final int xStart = random.nextInt(SHAPE[1]);
+				final int xEnd   = random.nextBoolean() ? xStart+1 : xStart+1+random.nextInt(SHAPE[1]-xStart);
+				band.add(new Paint(random.nextBoolean(), y, xStart, xEnd));
+			}
+			paints.bands.add(new int[]{yStart, yEnd});
+			paints.spans.add(band);
+			yStart = yEnd;
+		}
+		for (int i = 0; i < pixels; i++) {
+			final int x = random.nextInt(SHAPE[1]);
+			paints.pixels.add(new Paint(random.nextBoolean(), random.nextInt(SHAPE[0]), x, x+1));
+		}
+		return paints;
+	}
+
+	/**
+	 * @return the operation painting the bands, each in a thread, and then the pixels
+	 */
+	private static MaskOperation createOperation(BooleanDataset mask, Paints paints) throws Exception {
+		final MaskOperation operation = new MaskOperation(mask);
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < paints.bands.size(); i++) {
+			final MaskOperation.Stripe stripe = operation.createStripe(paints.bands.get(i)[0], paints.bands.get(i)[1]);
+			final List<Paint>          band   = paints.spans.get(i);
+			final Thread thread = new Thread() {
+				@Override
+				public void run() {
+					for (Paint paint : band) paint.addTo(stripe);
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) thread.join();
+		for (Paint paint : paints.pixels) operation.addVertex(paint.mv, paint.y, paint.xStart);
+		return operation;
+	}
+
+	private static boolean[] paint(boolean[] mask, Paints paints) {
+		final boolean[] painted = mask.clone();
+		for (List<Paint> band : paints.spans) {
+			for (Paint paint : band) paint.applyTo(painted);
+		}
+		for (Paint paint : paints.pixels) paint.applyTo(painted);
+		return painted;
+	}
+
+	private static BooleanDataset createMask(Random random) {
+		final BooleanDataset mask = BooleanDataset.ones(SHAPE);
+		final boolean[] data = mask.getData();
+		for (int i = 0; i < data.length; i++) if (random.nextInt(10) == 0) data[i] = false;
+		return mask;
+	}
+
+	/**
+	 * Checks the size and pixels of the operation against the mask before and after.
+	 */
+	private static void assertChanges(MaskOperation operation, boolean[] before, boolean[] after, Random random) {
+		int changed = 0;
+		for (int i = 0; i < before.length; i++) if (before[i] != after[i]) changed++;
+		assertEquals(changed, operation.getSize());
+
+		for (int i = 0; i < 500; i++) {
+			final int  y  = random.nextInt(SHAPE[0]);
+			final int  x  = random.nextInt(SHAPE[1]);
+			final int  j  = y*SHAPE[1]+x;
+			final boolean mv = random.nextBoolean();
+			assertEquals("Pixel "+y+", "+x, before[j] != after[j] && after[j] == mv, operation.isVertex(mv, y, x));
+		}
+	}
+
+	/**
+	 * Executes operations one after another, then undoes all of them and redoes them again.
+	 */
+	private static void assertRoundTrip(long seed, int spans, int pixels) throws Exception {
+		final Random         random = new Random(seed);
+		final BooleanDataset mask   = createMask(random);
+
+		final List<MaskOperation> operations = new ArrayList<MaskOperation>();
+		final List<boolean[]>     states     = new ArrayList<boolean[]>();
+		states.add(mask.getData().clone());
+		for (int i = 0; i < 10; i++) {
+			final Paints            paints    = createPaints(random, spans, pixels);
+			final boolean[]         before    = mask.getData().clone();
+			final boolean[]         expected  = paint(before, paints);
+			final MaskOperation     operation = createOperation(mask, paints);
+
+			assertArrayEquals("Changed before executing", before, mask.getData());
+			operation.execute(null, null);
+			assertArrayEquals("Operation "+i, expected, mask.getData());
+			assertChanges(operation, before, expected, random);
+			operations.add(operation);
+			states.add(expected);
+		}
+
+		for (int i = operations.size()-1; i >= 0; i--) {
+			operations.get(i).undo(null, null);
+			assertArrayEquals("Undoing "+i, states.get(i), mask.getData());
+		}
+		for (int i = 0; i < operations.size(); i++) {
+			operations.get(i).redo(null, null);
+			assertArrayEquals("Redoing "+i, states.get(i+1), mask.getData());
+			assertChanges(operations.get(i), states.get(i), states.get(i+1), random);
+		}
+	}
+
+	@Test
+	public void testSpans() throws Exception {
+		// Few runs, kept as runs after executing
+		for (int seed = 0; seed < 20; seed++) assertRoundTrip(seed, 20, 0);
+	}
+
+	@Test
+	public void testPixels() throws Exception {
+		// Many scattered pixels, kept as bitsets after executing
+		for (int seed = 0; seed < 20; seed++) assertRoundTrip(seed, 0, 2000);
+	}
+
+	@Test
+	public void testSpansAndPixels() throws Exception {
+		for (int seed = 0; seed < 20; seed++) assertRoundTrip(seed, 50, 300);
+	}
+
+	@Test
+	public void testOnlyChangedPixelsUndone() throws Exception {
+		// Pixels set by something else in between, as by the threshold, are left as they are
+		final Random random = new Random(1);
+		for (int spans : new int[]{20, 0}) {
+			final BooleanDataset    mask      = createMask(random);
+			final Paints            paints    = createPaints(random, spans, spans == 0 ? 2000 : 0);
+			final boolean[]         before    = mask.getData().clone();
+			final MaskOperation     operation = createOperation(mask, paints);
+			operation.execute(null, null);
+			final boolean[]         after     = mask.getData().clone();
+
+			final boolean[] data = mask.getData();
+			for (int i = 0; i < data.length; i++) if (random.nextInt(5) == 0) data[i] = !data[i];
+			final boolean[] between = data.clone();
+
+			operation.undo(null, null);
+			for (int i = 0; i < data.length; i++) {
+				assertEquals("Pixel "+i, before[i] != after[i] ? before[i] : between[i], data[i]);
+			}
+			operation.redo(null, null);
+			for (int i = 0; i < data.length; i++) {
+				assertEquals("Pixel "+i, before[i] != after[i] ? after[i] : between[i], data[i]);
+			}
+		}
+	}
+
+	@Test
+	public void testNothingChanged() throws Exception {
+		// Pixels painted the value they have already are not part of the operation
+		final BooleanDataset mask      = BooleanDataset.ones(SHAPE);
+		final MaskOperation  operation = new MaskOperation(mask);
+		operation.createStripe(0, SHAPE[0]).fill(true, 5, 0, SHAPE[1]);
+		operation.addVertex(true, 7, 3);
+		assertEquals(0, operation.getSize());
+		assertEquals(false, operation.isVertex(true, 7, 3));
+		operation.execute(null, null);
+		operation.undo(null, null);
+		assertArrayEquals(BooleanDataset.ones(SHAPE).getData(), mask.getData());
+	}
+}
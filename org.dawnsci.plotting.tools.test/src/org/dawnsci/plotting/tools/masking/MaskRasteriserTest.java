@@ -0,0 +1,170 @@
+package org.dawnsci.plotting.tools.masking;
+
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.dawnsci.analysis.api.roi.IROI;
+import org.eclipse.dawnsci.analysis.dataset.impl.BooleanDataset;
+import org.eclipse.dawnsci.analysis.dataset.roi.CircularROI;
+import org.eclipse.dawnsci.analysis.dataset.roi.EllipticalROI;
+import org.eclipse.dawnsci.analysis.dataset.roi.LinearROI;
+import org.eclipse.dawnsci.analysis.dataset.roi.PointROI;
+import org.eclipse.dawnsci.analysis.dataset.roi.PolygonalROI;
+import org.eclipse.dawnsci.analysis.dataset.roi.RectangularROI;
+import org.eclipse.dawnsci.analysis.dataset.roi.RingROI;
+import org.eclipse.dawnsci.analysis.dataset.roi.SectorROI;
+import org.junit.Test;
+
+/**
+ * Compares the pixels masked by the rasteriser with those masked by testing the
+ * outline of the region one pixel at a time, as was done before.
+ */
+public class MaskRasteriserTest {
+
+	private static final int[] SHAPE = {120, 100};
+
+	/**
+	 * The pixels of the region as masked a pixel at a time, from the bounds and
+	 * intersections with the outline.
+	 */
+	private static BooleanDataset getOutlineMask(IROI roi) {
+		final BooleanDataset mask = BooleanDataset.ones(SHAPE);
+		final double[] beg = roi.getBounds().getPoint();
+		final double[] end = roi.getBounds().getEndPoint();
+
+		if (roi.getClass() == PointROI.class) {
+			final int x = Math.max(0, (int) Math.round(beg[0]));
+			final int y = Math.max(0, (int) Math.round(beg[1]));
+			if (x<SHAPE[1] && y<SHAPE[0]) mask.set(false, y, x);
+			return mask;
+		}
+
+		final int xStart = Math.max(0, (int) Math.round(beg[0]));
+		final int xEnd   = Math.min(SHAPE[1] - 1, (int) Math.round(end[0]));
+		final int yStart = Math.max(0, (int) Math.round(beg[1]));
+		final int yEnd   = Math.min(SHAPE[0] - 1, (int) Math.round(end[1]));
+
+		row_loop:
+		for (int y = yStart; y < yEnd; ++y) {
+			final double[] xs = roi.findHorizontalIntersections(y);
+			if (xs == null || xs.length == 0) continue;
+
+			int xe = (int) xs[0];
+			if (xe >= xEnd) continue;
+			if (xs.length == 1) {
+				if (xe >= xStart) mask.set(false, y, xe);
+				continue;
+			}
+
+			for (int i = 1; i < xs.length; i++) {
+				final int xb = (int) xs[i-1];
+				xe = (int) xs[i];
+				if (xe < xStart) continue;
+				if (xb >= xEnd) continue row_loop;
+				if (roi.containsPoint((xb + xe)/2, y)) {
+					for (int k = Math.max(xStart, xb); k <= Math.min(xEnd - 1, xe); k++) mask.set(false, y, k);
+				}
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * The pixels within distance of the line, inside its bounds grown by the distance.
+	 */
+	private static BooleanDataset getLineMask(LinearROI line, double distance) {
+		final BooleanDataset mask = BooleanDataset.ones(SHAPE);
+		final double[] beg = line.getBounds().getPoint();
+		final double[] end = line.getBounds().getEndPoint();
+		final int xStart = Math.max(0, (int) Math.round(beg[0]-distance));
+		final int xEnd   = Math.min(SHAPE[1] - 1, (int) Math.round(end[0]+distance));
+		final int yStart = Math.max(0, (int) Math.round(beg[1]-distance));
+		final int yEnd   = Math.min(SHAPE[0] - 1, (int) Math.round(end[1]+distance));
+
+		final double[] a = line.getPoint();
+		final double[] b = line.getEndPoint();
+		final double ux = b[0]-a[0], uy = b[1]-a[1];
+		for (int y = yStart; y < yEnd; y++) {
+			for (int x = xStart; x < xEnd; x++) {
+				final double t  = Math.max(0, Math.min(1, ((x-a[0])*ux + (y-a[1])*uy)/(ux*ux + uy*uy)));
+				if (Math.hypot(x-a[0]-t*ux, y-a[1]-t*uy) <= distance) mask.set(false, y, x);
+			}
+		}
+		return mask;
+	}
+
+	private static BooleanDataset getRasterMask(IROI roi, double lineWidth) {
+		final BooleanDataset mask = BooleanDataset.ones(SHAPE);
+		final MaskOperation op = new MaskOperation(mask);
+		final MaskRasteriser raster = new MaskRasteriser(roi, SHAPE, lineWidth);
+		final int[] rows = raster.getRows();
+		final MaskOperation.Stripe stripe = op.createStripe(rows[0], rows[1]);
+		for (int y = rows[0]; y < rows[1]; y++) raster.fillRow(stripe, false, y);
+		try {
+			op.execute(null, null);
+		} catch (Exception ne) {
+			throw new RuntimeException(ne);
+		}
+		return mask;
+	}
+
+	private static void assertSameMask(BooleanDataset expected, BooleanDataset actual) {
+		for (int y = 0; y < SHAPE[0]; y++) {
+			for (int x = 0; x < SHAPE[1]; x++) {
+				assertEquals("Pixel "+x+", "+y, expected.getBoolean(y, x), actual.getBoolean(y, x));
+			}
+		}
+	}
+
+	private static void assertSameAsOutline(IROI roi) {
+		assertSameMask(getOutlineMask(roi), getRasterMask(roi, 1));
+	}
+
+	@Test
+	public void testRectangle() {
+		assertSameAsOutline(new RectangularROI(10.3, 20.6, 40.2, 30.7, 0));
+		assertSameAsOutline(new RectangularROI(-5.5, -3.2, 30, 20, 0));
+		assertSameAsOutline(new RectangularROI(80.4, 100.2, 50, 50, 0));
+	}
+
+	@Test
+	public void testRotatedRectangle() {
+		assertSameAsOutline(new RectangularROI(30.5, 20.5, 40, 25, Math.PI/6));
+	}
+
+	@Test
+	public void testPolygon() {
+		final PolygonalROI polygon = new PolygonalROI();
+		polygon.insertPoint(new double[]{10.2, 10.7});
+		polygon.insertPoint(new double[]{80.6, 30.1});
+		polygon.insertPoint(new double[]{40.3, 50.5});
+		polygon.insertPoint(new double[]{70.9, 90.4});
+		polygon.insertPoint(new double[]{15.5, 70.8});
+		assertSameAsOutline(polygon);
+	}
+
+	@Test
+	public void testEllipseAndCircle() {
+		assertSameAsOutline(new EllipticalROI(30.4, 15.2, Math.PI/5, 50.3, 60.7));
+		assertSameAsOutline(new CircularROI(25.6, 40.2, 50.9));
+	}
+
+	@Test
+	public void testRingAndSector() {
+		assertSameAsOutline(new RingROI(50.5, 60.5, 10.3, 35.8));
+		assertSameAsOutline(new SectorROI(40.2, 50.7, 5.5, 45.1, Math.PI/8, Math.PI));
+	}
+
+	@Test
+	public void testPoint() {
+		assertSameAsOutline(new PointROI(20.4, 30.6));
+		assertSameAsOutline(new PointROI(-0.3, 10.2));
+		assertSameAsOutline(new PointROI(150, 10));
+	}
+
+	@Test
+	public void testLine() {
+		final LinearROI line = new LinearROI(new double[]{10.3, 15.2}, new double[]{70.6, 60.1});
+		assertSameMask(getLineMask(line, 2.5), getRasterMask(line, 5));
+		assertSameMask(getLineMask(line, 0.5), getRasterMask(line, 0.2));
+	}
+}
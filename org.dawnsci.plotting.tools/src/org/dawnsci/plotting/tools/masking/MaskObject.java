@@ -24,13 +24,10 @@ import org.eclipse.core.commands.operations.DefaultOperationHistory;
 import org.eclipse.core.commands.operations.IOperationHistory;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dawnsci.analysis.api.roi.IROI;
-import org.eclipse.dawnsci.analysis.api.roi.IRectangularROI;
 import org.eclipse.dawnsci.analysis.dataset.impl.BooleanDataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.Comparisons;
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.IndexIterator;
-import org.eclipse.dawnsci.analysis.dataset.roi.LinearROI;
-import org.eclipse.dawnsci.analysis.dataset.roi.PointROI;
 import org.eclipse.dawnsci.plotting.api.IPlottingSystem;
 import org.eclipse.dawnsci.plotting.api.axis.IAxis;
 import org.eclipse.dawnsci.plotting.api.preferences.PlottingConstants;
@@ -112,7 +109,7 @@ public class MaskObject {
 	public void process(BooleanDataset savedMask) {
 		createMaskIfNeeded();
 		
-        MaskOperation op = new MaskOperation(maskDataset, savedMask.getSize()/16);
+        MaskOperation op = new MaskOperation(maskDataset);
 		final int[] shape = savedMask.getShape();
 		for (int y = 0; y<shape[0]; ++y) {
 			for (int x = 0; x<shape[1]; ++x) {
@@ -169,7 +166,7 @@ public class MaskObject {
         	locations = lineBresenham(startLocation, finishLocation);
         }
         
-        MaskOperation op = new MaskOperation(maskDataset, 300);
+        MaskOperation op = new MaskOperation(maskDataset);
         
         for (final Point loc : locations) {
         	
@@ -302,9 +299,7 @@ public class MaskObject {
 	 * @param x
 	 */
 	private void toggleMask(MaskOperation op, boolean mv, int y, int x) {
-		if (maskDataset.getBoolean(y,x)!=mv) {
-			op.addVertex(mv, y, x);
-		}
+		op.addVertex(mv, y, x); // Only added if the pixel is not mv already
 	}
 	
 	public void dispose() {
@@ -389,23 +384,23 @@ public class MaskObject {
 
 			if (validRegions.isEmpty()) return true;
 
-			final MaskOperation op  = new MaskOperation(maskDataset, getMaskDataset().getSize()/16);
+			final MaskOperation op  = new MaskOperation(maskDataset);
 			final int[]      shape  = imageDataset.getShape();
 			
 			if (Boolean.getBoolean("org.dawnsci.plotting.tools.masking.no.thread.pool")) {
-				MAIN_LOOP: for (int y = 0; y<shape[0]; ++y) {
-					for (int x = 0; x<shape[1]; ++x) {
-						for (IRegion region : validRegions) {
-							monitor.worked(1);
-							try {
-								if (region.getCoordinateSystem().isDisposed()) break MAIN_LOOP;
-								if (region.getROI().containsPoint(x, y)) {
-									toggleMask(op, !region.isMaskRegion(), y, x);
-								}
-							} catch (Throwable ne) {
-								logger.trace("Cannot process point "+(new Point(x,y)), ne);
-								continue;
-							}
+				for (IRegion region : validRegions) {
+					if (region.getCoordinateSystem().isDisposed()) break;
+					final MaskRasteriser raster = new MaskRasteriser(region.getROI(), shape, getScreenPixelWidth(region));
+					final int[] rows = raster.getRows();
+					if (rows==null) continue;
+					final MaskOperation.Stripe stripe = op.createStripe(rows[0], rows[1]);
+					for (int y = rows[0]; y < rows[1]; ++y) {
+						if (monitor.isCanceled()) break;
+						monitor.worked(1);
+						try {
+							raster.fillRow(stripe, !region.isMaskRegion(), y);
+						} catch (Throwable ne) {
+							logger.trace("Cannot process row "+y, ne);
 						}
 					}
 				}
@@ -425,8 +420,22 @@ public class MaskObject {
 		return true;
 	}
 	
-	private static int INC = 100; // The amount of columns to do for each task.
+	private static int INC = 100; // The amount of rows to do for each task.
 	
+	/**
+	 * Get pixel width in data coordinates.
+	 * @param region
+	 * @return
+	 */
+	private static double getScreenPixelWidth(IRegion region) {
+		final int widPix = region.getLineWidth();
+		double[] s = region.getCoordinateSystem().getValueFromPosition(new double[]{0, 0});
+		double[] e = region.getCoordinateSystem().getValueFromPosition(new double[]{widPix, widPix});
+		//return Math.pow((Math.pow(e[0]-s[0], 2)+Math.pow(e[1]-s[1], 2)), 0.5);
+		// FIXME This is not right but works for many images that we have. 
+		// Those with significantly different axis scales, it will not.
+		return Math.min(e[0]-s[0], e[1]-s[1]);
+	}
 		
 	private class MaskRegionsAction extends RecursiveAction {
 		
@@ -459,26 +468,10 @@ public class MaskObject {
 
 				final IROI    roi       = region.getROI();
 				final boolean isMasking = region.isMaskRegion();
-				actions.add(new RegionAction(op, shape, roi, getScreenPixelWidth(region), isMasking, monitor));
+				actions.add(new RegionAction(op, shape, new MaskRasteriser(roi, shape, getScreenPixelWidth(region)), isMasking, monitor));
 			}
 			invokeAll(actions);
 		}
-		
-        /**
-         * Get pixel width in data coordinates.
-         * @param region
-         * @return
-         */
-		public double getScreenPixelWidth(IRegion region) {
-			final int widPix = region.getLineWidth();
-			double[] s = region.getCoordinateSystem().getValueFromPosition(new double[]{0, 0});
-			double[] e = region.getCoordinateSystem().getValueFromPosition(new double[]{widPix, widPix});
-			//return Math.pow((Math.pow(e[0]-s[0], 2)+Math.pow(e[1]-s[1], 2)), 0.5);
-			// FIXME This is not right but works for many images that we have. 
-			// Those with significantly different axis scales, it will not.
-			return Math.min(e[0]-s[0], e[1]-s[1]);
-		}
-
 	}
 
 	private class RegionAction extends MaskRegionsAction {
@@ -489,68 +482,34 @@ public class MaskObject {
 		private static final long serialVersionUID = -7438635693096574242L;
 		
 		protected boolean          isMasking;
-		protected IROI             roi;
-		protected double           lineWidth;
+		protected MaskRasteriser   raster;
 
 		/**
 		 * 
 		 * @param op
 		 * @param shape
-		 * @param roi
-		 * @param lineWidth in data coordinates (ROI)
+		 * @param raster of the region
 		 * @param isMasking
 		 * @param monitor
 		 */
-		public RegionAction(MaskOperation op, int[] shape, IROI roi, double lineWidth,
+		public RegionAction(MaskOperation op, int[] shape, MaskRasteriser raster,
 				            boolean isMasking, IProgressMonitor monitor) {
 			super(op, shape, null, monitor);
 			this.isMasking = isMasking;
-			this.roi = roi;
-			this.lineWidth = lineWidth;
+			this.raster    = raster;
 		}
 
 		@Override
 		protected void compute() {
 			
-			
-			// We use the bounding box of the region.
-			final IRectangularROI bounds = roi.getBounds();
-			if (bounds == null)
+			// We only do the rows which the region may cover.
+			final int[] rows = raster.getRows();
+			if (rows == null)
 				return; // unbounded region
 
-			final double[] beg = bounds.getPoint();
-			if (roi!=null && roi.getClass() == PointROI.class) {
-				int x = Math.max(0, (int) Math.round(beg[0]));
-				int y = Math.max(0, (int) Math.round(beg[1]));
-				op.addVertex(!isMasking, y, x);
-				return; // We done it innit!
-			}
-			
-			
-			final double[] end = bounds.getEndPoint();
-
-			if (roi instanceof LinearROI) { // special case where isNearOutline is used for mask
-				double distance = Math.max(0.5, lineWidth/2.);
-				beg[0] -= distance;
-				beg[1] -= distance;
-				end[0] += distance;
-				end[1] += distance;
-			}
-
-			int xStart = Math.max(0, (int) Math.round(beg[0]));
-			int xEnd   = Math.min(shape[1] - 1, (int) Math.round(end[0]));
-			
-			int yStart = Math.max(0, (int) Math.round(beg[1]));
-			int yEnd   = Math.min(shape[0] - 1, (int) Math.round(end[1]));
-
-			final Collection<RegionAction> actions = new ArrayList<RegionAction>(yEnd/INC);
-			// We loop all pixels here because looping bounds boxes of rois did not work yet.
-
-			for (int y=yStart; y<yEnd; y+=INC) { 
-				
-				final int yMax = Math.min(yStart+INC, yEnd);
-				actions.add(new PixelAction(op, xStart, xEnd, yStart, yMax, isMasking, roi, lineWidth, monitor));
-				yStart+=INC;
+			final Collection<RowsAction> actions = new ArrayList<RowsAction>((rows[1]-rows[0])/INC+1);
+			for (int y = rows[0]; y < rows[1]; y += INC) { 
+				actions.add(new RowsAction(op, y, Math.min(y+INC, rows[1]), isMasking, raster, monitor));
 				if (monitor.isCanceled()) return;
 			}
 			invokeAll(actions);
@@ -558,102 +517,39 @@ public class MaskObject {
 	}
 	
 	/**
-	 * Each PixelAction does around 100,000 of the pixels.
-	 * 
-	 * @author Matthew Gerring
+	 * Each RowsAction fills the spans of the region in INC rows.
 	 */
-	private class PixelAction extends RegionAction {
+	private class RowsAction extends RegionAction {
 
 		/**
 		 * 
 		 */
 		private static final long serialVersionUID = -6539202270251672297L;
 		
-		private int xStart, xEnd;
 		private int yStart, yEnd;
 
-		public PixelAction(MaskOperation op, 
-				           int xStart, int xEnd,
-				           int yStart, int yEnd,
-				           boolean isMasking, IROI roi, double lineWidth, 
-				           IProgressMonitor monitor) {
+		public RowsAction(MaskOperation op, 
+				          int yStart, int yEnd,
+				          boolean isMasking, MaskRasteriser raster, 
+				          IProgressMonitor monitor) {
 			
-			super(op, null, roi, lineWidth, isMasking, monitor);
-			this.xStart  = xStart;
-			this.xEnd    = xEnd;
+			super(op, null, raster, isMasking, monitor);
 			this.yStart  = yStart;
 			this.yEnd    = yEnd;
 		}
 
 		@Override
 		protected void compute() {
-			if (roi instanceof LinearROI) {
-				double distance = Math.max(0.5, lineWidth/2.);
-				for (int y = yStart; y < yEnd; ++y) {
-					if (monitor.isCanceled()) return;
-					monitor.worked(1);
-
-					for (int x = xStart; x < xEnd; ++x) {
-
-						if (maskDataset.getBoolean(y, x) != isMasking)
-							continue;
-						try {
-							if (roi.isNearOutline(x, y, distance)) {
-								op.addVertex(!isMasking, y, x);
-							}
-						} catch (Throwable ne) {
-							logger.trace("Cannot process point " + (new Point(x, y)), ne);
-							return;
-						}
-					}
-				}
-			} else {
-				row_loop:
-				for (int y = yStart; y < yEnd; ++y) {
-					if (monitor.isCanceled())
-						return;
-					monitor.worked(1);
-
-					// use scanlines
-					double[] xs = roi.findHorizontalIntersections(y);
-					if (xs == null)
-						continue row_loop;
-
-					int xe = (int) xs[0];
-					if (xe >= xEnd)
-						continue row_loop;
-					if (xs.length == 1) {
-						if (xe >= xStart) {
-							toggleMask(op, !isMasking, y, xe);
-						}
-						continue row_loop;
-					}
-
-					int i = 1;
-					int xb;
-					do { // find first pair where end is past the start
-						xb = xe;
-						if (i >= xs.length)
-							continue row_loop;
-						xe = (int) xs[i++];
-					} while (xe < xStart);
-
-					while (true) {
-						if (xb >= xEnd) {
-							continue row_loop;
-						}
-
-						if (roi.containsPoint((xb + xe)/2, y)) {
-							for (int k = Math.max(xStart, xb); k <= Math.min(xEnd - 1, xe); k++) {
-								toggleMask(op, !isMasking, y, k);
-							}
-						}
-
-						xb = xe;
-						if (i >= xs.length)
-							continue row_loop;
-						xe = (int) xs[i++];
-					}
+			// Only this task writes to its stripe, so no locking is needed.
+			final MaskOperation.Stripe stripe = op.createStripe(yStart, yEnd);
+			for (int y = yStart; y < yEnd; ++y) {
+				if (monitor.isCanceled()) return;
+				monitor.worked(1);
+				try {
+					raster.fillRow(stripe, !isMasking, y);
+				} catch (Throwable ne) {
+					logger.trace("Cannot process row " + y, ne);
+					return;
 				}
 			}
 		}
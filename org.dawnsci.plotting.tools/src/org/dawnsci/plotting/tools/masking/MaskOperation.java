@@ -8,17 +8,10 @@
  */
 package org.dawnsci.plotting.tools.masking;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.eclipse.core.commands.ExecutionException;
 import org.eclipse.core.commands.operations.AbstractOperation;
@@ -29,8 +22,22 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.dawnsci.analysis.dataset.impl.BooleanDataset;
 
+/**
+ * An undoable change to a mask, held as the pixels which it changes and the
+ * value each is set to. Executing and redoing set those pixels to their values
+ * and undoing sets them back, so the mask is restored whatever else has set
+ * pixels in between, like the threshold of MaskObject.
+ *
+ * Pixels are added to stripes, bitsets covering some rows of the mask, so that
+ * tasks masking in parallel each write to their own stripe without locking.
+ * A span of a row is added with one bitset operation. The stripes are merged
+ * when the operation is executed, or its size asked for, and only then are the
+ * pixels which have the value already left out. After executing the pixels are
+ * kept as runs of changed pixels with the same value, which for regions is a few
+ * numbers per row, unless bitsets of the whole mask would be smaller.
+ */
 public class MaskOperation extends AbstractOperation {
-	
+
 	public static final IUndoContext MASK_CONTEXT = new IUndoContext() {
 		@Override
 		public String getLabel() {
@@ -42,156 +49,282 @@ public class MaskOperation extends AbstractOperation {
 			return context == MASK_CONTEXT;
 		}
 	};
-	
+
+	private BooleanDataset  maskDataset;
+	private final int       rows, cols;
+
 	/**
-	 * Can be large!
+	 * Stripes not merged yet and the stripe of the whole mask used by addVertex(...).
 	 */
-	private Collection<MaskPoint>  vertexList;
-	private byte[]          compressedVertices; // Used to reduce memory, works really well and fast.
-	private BooleanDataset  maskDataset;
+	private Queue<Stripe>   stripes;
+	private Stripe          vertices;
+
+	/**
+	 * Once merged, either the changed pixels and the value each is set to as bitsets,
+	 * or triples of start, end (exclusive) and value (1 or 0) of runs.
+	 */
+	private BitSet          changed, values;
+	private int[]           runs;
+	private int             size;
 
-	public MaskOperation(BooleanDataset maskDataset, int maxExpectedSize) {
+	public MaskOperation(BooleanDataset maskDataset) {
 		super("Mask operation");
 		this.maskDataset = maskDataset;
-		this.vertexList  = Collections.synchronizedSet(new HashSet<MaskPoint>(maxExpectedSize));
+		final int[] shape = maskDataset.getShape();
+		this.rows    = shape[0];
+		this.cols    = shape[1];
+		this.stripes = new ConcurrentLinkedQueue<Stripe>();
 		addContext(MASK_CONTEXT);
 	}
-	
 
 	@Override
 	public IStatus execute(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
 		try {
-			Collection<MaskPoint> vl = getVertexList();
-			for (MaskPoint mp : vl)  maskDataset.set(mp.is(), mp.getY(), mp.getX());
-			compressVertexList();
+			merge();
+			set(true);
+			compress();
 			return Status.OK_STATUS;
 		} catch (Throwable ne) {
 			throw new ExecutionException(ne.getMessage(), ne);
 		}
 	}
 
-	private void compressVertexList() throws IOException {
-		if (vertexList!=null) {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			GZIPOutputStream gzipOut = new GZIPOutputStream(baos);
-			ObjectOutputStream objectOut = new ObjectOutputStream(gzipOut);
-			objectOut.writeObject(vertexList);
-			objectOut.close();
-			compressedVertices = baos.toByteArray();
-			
-			vertexList.clear();
-			vertexList = null;
-		}
-	}
-	
-	private Collection<MaskPoint> getVertexList() throws IOException, ClassNotFoundException {
-		if (vertexList!=null) return vertexList;
-		if (compressedVertices!=null) {
-			ByteArrayInputStream bais  = new ByteArrayInputStream(compressedVertices);
-			GZIPInputStream gzipIn     = new GZIPInputStream(bais);
-			ObjectInputStream objectIn = new ObjectInputStream(gzipIn);
-			Collection<MaskPoint> vl = (Collection<MaskPoint>) objectIn.readObject();
-			objectIn.close();
-			return vl;
-		}
-		return null;
-	}
-
-
 	@Override
 	public IStatus redo(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
-		return execute(monitor, info);
+		try {
+			set(true);
+			return Status.OK_STATUS;
+		} catch (Throwable ne) {
+			throw new ExecutionException(ne.getMessage(), ne);
+		}
 	}
 
 	@Override
 	public IStatus undo(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
 		try {
-			Collection<MaskPoint> vl = getVertexList();
-			for (MaskPoint mp : vl)  maskDataset.set(!mp.is(), mp.getY(), mp.getX());
+			set(false);
 			return Status.OK_STATUS;
 		} catch (Throwable ne) {
 			throw new ExecutionException(ne.getMessage(), ne);
 		}
 	}
-	
 
-	public final static class MaskPoint implements Serializable {
-		/**
-		 * 
-		 */
-		private static final long serialVersionUID = 6580683756160098489L;
-		
-		private final int x, y;
-		private final boolean val;
-		public MaskPoint(boolean val, int x, int y){
-			this.x = x;
-			this.y = y;
-			this.val = val;
-		}
-		public int getX() {
-			return x;
+	/**
+	 * Adds the pixels of the stripes which are not their value already.
+	 */
+	private void merge() {
+		if (stripes==null || stripes.isEmpty()) return;
+		if (changed==null) {
+			changed = new BitSet(rows*cols);
+			values  = new BitSet(rows*cols);
 		}
-		public int getY() {
-			return y;
+
+		final boolean[] data = getMaskData();
+		Stripe stripe;
+		while ((stripe = stripes.poll())!=null) {
+			final BitSet bits = stripe.bits;
+			for (int start = bits.nextSetBit(0); start >= 0; start = bits.nextSetBit(start)) {
+				final int end = bits.nextClearBit(start);
+				// Split where the value changes, so each part has one value
+				for (int from = start; from < end; ) {
+					final boolean value = stripe.values.get(from);
+					final int     to    = Math.min(end, value ? stripe.values.nextClearBit(from) : nextSetBit(stripe.values, from));
+					final int     first = stripe.offset+from;
+					final int     last  = stripe.offset+to;
+					for (int i = first; i < last; i++) changed.set(i, data[i]!=value);
+					values.set(first, last, value);
+					from = to;
+				}
+				start = end;
+			}
 		}
-		public boolean is() {
-			return val;
+		vertices = null;
+		size     = changed.cardinality();
+	}
+
+	private static int nextSetBit(BitSet bits, int from) {
+		final int next = bits.nextSetBit(from);
+		return next<0 ? Integer.MAX_VALUE : next;
+	}
+
+	/**
+	 * Sets the changed pixels of the mask to their values, or back to what they were.
+	 *
+	 * @param forward true to set the values, false to set them back
+	 */
+	private void set(boolean forward) {
+		final boolean[] data = getMaskData();
+		if (runs!=null) {
+			for (int i = 0; i < runs.length; i+=3) {
+				Arrays.fill(data, runs[i], runs[i+1], (runs[i+2]==1) == forward);
+			}
+		} else if (changed!=null) {
+			for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i+1)) {
+				data[i] = values.get(i) == forward;
+			}
 		}
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + (val ? 1231 : 1237);
-			result = prime * result + x;
-			result = prime * result + y;
-			return result;
+		maskDataset.setDirty();
+	}
+
+	private boolean[] getMaskData() {
+		final boolean[] data = maskDataset.getData();
+		if (data.length!=rows*cols) throw new IllegalArgumentException("The mask must not be a view of another dataset!");
+		return data;
+	}
+
+	/**
+	 * Replaces the bitsets with runs if they are smaller.
+	 */
+	private void compress() {
+		if (changed==null) return;
+
+		int count = 0;
+		for (int start = changed.nextSetBit(0); start >= 0; ) {
+			final int end = getRunEnd(start);
+			count++;
+			start = changed.nextSetBit(end);
 		}
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			MaskPoint other = (MaskPoint) obj;
-			if (val != other.val)
-				return false;
-			if (x != other.x)
-				return false;
-			if (y != other.y)
-				return false;
-			return true;
+		if (count*3L*Integer.SIZE >= changed.size()+values.size()) return; // The bitsets are smaller
+
+		runs = new int[count*3];
+		int i = 0;
+		for (int start = changed.nextSetBit(0); start >= 0; ) {
+			final int end = getRunEnd(start);
+			runs[i++] = start;
+			runs[i++] = end;
+			runs[i++] = values.get(start) ? 1 : 0;
+			start = changed.nextSetBit(end);
 		}
-		
+		changed = null;
+		values  = null;
+	}
+
+	/**
+	 * @return the end (exclusive) of the run of changed pixels with the same value from start
+	 */
+	private int getRunEnd(int start) {
+		final int end = changed.nextClearBit(start);
+		return Math.min(end, values.get(start) ? values.nextClearBit(start) : nextSetBit(values, start));
 	}
 
+	/**
+	 * Creates a stripe for the rows from yStart to yEnd (exclusive). The stripe
+	 * may be added to by one thread at a time, different stripes may be added to
+	 * concurrently.
+	 *
+	 * @param yStart
+	 * @param yEnd
+	 * @return
+	 */
+	Stripe createStripe(int yStart, int yEnd) {
+		final Stripe stripe = new Stripe(yStart, yEnd);
+		stripes.add(stripe);
+		return stripe;
+	}
+
+	/**
+	 * Sets the pixel to mv when executed, if it is not mv already.
+	 * Must not be called from more than one thread, use createStripe(...) to do that.
+	 *
+	 * @param mv
+	 * @param y
+	 * @param x
+	 */
 	public void addVertex(boolean mv, int y, int x) {
-		vertexList.add(new MaskPoint(mv, x, y));
+		if (vertices==null) vertices = createStripe(0, rows);
+		vertices.add(mv, y, x);
 	}
 
 	/**
-	 * Fast, uses hashing algorithm
 	 * @param mv
 	 * @param y
 	 * @param x
-	 * @return
+	 * @return true if the operation sets the pixel to mv, i.e. the pixel has been added and was not mv before.
 	 */
 	public boolean isVertex(boolean mv, int y, int x) {
-		return vertexList.contains(new MaskPoint(mv, x, y));
+		merge();
+		final int index = y*cols+x;
+		if (runs!=null) {
+			// The last run starting at or before index
+			int lo = 0, hi = runs.length/3;
+			while (lo < hi) {
+				final int mid = (lo+hi) >>> 1;
+				if (runs[mid*3] <= index) {
+					lo = mid+1;
+				} else {
+					hi = mid;
+				}
+			}
+			if (lo==0) return false;
+			final int run = (lo-1)*3;
+			return index < runs[run+1] && (runs[run+2]==1) == mv;
+		}
+		return changed!=null && changed.get(index) && values.get(index) == mv;
 	}
 
+	/**
+	 * @return the number of pixels which the operation changes.
+	 */
 	public int getSize() {
-		return vertexList.size();
+		merge();
+		return size;
 	}
-	
+
 	/**
 	 * Cannot use operation again after been disposed.
 	 */
 	public void dispose() {
 		super.dispose();
-		if (vertexList!=null) vertexList.clear();
-		vertexList  = null;
+		stripes     = null;
+		vertices    = null;
+		changed     = null;
+		values      = null;
+		runs        = null;
 		maskDataset = null;
 	}
+
+	/**
+	 * The pixels set in some rows of the mask and their values.
+	 */
+	final class Stripe {
+
+		private final int       offset;
+		private final BitSet    bits;
+		private final BitSet    values;
+
+		private Stripe(int yStart, int yEnd) {
+			this.offset = yStart*cols;
+			this.bits   = new BitSet((yEnd-yStart)*cols);
+			this.values = new BitSet((yEnd-yStart)*cols);
+		}
+
+		/**
+		 * Sets the pixel to mv when executed, if it is not mv already.
+		 * @param mv
+		 * @param y
+		 * @param x
+		 */
+		void add(boolean mv, int y, int x) {
+			if (x<0 || x>=cols) throw new IndexOutOfBoundsException("Column "+x+" is not in the mask");
+			final int index = y*cols+x-offset;
+			bits.set(index);
+			values.set(index, mv);
+		}
+
+		/**
+		 * Sets the pixels of row y from xStart to xEnd (exclusive) to mv when executed,
+		 * those which are not mv already.
+		 * @param mv
+		 * @param y
+		 * @param xStart
+		 * @param xEnd
+		 */
+		void fill(boolean mv, int y, int xStart, int xEnd) {
+			if (xStart<0 || xEnd>cols) throw new IndexOutOfBoundsException("Columns "+xStart+" to "+xEnd+" are not in the mask");
+			if (xStart>=xEnd) return;
+			final int row = y*cols-offset;
+			bits.set(row+xStart, row+xEnd);
+			values.set(row+xStart, row+xEnd, mv);
+		}
+	}
 }
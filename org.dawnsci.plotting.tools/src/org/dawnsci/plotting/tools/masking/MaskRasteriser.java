@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.plotting.tools.masking;
+
+import org.eclipse.dawnsci.analysis.api.roi.IROI;
+import org.eclipse.dawnsci.analysis.api.roi.IRectangularROI;
+import org.eclipse.dawnsci.analysis.dataset.roi.LinearROI;
+import org.eclipse.dawnsci.analysis.dataset.roi.PointROI;
+
+/**
+ * Converts a region into the spans of pixels it covers in each row of a mask,
+ * so that the pixels are filled a span at a time rather than testing each one
+ * against the region.
+ *
+ * The pixels are those masked when each pixel was tested: the region's bounds are
+ * rounded to pixels, the last row and column excluded. For regions with an area
+ * (rectangles, polygons, sectors, ellipses, rings...) the spans come from the
+ * intersections of the row with the outline of the region, truncated to pixels,
+ * each span including both ends. Lines cover the pixels within half their width
+ * of the line, a rectangle with round ends whose span in each row is found
+ * directly. A point covers its nearest pixel.
+ */
+class MaskRasteriser {
+
+	private final IROI     roi;
+	private final double   distance;
+	private final double[] lineStart, lineEnd;
+	private final int      xStart, xEnd; // Of the bounds, xEnd exclusive
+	private final int      yStart, yEnd;
+
+	/**
+	 *
+	 * @param roi
+	 * @param shape of the mask
+	 * @param lineWidth of lines in data coordinates
+	 */
+	MaskRasteriser(IROI roi, int[] shape, double lineWidth) {
+		this.roi   = roi;
+		if (roi instanceof LinearROI) {
+			this.distance  = Math.max(0.5, lineWidth/2.);
+			this.lineStart = ((LinearROI)roi).getPoint();
+			this.lineEnd   = ((LinearROI)roi).getEndPoint();
+		} else {
+			this.distance  = 0;
+			this.lineStart = null;
+			this.lineEnd   = null;
+		}
+
+		final IRectangularROI bounds = roi.getBounds();
+		if (bounds == null) { // Unbounded
+			xStart = xEnd = yStart = yEnd = 0;
+		} else if (roi.getClass() == PointROI.class) {
+			final double[] beg = bounds.getPoint();
+			xStart = Math.max(0, (int)Math.round(beg[0]));
+			yStart = Math.max(0, (int)Math.round(beg[1]));
+			xEnd   = xStart < shape[1] ? xStart+1 : xStart;
+			yEnd   = yStart < shape[0] ? yStart+1 : yStart;
+		} else {
+			final double[] beg = bounds.getPoint();
+			final double[] end = bounds.getEndPoint();
+			xStart = Math.max(0,            (int)Math.round(beg[0]-distance));
+			xEnd   = Math.min(shape[1] - 1, (int)Math.round(end[0]+distance));
+			yStart = Math.max(0,            (int)Math.round(beg[1]-distance));
+			yEnd   = Math.min(shape[0] - 1, (int)Math.round(end[1]+distance));
+		}
+	}
+
+	/**
+	 * @return the first row and the row after the last which the region may cover, or null if it is unbounded.
+	 */
+	int[] getRows() {
+		if (roi.getBounds() == null) return null;
+		return new int[]{yStart, Math.max(yStart, yEnd)};
+	}
+
+	/**
+	 * Adds the pixels of a row covered by the region to the stripe.
+	 *
+	 * @param stripe
+	 * @param mv the value to set the pixels to
+	 * @param y
+	 */
+	void fillRow(MaskOperation.Stripe stripe, boolean mv, int y) {
+
+		if (roi.getClass() == PointROI.class) {
+			fill(stripe, mv, y, xStart, xEnd-1);
+			return;
+		}
+		if (lineStart!=null) {
+			fillLineRow(stripe, mv, y);
+			return;
+		}
+
+		final double[] xs = roi.findHorizontalIntersections(y);
+		if (xs == null || xs.length == 0) return;
+
+		if (xs.length == 1) { // Touches the row
+			fill(stripe, mv, y, (int)xs[0], (int)xs[0]);
+			return;
+		}
+
+		// Each pair of intersections is either inside or outside the region,
+		// the middle of it tells which for regions with holes like rings.
+		for (int i = 1; i < xs.length; i++) {
+			final int xb = (int)xs[i-1];
+			final int xe = (int)xs[i];
+			if (xe < xStart) continue;
+			if (xb >= xEnd)  return;
+			if (roi.containsPoint((xb+xe)/2, y)) fill(stripe, mv, y, xb, xe);
+		}
+	}
+
+	/**
+	 * The span of a row within distance of the line, the union of the spans of the two
+	 * end discs and of the rectangle between them, which overlap as the shape is convex.
+	 */
+	private void fillLineRow(MaskOperation.Stripe stripe, boolean mv, int y) {
+
+		double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+		for (double[] p : new double[][]{lineStart, lineEnd}) {
+			final double dy = y - p[1];
+			if (Math.abs(dy) > distance) continue;
+			final double dx = Math.sqrt(distance*distance - dy*dy);
+			lo = Math.min(lo, p[0]-dx);
+			hi = Math.max(hi, p[0]+dx);
+		}
+
+		final double ux = lineEnd[0]-lineStart[0];
+		final double uy = lineEnd[1]-lineStart[1];
+		final double len = Math.hypot(ux, uy);
+		if (len > 0) {
+			final double nx = -uy/len*distance;
+			final double ny =  ux/len*distance;
+			final double[][] corners = {{lineStart[0]+nx, lineStart[1]+ny},
+					                    {lineEnd[0]+nx,   lineEnd[1]+ny},
+					                    {lineEnd[0]-nx,   lineEnd[1]-ny},
+					                    {lineStart[0]-nx, lineStart[1]-ny}};
+			for (int i = 0; i < 4; i++) {
+				final double[] a = corners[i];
+				final double[] b = corners[(i+1)%4];
+				if ((a[1]-y)*(b[1]-y) > 0) continue; // Both on the same side of the row
+				if (a[1]==b[1]) {
+					lo = Math.min(lo, Math.min(a[0], b[0]));
+					hi = Math.max(hi, Math.max(a[0], b[0]));
+				} else {
+					final double x = a[0] + (y-a[1])*(b[0]-a[0])/(b[1]-a[1]);
+					lo = Math.min(lo, x);
+					hi = Math.max(hi, x);
+				}
+			}
+		}
+		if (lo<=hi) fill(stripe, mv, y, (int)Math.max(Integer.MIN_VALUE, Math.ceil(lo)), (int)Math.min(Integer.MAX_VALUE, Math.floor(hi)));
+	}
+
+	/**
+	 * Fills the pixels from xb to xe inclusive, clipped to the bounds.
+	 */
+	private void fill(MaskOperation.Stripe stripe, boolean mv, int y, int xb, int xe) {
+		final int start = Math.max(xStart, xb);
+		final int end   = Math.min(xEnd-1, xe) + 1;
+		if (start<end) stripe.fill(mv, y, start, end);
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.dawnsci.plotting.util;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The fork/join pool which the plotting bundles share for work split over the
+ * processors, so they do not each start a thread per processor. Java 7 has no
+ * common pool to use instead.
+ */
+public class PoolUtils {
+
+	private static ForkJoinPool pool;
+
+	/**
+	 * @return the shared pool, made when first asked for
+	 */
+	public static synchronized ForkJoinPool getPool() {
+		if (pool==null) pool = new ForkJoinPool();
+		return pool;
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.dawnsci.plotting.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+
+/**
+ * The rolling ball baseline of a spectrum: the minimum over a window about each
+ * point, then the maximum of that over the window, then the mean of that over
+ * the window.
+ *
+ * The window of point i is from i-width up to but not including i+width, inside
+ * the spectrum less its last point, whose baseline is 0. The minimum and maximum
+ * slide with a queue of the points which can still be the smallest or largest,
+ * and the mean with a running sum, so the time taken does not depend on the width.
+ */
+public class RollingBallBaseline {
+
+	/**
+	 * @param y 1D
+	 * @param width half the width of the window, at least 1
+	 * @return the baseline, of the same type as y
+	 */
+	public static Dataset getBaseline(Dataset y, int width) {
+		Dataset data = DatasetUtils.cast(y, Dataset.FLOAT64);
+		if (data.getBuffer() == null || ((double[])data.getBuffer()).length != data.getSize()) {
+			data = data.getSlice(); // A view of part of a bigger buffer
+		}
+		final double[] values = (double[])data.getBuffer();
+		final Dataset baseline = new DoubleDataset(getBaseline(values, y.getSize(), width), y.getShape());
+		return DatasetUtils.cast(baseline, y.getDtype());
+	}
+
+	/**
+	 * Works out the baselines of the spectra in parallel, on the pool of PoolUtils.
+	 *
+	 * @param ys 1D
+	 * @param width half the width of the window, at least 1
+	 * @return the baseline of each spectrum, of the same type
+	 */
+	public static List<Dataset> getBaselines(final List<? extends Dataset> ys, final int width) {
+
+		final List<RecursiveTask<Dataset>> tasks = new ArrayList<RecursiveTask<Dataset>>(ys.size());
+		for (final Dataset y : ys) {
+			tasks.add(new RecursiveTask<Dataset>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Dataset compute() {
+					return getBaseline(y, width);
+				}
+			});
+		}
+
+		return PoolUtils.getPool().invoke(new RecursiveTask<List<Dataset>>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected List<Dataset> compute() {
+				invokeAll(tasks);
+				final List<Dataset> baselines = new ArrayList<Dataset>(tasks.size());
+				for (RecursiveTask<Dataset> task : tasks) baselines.add(task.join());
+				return baselines;
+			}
+		});
+	}
+
+	/**
+	 * @param y
+	 * @param size of the spectrum in y
+	 * @param width half the width of the window, at least 1
+	 * @return the baseline
+	 */
+	static double[] getBaseline(double[] y, int size, int width) {
+		if (width < 1) throw new IllegalArgumentException("The width must be at least 1");
+
+		final double[] baseline = new double[size];
+		final int last = size - 1; // The last point is not in any window
+		if (last < 1) return baseline;
+
+		final double[] min = slide(y, last, width, true);
+		final double[] max = slide(min, last, width, false);
+
+		final double[] sum = new double[last + 1]; // Of max up to but not including each point
+		for (int i = 0; i < last; i++) sum[i + 1] = sum[i] + max[i];
+
+		for (int i = 0; i < last; i++) {
+			final int start = Math.max(0, i - width);
+			final int end   = Math.min(last, i + width);
+			baseline[i] = (sum[end] - sum[start]) / (end - start);
+		}
+		return baseline;
+	}
+
+	/**
+	 * @param a
+	 * @param last the number of points of a to use
+	 * @param width
+	 * @param min true for the minimum of each window, false for the maximum
+	 * @return the minimum or maximum of each window
+	 */
+	private static double[] slide(double[] a, int last, int width, boolean min) {
+
+		final double[] out = new double[last];
+		final int[] queue = new int[last]; // Indices of a, whose values increase for min and decrease for max
+		int head = 0, tail = 0;
+		int next = 0;
+
+		for (int i = 0; i < last; i++) {
+			final int start = Math.max(0, i - width);
+			final int end   = Math.min(last, i + width);
+			for (; next < end; next++) {
+				final double v = a[next];
+				while (tail > head && (min ? a[queue[tail-1]] >= v : a[queue[tail-1]] <= v)) tail--;
+				queue[tail++] = next;
+			}
+			while (queue[head] < start) head++;
+			out[i] = a[queue[head]];
+		}
+		return out;
+	}
+}
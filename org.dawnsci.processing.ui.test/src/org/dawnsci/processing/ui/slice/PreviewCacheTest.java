@@ -0,0 +1,155 @@
+package org.dawnsci.processing.ui.slice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.processing.OperationData;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks results are only found again for the same file, as last modified,
+ * dataset, axes and slice, and are copied in and out of the cache.
+ */
+public class PreviewCacheTest {
+
+	private static final Slice[] SLICE = new Slice[]{new Slice(0, 1), new Slice()};
+
+	private File file;
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("preview", ".h5");
+		file.setLastModified(1000000000000L);
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private static Map<Integer, String> getAxes(String... names) {
+		final Map<Integer, String> axes = new HashMap<Integer, String>();
+		for (int i = 0; i < names.length; i++) axes.put(i+1, names[i]);
+		return axes;
+	}
+
+	private List<Object> getSliceKey(String dataset, Map<Integer, String> axes, Slice[] slice) {
+		return PreviewCache.getSliceKey(PreviewCache.getFileKey(file.getAbsolutePath(), dataset, axes), slice);
+	}
+
+	private static OperationData createResult(double value) {
+		return new OperationData(DatasetFactory.createFromObject(new double[]{value, value}));
+	}
+
+	@Test
+	public void testSameFile() {
+		final Map<Integer, String> axes = getAxes("/entry/x", "/entry/y");
+		assertEquals(getSliceKey("/entry/data", axes, SLICE), getSliceKey("/entry/data", getAxes("/entry/x", "/entry/y"), SLICE));
+		assertEquals(getSliceKey("/entry/data", null, SLICE), getSliceKey("/entry/data", null, SLICE));
+
+		final PreviewCache cache = new PreviewCache();
+		cache.put(getSliceKey("/entry/data", axes, SLICE), createResult(1));
+		assertNotNull(cache.get(getSliceKey("/entry/data", getAxes("/entry/x", "/entry/y"), SLICE)));
+	}
+
+	@Test
+	public void testFileModified() {
+		final PreviewCache cache = new PreviewCache();
+		final List<Object> key = getSliceKey("/entry/data", null, SLICE);
+		cache.put(key, createResult(1));
+
+		file.setLastModified(1000000060000L);
+		final List<Object> modified = getSliceKey("/entry/data", null, SLICE);
+		assertFalse(key.equals(modified));
+		assertNull("A result from before the file was written again", cache.get(modified));
+	}
+
+	@Test
+	public void testOtherDatasetAxesOrSlice() {
+		final Map<Integer, String> axes = getAxes("/entry/x", "/entry/y");
+		final List<Object> key = getSliceKey("/entry/data", axes, SLICE);
+		final PreviewCache cache = new PreviewCache();
+		cache.put(key, createResult(1));
+
+		assertNull(cache.get(getSliceKey("/entry/other", axes, SLICE)));
+		assertNull(cache.get(getSliceKey("/entry/data", null, SLICE)));
+		assertNull(cache.get(getSliceKey("/entry/data", getAxes("/entry/x", "/entry/z"), SLICE)));
+		assertNull(cache.get(getSliceKey("/entry/data", axes, new Slice[]{new Slice(1, 2), new Slice()})));
+		assertNull(cache.get(PreviewCache.getSliceKey(PreviewCache.getFileKey(file.getAbsolutePath()+".other", "/entry/data", axes), SLICE)));
+	}
+
+	@Test
+	public void testAxesChangedAfter() {
+		// The key keeps the axes as they were, not the map
+		final Map<Integer, String> axes = getAxes("/entry/x");
+		final List<Object> key = getSliceKey("/entry/data", axes, SLICE);
+		axes.put(1, "/entry/y");
+		assertEquals(key, getSliceKey("/entry/data", getAxes("/entry/x"), SLICE));
+		assertFalse(key.equals(getSliceKey("/entry/data", axes, SLICE)));
+	}
+
+	@Test
+	public void testResultsCopied() {
+		final PreviewCache  cache  = new PreviewCache();
+		final List<Object>  key    = getSliceKey("/entry/data", null, SLICE);
+		final OperationData result = createResult(1);
+		cache.put(key, result);
+		((Dataset)result.getData()).imultiply(2);
+
+		final IDataset first = cache.get(key).getData();
+		assertEquals(1, first.getDouble(0), 0);
+		((Dataset)first).imultiply(3);
+
+		final IDataset second = cache.get(key).getData();
+		assertNotSame(first, second);
+		assertEquals(1, second.getDouble(0), 0);
+	}
+
+	@Test
+	public void testNoKey() {
+		// As for a model which cannot be cached
+		final PreviewCache cache = new PreviewCache();
+		cache.put(null, createResult(1));
+		assertNull(cache.get(null));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedDropped() {
+		final int size = Integer.getInteger("org.dawnsci.processing.preview.cache.size", 32);
+		final PreviewCache cache = new PreviewCache();
+		for (int i = 0; i < size; i++) cache.put(getSliceKey("/entry/data", null, new Slice[]{new Slice(i, i+1)}), createResult(i));
+
+		// Using the first makes the second the least recently used
+		assertNotNull(cache.get(getSliceKey("/entry/data", null, new Slice[]{new Slice(0, 1)})));
+		cache.put(getSliceKey("/entry/data", null, new Slice[]{new Slice(size, size+1)}), createResult(size));
+
+		assertNotNull(cache.get(getSliceKey("/entry/data", null, new Slice[]{new Slice(0, 1)})));
+		assertNull(cache.get(getSliceKey("/entry/data", null, new Slice[]{new Slice(1, 2)})));
+		for (int i = 2; i <= size; i++) {
+			assertEquals(i, cache.get(getSliceKey("/entry/data", null, new Slice[]{new Slice(i, i+1)})).getData().getDouble(0), 0);
+		}
+	}
+
+	@Test
+	public void testClear() {
+		final PreviewCache cache = new PreviewCache();
+		final List<Object> key   = getSliceKey("/entry/data", null, SLICE);
+		cache.put(key, createResult(1));
+		cache.clear();
+		assertNull(cache.get(key));
+	}
+}
@@ -0,0 +1,213 @@
+package org.dawnsci.processing.ui.slice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.api.processing.IExecutionVisitor;
+import org.eclipse.dawnsci.analysis.api.processing.IOperation;
+import org.eclipse.dawnsci.analysis.api.processing.OperationData;
+import org.eclipse.dawnsci.analysis.api.processing.model.IOperationModel;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceFromSeriesMetadata;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceInformation;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SourceInformation;
+import org.junit.Test;
+
+/**
+ * Writes through a slow visitor, to check the operations wait for it, the results
+ * are all written in the order of their slices and errors in writing come out of close().
+ */
+public class QueuedExecutionVisitorTest {
+
+	/**
+	 * Records the slice numbers of the results, after waiting for release.
+	 */
+	private static class SlowVisitor implements IExecutionVisitor {
+		final List<Integer>  written = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch release;
+		final long           delay;
+		final int            failAt;
+		volatile boolean     closed;
+
+		SlowVisitor(CountDownLatch release, long delay, int failAt) {
+			this.release = release;
+			this.delay   = delay;
+			this.failAt  = failAt;
+		}
+
+		@Override
+		public void init(IOperation<? extends IOperationModel, ? extends OperationData>[] series, ILazyDataset dataset) throws Exception {
+		}
+
+		@Override
+		public void notify(IOperation<? extends IOperationModel, ? extends OperationData> intermediateData, OperationData data) {
+		}
+
+		@Override
+		public void executed(OperationData result, IMonitor monitor) throws Exception {
+			release.await();
+			if (delay > 0) Thread.sleep(delay);
+			final int slice = result.getData().getInt(0);
+			if (slice == failAt) throw new Exception("Cannot write slice "+slice);
+			written.add(slice);
+		}
+
+		@Override
+		public void close() throws Exception {
+			closed = true;
+		}
+	}
+
+	/**
+	 * @param slice
+	 * @return a result holding its slice number, and with it in its metadata
+	 */
+	private static OperationData createResult(int slice) {
+		final IDataset data = DatasetFactory.createFromObject(new int[]{slice});
+		final Slice[]  s    = new Slice[]{new Slice(slice, slice+1)};
+		data.setMetadata(new SliceFromSeriesMetadata(new SourceInformation("", "", data), new SliceInformation(s, s, s, new int[]{0}, 1000, slice)));
+		return new OperationData(data);
+	}
+
+	private static List<Integer> range(int start, int stop) {
+		final List<Integer> range = new ArrayList<Integer>();
+		for (int i = start; i < stop; i++) range.add(i);
+		return range;
+	}
+
+	private static QueuedExecutionVisitor createVisitor(SlowVisitor delegate, int capacity, long orderWait) throws Exception {
+		final QueuedExecutionVisitor visitor = new QueuedExecutionVisitor(delegate, capacity, orderWait);
+		visitor.init(null, null);
+		return visitor;
+	}
+
+	@Test
+	public void testOperationsWaitForWriting() throws Exception {
+		final CountDownLatch         release  = new CountDownLatch(1);
+		final SlowVisitor            delegate = new SlowVisitor(release, 0, -1);
+		final QueuedExecutionVisitor visitor  = createVisitor(delegate, 4, 5000);
+
+		final AtomicInteger handed = new AtomicInteger();
+		final Thread producer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < 10; i++) {
+						visitor.executed(createResult(i), null);
+						handed.incrementAndGet();
+					}
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		producer.start();
+
+		Thread.sleep(500);
+		// One result is being written and the queue is full
+		assertEquals(5, handed.get());
+		assertEquals(Thread.State.WAITING, producer.getState());
+		assertEquals(4, visitor.getMaxQueued());
+
+		release.countDown();
+		producer.join(5000);
+		visitor.close();
+
+		assertEquals(range(0, 10), delegate.written);
+		assertEquals(10, visitor.getWritten());
+		assertTrue("No time waited for writing", visitor.getRunWaitTime() > 0);
+		assertTrue(delegate.closed);
+	}
+
+	@Test
+	public void testWrittenInSliceOrder() throws Exception {
+		final SlowVisitor            delegate = new SlowVisitor(new CountDownLatch(0), 1, -1);
+		final QueuedExecutionVisitor visitor  = createVisitor(delegate, 8, 5000);
+
+		// Each worker takes every fourth slice, and the workers run at different speeds
+		final List<Thread> workers = new ArrayList<Thread>();
+		for (int w = 0; w < 4; w++) {
+			final int worker = w;
+			final Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = worker; i < 200; i+=4) {
+							Thread.sleep(worker);
+							visitor.executed(createResult(i), null);
+						}
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			thread.start();
+			workers.add(thread);
+		}
+		for (Thread thread : workers) thread.join(20000);
+		visitor.close();
+
+		assertEquals(range(0, 200), delegate.written);
+		assertEquals(200, visitor.getWritten());
+		assertTrue(visitor.getMaxQueued() <= 8+workers.size());
+	}
+
+	@Test
+	public void testMissingSliceDoesNotStopWriting() throws Exception {
+		final SlowVisitor            delegate = new SlowVisitor(new CountDownLatch(0), 0, -1);
+		final QueuedExecutionVisitor visitor  = createVisitor(delegate, 2, 50);
+
+		final List<Integer> slices = Arrays.asList(2, 1, 4, 3, 5, 7, 6); // Slice 0 never comes
+		for (int slice : slices) visitor.executed(createResult(slice), null);
+		visitor.close();
+
+		assertEquals(range(1, 8), delegate.written);
+	}
+
+	@Test
+	public void testResultsWithoutSlicesInArrivalOrder() throws Exception {
+		final SlowVisitor            delegate = new SlowVisitor(new CountDownLatch(0), 1, -1);
+		final QueuedExecutionVisitor visitor  = createVisitor(delegate, 2, 5000);
+
+		final List<Integer> values = Arrays.asList(5, 3, 9, 1, 7);
+		for (int value : values) visitor.executed(new OperationData(DatasetFactory.createFromObject(new int[]{value})), null);
+		visitor.close();
+
+		assertEquals(values, delegate.written);
+	}
+
+	@Test
+	public void testWritingErrorFromClose() throws Exception {
+		final SlowVisitor            delegate = new SlowVisitor(new CountDownLatch(0), 0, 3);
+		final QueuedExecutionVisitor visitor  = createVisitor(delegate, 2, 5000);
+
+		Exception thrown = null;
+		try {
+			for (int i = 0; i < 100; i++) visitor.executed(createResult(i), null);
+		} catch (Exception e) {
+			thrown = e; // The operations stop once writing has failed
+		}
+		try {
+			visitor.close();
+			fail("The error in writing was not thrown");
+		} catch (Exception e) {
+			assertEquals("Cannot write slice 3", e.getMessage());
+			if (thrown != null) assertSame(thrown, e);
+		}
+		assertEquals(range(0, 3), delegate.written);
+		assertTrue(delegate.closed);
+	}
+}
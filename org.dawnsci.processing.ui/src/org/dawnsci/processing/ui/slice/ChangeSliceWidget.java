@@ -164,21 +164,54 @@ public class ChangeSliceWidget {
 	
 	public Slice[] getCurrentSlice() {
 		
-		return getInputOutputPosition()[0].convertToSlice();
+		return getSlice(current);
 	}
 	
 	public SliceInformation getCurrentSliceInformation() {
 		
-		SliceND[] slices = getInputOutputPosition();
+		return getSliceInformation(current);
+	}
+	
+	/**
+	 * @return the index of the current slice
+	 */
+	public int getCurrentPosition() {
+		return current;
+	}
+	
+	/**
+	 * @param position index of a slice, as from getCurrentPosition()
+	 * @return true if there is a slice at the position
+	 */
+	public boolean isPosition(int position) {
+		return subsampling != null && position >= 0 && position < max;
+	}
+	
+	/**
+	 * @param position index of a slice, as from getCurrentPosition()
+	 * @return the slice of the input at the position
+	 */
+	public Slice[] getSlice(int position) {
+		
+		return getInputOutputPosition(position)[0].convertToSlice();
+	}
+	
+	/**
+	 * @param position index of a slice, as from getCurrentPosition()
+	 * @return the slice information at the position
+	 */
+	public SliceInformation getSliceInformation(int position) {
+		
+		SliceND[] slices = getInputOutputPosition(position);
 		
-		return new SliceInformation(slices[0], slices[1], subsampling, dataDims, max, current);
+		return new SliceInformation(slices[0], slices[1], subsampling, dataDims, max, position);
 	}
 	
-	private SliceND[] getInputOutputPosition() {
+	private SliceND[] getInputOutputPosition(int position) {
 		int[] shape = subsampling.getShape().clone();
 		int[] scanShape = shape.clone();
 		for (int i = 0; i< dataDims.length; i++) scanShape[dataDims[i]] = 1;
-		int[] start = AbstractDataset.getNDPositionFromShape(current, scanShape);
+		int[] start = AbstractDataset.getNDPositionFromShape(position, scanShape);
 		int[] stop = start.clone();
 		for (int i = 0; i< stop.length; i++) stop[i]++;
 		for (int i = 0; i< dataDims.length; i++) stop[dataDims[i]] = shape[dataDims[i]];
@@ -130,6 +130,11 @@ public class DataFileSliceView extends ViewPart {
 	String lastPath = null;
 	
 	private final static Logger logger = LoggerFactory.getLogger(DataFileSliceView.class);
+	
+	/**
+	 * Write the results of processing on a thread of their own while the next slices are run
+	 */
+	private static final boolean QUEUED_WRITING = !Boolean.getBoolean("org.dawnsci.processing.no.queued.writing");
 
 	public DataFileSliceView() {
 		eventManager = new OperationEventManager();
@@ -371,7 +376,8 @@ public class DataFileSliceView extends ViewPart {
 
 						@Override
 						public IExecutionVisitor getExecutionVisitor(String fileName) {
-							return new HierarchicalFileExecutionVisitor(fileName);
+							IExecutionVisitor visitor = new HierarchicalFileExecutionVisitor(fileName);
+							return QUEUED_WRITING ? new QueuedExecutionVisitor(visitor) : visitor;
 						}
 
 						@Override
@@ -547,7 +553,7 @@ public class DataFileSliceView extends ViewPart {
 				job = new UpdateJob(fileManager.getContext());
 			} else {
 				job.cancel();
-				
+				job.cancelPrefetch();
 			}
 			job.setPath(selectedFile); 
 			job.setEndOperation(end);
@@ -643,9 +649,20 @@ public class DataFileSliceView extends ViewPart {
 		IOperation<? extends IOperationModel, ? extends OperationData> end;
 		String path = null;
 		
+		// The results of the stages of the operations, and of reading the file
+		private final PreviewCache cache = new PreviewCache();
+		private final PrefetchJob prefetch = new PrefetchJob();
+		private List<Object> lazyKey = null;
+		private ILazyDataset lazy = null;
+		private int lastPosition = -1;
+		
 		public UpdateJob(IConversionContext context) {
 			super("Update...");
 			this.context = context;
+			// The operations must not be run by both jobs at once
+			FileManager.Mutex rule = new FileManager.Mutex();
+			setRule(rule);
+			prefetch.setRule(rule);
 		}
 		
 		public void setEndOperation(IOperation<? extends IOperationModel, ? extends OperationData> end) {
@@ -662,6 +679,57 @@ public class DataFileSliceView extends ViewPart {
 				this.path = path;
 			}
 		}
+		
+		public void cancelPrefetch() {
+			prefetch.cancel();
+		}
+		
+		/**
+		 * @param fileKey from PreviewCache.getFileKey(...)
+		 * @return a view of the dataset of the file, with its axes, loaded again when
+		 *         the file, dataset, axes or the time the file was modified change.
+		 */
+		private synchronized ILazyDataset getLazyDataset(String path, List<Object> fileKey) throws Exception {
+			
+			if (fileKey.equals(lazyKey)) return lazy;
+			
+			final IDataHolder   dh = ServiceHolder.getLoaderService().getData(path, new IMonitor.Stub());
+			ILazyDataset lazyDataset = dh.getLazyDataset(context.getDatasetNames().get(0));
+			
+			if (lazyDataset == null) return null;
+			//take a local view
+			lazyDataset = lazyDataset.getSliceView();
+			
+			Map<Integer, String> axesNames = context.getAxesNames();
+			
+			if (axesNames != null) {
+				AxesMetadata am = ServiceHolder.getLoaderService().getAxesMetadata(lazyDataset, path, axesNames);
+				lazyDataset.setMetadata(am);
+//				AxesMetadata axMeta = SlicedDataUtils.createAxisMetadata(path, lazyDataset, axesNames);
+//				if (axMeta != null) lazyDataset.setMetadata(axMeta);
+//				else lazyDataset.clearMetadata(AxesMetadata.class);
+			}
+			
+			lazyKey = fileKey;
+			lazy = lazyDataset;
+			return lazyDataset;
+		}
+		
+		private IDataset getSlice(List<Object> fileKey, ILazyDataset lazyDataset, Slice[] s) {
+			
+			List<Object> key = PreviewCache.getSliceKey(fileKey, s);
+			OperationData cached = cache.get(key);
+			if (cached != null) return cached.getData();
+			
+			IDataset slice = null;
+			if (lazyDataset instanceof IDataset) {
+				slice = ((IDataset)lazyDataset).getSliceView(s);
+			} else {
+				slice = lazyDataset.getSlice(s);
+			}
+			cache.put(key, new OperationData(slice));
+			return slice;
+		}
 
 		@Override
 		protected IStatus run(IProgressMonitor monitor) {
@@ -671,36 +739,19 @@ public class DataFileSliceView extends ViewPart {
 				
 				if (path == null) path = context.getFilePaths().get(0);
 				
-				final IDataHolder   dh = ServiceHolder.getLoaderService().getData(path, new IMonitor.Stub());
-				ILazyDataset lazyDataset = dh.getLazyDataset(context.getDatasetNames().get(0));
+				List<Object> fileKey = PreviewCache.getFileKey(path, context.getDatasetNames().get(0), context.getAxesNames());
+				ILazyDataset lazyDataset = getLazyDataset(path, fileKey);
 				
 				if (lazyDataset == null) {
 					logger.error("Selected dataset not in file!!!!");
 					return Status.CANCEL_STATUS;
 				}
-				//take a local view
-				lazyDataset = lazyDataset.getSliceView();
-				
-				Map<Integer, String> axesNames = context.getAxesNames();
-				
-				if (axesNames != null) {
-					AxesMetadata am = ServiceHolder.getLoaderService().getAxesMetadata(lazyDataset, path, axesNames);
-					lazyDataset.setMetadata(am);
-//					AxesMetadata axMeta = SlicedDataUtils.createAxisMetadata(path, lazyDataset, axesNames);
-//					if (axMeta != null) lazyDataset.setMetadata(axMeta);
-//					else lazyDataset.clearMetadata(AxesMetadata.class);
-				}
-				
 				
 				int[] dataDims = Slicer.getDataDimensions(lazyDataset.getShape(), context.getSliceDimensions());
-				Slice[] s = csw.getCurrentSlice();
+				int position = csw.getCurrentPosition();
+				Slice[] s = csw.getSlice(position);
 				//Plot input, probably a bit wasteful to do each time
-				IDataset firstSlice = null;
-				if (lazyDataset instanceof IDataset) {
-					firstSlice = ((IDataset)lazyDataset).getSliceView(s);
-				} else {
-					firstSlice = lazyDataset.getSlice(s);
-				}
+				IDataset firstSlice = getSlice(fileKey, lazyDataset, s);
 				eventManager.sendInitialDataUpdate(firstSlice.getSliceView().squeeze());
 				MetadataPlotUtils.plotDataWithMetadata(firstSlice, input);
 				
@@ -710,34 +761,9 @@ public class DataFileSliceView extends ViewPart {
 					output.clear();
 					return Status.OK_STATUS;
 				}
-				//Only run what is necessary
-				if (inputData != null) {
-					
-					if (inputData.getCurrentOperation() != end) {
-						int pos = 0;
-						for (int i = 0; i< ops.length; i++) {
-							if (ops[i] == end) break;
-							if (ops[i] == inputData.getCurrentOperation()) {
-								pos = i;
-								pos++;
-								break;
-							}
-						}
-						
-						if (pos != 0){
-							firstSlice = inputData.getInputData();
-							ops = Arrays.copyOfRange(ops, pos-1, ops.length);
-						}
-						
-					} else {
-						firstSlice = inputData.getInputData();
-						ops = new IOperation[]{inputData.getCurrentOperation()};
-					}
-					
-				}
 				
 				SourceInformation si = new SourceInformation(path, context.getDatasetNames().get(0), lazyDataset);
-				SliceInformation sli = csw.getCurrentSliceInformation();
+				SliceInformation sli = csw.getSliceInformation(position);
 				//TODO replace with check shape
 				firstSlice.setMetadata(new SliceFromSeriesMetadata(si,sli));
 				
@@ -746,16 +772,26 @@ public class DataFileSliceView extends ViewPart {
 
 //				lazyDataset.setMetadata(om);
 
-				sliceVisitor = getSliceVisitor(ops, lazyDataset, Slicer.getDataDimensions(lazyDataset.getShape(), context.getSliceDimensions()));
+				// Only the operations after the last stage kept for this slice are run
+				sliceVisitor = getSliceVisitor(ops, lazyDataset, dataDims);
 				sliceVisitor.setEndOperation(end);
+				sliceVisitor.setCache(cache, PreviewCache.getSliceKey(fileKey, s));
 				long start = System.currentTimeMillis();
 				sliceVisitor.visit(firstSlice);
 				inputData = sliceVisitor.getOperationInputData();
 				eventManager.sendInputDataUpdate(inputData);
 				logger.debug("Ran in: " +(System.currentTimeMillis()-start)/1000. + " s");
 				eventManager.sendErrorUpdate(null);
-
 				
+				// Run the next slice in the direction the user is stepping
+				if (lastPosition >= 0 && position != lastPosition) {
+					int next = position + (position - lastPosition);
+					if (csw.isPosition(next)) {
+						prefetch.setUp(path, fileKey, lazyDataset, dataDims, ops, end, csw.getSlice(next), csw.getSliceInformation(next));
+						prefetch.schedule();
+					}
+				}
+				lastPosition = position;
 				
 				} catch (OperationException e) {
 					logger.error(e.getMessage(), e);
@@ -779,6 +815,60 @@ public class DataFileSliceView extends ViewPart {
 				return Status.OK_STATUS;
 		}
 		
+		/**
+		 * Runs the operations on a slice without showing them, to keep the results
+		 * for when the user steps to it.
+		 */
+		private class PrefetchJob extends Job {
+			
+			private String path;
+			private List<Object> fileKey;
+			private ILazyDataset lazyDataset;
+			private int[] dataDims;
+			private IOperation<? extends IOperationModel, ? extends OperationData>[] ops;
+			private IOperation<? extends IOperationModel, ? extends OperationData> end;
+			private Slice[] slice;
+			private SliceInformation info;
+			
+			public PrefetchJob() {
+				super("Prefetch slice...");
+				setSystem(true);
+				setPriority(Job.DECORATE);
+			}
+			
+			public synchronized void setUp(String path, List<Object> fileKey, ILazyDataset lazyDataset, int[] dataDims, 
+					IOperation<? extends IOperationModel, ? extends OperationData>[] ops,
+					IOperation<? extends IOperationModel, ? extends OperationData> end, Slice[] slice, SliceInformation info) {
+				this.path = path;
+				this.fileKey = fileKey;
+				this.lazyDataset = lazyDataset;
+				this.dataDims = dataDims;
+				this.ops = ops;
+				this.end = end;
+				this.slice = slice;
+				this.info = info;
+			}
+
+			@Override
+			protected synchronized IStatus run(IProgressMonitor monitor) {
+				try {
+					IDataset data = getSlice(fileKey, lazyDataset, slice);
+					if (monitor.isCanceled()) return Status.CANCEL_STATUS;
+					
+					String name = context.getDatasetNames().get(0);
+					data.setMetadata(new SliceFromSeriesMetadata(new SourceInformation(path, name, lazyDataset), info));
+					
+					EscapableSliceVisitor visitor = new EscapableSliceVisitor(lazyDataset, dataDims, ops, monitor, context, null);
+					visitor.setEndOperation(end);
+					visitor.setCache(cache, PreviewCache.getSliceKey(fileKey, slice));
+					visitor.visit(data);
+				} catch (Exception e) {
+					logger.debug("Could not prefetch slice", e);
+				}
+				return Status.OK_STATUS;
+			}
+		}
+		
 	}
 	
 	private EscapableSliceVisitor getSliceVisitor(IOperation<? extends IOperationModel, ? extends OperationData>[] series,ILazyDataset lz,  
@@ -1,6 +1,7 @@
 package org.dawnsci.processing.ui.slice;
 
 import java.io.File;
+import java.util.List;
 
 import org.apache.commons.io.FilenameUtils;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -34,6 +35,8 @@ public class EscapableSliceVisitor implements SliceVisitor {
 	private IConversionContext context;
 	private IPlottingSystem<?> output;
 	private IOperationInputData inputData = null;
+	private PreviewCache cache;
+	private List<Object> sliceKey;
 	
 	private final static Logger logger = LoggerFactory.getLogger(EscapableSliceVisitor.class);
 
@@ -52,6 +55,15 @@ public class EscapableSliceVisitor implements SliceVisitor {
 		endOperation = op;
 		visitor.setEndOperation(op);
 	}
+	
+	/**
+	 * @param cache of the results of each stage, which are run again only if they are not in it
+	 * @param sliceKey of the slice which will be visited, from PreviewCache.getSliceKey(...)
+	 */
+	public void setCache(PreviewCache cache, List<Object> sliceKey) {
+		this.cache = cache;
+		this.sliceKey = sliceKey;
+	}
 
 	@Override
 	public void visit(IDataset slice) throws Exception {
@@ -59,11 +71,36 @@ public class EscapableSliceVisitor implements SliceVisitor {
 		OperationData  data = new OperationData(slice);
 		SliceFromSeriesMetadata ssm = slice.getMetadata(SliceFromSeriesMetadata.class).get(0);
 		
+		int last = series.length-1;
+		for (int j = 0; j < series.length; j++) {
+			if (series[j] == endOperation) {
+				last = j;
+				break;
+			}
+		}
+		
+		// Start after the latest stage already run, the last is always run to show it
+		int first = 0;
+		if (cache != null) {
+			for (int j = last-1; j >= 0; j--) {
+				OperationData cached = cache.get(PreviewCache.getKey(sliceKey, series, j));
+				if (cached != null) {
+					data = cached;
+					first = j+1;
+					break;
+				}
+			}
+		}
+		
 		try {
 			
-		for (IOperation op : series) op.init();
+		for (int j = first; j <= last; j++) series[j].init();
 		
-		for (IOperation<? extends IOperationModel, ? extends OperationData> i : series) {
+		for (int j = first; j <= last; j++) {
+			
+			if (isCancelled()) return;
+			
+			IOperation<? extends IOperationModel, ? extends OperationData> i = series[j];
 
 			if (i instanceof IExportOperation) {
 				visitor.notify(i, data);
@@ -78,6 +115,8 @@ public class EscapableSliceVisitor implements SliceVisitor {
 				visitor.notify(i, tmp); // Optionally send intermediate result
 				data = i.isPassUnmodifiedData() ? data : tmp;
 			}
+			
+			if (cache != null) cache.put(PreviewCache.getKey(sliceKey, series, j), data);
 
 			if (i == endOperation) break;
 		}
@@ -85,7 +124,7 @@ public class EscapableSliceVisitor implements SliceVisitor {
 
 		visitor.executed(data, null); // Send result.
 		} finally {
-			for (IOperation op : series) op.dispose();
+			for (int j = first; j <= last; j++) series[j].dispose();
 		}
 
 	}
@@ -139,6 +178,7 @@ public class EscapableSliceVisitor implements SliceVisitor {
 		}
 		
 		private void displayData(OperationData result, int[] dataDims) throws Exception {
+			if (output == null) return; // Only keeping the results
 			if (result == null) output.clear();
 			IDataset out = result.getData();
 			//TODO change name
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.processing.ui.slice;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.processing.IOperation;
+import org.eclipse.dawnsci.analysis.api.processing.OperationData;
+import org.eclipse.dawnsci.analysis.api.processing.model.IOperationModel;
+import org.eclipse.dawnsci.analysis.api.processing.model.ModelField;
+import org.eclipse.dawnsci.analysis.api.processing.model.ModelUtils;
+
+/**
+ * The results of the stages of the preview of a series of operations, so that
+ * changing the model of one operation only runs it and those after it again,
+ * and going back to a slice does not run anything.
+ *
+ * A result is kept against the file, dataset and slice it came from, and each
+ * operation up to and including its stage with the values of the fields of its
+ * model at the time. The file is known by its path, the time it was last modified
+ * and the axes read with the dataset, so a file which is written again or read
+ * with other axes is read again. Stage -1 is the slice read from the file. The least recently
+ * used results go once there are more than SIZE.
+ *
+ * Only models whose fields are all values (numbers, strings, enums and arrays of
+ * them) are cached. A field holding a dataset, region or other object may be
+ * changed in place, which its string does not show, so stages from the first such
+ * model on are run again each time.
+ */
+class PreviewCache {
+
+	private static final int SIZE = Integer.getInteger("org.dawnsci.processing.preview.cache.size", 32);
+
+	private final Map<List<Object>, OperationData> results;
+
+	PreviewCache() {
+		results = new LinkedHashMap<List<Object>, OperationData>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, OperationData> eldest) {
+				return size() > SIZE;
+			}
+		};
+	}
+
+	/**
+	 * @param path of the file
+	 * @param dataset name
+	 * @param axesNames of the dimensions of the dataset, may be null
+	 * @return the key of the dataset as it is now in the file
+	 */
+	static List<Object> getFileKey(String path, String dataset, Map<Integer, String> axesNames) {
+		List<Object> key = new ArrayList<Object>();
+		key.add(path);
+		key.add(dataset);
+		// A copy, as the map may be changed after
+		key.add(axesNames == null ? null : new HashMap<Integer, String>(axesNames));
+		key.add(new File(path).lastModified());
+		return key;
+	}
+
+	/**
+	 * @param fileKey from getFileKey(...)
+	 * @param slice of the dataset
+	 * @return the key of the slice read from the file, to which getKey(...) adds operations
+	 */
+	static List<Object> getSliceKey(List<Object> fileKey, Slice[] slice) {
+		List<Object> key = new ArrayList<Object>(fileKey);
+		key.add(Slice.createString(slice));
+		return key;
+	}
+
+	/**
+	 * @param sliceKey from getSliceKey(...)
+	 * @param series
+	 * @param stage index in the series
+	 * @return the key of the result of the stage, or null if a model could not be read or has fields which are not values
+	 */
+	static List<Object> getKey(List<Object> sliceKey, IOperation<? extends IOperationModel, ? extends OperationData>[] series, int stage) {
+		List<Object> key = new ArrayList<Object>(sliceKey);
+		for (int i = 0; i <= stage; i++) {
+			String values = getValues(series[i].getModel());
+			if (values == null) return null;
+			key.add(series[i]);
+			key.add(values);
+		}
+		return key;
+	}
+
+	private static String getValues(IOperationModel model) {
+		if (model == null) return "";
+		StringBuilder buf = new StringBuilder();
+		try {
+			for (ModelField field : ModelUtils.getModelFields(model)) {
+				final Object value = field.get();
+				if (!isValue(value)) return null;
+				// Arrays by their contents, so changing one in place is seen
+				buf.append(field.getName()).append('=').append(Arrays.deepToString(new Object[]{value})).append(';');
+			}
+		} catch (Exception e) {
+			return null;
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * @param value
+	 * @return true if the string of the value is all of it
+	 */
+	private static boolean isValue(Object value) {
+		if (value == null || value instanceof Number || value instanceof Boolean || value instanceof Character
+			|| value instanceof String || value instanceof Enum) return true;
+		if (!value.getClass().isArray()) return false;
+		if (value.getClass().getComponentType().isPrimitive()) return true;
+		for (Object element : (Object[])value) {
+			if (!isValue(element)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param key
+	 * @return a copy of the result, as the operations it is given to may change their input, or null
+	 */
+	synchronized OperationData get(List<Object> key) {
+		if (key == null) return null;
+		OperationData result = results.get(key);
+		return result == null ? null : copy(result);
+	}
+
+	/**
+	 * @param key
+	 * @param result which is copied, as the operation after may change it
+	 */
+	synchronized void put(List<Object> key, OperationData result) {
+		if (key == null || result == null || result.getData() == null) return;
+		results.put(key, copy(result));
+	}
+
+	private static OperationData copy(OperationData result) {
+		IDataset data = result.getData().getSlice();
+		return result.getAuxData() == null ? new OperationData(data) : new OperationData(data, result.getAuxData());
+	}
+
+	synchronized void clear() {
+		results.clear();
+	}
+}
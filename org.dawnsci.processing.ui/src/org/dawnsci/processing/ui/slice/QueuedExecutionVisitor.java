@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.processing.ui.slice;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.api.processing.IExecutionVisitor;
+import org.eclipse.dawnsci.analysis.api.processing.IOperation;
+import org.eclipse.dawnsci.analysis.api.processing.OperationData;
+import org.eclipse.dawnsci.analysis.api.processing.model.IOperationModel;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceFromSeriesMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Passes the results of a processing run to another visitor on a thread of its
+ * own, so the operations go on with the next slices while a result is written.
+ *
+ * The results wait in a queue of at most QUEUE, so when writing cannot keep up
+ * the operations wait for it, rather than the results filling memory. They are
+ * passed on by one thread, so the visitor written to need not be thread safe, and
+ * in the order of their slice numbers, so results from a pool of workers are
+ * written as the slices are read. A result which is early waits in the queue for
+ * those before it. If the queue is full of early results, the operations on the
+ * next slice may still add to it; if none has come in ORDER_WAIT ms that slice is
+ * taken to be missing and writing goes on from the earliest result waiting.
+ * Intermediate results are copied, as the operation after may change them while
+ * they wait.
+ *
+ * The reading of slices and the pool running the operations are in the operation
+ * service, so the time each stage takes is measured from here: the time before
+ * each operation notifies of its result, summed over the workers, the time the
+ * workers wait for room in the queue, the time writing waits for the next result
+ * and the time spent writing. They may be read while running, are logged for
+ * debugging every LOG ms and on close, which shows which stage is the limit.
+ */
+class QueuedExecutionVisitor implements IExecutionVisitor {
+
+	private static final int  QUEUE      = Integer.getInteger("org.dawnsci.processing.write.queue", 16);
+	private static final long ORDER_WAIT = Long.getLong("org.dawnsci.processing.write.order.wait", 5000);
+	private static final long LOG        = Long.getLong("org.dawnsci.processing.write.log.interval", 10000); // ms between debug logs while running
+
+	private static final Logger logger = LoggerFactory.getLogger(QueuedExecutionVisitor.class);
+
+	private final IExecutionVisitor delegate;
+	private final int  capacity;
+	private final long orderWait; // Nanoseconds
+
+	// Guarded by queue
+	private final PriorityQueue<Item> queue;
+	private long    arrivals;
+	private int     next;  // The slice number written next
+	private boolean ended;
+
+	private Thread writer;
+	private volatile Exception error;
+
+	// Nanoseconds
+	private final AtomicLong runWait   = new AtomicLong(); // The operations waiting for room in the queue
+	private final AtomicLong writeWait = new AtomicLong(); // The writer waiting for a result
+	private final AtomicLong orderWaiting = new AtomicLong(); // The part of writeWait with early results in the queue
+	private final AtomicLong writing   = new AtomicLong();
+	private final AtomicLong written   = new AtomicLong();
+	private final AtomicInteger maxQueued = new AtomicInteger();
+
+	private Map<IOperation<? extends IOperationModel, ? extends OperationData>, AtomicLong> operationTimes = Collections.emptyMap();
+	private final AtomicLong running = new AtomicLong(); // The workers between handing over one result and the next
+
+	/**
+	 * When the worker on this thread last handed over a result, in nanoseconds
+	 */
+	private final ThreadLocal<long[]> handed = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[]{System.nanoTime()};
+		}
+	};
+
+	/**
+	 * A result, or an intermediate one if the operation is not null
+	 */
+	private static class Item {
+		final IOperation<? extends IOperationModel, ? extends OperationData> operation;
+		final OperationData data;
+		final IMonitor monitor;
+		final int slice; // Less than zero if the data has no slice number
+		long arrival;
+
+		Item(IOperation<? extends IOperationModel, ? extends OperationData> operation, OperationData data, IMonitor monitor, int slice) {
+			this.operation = operation;
+			this.data = data;
+			this.monitor = monitor;
+			this.slice = slice;
+		}
+	}
+
+	/**
+	 * Items without slice numbers first, then by slice number, then in order of arrival
+	 */
+	private static final Comparator<Item> ORDER = new Comparator<Item>() {
+		@Override
+		public int compare(Item a, Item b) {
+			if (a.slice != b.slice) return a.slice < b.slice ? -1 : 1;
+			return a.arrival < b.arrival ? -1 : a.arrival == b.arrival ? 0 : 1;
+		}
+	};
+
+	/**
+	 * @param delegate which writes the results
+	 */
+	QueuedExecutionVisitor(IExecutionVisitor delegate) {
+		this(delegate, QUEUE, ORDER_WAIT);
+	}
+
+	/**
+	 * @param delegate which writes the results
+	 * @param capacity of the queue
+	 * @param orderWait ms to wait for a missing slice while the queue is full
+	 */
+	QueuedExecutionVisitor(IExecutionVisitor delegate, int capacity, long orderWait) {
+		this.delegate  = delegate;
+		this.capacity  = Math.max(1, capacity);
+		this.orderWait = orderWait*1000000;
+		this.queue     = new PriorityQueue<Item>(this.capacity+1, ORDER);
+	}
+
+	@Override
+	public void init(IOperation<? extends IOperationModel, ? extends OperationData>[] series, ILazyDataset dataset) throws Exception {
+		delegate.init(series, dataset);
+
+		final Map<IOperation<? extends IOperationModel, ? extends OperationData>, AtomicLong> times = new LinkedHashMap<IOperation<? extends IOperationModel, ? extends OperationData>, AtomicLong>();
+		if (series != null) for (IOperation<? extends IOperationModel, ? extends OperationData> op : series) times.put(op, new AtomicLong());
+		operationTimes = times;
+
+		writer = new Thread("Processing writer") {
+			@Override
+			public void run() {
+				write();
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * @param item
+	 * @return true if the item is the next to write, or one which came after its turn
+	 */
+	private boolean isInOrder(Item item) {
+		return item.slice < 0 || item.slice <= next;
+	}
+
+	/**
+	 * @return the next item to write, or null when the queue is ended and empty
+	 */
+	private Item take() throws InterruptedException {
+		synchronized (queue) {
+			long start = System.nanoTime();
+			long early = 0; // When the queue was found full of early results
+			boolean held = false;
+			Item item;
+			while (true) {
+				item = queue.peek();
+				if (item == null) {
+					if (ended) return null;
+					early = 0;
+					queue.wait();
+					continue;
+				}
+				if (isInOrder(item) || ended || error != null) break;
+
+				held = true;
+				long now = System.nanoTime();
+				if (queue.size() < capacity) {
+					early = 0;
+				} else if (early == 0) {
+					early = now;
+				} else if (now-early >= orderWait) {
+					logger.debug("Slice "+next+" did not come, writing from slice "+item.slice);
+					next = item.slice;
+					break;
+				}
+				if (early == 0) queue.wait();
+				else queue.wait(Math.max(1, (orderWait-(now-early))/1000000));
+			}
+			queue.poll();
+			if (item.operation == null && item.slice >= next) next = item.slice+1;
+			queue.notifyAll();
+
+			long waited = System.nanoTime()-start;
+			writeWait.addAndGet(waited);
+			if (held) orderWaiting.addAndGet(waited);
+			return item;
+		}
+	}
+
+	private void write() {
+		long logged = System.nanoTime();
+		while (true) {
+			Item item;
+			try {
+				item = take();
+			} catch (InterruptedException e) {
+				error = e;
+				synchronized (queue) {
+					queue.notifyAll();
+				}
+				return;
+			}
+			if (item == null) return;
+
+			// After an error the queue is still emptied, so the operations do not wait forever
+			if (error != null) continue;
+			long taken = System.nanoTime();
+			try {
+				if (item.operation != null) {
+					delegate.notify(item.operation, item.data);
+				} else {
+					delegate.executed(item.data, item.monitor);
+					written.incrementAndGet();
+				}
+			} catch (Exception e) {
+				error = e;
+				synchronized (queue) {
+					queue.notifyAll();
+				}
+			}
+			long done = System.nanoTime();
+			writing.addAndGet(done-taken);
+			if (logger.isDebugEnabled() && done-logged > LOG*1000000) {
+				logged = done;
+				logger.debug("Writing: "+getStatistics());
+			}
+		}
+	}
+
+	private void put(Item item) throws Exception {
+		final long[] last = handed.get();
+		long start = System.nanoTime();
+		running.addAndGet(start-last[0]);
+
+		int size;
+		synchronized (queue) {
+			// Room is made for the next result when the queue is full of early ones, so writing does not stop
+			while (error == null && queue.size() >= capacity && !(isInOrder(item) && !isInOrder(queue.peek()))) {
+				queue.wait();
+			}
+			if (error != null) throw error;
+			item.arrival = arrivals++;
+			queue.add(item);
+			size = queue.size();
+			queue.notifyAll();
+		}
+		for (int max = maxQueued.get(); size > max && !maxQueued.compareAndSet(max, size); max = maxQueued.get());
+
+		last[0] = System.nanoTime();
+		runWait.addAndGet(last[0]-start);
+	}
+
+	@Override
+	public void notify(IOperation<? extends IOperationModel, ? extends OperationData> intermediateData, OperationData data) {
+		final AtomicLong time = operationTimes.get(intermediateData);
+		if (time != null) time.addAndGet(System.nanoTime()-handed.get()[0]);
+		try {
+			put(new Item(intermediateData, copy(data), null, getSliceNumber(data)));
+		} catch (Exception e) {
+			logger.error("Could not write intermediate data", e);
+		}
+	}
+
+	private static OperationData copy(OperationData data) {
+		if (data == null || data.getData() == null) return data;
+		IDataset copy = data.getData().getSlice();
+		return data.getAuxData() == null ? new OperationData(copy) : new OperationData(copy, data.getAuxData());
+	}
+
+	/**
+	 * @param data
+	 * @return the number of the slice the data came from, or -1 if it is not known
+	 */
+	private static int getSliceNumber(OperationData data) {
+		if (data == null || data.getData() == null) return -1;
+		try {
+			List<SliceFromSeriesMetadata> meta = data.getData().getMetadata(SliceFromSeriesMetadata.class);
+			if (meta == null || meta.isEmpty() || meta.get(0).getSliceInfo() == null) return -1;
+			return meta.get(0).getSliceInfo().getSliceNumber();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	@Override
+	public void executed(OperationData result, IMonitor monitor) throws Exception {
+		put(new Item(null, result, monitor, getSliceNumber(result)));
+	}
+
+	@Override
+	public void close() throws Exception {
+		try {
+			if (writer != null) {
+				synchronized (queue) {
+					ended = true;
+					queue.notifyAll();
+				}
+				writer.join();
+			}
+			logger.debug("Wrote "+getStatistics());
+		} finally {
+			delegate.close();
+		}
+		if (error != null) throw error;
+	}
+
+	private String getStatistics() {
+		final StringBuilder buf = new StringBuilder();
+		buf.append(getWritten()).append(" results in ").append(getWritingTime()).append(" ms; operations ran for ").append(getRunTime()).append(" ms");
+		for (Map.Entry<String, Long> e : getOperationTimes().entrySet()) buf.append(", ").append(e.getKey()).append(' ').append(e.getValue()).append(" ms");
+		buf.append("; operations waited ").append(getRunWaitTime()).append(" ms for writing, writing waited ").append(getWriteWaitTime())
+		   .append(" ms for operations, ").append(getOrderWaitTime()).append(" ms of it for earlier slices, at most ").append(getMaxQueued())
+		   .append(" of ").append(capacity).append(" queued");
+		return buf.toString();
+	}
+
+	/**
+	 * @return the number of results written so far
+	 */
+	long getWritten() {
+		return written.get();
+	}
+
+	/**
+	 * @return the time in ms spent writing so far
+	 */
+	long getWritingTime() {
+		return writing.get()/1000000;
+	}
+
+	/**
+	 * @return the time in ms the workers have spent reading slices and running the
+	 *         operations, summed over the workers
+	 */
+	long getRunTime() {
+		return running.get()/1000000;
+	}
+
+	/**
+	 * @return the time in ms before each operation of the series notified of its
+	 *         result, by name, summed over the workers. The first includes reading the slice.
+	 */
+	Map<String, Long> getOperationTimes() {
+		final Map<String, Long> times = new LinkedHashMap<String, Long>();
+		for (Map.Entry<IOperation<? extends IOperationModel, ? extends OperationData>, AtomicLong> e : operationTimes.entrySet()) {
+			final String name = e.getKey().getName();
+			final Long   time = times.get(name);
+			times.put(name, (time != null ? time : 0) + e.getValue().get()/1000000);
+		}
+		return times;
+	}
+
+	/**
+	 * @return the time in ms the operations have waited for room in the queue
+	 */
+	long getRunWaitTime() {
+		return runWait.get()/1000000;
+	}
+
+	/**
+	 * @return the time in ms writing has waited for results
+	 */
+	long getWriteWaitTime() {
+		return writeWait.get()/1000000;
+	}
+
+	/**
+	 * @return the part of the write wait time in ms when there were results waiting,
+	 *         but for slices after the one to write next
+	 */
+	long getOrderWaitTime() {
+		return orderWaiting.get()/1000000;
+	}
+
+	/**
+	 * @return the most results which have been waiting at once
+	 */
+	int getMaxQueued() {
+		return maxQueued.get();
+	}
+}
@@ -21,23 +21,58 @@ public abstract class AbstractProcess {
 	
 	public List<IContain1DData> process(List<IContain1DData> list) {
 
-		List<IContain1DData> output = new ArrayList<IContain1DData>();
+		List<Dataset> dataXs = new ArrayList<Dataset>(); // One for each data
+		List<Dataset> xs = new ArrayList<Dataset>();     // One for each spectrum
+		List<Dataset> ys = new ArrayList<Dataset>();
 
 		for (IContain1DData data : list) {
 
-			List<IDataset> out = new ArrayList<IDataset>();
-
 			Dataset x = DatasetUtils.convertToDataset(data.getxDataset());
+			dataXs.add(x);
 
 			for (IDataset y : data.getyDatasets()) {
-				out.add(process(x, DatasetUtils.convertToDataset(y)));
+				xs.add(x);
+				ys.add(DatasetUtils.convertToDataset(y));
 			}
+		}
+
+		List<Dataset> processed = process(xs, ys);
+
+		List<IContain1DData> output = new ArrayList<IContain1DData>();
+		int i = 0;
+		for (int d = 0; d < list.size(); d++) {
+
+			IContain1DData data = list.get(d);
+			List<IDataset> out = new ArrayList<IDataset>();
 
-			output.add(new Contain1DDataImpl(x, out, data.getName() + getAppendingName(), data.getLongName() + getAppendingName()));
+			for (int j = 0; j < data.getyDatasets().size(); j++, i++) {
+				out.add(processed.get(i));
+			}
+
+			output.add(new Contain1DDataImpl(dataXs.get(d), out, data.getName() + getAppendingName(), data.getLongName() + getAppendingName()));
 		}
 
 		return output;
 	}
+
+	/**
+	 * Processes every spectrum of a call to process(List), one at a time with
+	 * process(Dataset, Dataset). Override to process them all together.
+	 * 
+	 * @param xs the x of each spectrum
+	 * @param ys
+	 * @return the processed spectra, in the same order
+	 */
+	protected List<Dataset> process(List<Dataset> xs, List<Dataset> ys) {
+
+		List<Dataset> out = new ArrayList<Dataset>(ys.size());
+
+		for (int i = 0; i < ys.size(); i++) {
+			out.add(process(xs.get(i), ys.get(i)));
+		}
+
+		return out;
+	}
 	
 	protected abstract Dataset process(Dataset x, Dataset y);
 	
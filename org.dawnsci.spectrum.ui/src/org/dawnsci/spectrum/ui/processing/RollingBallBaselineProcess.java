@@ -8,8 +8,11 @@
  */
 package org.dawnsci.spectrum.ui.processing;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dawnsci.plotting.util.RollingBallBaseline;
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
-import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
 import org.eclipse.dawnsci.analysis.dataset.impl.Maths;
 
 public class RollingBallBaselineProcess extends AbstractProcess {
@@ -24,6 +27,22 @@ public class RollingBallBaselineProcess extends AbstractProcess {
 		this.width = width;
 	}
 
+	/**
+	 * Works out the baselines of all the spectra at once, in parallel.
+	 */
+	@Override
+	protected List<Dataset> process(List<Dataset> xs, List<Dataset> ys) {
+
+		List<Dataset> baselines = RollingBallBaseline.getBaselines(ys, width);
+
+		List<Dataset> out = new ArrayList<Dataset>(ys.size());
+		for (int i = 0; i < ys.size(); i++) {
+			out.add(Maths.subtract(ys.get(i), baselines.get(i)));
+		}
+
+		return out;
+	}
+
 	@Override
 	protected Dataset process(Dataset x, Dataset y) {
 		return rollingBallBaselineCorrection(y, width);
@@ -36,32 +55,7 @@ public class RollingBallBaselineProcess extends AbstractProcess {
 	}
 	
 	private  Dataset rollingBallBaselineCorrection(Dataset y, int width) {
-
-		Dataset t1 = DatasetFactory.zeros(y);
-		Dataset t2 = DatasetFactory.zeros(y);
-
-		for (int i = 0 ; i < y.getSize()-1; i++) {
-			int start = (i-width) < 0 ? 0 : (i - width);
-			int end = (i+width) > (y.getSize()-1) ? (y.getSize()-1) : (i+width);
-			double val = y.getSlice(new int[]{start}, new int[]{end}, null).min().doubleValue();
-			t1.set(val, i);
-		}
-
-		for (int i = 0 ; i < y.getSize()-1; i++) {
-			int start = (i-width) < 0 ? 0 : (i - width);
-			int end = (i+width) > (y.getSize()-1) ? (y.getSize()-1) : (i+width);
-			double val = t1.getSlice(new int[]{start}, new int[]{end}, null).max().doubleValue();
-			t2.set(val, i);
-		}
-
-		for (int i = 0 ; i < y.getSize()-1; i++) {
-			int start = (i-width) < 0 ? 0 : (i - width);
-			int end = (i+width) > (y.getSize()-1) ? (y.getSize()-1) : (i+width);
-			double val = (Double)t2.getSlice(new int[]{start}, new int[]{end}, null).mean();
-			t1.set(val, i);
-		}
-
-		return Maths.subtract(y, t1);
+		return Maths.subtract(y, RollingBallBaseline.getBaseline(y, width));
 	}
 
 }